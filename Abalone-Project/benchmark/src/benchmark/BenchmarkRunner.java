@@ -0,0 +1,35 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of this package.
+ * 
+ * <p>
+ * Usage: BenchmarkRunner [regex] [gc], for example "BoardBenchmark.deepCopy" to
+ * only run the benchmarks that match. Without arguments all benchmarks run.
+ * With gc the bytes allocated per operation are measured too.
+ *
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Run the benchmarks.
+     * 
+     * @param args optionally a regular expression of the benchmarks to run and
+     *             gc to measure allocation.
+     * @throws RunnerException if a benchmark fails.
+     */
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "benchmark\\..*Benchmark";
+        ChainedOptionsBuilder options = new OptionsBuilder().include(include);
+        if (args.length > 1 && args[1].equals("gc")) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
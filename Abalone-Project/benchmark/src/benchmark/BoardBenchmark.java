@@ -0,0 +1,138 @@
+package benchmark;
+
+import abalone.BitBoard;
+import abalone.Board;
+import abalone.Colour;
+import abalone.Field;
+import abalone.Move;
+import abalone.MoveGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the Board queries and commands used by the game, the server
+ * and the computer players.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    @Param({ "START_2", "MIDGAME_2", "MIDGAME_3", "MIDGAME_4" })
+    private String position;
+
+    private Board board;
+    private Colour colour;
+    private Move[] moves; // all valid moves of the colour to move
+    private Move[] candidates; // every head and tail next to each other, mostly not valid
+
+    /**
+     * Load the position and its moves.
+     */
+    @Setup
+    public void setUp() {
+        BitBoard bits = Positions.get(position);
+        board = bits.toBoard();
+        colour = bits.getSideToMove();
+        int[] encoded = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(bits, colour, encoded);
+        moves = new Move[count];
+        for (int i = 0; i < count; i++) {
+            moves[i] = BitBoard.toMove(encoded[i]);
+        }
+        candidates = new Move[BitBoard.CELLS * BitBoard.DIRECTIONS];
+        for (int i = 0; i < BitBoard.CELLS; i++) {
+            for (int d = 0; d < BitBoard.DIRECTIONS; d++) {
+                int tail = BitBoard.neighbour(i, d) == BitBoard.NO_CELL ? i : BitBoard.neighbour(i, d);
+                candidates[i * BitBoard.DIRECTIONS + d] = BitBoard.toMove(BitBoard.encodeMove(i, tail, d));
+            }
+        }
+    }
+
+    /**
+     * Copy of the board for every moveD call, moveD changes the board. Only
+     * moveD uses this state, the setup of every call would distort the timing of
+     * the read-only benchmarks.
+     */
+    @State(Scope.Thread)
+    public static class Copy {
+        private Board board;
+        private int next;
+
+        /**
+         * Make a new copy before every moveD call.
+         *
+         * @param bench the position and its moves.
+         */
+        @Setup(Level.Invocation)
+        public void copyBoard(BoardBenchmark bench) {
+            board = bench.board.deepCopy();
+            next = (next + 1) % bench.moves.length;
+        }
+    }
+
+    @Benchmark
+    public Board deepCopy() {
+        return board.deepCopy();
+    }
+
+    @Benchmark
+    public void isValidMoveDValid(Blackhole blackhole) {
+        for (Move move : moves) {
+            blackhole.consume(board.isValidMoveDForColour(move, colour));
+        }
+    }
+
+    @Benchmark
+    public void isValidMoveDCandidates(Blackhole blackhole) {
+        for (Move move : candidates) {
+            blackhole.consume(board.isValidMoveD(move));
+        }
+    }
+
+    @Benchmark
+    public Board moveD(Copy copy) {
+        copy.board.moveD(moves[copy.next]);
+        return copy.board;
+    }
+
+    @Benchmark
+    public void getNeighbors(Blackhole blackhole) {
+        for (int i = 0; i < BitBoard.CELLS; i++) {
+            blackhole.consume(board.getNeighbors(BitBoard.rowOf(i), BitBoard.colOf(i)));
+        }
+    }
+
+    @Benchmark
+    public void getNeighbor(Blackhole blackhole) {
+        for (int i = 0; i < BitBoard.CELLS; i++) {
+            for (int d = 0; d < BitBoard.DIRECTIONS; d++) {
+                Field field = board.getNeighbor(BitBoard.rowOf(i), BitBoard.colOf(i), d);
+                blackhole.consume(field);
+            }
+        }
+    }
+
+    @Benchmark
+    public String boardToString() {
+        return board.toString();
+    }
+}
@@ -0,0 +1,55 @@
+package benchmark;
+
+import abalone.Move;
+
+import exceptions.MoveFormatException;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of reading and writing moves, done for every move on the server
+ * and the client.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+
+    private String text = "C2,C4,0";
+    private String protocolText = "3,C;5,C;0";
+    private Move move = new Move('C', 2, 'C', 4, 0);
+
+    @Benchmark
+    public Move parse() throws MoveFormatException {
+        return Move.parse(text);
+    }
+
+    @Benchmark
+    public Move parseProtocol() throws MoveFormatException {
+        return Move.parseProtocol(protocolText);
+    }
+
+    @Benchmark
+    public String protocolFormat() {
+        return move.protocolFormat();
+    }
+
+    @Benchmark
+    public String moveToString() {
+        return move.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package benchmark;
+
+import abalone.BitBoard;
+import abalone.Board;
+import abalone.Perft;
+
+import exceptions.PositionFormatException;
+
+/**
+ * Fixed positions used by all benchmarks, so results of different versions of
+ * the engine can be compared. The midgame positions were made by playing 30
+ * random moves from the start positions and are stored serialized (see
+ * BitBoard.serialize) so they don't change when the engine changes.
+ *
+ */
+public final class Positions {
+
+    public static final String MIDGAME_2 = "OOOOO..OOOOOOO......R......O..R.O....R.......R....RR.RRRRRRRR"
+            + " O O/R 0/0 0/0";
+    public static final String MIDGAME_3 = ".OOOOOO..O..O...RRO@...O.....@....R@@...RRR@.@..RR@...RR@@..R"
+            + " O O/R/@ 2/0/1 1/0/2";
+    public static final String MIDGAME_4 = ".RO.O.RO.O.RR..O....R..OO.R.R..GO.G.RR@G@...@@.G.G..@GGG@@..G"
+            + " @ O@/RG 0/3 1,2/0,0";
+
+    private Positions() {
+    }
+
+    /**
+     * Get a position by name.
+     * 
+     * @param name START_2, START_3, START_4, MIDGAME_2, MIDGAME_3 or MIDGAME_4.
+     * @return the position.
+     */
+    public static BitBoard get(String name) {
+        try {
+            switch (name) {
+                case "START_2":
+                    return Perft.startPosition(2);
+                case "START_3":
+                    return Perft.startPosition(3);
+                case "START_4":
+                    return Perft.startPosition(4);
+                case "MIDGAME_2":
+                    return BitBoard.parse(MIDGAME_2);
+                case "MIDGAME_3":
+                    return BitBoard.parse(MIDGAME_3);
+                case "MIDGAME_4":
+                    return BitBoard.parse(MIDGAME_4);
+                default:
+                    throw new IllegalArgumentException("Unknown position " + name);
+            }
+        } catch (PositionFormatException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get a position by name as a Board.
+     * 
+     * @param name name of the position, see get(String).
+     * @return the board.
+     */
+    public static Board getBoard(String name) {
+        return get(name).toBoard();
+    }
+}
@@ -0,0 +1,90 @@
+package benchmark;
+
+import abalone.Move;
+
+import exceptions.MoveFormatException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import protocol.ProtocolMessages;
+import protocol.ProtocolTokenizer;
+import protocol.ResponseBuilder;
+
+/**
+ * Benchmarks of handling a message: reading the command and its arguments and
+ * building the answer. The split benchmarks do it the way the handlers did
+ * before the ProtocolTokenizer and ResponseBuilder. Run with the gc argument of
+ * the BenchmarkRunner to see the bytes allocated per message
+ * (gc.alloc.rate.norm).
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+
+    private static final String DELI = ProtocolMessages.DELIMITER;
+
+    private String moveLine = "MOVE;3,C;5,C;0;";
+    private String ackLine = "READY_LOBBY;2;";
+    private String name = "alice";
+    private ProtocolTokenizer tokenizer = new ProtocolTokenizer();
+    private ResponseBuilder builder = new ResponseBuilder();
+
+    /**
+     * A move from a client and the answer to it, as the server handles it.
+     */
+    @Benchmark
+    public byte[] splitMove() throws MoveFormatException {
+        String[] args = moveLine.split(DELI);
+        if (!args[0].equals(ProtocolMessages.MOVE)) {
+            return null;
+        }
+        Move move = Move.parseProtocol(args[1] + DELI + args[2] + DELI + args[3]);
+        String answer = ProtocolMessages.MOVE + DELI + name + DELI + move.protocolFormat();
+        return (answer + DELI + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] tokenizeMove() throws MoveFormatException {
+        tokenizer.reset(moveLine);
+        if (tokenizer.getCommand() != ProtocolMessages.MOVE) {
+            return null;
+        }
+        Move move = tokenizer.getMove(1);
+        return builder.command(ProtocolMessages.MOVE).arg(name).move(move).toLine();
+    }
+
+    /**
+     * An answer with a code, as the client reads it.
+     */
+    @Benchmark
+    public int splitAck() {
+        String[] args = ackLine.split(DELI);
+        try {
+            return args[0].equals(ProtocolMessages.READY_LOBBY) ? Integer.parseInt(args[1]) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Benchmark
+    public int tokenizeAck() {
+        tokenizer.reset(ackLine);
+        return tokenizer.getCommand() == ProtocolMessages.READY_LOBBY ? tokenizer.getInt(1) : -1;
+    }
+}
@@ -0,0 +1,123 @@
+package benchmark;
+
+import abalone.BitBoard;
+import abalone.Board;
+import abalone.Colour;
+import abalone.Move;
+import abalone.MoveGenerator;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import strategy.BetterStrategy;
+import strategy.MiniMaxStrategy;
+
+/**
+ * Benchmarks of move generation and of the computer players.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrategyBenchmark {
+
+    @Param({ "START_2", "MIDGAME_2", "MIDGAME_3", "MIDGAME_4" })
+    private String position;
+
+    private Board board;
+    private BitBoard bits;
+    private Colour colour;
+    private int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private int count;
+
+    /**
+     * Gives the benchmarks access to the move list of BetterStrategy.
+     */
+    private static class MoveLister extends BetterStrategy {
+        static ArrayList<Move> allMoves(Board board, Colour colour) {
+            return getAllMoves(board, colour);
+        }
+    }
+
+    /**
+     * The MiniMaxStrategy of miniMaxDetermineMove. Its transposition table is
+     * kept between the moves of a game, so it is cleared before every call to
+     * measure the search and not the table lookups.
+     */
+    @State(Scope.Thread)
+    public static class Search {
+
+        @Param({ "1", "2" })
+        private int depth;
+
+        private MiniMaxStrategy miniMax;
+
+        /**
+         * Create the strategy.
+         */
+        @Setup
+        public void setUp() {
+            miniMax = new MiniMaxStrategy(depth);
+        }
+
+        /**
+         * Forget the positions of the last call.
+         */
+        @Setup(Level.Invocation)
+        public void clearTable() {
+            miniMax.getTranspositionTable().clear();
+        }
+    }
+
+    /**
+     * Load the position.
+     */
+    @Setup
+    public void setUp() {
+        bits = Positions.get(position);
+        board = bits.toBoard();
+        colour = bits.getSideToMove();
+        count = MoveGenerator.generate(bits, colour, moves);
+    }
+
+    @Benchmark
+    public ArrayList<Move> getAllMoves() {
+        return MoveLister.allMoves(board, colour);
+    }
+
+    @Benchmark
+    public int generateMoves() {
+        return MoveGenerator.generate(bits, colour, moves);
+    }
+
+    @Benchmark
+    public void makeAndUnmakeMoves(Blackhole blackhole) {
+        for (int i = 0; i < count; i++) {
+            bits.makeMove(moves[i]);
+            blackhole.consume(bits.getHash());
+            bits.unmakeMove();
+        }
+    }
+
+    @Benchmark
+    public Move miniMaxDetermineMove(Search search) {
+        return search.miniMax.determineMove(board, colour);
+    }
+}
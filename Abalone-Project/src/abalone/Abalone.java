@@ -1,8 +1,12 @@
 package abalone;
 
 import abalone.HumanPlayer;
+import strategy.AlphaBetaStrategy;
 import strategy.BetterStrategy;
+import strategy.MaxNStrategy;
 import strategy.MiniMaxStrategy;
+import strategy.PositionalEvaluator;
+import strategy.Strategy;
 import utils.TextIO;
 
 /**
@@ -29,7 +33,8 @@ public class Abalone {
         players = new Player[plCount];
         for (int i = 0; i < plCount; i++) {
             System.out.println("Please enter the name of the player" + i
-                    + "(\n type cp for computer player \n sp for smart computer player): ");
+                    + "(\n type cp for computer player \n sp for smart computer player"
+                    + " \n tp for timed smart computer player): ");
             String namep = TextIO.getlnString();
             System.out.println("Player" + i + "is" + namep);
             if (namep.contains("cp")) {
@@ -44,6 +49,29 @@ public class Abalone {
                     depth = TextIO.getlnInt();
                 } while (depth > 3 || depth < 1);
                 players[i] = new ComputerPlayer(Colour.values()[i], new MiniMaxStrategy(depth));
+            } else if (namep.contains("tp")) {
+                System.out.println("It's a timed smart computer player");
+                int time;
+                do {
+                    System.out.println("How many milliseconds can the computer player think per move? (e.g. 500)");
+                    time = TextIO.getlnInt();
+                } while (time < 1);
+                int threads;
+                int cores = Runtime.getRuntime().availableProcessors();
+                do {
+                    System.out.println("How many threads can the computer player use? (1-" + cores + ")");
+                    threads = TextIO.getlnInt();
+                } while (threads < 1 || threads > cores);
+                Strategy strategy;
+                if (plCount == 3) { // every player plays for itself
+                    strategy = new MaxNStrategy(time);
+                } else {
+                    AlphaBetaStrategy alphaBeta = new AlphaBetaStrategy(time);
+                    alphaBeta.setEvaluator(new PositionalEvaluator());
+                    strategy = alphaBeta;
+                }
+                strategy.setThreads(threads);
+                players[i] = new ComputerPlayer(Colour.values()[i], strategy);
             } else {
                 players[i] = new HumanPlayer(namep, Colour.values()[i]);
             }
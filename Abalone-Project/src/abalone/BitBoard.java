@@ -0,0 +1,979 @@
+package abalone;
+
+import exceptions.PositionFormatException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compact board representation to be used by the computer players. Each colour
+ * has one 64 bit mask over the 61 fields of the board. Fields are indexed row by
+ * row starting from A0 (0) up to I8 (60). The neighbours and lines of every
+ * field are computed once, so geometric queries are array reads instead of
+ * row/column conversions. Any Board (BoardFor2, BoardFor3, BoardFor4) can be
+ * loaded into a BitBoard and a BitBoard can be turned back into a Board for the
+ * TUI and the protocol.
+ * 
+ * <p>
+ * Moves are encoded in an int (head field, tail field and direction) and can be
+ * made and undone in place, so a search does not have to copy the board for
+ * every move it tries.
+ * 
+ * <p>
+ * Every position has a Zobrist hash of the marbles, the colour to move and the
+ * scores. It is updated with every move instead of computed again, so searches
+ * can use it to recognise positions they have seen before. A position can be
+ * written on one line with serialize() and read back with parse().
+ */
+public class BitBoard {
+    public static final int CELLS = 61;
+    public static final int DIRECTIONS = 6;
+    public static final int NO_CELL = -1;
+    public static final long ALL_CELLS = (1L << CELLS) - 1;
+    public static final int NO_MOVE = -1;
+    public static final int QUIET_MOVE = 0; // move that does not push
+    public static final int PUSH_MOVE = 1; // sumito that keeps the pushed marbles on the board
+    public static final int EJECT_MOVE = 2; // sumito that pushes a marble off the board
+    public static final int KIND_SHIFT = 15; // the kind of a generated move is kept above the direction
+    public static final char EMPTY_SYMBOL = '.';
+
+    private static final Colour[] COLOURS = Colour.values();
+    private static final int[] ROW_DELTA = { 1, 1, 0, -1, -1, 0 }; // 0 is top left, going clockwise
+    private static final int[] COL_DELTA = { 0, 1, 1, 0, -1, -1 };
+
+    private static final char[] ROW_OF = new char[CELLS];
+    private static final int[] COL_OF = new int[CELLS];
+    private static final int[][] CELL_AT = new int[Board.DIM][Board.DIM];
+    private static final int[][] NEIGHBOURS = new int[CELLS][DIRECTIONS];
+    private static final long[][] RAYS = new long[CELLS][DIRECTIONS];
+    private static final int[][] LINE_DIRECTION = new int[CELLS][CELLS]; // direction from a field to another
+    private static final int MAX_PLY = 64; // initial size of the undo stack
+    private static final int MAX_HASHED_SCORE = 14; // higher scores share a key
+    private static final long ZOBRIST_SEED = 0x4162616C6F6E65L;
+
+    private static final long[][] MARBLE_KEYS = new long[COLOURS.length][CELLS];
+    private static final long[] SIDE_KEYS = new long[COLOURS.length];
+    private static final long[][] SCORE_KEYS = new long[COLOURS.length][MAX_HASHED_SCORE + 1]; // per team
+
+    static {
+        int cell = 0;
+        for (int row = 0; row < Board.DIM; row++) {
+            for (int col = 0; col < Board.DIM; col++) {
+                if (isOnBoard(row, col)) {
+                    ROW_OF[cell] = (char) ('A' + row);
+                    COL_OF[cell] = col;
+                    CELL_AT[row][col] = cell++;
+                } else {
+                    CELL_AT[row][col] = NO_CELL;
+                }
+            }
+        }
+        for (int i = 0; i < CELLS; i++) {
+            int row = ROW_OF[i] - 'A';
+            for (int d = 0; d < DIRECTIONS; d++) {
+                int r = row + ROW_DELTA[d];
+                int c = COL_OF[i] + COL_DELTA[d];
+                NEIGHBOURS[i][d] = isOnBoard(r, c) ? CELL_AT[r][c] : NO_CELL;
+                long ray = 0L;
+                while (isOnBoard(r, c)) { // every field until the edge in this direction
+                    ray |= 1L << CELL_AT[r][c];
+                    r += ROW_DELTA[d];
+                    c += COL_DELTA[d];
+                }
+                RAYS[i][d] = ray;
+            }
+        }
+        for (int i = 0; i < CELLS; i++) {
+            Arrays.fill(LINE_DIRECTION[i], -1);
+            for (int d = 0; d < DIRECTIONS; d++) { // fields at most 2 away on a line
+                int n = NEIGHBOURS[i][d];
+                if (n != NO_CELL) {
+                    LINE_DIRECTION[i][n] = d;
+                    if (NEIGHBOURS[n][d] != NO_CELL) {
+                        LINE_DIRECTION[i][NEIGHBOURS[n][d]] = d;
+                    }
+                }
+            }
+        }
+        Random random = new Random(ZOBRIST_SEED); // same keys in every run
+        for (int c = 0; c < COLOURS.length; c++) {
+            for (int i = 0; i < CELLS; i++) {
+                MARBLE_KEYS[c][i] = random.nextLong();
+            }
+            SIDE_KEYS[c] = random.nextLong();
+            for (int score = 0; score <= MAX_HASHED_SCORE; score++) {
+                SCORE_KEYS[c][score] = random.nextLong();
+            }
+        }
+    }
+
+    private long[] marbles; // one mask per colour, indexed by Colour.ordinal()
+    private int[] teamOf; // team index of every colour, -1 if not playing
+    private Colour[][] teams;
+    private int[] scores; // per team, marbles pushed off by this team
+    private int[] pushedOff; // per colour, marbles of this colour in the outer rim
+    private int[] nextColour; // turn order, -1 if not playing
+    private int sideToMove;
+    private long hash; // Zobrist hash of the position
+
+    /** Undo records of the moves made, the masks before the move and the score change. */
+    private long[] maskStack;
+    private long[] hashStack;
+    private int[] undoStack;
+    private int ply;
+
+    /**
+     * Load the marbles, teams and scores of a board.
+     *
+     * @requires board != null
+     * @param board the board to load.
+     */
+    public BitBoard(Board board) {
+        ArrayList<Team> boardTeams = board.getTeams();
+        marbles = new long[COLOURS.length];
+        pushedOff = new int[COLOURS.length];
+        teamOf = new int[COLOURS.length];
+        scores = new int[boardTeams.size()];
+        teams = new Colour[boardTeams.size()][];
+        for (int c = 0; c < COLOURS.length; c++) {
+            teamOf[c] = -1;
+        }
+        for (int t = 0; t < teams.length; t++) {
+            teams[t] = boardTeams.get(t).getColours().clone();
+            scores[t] = boardTeams.get(t).getScore();
+            for (Colour c : teams[t]) {
+                teamOf[c.ordinal()] = t;
+            }
+        }
+        for (int i = 0; i < CELLS; i++) {
+            Marble marble = board.getField(ROW_OF[i], COL_OF[i]).getMarble();
+            if (marble != null) {
+                marbles[marble.getColour().ordinal()] |= 1L << i;
+            }
+        }
+        for (Marble m : board.getOuterRim()) {
+            pushedOff[m.getColour().ordinal()]++;
+        }
+        initTurnOrder();
+        initUndo();
+        hash = computeHash();
+    }
+
+    /**
+     * Create an empty board with the given teams. Used by parse().
+     *
+     * @param teams the colours of every team.
+     */
+    private BitBoard(Colour[][] teams) {
+        this.teams = teams;
+        marbles = new long[COLOURS.length];
+        pushedOff = new int[COLOURS.length];
+        teamOf = new int[COLOURS.length];
+        scores = new int[teams.length];
+        Arrays.fill(teamOf, -1);
+        for (int t = 0; t < teams.length; t++) {
+            for (Colour c : teams[t]) {
+                teamOf[c.ordinal()] = t;
+            }
+        }
+        initTurnOrder();
+        initUndo();
+    }
+
+    /**
+     * Create a copy of a BitBoard. Used by deepCopy().
+     *
+     * @param other the board to copy.
+     */
+    private BitBoard(BitBoard other) {
+        marbles = other.marbles.clone();
+        teamOf = other.teamOf; // never changes after construction
+        teams = other.teams;
+        nextColour = other.nextColour;
+        scores = other.scores.clone();
+        pushedOff = other.pushedOff.clone();
+        sideToMove = other.sideToMove;
+        hash = other.hash;
+        initUndo();
+    }
+
+    /**
+     * Create an empty undo stack.
+     */
+    private void initUndo() {
+        maskStack = new long[MAX_PLY * COLOURS.length];
+        undoStack = new int[MAX_PLY];
+        hashStack = new long[MAX_PLY];
+        ply = 0;
+    }
+
+    /**
+     * Set up the turn order: one colour of every team in turn, the first colour
+     * of the first team starts. Same order as the players in Game.
+     */
+    private void initTurnOrder() {
+        nextColour = new int[COLOURS.length];
+        ArrayList<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 2; i++) { // at most 2 colours in a team
+            for (Colour[] team : teams) {
+                if (i < team.length) {
+                    order.add(team[i].ordinal());
+                }
+            }
+        }
+        for (int c = 0; c < COLOURS.length; c++) {
+            nextColour[c] = -1;
+        }
+        for (int i = 0; i < order.size(); i++) {
+            nextColour[order.get(i)] = order.get((i + 1) % order.size());
+        }
+        sideToMove = order.get(0);
+    }
+
+    /**
+     * Create a deep copy of this board.
+     *
+     * @return the deep copy.
+     */
+    public BitBoard deepCopy() {
+        return new BitBoard(this);
+    }
+
+    // -- Geometry ---------------------------------------------------
+
+    /**
+     * Check if a row and column coordinate are on the board.
+     *
+     * @param row      row index (0 is A).
+     * @param colCoord column coordinate.
+     * @return true if it is a field.
+     */
+    private static boolean isOnBoard(int row, int colCoord) {
+        return row >= 0 && row < Board.DIM && colCoord >= 0 && colCoord < Board.DIM
+                && colCoord - row < Board.SIDE_LENGTH && row - colCoord < Board.SIDE_LENGTH;
+    }
+
+    /**
+     * Get the index of a field using the coordinate system.
+     *
+     * @param rowChar  row coordinate(A-I or a-i).
+     * @param colCoord column coordinate.
+     * @return the index of the field, NO_CELL if it is not on the board.
+     */
+    public static int cellIndex(char rowChar, int colCoord) {
+        int row = Character.toUpperCase(rowChar) - 'A';
+        if (row < 0 || row >= Board.DIM || colCoord < 0 || colCoord >= Board.DIM) {
+            return NO_CELL;
+        }
+        return CELL_AT[row][colCoord];
+    }
+
+    /**
+     * Get the row coordinate of a field.
+     *
+     * @requires cell >= 0 && cell < CELLS
+     * @param cell index of the field.
+     * @return the row coordinate (A-I).
+     */
+    public static char rowOf(int cell) {
+        return ROW_OF[cell];
+    }
+
+    /**
+     * Get the column coordinate of a field.
+     *
+     * @requires cell >= 0 && cell < CELLS
+     * @param cell index of the field.
+     * @return the column coordinate (0-8).
+     */
+    public static int colOf(int cell) {
+        return COL_OF[cell];
+    }
+
+    /**
+     * Get the neighbour of a field. 0 is top left, going clockwise.
+     *
+     * @requires cell >= 0 && cell < CELLS
+     * @param cell      index of the field.
+     * @param direction direction of the neighbour (0-5).
+     * @return index of the neighbour, NO_CELL if it is off the board.
+     */
+    public static int neighbour(int cell, int direction) {
+        return NEIGHBOURS[cell][direction];
+    }
+
+    /**
+     * Get the direction from a field to another field on the same line at most 2
+     * fields away.
+     *
+     * @requires from and to between 0 and CELLS
+     * @param from index of the first field.
+     * @param to   index of the second field.
+     * @return the direction (0-5), -1 if they are not on a line or too far apart.
+     */
+    public static int lineDirection(int from, int to) {
+        return LINE_DIRECTION[from][to];
+    }
+
+    /**
+     * Get all the fields from a field (exclusive) until the edge of the board in a
+     * direction.
+     *
+     * @requires cell >= 0 && cell < CELLS
+     * @param cell      index of the field.
+     * @param direction direction of the line (0-5).
+     * @return mask of the fields on the line.
+     */
+    public static long ray(int cell, int direction) {
+        return RAYS[cell][direction];
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    /**
+     * Get the colour of the marble on a field.
+     *
+     * @param cell index of the field.
+     * @return the ordinal of the colour, -1 if the field is empty.
+     */
+    public int colourAt(int cell) {
+        long bit = 1L << cell;
+        for (int c = 0; c < marbles.length; c++) {
+            if ((marbles[c] & bit) != 0) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the colour of the marble on a field.
+     *
+     * @param cell index of the field.
+     * @return the colour, null if the field is empty.
+     */
+    public Colour getColour(int cell) {
+        int c = colourAt(cell);
+        return c == -1 ? null : COLOURS[c];
+    }
+
+    /**
+     * Get the fields with a marble of the given colour.
+     *
+     * @param colour colour of the marbles.
+     * @return mask of the fields.
+     */
+    public long getMarbles(Colour colour) {
+        return marbles[colour.ordinal()];
+    }
+
+    /**
+     * Get the fields with a marble of the given team.
+     *
+     * @param team index of the team.
+     * @return mask of the fields.
+     */
+    public long getTeamMarbles(int team) {
+        long mask = 0L;
+        for (Colour c : teams[team]) {
+            mask |= marbles[c.ordinal()];
+        }
+        return mask;
+    }
+
+    /**
+     * Get all fields that have a marble.
+     *
+     * @return mask of the fields.
+     */
+    public long getOccupied() {
+        long occupied = 0L;
+        for (long m : marbles) {
+            occupied |= m;
+        }
+        return occupied;
+    }
+
+    /**
+     * Get the team index of a colour, same order as Board.getTeams().
+     *
+     * @param colour colour to be checked.
+     * @return team index, -1 if the colour is not playing.
+     */
+    public int getTeamIndex(Colour colour) {
+        return teamOf[colour.ordinal()];
+    }
+
+    /**
+     * Get the number of teams on the board.
+     *
+     * @return the number of teams.
+     */
+    public int getTeamCount() {
+        return teams.length;
+    }
+
+    /**
+     * Get the colours of a team.
+     *
+     * @param team index of the team.
+     * @return colours of the team.
+     */
+    public Colour[] getTeamColours(int team) {
+        return teams[team].clone();
+    }
+
+    /**
+     * Get the score of a team, the number of marbles it has pushed off.
+     *
+     * @param team index of the team.
+     * @return score of the team.
+     */
+    public int getScore(int team) {
+        return scores[team];
+    }
+
+    /**
+     * Get the number of marbles of a colour in the outer rim.
+     *
+     * @param colour colour to be checked.
+     * @return number of marbles pushed off.
+     */
+    public int getPushedOff(Colour colour) {
+        return pushedOff[colour.ordinal()];
+    }
+
+    /**
+     * Get the team that has won.
+     *
+     * @return the team index, -1 if there is no winner.
+     */
+    public int getWinnerTeam() {
+        int winner = -1;
+        for (int t = 0; t < scores.length; t++) {
+            if (scores[t] >= Board.LOSERMARBLES) {
+                winner = t;
+            }
+        }
+        return winner;
+    }
+
+    /**
+     * Check if the board has a winner.
+     *
+     * @return true if there is a winner.
+     */
+    public boolean hasWinner() {
+        return getWinnerTeam() != -1;
+    }
+
+    /**
+     * Get the Zobrist hash of the position: the marbles, the colour to move and
+     * the scores of the teams. Kept up to date by every move.
+     *
+     * @return the hash of the position.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Compute the Zobrist hash of the position from scratch.
+     *
+     * @ensures result == getHash()
+     * @return the hash of the position.
+     */
+    public long computeHash() {
+        long h = SIDE_KEYS[sideToMove];
+        for (int c = 0; c < COLOURS.length; c++) {
+            long mask = marbles[c];
+            while (mask != 0) {
+                h ^= MARBLE_KEYS[c][Long.numberOfTrailingZeros(mask)];
+                mask &= mask - 1;
+            }
+        }
+        for (int t = 0; t < scores.length; t++) {
+            h ^= scoreKey(t, scores[t]);
+        }
+        return h;
+    }
+
+    /**
+     * Get the hash key of the score of a team.
+     */
+    private static long scoreKey(int team, int score) {
+        return SCORE_KEYS[team][Math.min(score, MAX_HASHED_SCORE)];
+    }
+
+    public Colour getSideToMove() {
+        return COLOURS[sideToMove];
+    }
+
+    /**
+     * Set the colour that makes the next move.
+     *
+     * @requires colour to be playing on this board.
+     * @param colour colour to make the next move.
+     */
+    public void setSideToMove(Colour colour) {
+        assert teamOf[colour.ordinal()] != -1;
+        hash ^= SIDE_KEYS[sideToMove] ^ SIDE_KEYS[colour.ordinal()];
+        sideToMove = colour.ordinal();
+    }
+
+    /**
+     * Get the colour that moves after the given colour, in the same order as the
+     * players of a game.
+     *
+     * @requires colour to be playing on this board.
+     * @param colour the colour that has moved.
+     * @return the next colour.
+     */
+    public Colour nextColour(Colour colour) {
+        return COLOURS[nextColour[colour.ordinal()]];
+    }
+
+    // -- Moves ------------------------------------------------------
+
+    /**
+     * Encode a move in an int. Same meaning as a Move: if moving one marble use the
+     * same field twice, if moving 3 marbles use the first and the last marble.
+     *
+     * @param head      index of the head field.
+     * @param tail      index of the tail field.
+     * @param direction 0 is top left, goes clockwise, 5 is left.
+     * @return the encoded move.
+     */
+    public static int encodeMove(int head, int tail, int direction) {
+        return head | (tail << 6) | (direction << 12);
+    }
+
+    public static int moveHead(int move) {
+        return move & 0x3F;
+    }
+
+    public static int moveTail(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int moveDirection(int move) {
+        return (move >>> 12) & 0x7;
+    }
+
+    /**
+     * Get the kind of a move made by MoveGenerator, which stores it in bits 15
+     * and 16 of the move. Other encoded moves always return QUIET_MOVE, use
+     * classifyMove for those.
+     *
+     * @param move the encoded move.
+     * @return QUIET_MOVE, PUSH_MOVE or EJECT_MOVE.
+     */
+    public static int moveKind(int move) {
+        return (move >>> KIND_SHIFT) & 0x3;
+    }
+
+    /**
+     * Encode a Move object.
+     *
+     * @param move the move to be encoded.
+     * @return the encoded move, NO_MOVE if a field of the move is not on the board.
+     */
+    public static int fromMove(Move move) {
+        int head = cellIndex(move.getHead().getRow(), move.getHead().getCol());
+        int tail = cellIndex(move.getTail().getRow(), move.getTail().getCol());
+        if (head == NO_CELL || tail == NO_CELL) {
+            return NO_MOVE;
+        }
+        return encodeMove(head, tail, move.getDirection());
+    }
+
+    /**
+     * Turn an encoded move into a Move object.
+     *
+     * @requires move != NO_MOVE
+     * @param move the encoded move.
+     * @return the Move.
+     */
+    public static Move toMove(int move) {
+        int head = moveHead(move);
+        int tail = moveTail(move);
+        return new Move(ROW_OF[head], COL_OF[head], ROW_OF[tail], COL_OF[tail], moveDirection(move));
+    }
+
+    /**
+     * Check if a move is valid for the colour making the move. Same rules as
+     * Board.isValidMoveDForColour (and BoardFor4 for team games): the head should
+     * be the colour making the move, the other marbles should be from the same
+     * team, only fewer marbles of other teams can be pushed.
+     *
+     * @param move   the encoded move.
+     * @param colour colour making the move.
+     * @return true if it is a valid move.
+     */
+    public boolean isValidMove(int move, Colour colour) {
+        int head = moveHead(move);
+        int tail = moveTail(move);
+        int direction = moveDirection(move);
+        int dest = NEIGHBOURS[head][direction];
+        if (dest == NO_CELL || (marbles[colour.ordinal()] & (1L << head)) == 0) {
+            return false;
+        }
+        long occupied = getOccupied();
+        if (head == tail) { // moving one marble
+            return (occupied & (1L << dest)) == 0;
+        }
+        int line = LINE_DIRECTION[tail][head];
+        if (line == -1) { // not a column of 2 or 3 marbles
+            return false;
+        }
+        long own = getTeamMarbles(teamOf[colour.ordinal()]);
+        int mid = NEIGHBOURS[tail][line]; // same as head when moving 2 marbles
+        int size = mid == head ? 2 : 3;
+        long group = (1L << head) | (1L << mid) | (1L << tail);
+        if ((group & own) != group) {
+            return false;
+        }
+        if (direction == line || direction == opposite(line)) { // in-line move
+            int front = direction == line ? head : tail;
+            int next = NEIGHBOURS[front][direction];
+            if (next == NO_CELL) {
+                return false;
+            }
+            int pushed = 0;
+            while (next != NO_CELL && (occupied & (1L << next)) != 0) {
+                if ((own & (1L << next)) != 0) { // can't push own team's marble
+                    return false;
+                }
+                pushed++;
+                next = NEIGHBOURS[next][direction];
+            }
+            return pushed < size; // sumito: only fewer marbles can be pushed
+        }
+        // side step move, all fields next to the marbles should be empty
+        return isEmptyNeighbour(head, direction, occupied) && isEmptyNeighbour(mid, direction, occupied)
+                && isEmptyNeighbour(tail, direction, occupied);
+    }
+
+    /**
+     * Check if a move pushes marbles of another team and if one of them is pushed
+     * off the board.
+     *
+     * @requires move to be a valid move.
+     * @param move the encoded move.
+     * @return QUIET_MOVE, PUSH_MOVE or EJECT_MOVE.
+     */
+    public int classifyMove(int move) {
+        int head = moveHead(move);
+        int tail = moveTail(move);
+        int direction = moveDirection(move);
+        if (head == tail) { // one marble can't push
+            return QUIET_MOVE;
+        }
+        int line = LINE_DIRECTION[tail][head];
+        if (direction != line && direction != opposite(line)) { // side step
+            return QUIET_MOVE;
+        }
+        long occupied = getOccupied();
+        int next = NEIGHBOURS[direction == line ? head : tail][direction];
+        if ((occupied & (1L << next)) == 0) {
+            return QUIET_MOVE;
+        }
+        while (next != NO_CELL && (occupied & (1L << next)) != 0) { // find the end of the pushed marbles
+            next = NEIGHBOURS[next][direction];
+        }
+        return next == NO_CELL ? EJECT_MOVE : PUSH_MOVE;
+    }
+
+    /**
+     * Check if the neighbour of a field is on the board and empty.
+     */
+    private static boolean isEmptyNeighbour(int cell, int direction, long occupied) {
+        int n = NEIGHBOURS[cell][direction];
+        return n != NO_CELL && (occupied & (1L << n)) == 0;
+    }
+
+    /**
+     * Get the opposite direction.
+     *
+     * @param direction direction (0-5).
+     * @return the opposite direction.
+     */
+    public static int opposite(int direction) {
+        return (direction + 3) % DIRECTIONS;
+    }
+
+    /**
+     * Make a move in place and remember how to undo it. The colour of the head
+     * marble makes the move, the next colour is to move afterwards.
+     *
+     * @requires move to be a valid move.
+     * @param move the encoded move.
+     */
+    public void makeMove(int move) {
+        int head = moveHead(move);
+        int tail = moveTail(move);
+        int direction = moveDirection(move);
+        if (ply == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, ply * 2);
+            hashStack = Arrays.copyOf(hashStack, ply * 2);
+            maskStack = Arrays.copyOf(maskStack, ply * 2 * COLOURS.length);
+        }
+        System.arraycopy(marbles, 0, maskStack, ply * COLOURS.length, COLOURS.length);
+        hashStack[ply] = hash;
+        int mover = colourAt(head);
+        int ejected = -1;
+        int line = head == tail ? direction : LINE_DIRECTION[tail][head];
+        if (direction == line || direction == opposite(line)) { // in-line move, possibly pushing
+            ejected = shift(direction == line ? tail : head, direction);
+        } else { // side step move
+            int mid = NEIGHBOURS[tail][line];
+            setCell(NEIGHBOURS[head][direction], mover);
+            setCell(head, -1);
+            if (mid != head) {
+                setCell(NEIGHBOURS[mid][direction], colourAt(mid));
+                setCell(mid, -1);
+            }
+            setCell(NEIGHBOURS[tail][direction], colourAt(tail));
+            setCell(tail, -1);
+        }
+        if (ejected != -1) {
+            int team = teamOf[mover];
+            hash ^= scoreKey(team, scores[team]) ^ scoreKey(team, scores[team] + 1);
+            scores[team]++;
+            pushedOff[ejected]++;
+        }
+        undoStack[ply++] = (ejected + 1) | (teamOf[mover] << 3) | (sideToMove << 6);
+        hash ^= SIDE_KEYS[sideToMove] ^ SIDE_KEYS[nextColour[mover]];
+        sideToMove = nextColour[mover];
+    }
+
+    /**
+     * Undo the last move made with makeMove.
+     *
+     * @requires a move to have been made.
+     */
+    public void unmakeMove() {
+        int undo = undoStack[--ply];
+        System.arraycopy(maskStack, ply * COLOURS.length, marbles, 0, COLOURS.length);
+        int ejected = (undo & 0x7) - 1;
+        if (ejected != -1) {
+            scores[(undo >>> 3) & 0x7]--;
+            pushedOff[ejected]--;
+        }
+        sideToMove = undo >>> 6;
+        hash = hashStack[ply];
+    }
+
+    /**
+     * Move the row of marbles starting at a field one step in a direction.
+     *
+     * @param rear      the last marble of the row.
+     * @param direction direction to move in.
+     * @return colour of the marble pushed off the board, -1 if none.
+     */
+    private int shift(int rear, int direction) {
+        int cell = rear;
+        int incoming = -1;
+        while (true) {
+            int current = colourAt(cell);
+            setCell(cell, incoming);
+            if (current == -1) {
+                return -1;
+            }
+            int next = NEIGHBOURS[cell][direction];
+            if (next == NO_CELL) { // pushed off
+                return current;
+            }
+            incoming = current;
+            cell = next;
+        }
+    }
+
+    /**
+     * Put a marble of a colour on a field.
+     *
+     * @param cell   index of the field.
+     * @param colour ordinal of the colour, -1 to empty the field.
+     */
+    private void setCell(int cell, int colour) {
+        long bit = 1L << cell;
+        int old = colourAt(cell);
+        if (old != -1) {
+            marbles[old] &= ~bit;
+            hash ^= MARBLE_KEYS[old][cell];
+        }
+        if (colour != -1) {
+            marbles[colour] |= bit;
+            hash ^= MARBLE_KEYS[colour][cell];
+        }
+    }
+
+    // -- Conversion -------------------------------------------------
+
+    /**
+     * Create a Board with the same marbles, teams and scores. Team games are
+     * turned into a BoardFor4 so the team rules stay the same.
+     *
+     * @return the board.
+     */
+    public Board toBoard() {
+        Board board;
+        if (teams.length == 2 && teams[0].length == 2) {
+            board = new BoardFor4(teams[0][0], teams[1][0], teams[0][1], teams[1][1]);
+        } else {
+            board = new Board();
+        }
+        copyTo(board);
+        return board;
+    }
+
+    /**
+     * Overwrite the fields, outer rim and teams of a board with this board.
+     *
+     * @param board the board to be overwritten.
+     */
+    public void copyTo(Board board) {
+        board.init();
+        board.teams = new ArrayList<Team>();
+        for (int t = 0; t < teams.length; t++) {
+            Team team = new Team(teams[t].clone());
+            team.setScore(scores[t]);
+            board.teams.add(team);
+        }
+        for (int c = 0; c < COLOURS.length; c++) {
+            long mask = marbles[c];
+            while (mask != 0) {
+                int cell = Long.numberOfTrailingZeros(mask);
+                board.setField(ROW_OF[cell], COL_OF[cell], new Marble(COLOURS[c]));
+                mask &= mask - 1;
+            }
+            for (int i = 0; i < pushedOff[c]; i++) {
+                board.getOuterRim().add(new Marble(COLOURS[c]));
+            }
+        }
+    }
+
+    /**
+     * Write the position in one line: the 61 fields from A0 to I8 (the symbol of
+     * the colour or '.'), the colour to move, the colours of every team, the
+     * score of every team and the marbles every colour has lost. For example
+     * "@@@@@...OOOOO @ @/O 0/0 0/0" for 2 players, and "O@/RG 0/0 0,0/0,0" as
+     * the last 3 parts for 4 players.
+     *
+     * @return the position, can be read with parse().
+     */
+    public String serialize() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < CELLS; i++) {
+            int c = colourAt(i);
+            result.append(c == -1 ? EMPTY_SYMBOL : COLOURS[c].toString().charAt(0));
+        }
+        result.append(' ').append(COLOURS[sideToMove]).append(' ');
+        for (int t = 0; t < teams.length; t++) {
+            for (Colour c : teams[t]) {
+                result.append(c);
+            }
+            result.append(t < teams.length - 1 ? "/" : " ");
+        }
+        for (int t = 0; t < teams.length; t++) {
+            result.append(scores[t]).append(t < teams.length - 1 ? "/" : " ");
+        }
+        for (int t = 0; t < teams.length; t++) {
+            for (int i = 0; i < teams[t].length; i++) {
+                result.append(pushedOff[teams[t][i].ordinal()]).append(i < teams[t].length - 1 ? "," : "");
+            }
+            result.append(t < teams.length - 1 ? "/" : "");
+        }
+        return result.toString();
+    }
+
+    /**
+     * Read a position written by serialize().
+     *
+     * @param position the serialized position.
+     * @return the board of the position.
+     * @throws PositionFormatException if the position is in wrong format.
+     */
+    public static BitBoard parse(String position) throws PositionFormatException {
+        String[] parts = position.trim().split("\\s+");
+        if (parts.length != 5 || parts[0].length() != CELLS) {
+            throw new PositionFormatException("Expected 61 fields, colour to move, teams, scores and lost marbles");
+        }
+        String[] teamParts = parts[2].split("/");
+        String[] scoreParts = parts[3].split("/");
+        String[] lostParts = parts[4].split("/");
+        if (teamParts.length < 2 || teamParts.length > 3 || scoreParts.length != teamParts.length
+                || lostParts.length != teamParts.length) {
+            throw new PositionFormatException("Expected 2 or 3 teams with a score and lost marbles each");
+        }
+        Colour[][] teams = new Colour[teamParts.length][];
+        boolean[] inTeam = new boolean[COLOURS.length];
+        for (int t = 0; t < teams.length; t++) {
+            if (teamParts[t].isEmpty() || teamParts[t].length() > 2) { // the turn order has 2 colours per team
+                throw new PositionFormatException("Expected 1 or 2 colours in team " + t);
+            }
+            teams[t] = new Colour[teamParts[t].length()];
+            for (int i = 0; i < teams[t].length; i++) {
+                teams[t][i] = parseColour(teamParts[t].charAt(i));
+                if (inTeam[teams[t][i].ordinal()]) {
+                    throw new PositionFormatException(teams[t][i] + " is in more than one team");
+                }
+                inTeam[teams[t][i].ordinal()] = true;
+            }
+        }
+        BitBoard board = new BitBoard(teams);
+        try {
+            for (int t = 0; t < teams.length; t++) {
+                board.scores[t] = Integer.parseInt(scoreParts[t]);
+                String[] lost = lostParts[t].split(",");
+                if (lost.length != teams[t].length) {
+                    throw new PositionFormatException("Expected lost marbles of every colour of team " + t);
+                }
+                for (int i = 0; i < lost.length; i++) {
+                    board.pushedOff[teams[t][i].ordinal()] = Integer.parseInt(lost[i]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new PositionFormatException("Scores and lost marbles should be int");
+        }
+        for (int i = 0; i < CELLS; i++) {
+            char symbol = parts[0].charAt(i);
+            if (symbol != EMPTY_SYMBOL) {
+                Colour colour = parseColour(symbol);
+                if (board.teamOf[colour.ordinal()] == -1) {
+                    throw new PositionFormatException(colour + " is on the board but not in a team");
+                }
+                board.marbles[colour.ordinal()] |= 1L << i;
+            }
+        }
+        if (parts[1].length() != 1 || board.teamOf[parseColour(parts[1].charAt(0)).ordinal()] == -1) {
+            throw new PositionFormatException("Colour to move should be in a team");
+        }
+        board.sideToMove = parseColour(parts[1].charAt(0)).ordinal();
+        board.hash = board.computeHash();
+        return board;
+    }
+
+    /**
+     * Get the colour of a symbol.
+     */
+    private static Colour parseColour(char symbol) throws PositionFormatException {
+        for (Colour c : COLOURS) {
+            if (c.toString().charAt(0) == symbol) {
+                return c;
+            }
+        }
+        throw new PositionFormatException("Unknown colour " + symbol);
+    }
+
+    /**
+     * Show the string representation of the board, same as Board.
+     */
+    @Override
+    public String toString() {
+        Board board = new Board();
+        copyTo(board);
+        return board.toString();
+    }
+}
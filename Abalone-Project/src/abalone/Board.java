@@ -10,6 +10,11 @@ import java.util.Iterator;
  * class does not initialize any marbles on the board and subclasses are
  * expected to initialize the marbles.
  * 
+ * <p>
+ * Neighbours and lines are looked up in the tables of BitBoard, which numbers
+ * the fields from A0 (0) to I8 (60). Every field index is mapped once to its
+ * place in the fields array, so geometric queries don't allocate anything.
+ * 
  * @author Berke Guducu
  *
  */
@@ -21,6 +26,18 @@ public class Board {
     public static final int LOSERMARBLES = 6;
     protected ArrayList<Team> teams;
 
+    /** Place of every field index (see BitBoard) in the fields array. */
+    private static final int[] FIELD_ROW = new int[BitBoard.CELLS];
+    private static final int[] FIELD_COL = new int[BitBoard.CELLS];
+
+    static {
+        for (int i = 0; i < BitBoard.CELLS; i++) {
+            int row = BitBoard.rowOf(i) - 'A';
+            FIELD_ROW[i] = DIM - row - 1; // row A is at the bottom
+            FIELD_COL[i] = BitBoard.colOf(i) - Math.max(0, row - (SIDE_LENGTH - 1));
+        }
+    }
+
     /**
      * Initialize a board with colors black and white. Teams are not initialized,
      * used for extending classes.
@@ -233,12 +250,27 @@ public class Board {
      * @return the field with given coordinates
      */
     public Field getField(char rowChar, int colCoord) {
+        int cell = BitBoard.cellIndex(rowChar, colCoord);
+        if (cell != BitBoard.NO_CELL) {
+            return getField(cell);
+        }
         int row = letterToRow(rowChar);
         int col = coordToColIndex(rowChar, colCoord);
         return getField(row, col);
 
     }
 
+    /**
+     * Get a field with its index, see BitBoard.cellIndex.
+     * 
+     * @requires cell >= 0 && cell < BitBoard.CELLS
+     * @param cell index of the field.
+     * @return the field.
+     */
+    public Field getField(int cell) {
+        return fields[FIELD_ROW[cell]][FIELD_COL[cell]];
+    }
+
     /**
      * Convert coordinate column values to column index value.
      * 
@@ -335,8 +367,7 @@ public class Board {
      * @return
      */
     public boolean isFieldCoord(char rowChar, int colCoord) {
-        return letterToRow(rowChar) >= 0 && letterToRow(rowChar) < DIM && colCoord < DIM && colCoord >= 0
-                && isFieldwIndexChar(rowChar, coordToColIndex(rowChar, colCoord));
+        return BitBoard.cellIndex(rowChar, colCoord) != BitBoard.NO_CELL;
     }
 
     /**
@@ -348,13 +379,10 @@ public class Board {
      * @return
      */
     public Field[] getNeighbors(char rowChar, int colCoord) {
-        Field[] neighbours = { getFieldwCoordSafe((char) (rowChar + 1), colCoord), // top left
-                getFieldwCoordSafe((char) (rowChar + 1), colCoord + 1), // top right
-                getFieldwCoordSafe((char) (rowChar), colCoord + 1), // mid right
-                getFieldwCoordSafe((char) (rowChar - 1), colCoord), // bottom right
-                getFieldwCoordSafe((char) (rowChar - 1), colCoord - 1), // bottom left
-                getFieldwCoordSafe((char) (rowChar), colCoord - 1) };// mid left
-
+        Field[] neighbours = new Field[BitBoard.DIRECTIONS];
+        for (int i = 0; i < neighbours.length; i++) {
+            neighbours[i] = getNeighbor(rowChar, colCoord, i);
+        }
         return neighbours;
     }
 
@@ -363,24 +391,15 @@ public class Board {
      * 
      * @requires neighborNo > 0 && neighborNo<6
      * @param neighborNo the number of neighbor 0-5.
-     * @return the neighboring field.
+     * @return the neighboring field, null if it is off the board.
      */
     public Field getNeighbor(char rowChar, int colCoord, int neighborNo) {
-        return getNeighbors(rowChar, colCoord)[neighborNo];
-    }
-
-    /**
-     * getField using coordinates but returns null if it is not valid index.
-     * 
-     * @param rowChar  row coordinate.
-     * @param colCoord column coordinate.
-     * @return the field or null if not found
-     */
-    private Field getFieldwCoordSafe(char rowChar, int colCoord) {
-        if (!isFieldCoord(rowChar, colCoord)) {
+        int cell = BitBoard.cellIndex(rowChar, colCoord);
+        if (cell == BitBoard.NO_CELL) {
             return null;
         }
-        return getField(rowChar, colCoord);
+        int neighbour = BitBoard.neighbour(cell, neighborNo);
+        return neighbour == BitBoard.NO_CELL ? null : getField(neighbour);
     }
 
     /**
@@ -393,18 +412,7 @@ public class Board {
      * @return true if they are next to each other.
      */
     public boolean isColumn(char rowLetter, int colCoord, char rowLetter2, int colCoord2) {
-        Field field1 = getField(rowLetter, colCoord);
-        Field field2 = getField(rowLetter2, colCoord2);
-        Field[] neighbours = getNeighbors(rowLetter, colCoord);
-        if (field1.equals(field2)) {
-            return false;
-        }
-        for (Field f : neighbours) {
-            if (f != null && f.equals(field2)) {
-                return true;
-            }
-        }
-        return false;
+        return getNeighborNumber(rowLetter, colCoord, rowLetter2, colCoord2) != -1;
     }
 
     /**
@@ -719,8 +727,8 @@ public class Board {
             backCol = colCoord1;
         }
         // valid coordinates
-        boolean check1 = isFieldCoord(headRow, headCol) && isFieldCoord(backRow, colCoord2)
-                && isFieldCoord(rowLetter3, backCol) && isFieldCoord(rowDest, colDest)
+        boolean check1 = isFieldCoord(headRow, headCol) && isFieldCoord(rowLetter2, colCoord2)
+                && isFieldCoord(backRow, backCol) && isFieldCoord(rowDest, colDest)
                 // has marbles
                 && getField(headRow, headCol).getMarble() != null && getField(rowLetter2, colCoord2).getMarble() != null
                 && getField(backRow, backCol).getMarble() != null
@@ -932,14 +940,17 @@ public class Board {
      * @return
      */
     protected Field getMidOf2(char row1, int col1, char row2, int col2) {
-        Field mid = null;
-        for (int i = 0; i < 6; i++) {
-            Field neighborOpp = getNeighbor(row2, col2, (i + 3) % 6);
-            if (neighborOpp != null && neighborOpp.equals(getNeighbor(row1, col1, i))) {
-                mid = getNeighbor(row1, col1, i);
-            }
+        int cell1 = BitBoard.cellIndex(row1, col1);
+        int cell2 = BitBoard.cellIndex(row2, col2);
+        if (cell1 == BitBoard.NO_CELL || cell2 == BitBoard.NO_CELL) {
+            return null;
         }
-        return mid;
+        int direction = BitBoard.lineDirection(cell1, cell2);
+        if (direction == -1) { // not on a line 2 fields apart
+            return null;
+        }
+        int mid = BitBoard.neighbour(cell1, direction);
+        return mid == cell2 ? null : getField(mid);
     }
 
     /**
@@ -949,18 +960,18 @@ public class Board {
      * @param headCol     head coordinate of main field.
      * @param rowNeighbor row coordinate of the neighbor.
      * @param colNeighbor column coordinate of the neighbor.
-     * @assert neighborNo >= 0 && neighborNo < 6
-     * @return the neighbor number.
+     * @return the neighbor number, -1 if the fields are not neighbors.
      */
     private int getNeighborNumber(char headRow, int headCol, char rowNeighbor, int colNeighbor) {
-        int neighborNo = -1;
-        Field[] neighbors = this.getNeighbors(headRow, headCol);
-        for (int i = 0; i < neighbors.length; i++) {
-            if ((getField(rowNeighbor, colNeighbor).equals(neighbors[i]))) {
-                neighborNo = i;
-            }
+        int head = BitBoard.cellIndex(headRow, headCol);
+        int neighbor = BitBoard.cellIndex(rowNeighbor, colNeighbor);
+        if (head == BitBoard.NO_CELL || neighbor == BitBoard.NO_CELL) {
+            return -1;
+        }
+        int neighborNo = BitBoard.lineDirection(head, neighbor);
+        if (neighborNo != -1 && BitBoard.neighbour(head, neighborNo) != neighbor) { // 2 fields apart
+            neighborNo = -1;
         }
-        assert (neighborNo != -1);
         return neighborNo;
     }
 
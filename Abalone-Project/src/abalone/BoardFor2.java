@@ -55,7 +55,6 @@ public class BoardFor2 extends Board {
         setField((char) ('A' + DIM - 1 - 2), 4, new Marble(color1));
         setField((char) ('A' + DIM - 1 - 2), 5, new Marble(color1));
         setField((char) ('A' + DIM - 1 - 2), 6, new Marble(color1));
-        System.out.println(toString());
     }
 
 }
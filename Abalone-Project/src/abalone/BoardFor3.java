@@ -44,7 +44,6 @@ public class BoardFor3 extends Board {
                 setField((char) ('I' - j), SIDE_LENGTH - 1 + i - j, new Marble(color2));
             }
         }
-        System.out.println(toString());
     }
 
 }
@@ -41,7 +41,6 @@ public class BoardFor4 extends BoardFor2 {
                 setField((char) ('A' + SIDE_LENGTH - 1 + j), DIM - 1 - i, new Marble(color3)); // right
             }
         }
-        System.out.println(toString());
     }
 
     @Override
@@ -0,0 +1,179 @@
+package abalone;
+
+/**
+ * Generates all valid moves of a colour on a BitBoard: every single marble
+ * move, every in-line move of 2 or 3 marbles (with or without pushing) and
+ * every side step move. Every move is written once into a buffer of encoded
+ * moves, so nothing is allocated while generating.
+ * 
+ * <p>
+ * The moves follow the same rules as Board and BoardFor4: a group may have
+ * marbles of both colours of a team, but the head of the move (the first field)
+ * must be the colour making the move. A group of 3 with only the middle marble
+ * of that colour can't be written as a Move and is not generated. The kind of
+ * every move (QUIET_MOVE, PUSH_MOVE or EJECT_MOVE) is stored in the move, see
+ * BitBoard.moveKind. generatePushes only writes the moves that push, for a
+ * search that follows push sequences.
+ */
+public final class MoveGenerator {
+
+    public static final int MAX_MOVES = 1024; // more than the moves of any position
+    private static final int AXES = 3; // directions 0, 1 and 2, the others are the opposites
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Write all valid moves of a colour into a buffer.
+     * 
+     * @requires colour to be playing on the board && moves.length >= MAX_MOVES
+     * @param board  the board to get the moves of.
+     * @param colour colour making the moves.
+     * @param moves  buffer to write the encoded moves into.
+     * @return the number of moves written.
+     */
+    public static int generate(BitBoard board, Colour colour, int[] moves) {
+        return generate(board, colour, moves, false);
+    }
+
+    /**
+     * Write the valid moves of a colour that push marbles of another team
+     * (PUSH_MOVE and EJECT_MOVE) into a buffer. Single marbles and side steps
+     * are not looked at, so this is cheaper than generate.
+     * 
+     * @requires colour to be playing on the board && moves.length >= MAX_MOVES
+     * @param board  the board to get the moves of.
+     * @param colour colour making the moves.
+     * @param moves  buffer to write the encoded moves into.
+     * @return the number of moves written.
+     */
+    public static int generatePushes(BitBoard board, Colour colour, int[] moves) {
+        return generate(board, colour, moves, true);
+    }
+
+    private static int generate(BitBoard board, Colour colour, int[] moves, boolean pushesOnly) {
+        long mine = board.getMarbles(colour);
+        long own = board.getTeamMarbles(board.getTeamIndex(colour));
+        long occupied = board.getOccupied();
+        int count = 0;
+        long singles = pushesOnly ? 0L : mine; // a single marble can't push
+        while (singles != 0) { // single marbles
+            int cell = Long.numberOfTrailingZeros(singles);
+            singles &= singles - 1;
+            for (int d = 0; d < BitBoard.DIRECTIONS; d++) {
+                int dest = BitBoard.neighbour(cell, d);
+                if (dest != BitBoard.NO_CELL && (occupied & (1L << dest)) == 0) {
+                    moves[count++] = BitBoard.encodeMove(cell, cell, d);
+                }
+            }
+        }
+        long starts = own;
+        while (starts != 0) { // groups of 2 and 3, going from the start in an axis direction
+            int start = Long.numberOfTrailingZeros(starts);
+            starts &= starts - 1;
+            for (int axis = 0; axis < AXES; axis++) {
+                int second = BitBoard.neighbour(start, axis);
+                if (second == BitBoard.NO_CELL || (own & (1L << second)) == 0) {
+                    continue;
+                }
+                count = addGroupMoves(start, second, second, 2, axis, mine, own, occupied, pushesOnly, moves,
+                        count);
+                int third = BitBoard.neighbour(second, axis);
+                if (third != BitBoard.NO_CELL && (own & (1L << third)) != 0) {
+                    count = addGroupMoves(start, second, third, 3, axis, mine, own, occupied, pushesOnly, moves,
+                            count);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Add the valid moves of one group of marbles in all 6 directions, or only
+     * the pushing moves in the 2 in-line directions.
+     * 
+     * @param start      the first marble of the group.
+     * @param mid        the middle marble, same as end for a group of 2.
+     * @param end        the last marble, in the axis direction from start.
+     * @param size       the number of marbles in the group.
+     * @param axis       direction from start to end.
+     * @param mine       marbles of the colour making the move.
+     * @param own        marbles of the team making the move.
+     * @param occupied   all marbles on the board.
+     * @param pushesOnly true to only add the moves that push.
+     * @param moves      buffer to write the encoded moves into.
+     * @param count      number of moves already in the buffer.
+     * @return the new number of moves in the buffer.
+     */
+    private static int addGroupMoves(int start, int mid, int end, int size, int axis, long mine, long own,
+            long occupied, boolean pushesOnly, int[] moves, int count) {
+        boolean startIsMine = (mine & (1L << start)) != 0;
+        boolean endIsMine = (mine & (1L << end)) != 0;
+        if (!startIsMine && !endIsMine) { // the head of a move must be the colour making it
+            return count;
+        }
+        for (int d = 0; d < BitBoard.DIRECTIONS; d++) {
+            int kind;
+            int front;
+            if (d == axis) { // in-line, end goes first
+                front = end;
+                kind = pushKind(end, d, size, own, occupied);
+            } else if (d == BitBoard.opposite(axis)) { // in-line, start goes first
+                front = start;
+                kind = pushKind(start, d, size, own, occupied);
+            } else if (pushesOnly) { // a side step can't push
+                continue;
+            } else { // side step, all fields next to the group should be empty
+                front = startIsMine ? start : end;
+                kind = isFree(start, d, occupied) && isFree(mid, d, occupied) && isFree(end, d, occupied)
+                        ? BitBoard.QUIET_MOVE
+                        : -1;
+            }
+            if (kind != -1 && (!pushesOnly || kind != BitBoard.QUIET_MOVE)) {
+                // the head is the front marble if possible, else the head and tail swap
+                int head = (mine & (1L << front)) != 0 ? front : (front == start ? end : start);
+                int tail = head == start ? end : start;
+                moves[count++] = BitBoard.encodeMove(head, tail, d) | (kind << BitBoard.KIND_SHIFT);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Find what happens when a group moves in-line: only fewer marbles of other
+     * teams can be pushed and there should be an empty field or the edge behind
+     * them.
+     * 
+     * @param front     the first marble of the group in the direction.
+     * @param direction the direction of the move.
+     * @param size      the number of marbles in the group.
+     * @param own       marbles of the team making the move.
+     * @param occupied  all marbles on the board.
+     * @return QUIET_MOVE, PUSH_MOVE, EJECT_MOVE or -1 if the move is not valid.
+     */
+    private static int pushKind(int front, int direction, int size, long own, long occupied) {
+        int next = BitBoard.neighbour(front, direction);
+        if (next == BitBoard.NO_CELL) { // can't move own marbles off the board
+            return -1;
+        }
+        int pushed = 0;
+        while (next != BitBoard.NO_CELL && (occupied & (1L << next)) != 0) {
+            if ((own & (1L << next)) != 0 || ++pushed >= size) {
+                return -1;
+            }
+            next = BitBoard.neighbour(next, direction);
+        }
+        if (pushed == 0) {
+            return BitBoard.QUIET_MOVE;
+        }
+        return next == BitBoard.NO_CELL ? BitBoard.EJECT_MOVE : BitBoard.PUSH_MOVE;
+    }
+
+    /**
+     * Check if the neighbour of a field is on the board and empty.
+     */
+    private static boolean isFree(int cell, int direction, long occupied) {
+        int n = BitBoard.neighbour(cell, direction);
+        return n != BitBoard.NO_CELL && (occupied & (1L << n)) == 0;
+    }
+}
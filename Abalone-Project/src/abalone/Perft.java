@@ -0,0 +1,235 @@
+package abalone;
+
+import exceptions.PositionFormatException;
+
+import java.util.Arrays;
+
+/**
+ * Counts the positions at the end of every sequence of valid moves of a given
+ * length (the leaf nodes of the game tree), to check move generation and to
+ * measure its speed. The colours move in turn order, a game that has been won
+ * counts as a leaf.
+ * 
+ * <p>
+ * verify() walks the same tree on a Board and checks at every position that
+ * Board.isValidMoveDForColour allows exactly the generated moves and that
+ * Board.moveD gives the same position as the BitBoard.
+ * 
+ * <p>
+ * Usage: Perft &lt;depth&gt; [2|3|4|position], counts every depth up to the
+ * given depth from the start position of 2 (default), 3 or 4 players or from a
+ * position written by BitBoard.serialize().
+ */
+public class Perft {
+
+    private static final int MAX_DEPTH = 16;
+
+    private int[][] moves = new int[MAX_DEPTH + 1][MoveGenerator.MAX_MOVES]; // one buffer of moves per ply
+
+    /**
+     * Count the leaf nodes to a depth.
+     * 
+     * @requires depth >= 0 && depth <= 16
+     * @param board the position to start from, the same afterwards.
+     * @param depth the number of moves.
+     * @return the number of leaf nodes.
+     */
+    public long perft(BitBoard board, int depth) {
+        return perft(board, depth, 0);
+    }
+
+    private long perft(BitBoard board, int depth, int ply) {
+        if (depth == 0 || board.hasWinner()) {
+            return 1;
+        }
+        int[] list = moves[ply];
+        int count = MoveGenerator.generate(board, board.getSideToMove(), list);
+        if (depth == 1) { // no need to make the last moves
+            return count;
+        }
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            board.makeMove(list[i]);
+            nodes += perft(board, depth - 1, ply + 1);
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Count the leaf nodes to a depth using Board, checking every position
+     * against the BitBoard.
+     * 
+     * @requires depth >= 0 && depth <= 16
+     * @param board the position to start from, the same afterwards.
+     * @param depth the number of moves.
+     * @return the number of leaf nodes.
+     * @throws IllegalStateException if Board and BitBoard don't agree.
+     */
+    public long verify(BitBoard board, int depth) {
+        return verify(board, board.toBoard(), depth, 0);
+    }
+
+    private long verify(BitBoard bits, Board board, int depth, int ply) {
+        if (depth == 0 || bits.hasWinner()) {
+            return 1;
+        }
+        Colour colour = bits.getSideToMove();
+        int[] list = moves[ply];
+        int count = MoveGenerator.generate(bits, colour, list);
+        long[] generated = new long[count];
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            Move move = BitBoard.toMove(list[i]);
+            if (!board.isValidMoveDForColour(move, colour)) {
+                throw new IllegalStateException("Board does not allow " + move + " in " + bits.serialize());
+            }
+            Board copy = board.deepCopy();
+            copy.moveD(move);
+            bits.makeMove(list[i]);
+            generated[i] = bits.getHash();
+            checkSame(bits, copy, move);
+            nodes += verify(bits, copy, depth - 1, ply + 1);
+            bits.unmakeMove();
+        }
+        Arrays.sort(generated);
+        int valid = countValidMoves(bits, board, colour, generated);
+        if (valid != count) {
+            throw new IllegalStateException(
+                    "Board allows " + valid + " moves, generated " + count + " in " + bits.serialize());
+        }
+        return nodes;
+    }
+
+    /**
+     * Count the different moves that Board allows by trying every head, tail at
+     * most 2 fields away and direction. Also checks that every one of them was
+     * generated.
+     */
+    private int countValidMoves(BitBoard bits, Board board, Colour colour, long[] generated) {
+        long[] seen = new long[generated.length];
+        int valid = 0;
+        for (int head = 0; head < BitBoard.CELLS; head++) {
+            if (bits.getColour(head) != colour) {
+                continue;
+            }
+            for (int tail = 0; tail < BitBoard.CELLS; tail++) {
+                if (!isCandidate(head, tail)) {
+                    continue;
+                }
+                for (int d = 0; d < BitBoard.DIRECTIONS; d++) {
+                    int move = BitBoard.encodeMove(head, tail, d);
+                    if (!board.isValidMoveDForColour(BitBoard.toMove(move), colour)) {
+                        continue;
+                    }
+                    bits.makeMove(move);
+                    long hash = bits.getHash();
+                    bits.unmakeMove();
+                    if (Arrays.binarySearch(generated, hash) < 0) {
+                        throw new IllegalStateException(
+                                "Not generated: " + BitBoard.toMove(move) + " in " + bits.serialize());
+                    }
+                    boolean counted = false;
+                    for (int i = 0; i < valid && !counted; i++) {
+                        counted = seen[i] == hash;
+                    }
+                    if (!counted) { // the same move can be written in more ways
+                        seen[valid++] = hash;
+                    }
+                }
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Check if two fields can be the head and tail of a move, at most 2 apart.
+     */
+    private static boolean isCandidate(int head, int tail) {
+        if (head == tail) {
+            return true;
+        }
+        for (int d = 0; d < BitBoard.DIRECTIONS; d++) {
+            int n = BitBoard.neighbour(head, d);
+            if (n == tail || (n != BitBoard.NO_CELL && BitBoard.neighbour(n, d) == tail)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check that a Board has the same marbles and scores as a BitBoard.
+     */
+    private static void checkSame(BitBoard bits, Board board, Move move) {
+        for (int i = 0; i < BitBoard.CELLS; i++) {
+            Marble marble = board.getField(BitBoard.rowOf(i), BitBoard.colOf(i)).getMarble();
+            if ((marble == null ? null : marble.getColour()) != bits.getColour(i)) {
+                throw new IllegalStateException("Different field " + BitBoard.rowOf(i) + BitBoard.colOf(i)
+                        + " after " + move + " in " + bits.serialize());
+            }
+        }
+        for (int t = 0; t < bits.getTeamCount(); t++) {
+            if (board.getTeams().get(t).getScore() != bits.getScore(t)) {
+                throw new IllegalStateException("Different score after " + move + " in " + bits.serialize());
+            }
+        }
+    }
+
+    /**
+     * Get the start position for a number of players, with the colours of a
+     * local game (see Abalone).
+     * 
+     * @requires players >= 2 && players <= 4
+     * @param players the number of players.
+     * @return the start position.
+     */
+    public static BitBoard startPosition(int players) {
+        Colour[] c = Colour.values();
+        Board board;
+        if (players == 2) {
+            board = new BoardFor2(c[0], c[1]);
+        } else if (players == 3) {
+            board = new BoardFor3(c[0], c[1], c[2]);
+        } else {
+            board = new BoardFor4(c[0], c[1], c[2], c[3]);
+        }
+        return new BitBoard(board);
+    }
+
+    /**
+     * Count the leaf nodes for every depth and print the nodes per second.
+     * 
+     * @param args the depth and optionally 2, 3, 4 or a serialized position.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: Perft <depth> [2|3|4|position]");
+            return;
+        }
+        BitBoard board;
+        int depth;
+        try {
+            depth = Math.min(Integer.parseInt(args[0]), MAX_DEPTH);
+            if (args.length < 2) {
+                board = startPosition(2);
+            } else if (args[1].matches("[234]")) {
+                board = startPosition(Integer.parseInt(args[1]));
+            } else {
+                board = BitBoard.parse(String.join(" ", Arrays.copyOfRange(args, 1, args.length)));
+            }
+        } catch (NumberFormatException | PositionFormatException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        System.out.println(board.serialize());
+        Perft perft = new Perft();
+        for (int d = 1; d <= depth; d++) {
+            long start = System.nanoTime();
+            long nodes = perft.perft(board, d);
+            long time = System.nanoTime() - start;
+            System.out.println(String.format("depth %2d: %14d nodes %10.1f ms %12.0f nodes/s", d, nodes,
+                    time / 1e6, nodes * 1e9 / Math.max(time, 1)));
+        }
+    }
+}
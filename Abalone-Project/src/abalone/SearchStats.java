@@ -0,0 +1,92 @@
+package abalone;
+
+import exceptions.PositionFormatException;
+
+import java.util.Arrays;
+
+import strategy.AlphaBetaStrategy;
+import strategy.MoveOrdering;
+import strategy.PositionalEvaluator;
+
+/**
+ * Counts the nodes AlphaBetaStrategy visits to search a position to a depth
+ * with every move ordering: the moves in the order of the move generator,
+ * pushing and ejecting moves first, with killer moves and with the history
+ * table as well. The search runs on 1 thread without a transposition table and
+ * scores the leaves with the PositionalEvaluator (the marbles pushed off alone
+ * give most positions the same score), so only the move ordering differs and
+ * every ordering finds a move of the same score.
+ *
+ * <p>
+ * Usage: SearchStats &lt;depth&gt; [2|3|4|position], searches every depth up to
+ * the given depth from the start position of 2 (default), 3 or 4 players or from
+ * a position written by BitBoard.serialize().
+ */
+public class SearchStats {
+
+    private static final int MAX_DEPTH = 8;
+    private static final long TIME_LIMIT = 1000000; // milliseconds, the depth ends the search
+    private static final String LINE = "depth %d %-22s %12d nodes %6.1f%% %10d cutoffs %5.1f%% first %9.1f ms";
+    private static final int[] ORDERINGS = { -1, MoveOrdering.PUSHES_FIRST,
+        MoveOrdering.PUSHES_FIRST | MoveOrdering.KILLERS, MoveOrdering.ALL };
+
+    /**
+     * Search a position to a depth.
+     *
+     * @param board      the position, the side to move makes the move.
+     * @param depth      the depth of the last iteration.
+     * @param heuristics the heuristics of the move ordering, -1 for no ordering.
+     * @return the strategy after the search, to read its counters.
+     */
+    public static AlphaBetaStrategy search(BitBoard board, int depth, int heuristics) {
+        AlphaBetaStrategy strategy = new AlphaBetaStrategy(TIME_LIMIT, depth);
+        strategy.setTranspositionTable(null);
+        strategy.setEvaluator(new PositionalEvaluator());
+        strategy.setMoveOrdering(heuristics == -1 ? null : new MoveOrdering(heuristics));
+        strategy.determineMove(board.toBoard(), board.getSideToMove());
+        return strategy;
+    }
+
+    /**
+     * Print the nodes, cutoffs and time of every move ordering for every depth.
+     *
+     * @param args the depth and optionally 2, 3, 4 or a serialized position.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: SearchStats <depth> [2|3|4|position]");
+            return;
+        }
+        BitBoard board;
+        int depth;
+        try {
+            depth = Math.min(Integer.parseInt(args[0]), MAX_DEPTH);
+            if (args.length < 2) {
+                board = Perft.startPosition(2);
+            } else if (args[1].matches("[234]")) {
+                board = Perft.startPosition(Integer.parseInt(args[1]));
+            } else {
+                board = BitBoard.parse(String.join(" ", Arrays.copyOfRange(args, 1, args.length)));
+            }
+        } catch (NumberFormatException | PositionFormatException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        System.out.println(board.serialize());
+        for (int d = 1; d <= depth; d++) {
+            long baseline = 0;
+            for (int heuristics : ORDERINGS) {
+                long start = System.nanoTime();
+                AlphaBetaStrategy strategy = search(board, d, heuristics);
+                long time = System.nanoTime() - start;
+                long nodes = strategy.getNodes();
+                if (baseline == 0) {
+                    baseline = nodes;
+                }
+                String name = heuristics == -1 ? "generator order" : new MoveOrdering(heuristics).getName();
+                System.out.println(String.format(LINE, d, name, nodes, nodes * 100.0 / baseline, strategy.getCutoffs(),
+                        strategy.getFirstMoveCutoffs() * 100.0 / Math.max(strategy.getCutoffs(), 1), time / 1e6));
+            }
+        }
+    }
+}
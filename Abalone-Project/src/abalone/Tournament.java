@@ -0,0 +1,371 @@
+package abalone;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import strategy.AlphaBetaStrategy;
+import strategy.BetterStrategy;
+import strategy.Evaluator;
+import strategy.MaxNStrategy;
+import strategy.MctsStrategy;
+import strategy.MiniMaxStrategy;
+import strategy.NaiveStrategy;
+import strategy.PositionalEvaluator;
+import strategy.ScoreEvaluator;
+import strategy.Strategy;
+
+/**
+ * Plays games between strategies without any input or output, to compare
+ * them. Every entrant gets a seat on a 2, 3 or 4 player board, the seats are
+ * rotated every game so that each entrant plays every colour and starting
+ * place. Games are played in parallel on a thread pool, every game gets new
+ * strategy objects from the suppliers because strategies keep state between
+ * moves.
+ *
+ * <p>
+ * A game ends like a local Game: when a team has pushed off 6 marbles or after
+ * Game.TURNLIMIT turns, then the team with the most points wins and equal
+ * points are a draw. An entrant that returns an invalid move loses the game.
+ *
+ * <p>
+ * Usage: Tournament &lt;games&gt; &lt;threads&gt; &lt;strategy&gt;
+ * &lt;strategy&gt; [&lt;strategy&gt; [&lt;strategy&gt;]], with strategies
+ * naive, better, minimax:&lt;depth&gt;, alphabeta:&lt;milliseconds&gt;,
+ * maxn:&lt;milliseconds&gt; and mcts:&lt;milliseconds&gt;.
+ */
+public class Tournament {
+
+    private final List<Supplier<Strategy>> entrants = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * Add an entrant, the number of entrants is the number of players per game.
+     *
+     * @requires getEntrants() < 4
+     * @param strategy creates the strategy of this entrant for a game.
+     */
+    public void addEntrant(Supplier<Strategy> strategy) {
+        entrants.add(strategy);
+        names.add(strategy.get().getName());
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    public int getEntrants() {
+        return entrants.size();
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Play a number of games and collect the results.
+     *
+     * @requires getEntrants() >= 2 && getEntrants() <= 4 && games > 0 && threads
+     *           > 0
+     * @param games   the number of games.
+     * @param threads the number of games played at the same time.
+     * @return the results of all games.
+     * @throws InterruptedException if interrupted while waiting for the games.
+     */
+    public Result run(int games, int threads) throws InterruptedException {
+        Result result = new Result(names);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<GameRecord>> records = new ArrayList<>();
+            for (int g = 0; g < games; g++) {
+                int rotation = g % entrants.size();
+                records.add(pool.submit(() -> play(rotation)));
+            }
+            for (Future<GameRecord> record : records) {
+                result.add(record.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * Play one game.
+     *
+     * @param rotation the seat of the first entrant.
+     * @return what happened in the game.
+     */
+    private GameRecord play(int rotation) {
+        int players = entrants.size();
+        Colour[] colours = new Colour[players];
+        Strategy[] strategies = new Strategy[players];
+        int[] entrantOf = new int[players]; // entrant on every seat
+        for (int seat = 0; seat < players; seat++) {
+            colours[seat] = Colour.values()[seat];
+            entrantOf[seat] = (seat + rotation) % players;
+            strategies[seat] = entrants.get(entrantOf[seat]).get();
+        }
+        Board board = newBoard(colours);
+        GameRecord record = new GameRecord(players);
+        Team loser = null; // team of an entrant that made an invalid move
+        for (int turn = 0; turn < Game.TURNLIMIT && !board.hasWinner() && loser == null; turn++) {
+            for (int seat = 0; seat < players && !board.hasWinner(); seat++) {
+                long start = System.nanoTime();
+                Move move = strategies[seat].determineMove(board, colours[seat]);
+                record.thinkTime[entrantOf[seat]] += System.nanoTime() - start;
+                record.moves[entrantOf[seat]]++;
+                if (move == null || !board.isValidMoveDForColour(move, colours[seat])) {
+                    loser = board.getTeam(colours[seat]);
+                    break;
+                }
+                board.moveD(move);
+                record.length++;
+            }
+        }
+        Team winner = board.hasWinner() ? board.getWinnerTeam() : board.getMostPointTeam();
+        for (int seat = 0; seat < players; seat++) {
+            Team team = board.getTeam(colours[seat]);
+            int outcome;
+            if (loser != null) {
+                outcome = team == loser ? GameRecord.LOSS : GameRecord.WIN;
+            } else if (winner == null) {
+                outcome = GameRecord.DRAW;
+            } else {
+                outcome = team == winner ? GameRecord.WIN : GameRecord.LOSS;
+            }
+            record.outcome[entrantOf[seat]] = outcome;
+        }
+        return record;
+    }
+
+    /**
+     * Create the start position for the colours, like a local Game does.
+     *
+     * @requires colours.length >= 2 && colours.length <= 4
+     */
+    private static Board newBoard(Colour[] colours) {
+        if (colours.length == 2) {
+            return new BoardFor2(colours[0], colours[1]);
+        } else if (colours.length == 3) {
+            return new BoardFor3(colours[0], colours[1], colours[2]);
+        }
+        return new BoardFor4(colours[0], colours[1], colours[2], colours[3]);
+    }
+
+    /**
+     * Create a supplier of a strategy from its name.
+     *
+     * @param name naive, better, minimax:&lt;depth&gt;,
+     *             alphabeta:&lt;milliseconds&gt;, maxn:&lt;milliseconds&gt; or
+     *             mcts:&lt;milliseconds&gt;. Minimax and alphabeta score the
+     *             leaves with the marbles pushed off, add :positional to use
+     *             the PositionalEvaluator. Maxn uses it unless :score is added.
+     * @return the supplier.
+     * @throws IllegalArgumentException if the name is not a known strategy.
+     */
+    public static Supplier<Strategy> parseStrategy(String name) {
+        String[] parts = name.toLowerCase().split(":");
+        try {
+            switch (parts[0]) {
+                case "naive":
+                    return NaiveStrategy::new;
+                case "better":
+                    return BetterStrategy::new;
+                case "minimax":
+                    int depth = parts.length > 1 ? Integer.parseInt(parts[1]) : 2;
+                    Evaluator minimaxEvaluator = parseEvaluator(parts);
+                    return () -> {
+                        MiniMaxStrategy minimax = new MiniMaxStrategy(depth);
+                        minimax.setEvaluator(minimaxEvaluator.copy());
+                        return minimax;
+                    };
+                case "alphabeta":
+                    long time = parts.length > 1 ? Long.parseLong(parts[1]) : AlphaBetaStrategy.DEFAULT_TIME_LIMIT;
+                    Evaluator alphaBetaEvaluator = parseEvaluator(parts);
+                    return () -> {
+                        AlphaBetaStrategy alphaBeta = new AlphaBetaStrategy(time);
+                        alphaBeta.setEvaluator(alphaBetaEvaluator.copy());
+                        return alphaBeta;
+                    };
+                case "maxn":
+                    long maxNTime = parts.length > 1 ? Long.parseLong(parts[1]) : MaxNStrategy.DEFAULT_TIME_LIMIT;
+                    Evaluator maxNEvaluator = parts.length > 2 ? parseEvaluator(parts) : new PositionalEvaluator();
+                    return () -> {
+                        MaxNStrategy maxN = new MaxNStrategy(maxNTime);
+                        maxN.setEvaluator(maxNEvaluator.copy());
+                        return maxN;
+                    };
+                case "mcts":
+                    long mctsTime = parts.length > 1 ? Long.parseLong(parts[1]) : MctsStrategy.DEFAULT_TIME_LIMIT;
+                    return () -> new MctsStrategy(mctsTime);
+                default:
+                    throw new IllegalArgumentException("unknown strategy: " + name);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid strategy parameter: " + name);
+        }
+    }
+
+    /**
+     * Get the evaluator of a strategy name, the third part.
+     *
+     * @param parts the parts of the name.
+     * @return the evaluator, a ScoreEvaluator if the name has no third part.
+     * @throws IllegalArgumentException if the evaluator is not known.
+     */
+    private static Evaluator parseEvaluator(String[] parts) {
+        if (parts.length < 3 || parts[2].equals("score")) {
+            return new ScoreEvaluator();
+        } else if (parts[2].equals("positional")) {
+            return new PositionalEvaluator();
+        }
+        throw new IllegalArgumentException("unknown evaluator: " + parts[2]);
+    }
+
+    /**
+     * Play a tournament and print the results.
+     *
+     * @param args the number of games, threads and 2 to 4 strategies.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 4 || args.length > 6) {
+            System.out.println("Usage: Tournament <games> <threads> <strategy> <strategy> [<strategy> [<strategy>]]"
+                    + "\n strategies: naive, better, minimax:<depth>, alphabeta:<milliseconds>, maxn:<milliseconds>,"
+                    + " mcts:<milliseconds>"
+                    + "\n minimax and alphabeta take :positional after the number to score positions");
+            return;
+        }
+        Tournament tournament = new Tournament();
+        int games;
+        int threads;
+        try {
+            games = Integer.parseInt(args[0]);
+            threads = Integer.parseInt(args[1]);
+            for (int i = 2; i < args.length; i++) {
+                tournament.addEntrant(parseStrategy(args[i]));
+            }
+        } catch (IllegalArgumentException e) { // also NumberFormatException
+            System.out.println(e.getMessage());
+            return;
+        }
+        long start = System.nanoTime();
+        Result result = tournament.run(Math.max(games, 1), Math.max(threads, 1));
+        System.out.print(result);
+        System.out.println(String.format("%.1f s", (System.nanoTime() - start) / 1e9));
+    }
+
+    /**
+     * What happened in one game, indexed by entrant.
+     */
+    private static class GameRecord {
+        static final int WIN = 0;
+        static final int LOSS = 1;
+        static final int DRAW = 2;
+
+        final int[] outcome;
+        final int[] moves;
+        final long[] thinkTime; // nanoseconds
+        int length; // moves made by all players
+
+        GameRecord(int players) {
+            outcome = new int[players];
+            moves = new int[players];
+            thinkTime = new long[players];
+        }
+    }
+
+    /**
+     * Results of the games of a tournament per entrant.
+     */
+    public static class Result {
+        private final List<String> names;
+        private final int[][] outcomes; // [entrant][WIN, LOSS or DRAW]
+        private final long[] moves;
+        private final long[] thinkTime;
+        private int games;
+        private long length;
+
+        private Result(List<String> names) {
+            this.names = new ArrayList<>(names);
+            outcomes = new int[names.size()][3];
+            moves = new long[names.size()];
+            thinkTime = new long[names.size()];
+        }
+
+        private void add(GameRecord record) {
+            for (int i = 0; i < names.size(); i++) {
+                outcomes[i][record.outcome[i]]++;
+                moves[i] += record.moves[i];
+                thinkTime[i] += record.thinkTime[i];
+            }
+            games++;
+            length += record.length;
+        }
+
+        // -- Queries ----------------------------------------------------
+
+        public int getGames() {
+            return games;
+        }
+
+        public String getName(int entrant) {
+            return names.get(entrant);
+        }
+
+        public int getWins(int entrant) {
+            return outcomes[entrant][GameRecord.WIN];
+        }
+
+        public int getLosses(int entrant) {
+            return outcomes[entrant][GameRecord.LOSS];
+        }
+
+        public int getDraws(int entrant) {
+            return outcomes[entrant][GameRecord.DRAW];
+        }
+
+        /**
+         * Get the part of the games an entrant has won.
+         *
+         * @param entrant index of the entrant in order of adding.
+         * @return wins / games, 0 if no games were played.
+         */
+        public double getWinRate(int entrant) {
+            return games == 0 ? 0 : (double) getWins(entrant) / games;
+        }
+
+        /**
+         * Get the average number of moves of all players in a game.
+         *
+         * @return the average game length, 0 if no games were played.
+         */
+        public double getAverageLength() {
+            return games == 0 ? 0 : (double) length / games;
+        }
+
+        /**
+         * Get the average time an entrant took to determine a move.
+         *
+         * @param entrant index of the entrant in order of adding.
+         * @return the think time per move in milliseconds, 0 if it made no moves.
+         */
+        public double getAverageThinkTime(int entrant) {
+            return moves[entrant] == 0 ? 0 : thinkTime[entrant] / 1e6 / moves[entrant];
+        }
+
+        @Override
+        public String toString() {
+            String result = String.format("%d games, %.1f moves per game\n", games, getAverageLength());
+            result += String.format("%-20s %6s %6s %6s %8s %12s\n", "strategy", "wins", "losses", "draws", "win %",
+                    "ms per move");
+            for (int i = 0; i < names.size(); i++) {
+                result += String.format("%-20s %6d %6d %6d %8.1f %12.2f\n", getName(i), getWins(i), getLosses(i),
+                        getDraws(i), getWinRate(i) * 100, getAverageThinkTime(i));
+            }
+            return result;
+        }
+    }
+}
@@ -4,16 +4,19 @@ import abalone.Move;
 import exceptions.ExitProgram;
 import exceptions.ProtocolException;
 import exceptions.ServerUnavailableException;
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.InetAddress;
 import java.net.Socket;
 
+import protocol.BinaryProtocol;
 import protocol.ClientProtocol;
 import protocol.ProtocolMessages;
+import protocol.ResponseBuilder;
 
 /**
  * Client for Networked Abalone Application.
@@ -24,8 +27,19 @@ public class AbaloneClient implements ClientProtocol {
 
     private static final String DELI = ProtocolMessages.DELIMITER;
     private Socket serverSock;
-    private BufferedReader in;
+    /** The only buffer on the input of the socket, the server handler reads it after the handshake. */
+    private InputStream in;
     private BufferedWriter out;
+    private OutputStream frameOut;
+
+    /** Ask the server for frames instead of lines, see BinaryProtocol. */
+    private boolean binary;
+
+    /** The server agreed to frames. */
+    private boolean frames;
+
+    /** Builds the moves to send, used under the lock of the client. */
+    private final ResponseBuilder moveBuilder = new ResponseBuilder();
 
     /** The view of this Abalone Client. */
     private AbaloneClientTUI view;
@@ -43,6 +57,17 @@ public class AbaloneClient implements ClientProtocol {
      * Constructs a new AbaloneClient. Initializes the view.
      */
     public AbaloneClient() {
+        this(false);
+    }
+
+    /**
+     * Constructs a new AbaloneClient that may ask the server for frames.
+     * 
+     * @param binary true to ask for frames of the BinaryProtocol, the client uses
+     *               lines if the server doesn't support them.
+     */
+    public AbaloneClient(boolean binary) {
+        this.binary = binary;
         view = new AbaloneClientTUI(this);
     }
 
@@ -116,9 +141,7 @@ public class AbaloneClient implements ClientProtocol {
                 try {
                     InetAddress addr = (host);
                     System.out.println("Attempting to connect to " + addr + ":" + port + "...");
-                    serverSock = new Socket(addr, port);
-                    in = new BufferedReader(new InputStreamReader(serverSock.getInputStream()));
-                    out = new BufferedWriter(new OutputStreamWriter(serverSock.getOutputStream()));
+                    connect(new Socket(addr, port));
                     return;
                 } catch (IOException e) {
                     System.out.println("ERROR: could not create a socket on " + host + " and port " + port + ".");
@@ -132,6 +155,22 @@ public class AbaloneClient implements ClientProtocol {
         }
     }
 
+    /**
+     * Use a connected socket to talk to the server. Opens one buffered stream on
+     * its input, which is read by this client during the handshake and by the
+     * server handler after it, so no message sent right behind the CONNECT
+     * answer is lost in a second buffer.
+     * 
+     * @param sock the socket connected to the server.
+     * @throws IOException if the streams can't be opened.
+     */
+    public void connect(Socket sock) throws IOException {
+        in = new BufferedInputStream(sock.getInputStream());
+        out = new BufferedWriter(new OutputStreamWriter(sock.getOutputStream()));
+        frameOut = sock.getOutputStream();
+        serverSock = sock;
+    }
+
     /**
      * Resets the serverSocket and In- and OutputStreams to null. Always make sure
      * to close current connections via shutdown() before calling this method!
@@ -140,11 +179,13 @@ public class AbaloneClient implements ClientProtocol {
         serverSock = null;
         in = null;
         out = null;
+        frameOut = null;
+        frames = false;
     }
 
     /**
-     * Sends a message to the connected server, followed by a new line. The stream
-     * is then flushed.
+     * Sends a message to the connected server, followed by a new line or as a
+     * frame if the server agreed to frames. The stream is then flushed.
      * 
      * @param msg the message to write to the OutputStream.
      * @throws ServerUnavailableException if IO errors occur.
@@ -153,9 +194,14 @@ public class AbaloneClient implements ClientProtocol {
         if (out != null) {
             try {
                 view.showMessage("sending to server: " + msg);
-                out.write(msg);
-                out.newLine();
-                out.flush();
+                if (frames) {
+                    frameOut.write(BinaryProtocol.encode(msg));
+                    frameOut.flush();
+                } else {
+                    out.write(msg);
+                    out.newLine();
+                    out.flush();
+                }
             } catch (IOException e) {
                 view.showMessage(e.getMessage());
                 closeConnection();
@@ -176,7 +222,7 @@ public class AbaloneClient implements ClientProtocol {
         if (in != null) {
             try {
                 // Read and return answer from Server
-                String answer = in.readLine();
+                String answer = BinaryProtocol.readLine(in);
                 if (answer == null) {
                     throw new ServerUnavailableException("Could not read " + "from server.");
                 }
@@ -214,13 +260,29 @@ public class AbaloneClient implements ClientProtocol {
      *                                    message as response.
      */
     public void handleHello() throws ServerUnavailableException, ProtocolException {
-        userName = view.getString("Provide a user name");
-        sendMessage((ProtocolMessages.CONNECT) + DELI + userName + DELI);
+        handleHello(view.getString("Provide a user name"));
+    }
+
+    /**
+     * Send the hello message with a user name and read the answer of the
+     * server, asks the user to try again with another name if it fails.
+     * 
+     * @param name the user name.
+     * @throws ServerUnavailableException if server connection fails
+     * @throws ProtocolException          if server sends an unknown protocol
+     *                                    message as response.
+     */
+    public void handleHello(String name) throws ServerUnavailableException, ProtocolException {
+        userName = name;
+        String flag = binary ? ProtocolMessages.BINARY + DELI : ""; // ask for frames
+        sendMessage((ProtocolMessages.CONNECT) + DELI + userName + DELI + flag);
         String response = readLineFromServer();
         if (response.isBlank() || response.isEmpty()) {
             response = readLineFromServer();
         }
         if (response.contains(ProtocolMessages.CONNECT + DELI + ProtocolMessages.SUCCESS)) {
+            // a server that doesn't know BINARY just answers success
+            frames = response.contains(ProtocolMessages.SUCCESS + DELI + ProtocolMessages.BINARY);
             writeOut("Welcome to the Abalone Client system");
         } else if (response.contains(ProtocolMessages.CONNECT)) {
             view.showMessage("Hello failed(the user name may be invalid or taken).");
@@ -255,6 +317,25 @@ public class AbaloneClient implements ClientProtocol {
         return this.userName;
     }
 
+    /**
+     * Check if the server agreed to send and receive frames.
+     * 
+     * @return true if messages are frames of the BinaryProtocol.
+     */
+    public boolean usesFrames() {
+        return frames;
+    }
+
+    /**
+     * Get the input of the connection to the server, the same stream the
+     * handshake was read from.
+     * 
+     * @return the buffered input stream.
+     */
+    public InputStream getInput() {
+        return in;
+    }
+
     /**
      * Get the handler of this server.
      */
@@ -265,10 +346,10 @@ public class AbaloneClient implements ClientProtocol {
     /**
      * This method starts a new AbaloneClient.
      * 
-     * @param args not used.
+     * @param args "binary" to ask the server for frames, for bots.
      */
     public static void main(String[] args) {
-        (new AbaloneClient()).start();
+        (new AbaloneClient(args.length > 0 && args[0].equals("binary"))).start();
     }
 
     // -------------Client Protocol Methods--------------------
@@ -303,8 +384,8 @@ public class AbaloneClient implements ClientProtocol {
     }
 
     @Override
-    public void move(Move move) throws ServerUnavailableException {
-        sendMessage(ProtocolMessages.MOVE + DELI + move.protocolFormat() + DELI);
+    public synchronized void move(Move move) throws ServerUnavailableException {
+        sendMessage(moveBuilder.command(ProtocolMessages.MOVE).move(move).toString());
     }
 
     @Override
@@ -12,8 +12,10 @@ import java.util.Arrays;
 import java.util.List;
 
 import protocol.ProtocolMessages;
+import strategy.AlphaBetaStrategy;
 import strategy.BetterStrategy;
 import strategy.MiniMaxStrategy;
+import strategy.PositionalEvaluator;
 import utils.TextIO;
 
 public class AbaloneClientTUI implements AbaloneClientView {
@@ -22,6 +24,7 @@ public class AbaloneClientTUI implements AbaloneClientView {
     private static final String HUMAN_PLAYS = "HP";
     private static final String COMPUTER_PLAYS = "CP";
     private static final String SMART_PLAYER = "SP";
+    private static final String TIMED_PLAYER = "TP";
 
     private AbaloneClient client;
 
@@ -93,6 +96,37 @@ public class AbaloneClientTUI implements AbaloneClientView {
                 client.getHandler().computerPlays(true);
                 client.getHandler().setStrategy(new MiniMaxStrategy(depth));
                 break;
+            case TIMED_PLAYER:
+                if (args.size() < 2) {
+                    showMessage("You need to choose the thinking time in milliseconds of the CP. \n Example: TP 500");
+                    break;
+                }
+                long time;
+                int threads = 1;
+                try {
+                    time = Long.parseLong(args.get(1));
+                    if (time < 1) {
+                        showMessage("Thinking time should be at least 1 millisecond.");
+                        break;
+                    }
+                    if (args.size() > 2) {
+                        threads = Integer.parseInt(args.get(2));
+                    }
+                    if (threads < 1) {
+                        showMessage("Threads should be at least 1.");
+                        break;
+                    }
+                } catch (NumberFormatException e) {
+                    showMessage("Thinking time and threads should be int");
+                    break;
+                }
+                showMessage("Timed SmartPlayer will make the next moves for you");
+                client.getHandler().computerPlays(true);
+                AlphaBetaStrategy timed = new AlphaBetaStrategy(time);
+                timed.setThreads(threads);
+                timed.setEvaluator(new PositionalEvaluator());
+                client.getHandler().setStrategy(timed);
+                break;
             case HUMAN_PLAYS:
                 showMessage("You will make the moves");
                 client.getHandler().computerPlays(false);
@@ -239,6 +273,10 @@ public class AbaloneClientTUI implements AbaloneClientView {
                 " <DEPTH(1-2)>", // parameters
                 "Let the smart computer make the moves with depth" + "(bigger means longer thinking time): ",
                 SMART_PLAYER + " 2"); // example
+        result += helpFormat(TIMED_PLAYER, // command
+                " <MILLISECONDS> [THREADS]", // parameters
+                "Let the smart computer make the moves with a thinking time per move: ",
+                TIMED_PLAYER + " 500 4"); // example
         result += helpFormat(HUMAN_PLAYS, // command
                 "", // parameters
                 "You make the moves(default): ", // explanation
@@ -1,27 +1,32 @@
 package client;
 
+import abalone.BitBoard;
 import abalone.Colour;
 import abalone.ComputerPlayer;
 import abalone.HumanPlayer;
 import abalone.Move;
 import abalone.Player;
 import exceptions.MoveFormatException;
+import exceptions.PositionFormatException;
+import exceptions.ProtocolException;
 import exceptions.ServerUnavailableException;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.net.Socket;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
+import protocol.BinaryProtocol;
 import protocol.ProtocolMessages;
+import protocol.ProtocolTokenizer;
 import server.ServerGame;
+import strategy.AlphaBetaStrategy;
 import strategy.BetterStrategy;
-import strategy.MiniMaxStrategy;
+import strategy.MaxNStrategy;
+import strategy.PositionalEvaluator;
 import strategy.Strategy;
 
 /**
@@ -35,7 +40,7 @@ public class AbaloneServerHandler implements Runnable {
     private static final String INVALID_RESPONSE = "Invalid response to:";
     private static final String MAL = ProtocolMessages.DELIMITER + ProtocolMessages.MALFORMED_COMMAND;
     /** The socket and In- and OutputStreams. */
-    private BufferedReader in;
+    private InputStream in; // the buffered input of the client, read by the handshake before
     private BufferedWriter out;
     private Socket sock;
 
@@ -45,6 +50,9 @@ public class AbaloneServerHandler implements Runnable {
     /** Name of this ClientHandler. */
     private String name;
 
+    /** Tokenizer of the messages from the server, read by one thread. */
+    private final ProtocolTokenizer args = new ProtocolTokenizer();
+
     /** Game related. */
     private ServerGame game;
     private boolean gameActive;
@@ -55,7 +63,9 @@ public class AbaloneServerHandler implements Runnable {
     Strategy strategy;
 
     /**
-     * Constructs a new AbaloneServerHandler. Opens the In- and OutputStreams.
+     * Constructs a new AbaloneServerHandler. Reads the input stream of the client,
+     * which may already hold the messages sent right after the handshake, and
+     * opens the OutputStream.
      * 
      * @param sock The client socket
      * @param clt  The connected client.
@@ -70,7 +80,7 @@ public class AbaloneServerHandler implements Runnable {
         // socket of the server the client is connected to
         try {
             this.sock = sock;
-            in = new BufferedReader(new InputStreamReader(sock.getInputStream()));
+            in = clt.getInput();
             out = new BufferedWriter(new OutputStreamWriter(sock.getOutputStream()));
             this.clt = clt;
             this.name = name;
@@ -87,22 +97,41 @@ public class AbaloneServerHandler implements Runnable {
     public void run() {
         String msg;
         try {
-            msg = in.readLine();
+            msg = readMessage();
             while (msg != null) {
                 if (msg.isBlank() || msg.isEmpty()) {
-                    msg = in.readLine();
+                    msg = readMessage();
                     continue;
                 }
                 clt.writeOut("[" + name + "] Incoming: " + msg);
                 handleCommand(msg);
-                msg = in.readLine();
+                msg = readMessage();
             }
         } catch (IOException e) {
             clt.writeOut(e.getMessage());
             shutdown();
+        } catch (ProtocolException e) {
+            clt.writeOut("Invalid frame from server: " + e.getMessage());
+            shutdown();
         }
     }
 
+    /**
+     * Read the next message from the server, a line or a frame decoded into a
+     * line if the server agreed to frames.
+     * 
+     * @return the message, null if the server closed the connection.
+     * @throws IOException       if reading fails.
+     * @throws ProtocolException if a frame is invalid.
+     */
+    private String readMessage() throws IOException, ProtocolException {
+        if (!clt.usesFrames()) {
+            return BinaryProtocol.readLine(in);
+        }
+        byte[] frame = BinaryProtocol.readFrame(in, Integer.MAX_VALUE); // the server is trusted
+        return frame == null ? null : BinaryProtocol.decode(frame);
+    }
+
     /**
      * Handles commands received from the server by calling the according methods at
      * the Client.<br>
@@ -113,13 +142,12 @@ public class AbaloneServerHandler implements Runnable {
      * @throws IOException if an IO errors occur.
      */
     private void handleCommand(String msg) throws IOException {
-        String delimiter = ProtocolMessages.DELIMITER;
-        String[] args = msg.split(delimiter);
-        if (args.length < 2) { // expect at least 2 arguments
+        args.reset(msg);
+        if (args.getCount() < 2) { // expect at least 2 arguments
             clientWrite(INVALID_RESPONSE + msg);
         }
-        String command = args[0];
-        Integer ackCode = getAckCode(args); // if null not a confirmation
+        String command = args.getCommand();
+        Integer ackCode = getAckCode(); // if null not a confirmation
         switch (command) {
             case ProtocolMessages.CONNECT: // ACK
                 if (ackCode == null) {
@@ -153,11 +181,11 @@ public class AbaloneServerHandler implements Runnable {
                 }
                 break;
             case ProtocolMessages.GAME_START: // status
-                if (args.length < 3) { // at least 3 arguments
+                if (args.getCount() < 3) { // at least 3 arguments
                     clientWrite(INVALID_RESPONSE + msg);
                     break;
                 }
-                ArrayList<String> names = getNames(args, 1); // get the names of players
+                ArrayList<String> names = getNames(1); // get the names of players
                 startGame(names);
                 gameActive = true;
                 gamePlayer = game.getPlayerByName(clt.getUserName());
@@ -165,23 +193,48 @@ public class AbaloneServerHandler implements Runnable {
                 // strategy = new NaiveStrategy();
                 clientWrite("First player to make a move is: " + names.get(0)
                         + "\n player at the top starts and goes around clockwise");
-                strategy = new MiniMaxStrategy();
+                strategy = smartStrategy(names.size());
                 cp = new ComputerPlayer(gamePlayer.getColour(), strategy);
                 if (cpPlays && game.getPlayerIndex(gamePlayer) == game.getTurn()) { // this client's turn
                     this.clientWrite("computer player is making a move");
                     Move cpMove = cp.determineMove(game.getBoard());
                     // send computer's move
-                    this.outWrite(ProtocolMessages.MOVE + ProtocolMessages.DELIMITER + cpMove.protocolFormat());
+                    this.sendMove(cpMove);
                     // move will be made on the local board when reply is sent
                 }
                 break;
+            case ProtocolMessages.GAME_RESUME: // status, the server restarted during the game
+                if (args.getCount() < 5) { // turns, position and at least 2 names
+                    clientWrite(INVALID_RESPONSE + msg);
+                    break;
+                }
+                startGame(getNames(3));
+                try {
+                    if (args.getInt(1) < 0) {
+                        throw new PositionFormatException("no number of moves");
+                    }
+                    game.restore(BitBoard.parse(args.getString(2)), args.getInt(1));
+                } catch (PositionFormatException e) {
+                    clientWrite(INVALID_RESPONSE + msg);
+                    gameActive = false;
+                    break;
+                }
+                gamePlayer = game.getPlayerByName(clt.getUserName());
+                clientWrite("Your game is resumed, it is the turn of: " + game.getPlayerOnTurn().getName());
+                strategy = smartStrategy(players.size());
+                cp = new ComputerPlayer(gamePlayer.getColour(), strategy);
+                if (cpPlays && game.getPlayerIndex(gamePlayer) == game.getTurn()) { // this client's turn
+                    this.clientWrite("computer player is making a move");
+                    this.sendMove(cp.determineMove(game.getBoard()));
+                }
+                break;
             case ProtocolMessages.PLAYER_DEFEAT: // status
-                outWrite("Player " + getNames(args, 1).get(0) + "has lost.");
+                outWrite("Player " + getNames(1).get(0) + "has lost.");
                 break;
             case ProtocolMessages.GAME_FINISH: // status
                 // get all the winner names provided by the server
                 gameActive = false;
-                ArrayList<String> names1 = getNames(args, 1);
+                ArrayList<String> names1 = getNames(1);
                 String nameList = "";
                 for (String name : names1) {
                     nameList += " " + name;
@@ -215,14 +268,14 @@ public class AbaloneServerHandler implements Runnable {
                 }
                 break;
             case ProtocolMessages.LOBBY_CHANGE: // status
-                clientWrite("Lobby has now the users:" + getNames(args, 1).toString());
+                clientWrite("Lobby has now the users:" + getNames(1).toString());
                 break;
             case ProtocolMessages.LIST_LOBBY: // status
                 clientWrite(
-                        "Available lobbies: [lobbyName,capacity,numberOfPlayers] \n" + getNames(args, 2).toString());
+                        "Available lobbies: [lobbyName,capacity,numberOfPlayers] \n" + getNames(2).toString());
                 break;
             case ProtocolMessages.MOVE: // STATUS
-                if (args.length < 5) {
+                if (args.getCount() < 5) {
                     if (msg.contains(ProtocolMessages.FORBIDDEN + "")) {
                         clientWrite("forbbiden move, try another move, also it might not be your turn");
                         break;
@@ -233,11 +286,10 @@ public class AbaloneServerHandler implements Runnable {
                     clientWrite("Unknown command from server");
                     break;
                 }
-                String name = args[1]; // user making the move
+                String name = args.getString(1); // user making the move
                 Move move = null; // move made by the user
                 try { // parse the move
-                    move = Move.parseProtocol(
-                            args[2] + ProtocolMessages.DELIMITER + args[3] + ProtocolMessages.DELIMITER + args[4]);
+                    move = args.getMove(2);
                 } catch (MoveFormatException e) {
                     log(e.getMessage());
                     outWrite(ProtocolMessages.MOVE + MAL);
@@ -251,7 +303,7 @@ public class AbaloneServerHandler implements Runnable {
                     this.clientWrite("computer player is making a move");
                     Move cpMove = cp.determineMove(game.getBoard());
                     // send computer's move
-                    this.outWrite(ProtocolMessages.MOVE + ProtocolMessages.DELIMITER + cpMove.protocolFormat());
+                    this.sendMove(cpMove);
                     // move will be made on the local board when reply is sent
                 }
                 break;
@@ -295,11 +347,11 @@ public class AbaloneServerHandler implements Runnable {
                 }
                 break;
             case ProtocolMessages.MSG_RECV: // status
-                if (args.length < 3) { // at least 3 argument
+                if (args.getCount() < 3) { // at least 3 argument
                     clientWrite(INVALID_RESPONSE + msg);
                     break;
                 }
-                clientWrite("Message from: " + args[2] + " : " + args[1]);
+                clientWrite("Message from: " + args.getString(2) + " : " + args.getString(1));
                 break;
             default:
                 clientWrite(command + ProtocolMessages.DELIMITER + ProtocolMessages.NOT_FOUND);
@@ -311,17 +363,13 @@ public class AbaloneServerHandler implements Runnable {
     /**
      * Get names in a list according to the protocol.
      * 
-     * @param args the args from the server includes the main command.
+     * @param startAt the index of the first name, the command is 0.
      * @return
      */
-    private ArrayList<String> getNames(String[] args, int startAt) {
+    private ArrayList<String> getNames(int startAt) {
         ArrayList<String> names = new ArrayList<>();
-        if (startAt >= args.length) {
-            return names;
-        }
-        String[] argsNames = Arrays.copyOfRange(args, startAt, args.length);
-        for (String s : argsNames) {
-            names.add(s);
+        for (int i = startAt; i < args.getCount(); i++) {
+            names.add(args.getString(i));
         }
         return names;
     }
@@ -330,18 +378,17 @@ public class AbaloneServerHandler implements Runnable {
      * Get the ack code from the server. Can be: Success, Malformed command,
      * Unauthorized, Forbidden, or Not Found. Return null if not one of the codes.
      * 
-     * @param args the args from the server.
      * @return
      */
-    private Integer getAckCode(String[] args) {
+    private Integer getAckCode() {
         int[] validCodes = { ProtocolMessages.FORBIDDEN, ProtocolMessages.MALFORMED_COMMAND, ProtocolMessages.NOT_FOUND,
                              ProtocolMessages.SUCCESS, ProtocolMessages.UNAUTHORIZED };
-        Integer code = makeNumber(args, 1);
-        if (code == null) { // not a number
+        int code = args.getInt(1);
+        if (code == ProtocolTokenizer.NO_NUMBER) { // not a number
             return null;
         }
         for (int c : validCodes) { // check is known command
-            if (c == (int) code) {
+            if (c == code) {
                 return code;
             }
         }
@@ -357,28 +404,6 @@ public class AbaloneServerHandler implements Runnable {
         System.out.println("> [" + name + "]" + "Logging: " + s);
     }
 
-    private Integer makeNumber(String[] args, int i) {
-        if (argsCheck(args, i)) {
-            return null;
-        }
-        try {
-            return Integer.parseInt(args[i]);
-        } catch (NumberFormatException e) {
-            return null;
-        }
-
-    }
-
-    /**
-     * Check args to see if they are valid.
-     * 
-     * @param args the args to check
-     * @return true if args are valid.
-     */
-    private boolean argsCheck(String[] args, int i) {
-        return args.length < i + 1 || args[i].isEmpty() || args[i].isBlank();
-    }
-
     /*
      * wire to client
      */
@@ -400,7 +425,37 @@ public class AbaloneServerHandler implements Runnable {
 
     }
 
+    /**
+     * Send a move to the server.
+     * 
+     * @param move the move to send.
+     */
+    private void sendMove(Move move) {
+        try {
+            clt.move(move);
+        } catch (ServerUnavailableException e) {
+            clt.writeOut("Server handler: " + e.getMessage());
+        }
+    }
+
     // ----------------Game Commands------------
+
+    /**
+     * Create the strategy of the computer player for hints and moves in a game.
+     * 
+     * @param players the number of players in the game.
+     * @return a max^n search with 3 teams, otherwise an alpha-beta search that
+     *         scores positions.
+     */
+    private static Strategy smartStrategy(int players) {
+        if (players == 3) {
+            return new MaxNStrategy();
+        }
+        AlphaBetaStrategy smart = new AlphaBetaStrategy();
+        smart.setEvaluator(new PositionalEvaluator());
+        return smart;
+    }
+
     private void startGame(List<String> names) {
         List<String> users = names;
         players = new ArrayList<>();
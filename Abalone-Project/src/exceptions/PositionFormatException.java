@@ -0,0 +1,16 @@
+package exceptions;
+
+/**
+ * Position format exception to be thrown when a serialized board position is
+ * in wrong format.
+ * 
+ */
+public class PositionFormatException extends Exception {
+
+    private static final long serialVersionUID = -2735411896216430271L;
+
+    public PositionFormatException(String msg) {
+        super(msg);
+    }
+
+}
@@ -0,0 +1,28 @@
+package logging;
+
+/**
+ * Destination of log messages. A message is passed as a template and at most
+ * two arguments, so that an appender can format it later on another thread
+ * (see LogFormat). Appenders are used by several threads at once.
+ */
+public interface Appender {
+
+    /**
+     * Write a message, or queue it to be written.
+     *
+     * @param millis   the time of the message (System.currentTimeMillis).
+     * @param level    the level of the message.
+     * @param logger   the name of the logger.
+     * @param template the message with {} for the arguments.
+     * @param arg1     the first argument, may be null.
+     * @param arg2     the second argument, may be null.
+     * @param error    an exception to write after the message, may be null.
+     */
+    public void append(long millis, Level level, String logger, String template, Object arg1, Object arg2,
+            Throwable error);
+
+    /**
+     * Write everything that was appended before and wait until it is written.
+     */
+    public void flush();
+}
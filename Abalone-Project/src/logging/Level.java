@@ -0,0 +1,24 @@
+package logging;
+
+/**
+ * Levels of log messages, from the most to the least detailed. A logger writes
+ * the messages of its level and the levels after it, OFF writes nothing.
+ */
+public enum Level {
+    DEBUG, INFO, WARN, ERROR, OFF;
+
+    /**
+     * Parse a level, ignoring case.
+     *
+     * @param name the name of the level.
+     * @return the level, null if there is no level with the name.
+     */
+    public static Level parse(String name) {
+        for (Level level : values()) {
+            if (level.name().equalsIgnoreCase(name.trim())) {
+                return level;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,63 @@
+package logging;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * The format of a log line: time, level, logger and message.
+ */
+public final class LogFormat {
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS")
+            .withZone(ZoneId.systemDefault());
+
+    private LogFormat() {
+    }
+
+    /**
+     * Format a message as a line.
+     *
+     * @return the line, with the stack trace of the error on the next lines.
+     */
+    public static String format(long millis, Level level, String logger, String template, Object arg1, Object arg2,
+            Throwable error) {
+        StringBuilder line = new StringBuilder(64 + template.length());
+        TIME.formatTo(Instant.ofEpochMilli(millis), line);
+        line.append(' ').append(level.name());
+        if (level.name().length() == 4) { // align INFO and WARN with DEBUG and ERROR
+            line.append(' ');
+        }
+        line.append(" [").append(logger).append("] ");
+        appendMessage(line, template, arg1, arg2);
+        if (error != null) {
+            StringWriter trace = new StringWriter();
+            error.printStackTrace(new PrintWriter(trace));
+            line.append(System.lineSeparator()).append(trace.toString().stripTrailing());
+        }
+        return line.toString();
+    }
+
+    /**
+     * Replace the first {} of the template by arg1 and the second by arg2.
+     *
+     * @param line     the line to add the message to.
+     * @param template the message with {} for the arguments.
+     * @param arg1     the first argument.
+     * @param arg2     the second argument.
+     */
+    public static void appendMessage(StringBuilder line, String template, Object arg1, Object arg2) {
+        int start = 0;
+        int arg = 0;
+        int placeholder = template.indexOf("{}");
+        while (placeholder >= 0 && arg < 2) {
+            line.append(template, start, placeholder).append(arg == 0 ? arg1 : arg2);
+            start = placeholder + 2;
+            arg++;
+            placeholder = template.indexOf("{}", start);
+        }
+        line.append(template, start, template.length());
+    }
+}
@@ -0,0 +1,113 @@
+package logging;
+
+/**
+ * A named source of log messages, get one with Logging.getLogger. Checking the
+ * level is a field read, so a message below the level costs nothing but the
+ * call. Build expensive arguments only after isEnabled.
+ */
+public class Logger {
+
+    private final String name;
+    private volatile Level level;
+
+    /**
+     * Create a logger, only done by Logging.
+     *
+     * @param name  the name, parts separated by dots.
+     * @param level the level.
+     */
+    Logger(String name, Level level) {
+        this.name = name;
+        this.level = level;
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    public String getName() {
+        return name;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Check if messages of a level are written.
+     *
+     * @param messageLevel the level of a message.
+     * @return true if the level is at least the level of this logger.
+     */
+    public boolean isEnabled(Level messageLevel) {
+        return messageLevel != Level.OFF && messageLevel.compareTo(level) >= 0;
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    void setLevel(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * Log a message if its level is enabled.
+     *
+     * @param messageLevel the level of the message.
+     * @param template     the message with {} for the arguments.
+     * @param arg1         the first argument, may be null.
+     * @param arg2         the second argument, may be null.
+     * @param error        an exception to write after the message, may be null.
+     */
+    public void log(Level messageLevel, String template, Object arg1, Object arg2, Throwable error) {
+        if (isEnabled(messageLevel)) {
+            Logging.getAppender().append(System.currentTimeMillis(), messageLevel, name, template, arg1, arg2,
+                    error);
+        }
+    }
+
+    public void debug(String message) {
+        log(Level.DEBUG, message, null, null, null);
+    }
+
+    public void debug(String template, Object arg) {
+        log(Level.DEBUG, template, arg, null, null);
+    }
+
+    public void debug(String template, Object arg1, Object arg2) {
+        log(Level.DEBUG, template, arg1, arg2, null);
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message, null, null, null);
+    }
+
+    public void info(String template, Object arg) {
+        log(Level.INFO, template, arg, null, null);
+    }
+
+    public void info(String template, Object arg1, Object arg2) {
+        log(Level.INFO, template, arg1, arg2, null);
+    }
+
+    public void warn(String message) {
+        log(Level.WARN, message, null, null, null);
+    }
+
+    public void warn(String template, Object arg) {
+        log(Level.WARN, template, arg, null, null);
+    }
+
+    public void warn(String message, Throwable error) {
+        log(Level.WARN, message, null, null, error);
+    }
+
+    public void error(String message) {
+        log(Level.ERROR, message, null, null, null);
+    }
+
+    public void error(String template, Object arg) {
+        log(Level.ERROR, template, arg, null, null);
+    }
+
+    public void error(String message, Throwable error) {
+        log(Level.ERROR, message, null, null, error);
+    }
+}
@@ -0,0 +1,188 @@
+package logging;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The loggers and their configuration. The level of a logger is the level set
+ * for the longest prefix of its name: setting lobby.L to DEBUG enables the
+ * diagnostics of lobby L, setting server to WARN silences all server loggers
+ * below WARN. Other loggers have the root level, INFO unless configured.
+ *
+ * <p>
+ * The configuration is read from the system property abalone.log, a comma
+ * separated list of a root level and prefix=level pairs, for example
+ * -Dabalone.log=WARN,lobby.L=DEBUG. By default messages go through a
+ * RingBufferAppender to System.out.
+ *
+ * <p>
+ * The loggers are held weakly: a logger that is no longer used, like that of a
+ * lobby that was removed, is forgotten, and created again with the level of
+ * its name if it is asked for later. Lobby names are chosen by the clients, so
+ * keeping their loggers would take more memory with every lobby.
+ */
+public final class Logging {
+
+    public static final String PROPERTY = "abalone.log";
+    private static final String ROOT = "root";
+    private static final int RING_CAPACITY = 1 << 14;
+
+    private static final Map<String, LoggerReference> LOGGERS = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Logger> UNUSED = new ReferenceQueue<>(); // loggers that were collected
+    private static final Map<String, Level> LEVELS = new ConcurrentHashMap<>(); // level per prefix
+    private static volatile Level rootLevel = Level.INFO;
+    private static volatile Appender appender;
+
+    static {
+        appender = new RingBufferAppender(new StreamAppender(System.out, false), RING_CAPACITY);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> appender.flush(), "log-flush"));
+        String config = System.getProperty(PROPERTY);
+        if (config != null) {
+            configure(config);
+        }
+    }
+
+    private Logging() {
+    }
+
+    /**
+     * Weak reference to a logger, with its name to remove it from the map.
+     */
+    private static final class LoggerReference extends WeakReference<Logger> {
+        private final String name;
+
+        LoggerReference(Logger logger) {
+            super(logger, UNUSED);
+            this.name = logger.getName();
+        }
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    /**
+     * Get the logger with a name, created the first time.
+     *
+     * @param name the name, parts separated by dots.
+     * @return the logger.
+     */
+    public static Logger getLogger(String name) {
+        LoggerReference reference = LOGGERS.get(name);
+        Logger logger = reference == null ? null : reference.get();
+        return logger != null ? logger : createLogger(name);
+    }
+
+    public static Appender getAppender() {
+        return appender;
+    }
+
+    /**
+     * Get the level for a logger name from the configuration.
+     *
+     * @param name the name of a logger.
+     * @return the level of the longest configured prefix, the root level if none.
+     */
+    private static Level levelOf(String name) {
+        Level level = rootLevel;
+        int longest = -1;
+        for (Map.Entry<String, Level> entry : LEVELS.entrySet()) {
+            String prefix = entry.getKey();
+            boolean matches = name.equals(prefix) || name.startsWith(prefix) && name.charAt(prefix.length()) == '.';
+            if (matches && prefix.length() > longest) {
+                longest = prefix.length();
+                level = entry.getValue();
+            }
+        }
+        return level;
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Create a logger, under the lock of setLevel so it gets the latest level,
+     * unless another thread just did.
+     */
+    private static synchronized Logger createLogger(String name) {
+        removeUnused();
+        LoggerReference reference = LOGGERS.get(name);
+        Logger logger = reference == null ? null : reference.get();
+        if (logger == null) {
+            logger = new Logger(name, levelOf(name));
+            LOGGERS.put(name, new LoggerReference(logger));
+        }
+        return logger;
+    }
+
+    /**
+     * Remove the loggers that were collected from the map.
+     */
+    private static void removeUnused() {
+        for (Reference<? extends Logger> unused = UNUSED.poll(); unused != null; unused = UNUSED.poll()) {
+            LOGGERS.remove(((LoggerReference) unused).name, unused);
+        }
+    }
+
+    /**
+     * Set the level of all loggers of which the name starts with a prefix.
+     *
+     * @param prefix a logger name or the start of one (whole parts), root for
+     *               the root level.
+     * @param level  the level, null to remove the level of the prefix.
+     */
+    public static synchronized void setLevel(String prefix, Level level) {
+        if (prefix.equals(ROOT)) {
+            rootLevel = level == null ? Level.INFO : level;
+        } else if (level == null) {
+            LEVELS.remove(prefix);
+        } else {
+            LEVELS.put(prefix, level);
+        }
+        for (LoggerReference reference : LOGGERS.values()) {
+            Logger logger = reference.get();
+            if (logger != null) {
+                logger.setLevel(levelOf(logger.getName()));
+            }
+        }
+    }
+
+    /**
+     * Apply a configuration like that of the system property.
+     *
+     * @param config a root level and prefix=level pairs, separated by commas.
+     * @throws IllegalArgumentException if a level is unknown.
+     */
+    public static void configure(String config) {
+        for (String part : config.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            int equals = part.indexOf('=');
+            String prefix = equals < 0 ? ROOT : part.substring(0, equals).trim();
+            Level level = Level.parse(part.substring(equals + 1));
+            if (level == null) {
+                throw new IllegalArgumentException("Unknown log level in: " + part);
+            }
+            setLevel(prefix, level);
+        }
+    }
+
+    /**
+     * Replace the appender, for example by one that writes to a file.
+     *
+     * @param newAppender the appender of all loggers from now on.
+     */
+    public static void setAppender(Appender newAppender) {
+        Appender old = appender;
+        appender = newAppender;
+        old.flush();
+    }
+
+    /**
+     * Wait until the messages logged before are written.
+     */
+    public static void flush() {
+        appender.flush();
+    }
+}
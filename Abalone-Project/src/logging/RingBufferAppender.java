@@ -0,0 +1,175 @@
+package logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appender that puts the messages in a ring of preallocated slots and lets one
+ * writer thread format them and pass them to another appender. Logging only
+ * claims a slot and stores the template and arguments, so a thread handling a
+ * command never waits for the console or a file. The arguments are formatted
+ * later, they should not change after they are logged.
+ *
+ * <p>
+ * When the ring is full messages are dropped instead of waiting, the writer
+ * reports how many with the next message it writes.
+ */
+public class RingBufferAppender implements Appender {
+
+    private static final long IDLE_NANOS = 1_000_000; // writer sleeps 1 ms when there is nothing to write
+
+    /**
+     * A message in the ring. Its sequence is written last, the writer only reads
+     * a slot with the sequence it expects.
+     */
+    private static final class Slot {
+        private volatile long sequence = -1;
+        private long millis;
+        private Level level;
+        private String logger;
+        private String template;
+        private Object arg1;
+        private Object arg2;
+        private Throwable error;
+    }
+
+    private final Appender target;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(); // the next sequence to claim
+    private volatile long written; // the next sequence to write, the slots before it are free
+    private final LongAdder dropped = new LongAdder();
+    private long reported; // dropped messages the writer reported
+    private volatile long idleRounds; // times the writer caught up, reported and flushed
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * Create an appender and start its writer thread.
+     *
+     * @requires capacity > 0
+     * @param target   the appender that writes the messages, only used by the
+     *                 writer thread.
+     * @param capacity the number of messages that may wait, rounded up to a
+     *                 power of 2.
+     */
+    public RingBufferAppender(Appender target, int capacity) {
+        this.target = target;
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        mask = size - 1;
+        writer = new Thread(this::write, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    /**
+     * Get the number of messages that were dropped because the ring was full.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Get the number of messages waiting to be written.
+     */
+    public int getWaiting() {
+        return (int) (claimed.get() - written);
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    @Override
+    public void append(long millis, Level level, String logger, String template, Object arg1, Object arg2,
+            Throwable error) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (closed || sequence - written >= slots.length) { // full, never wait
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.millis = millis;
+        slot.level = level;
+        slot.logger = logger;
+        slot.template = template;
+        slot.arg1 = arg1;
+        slot.arg2 = arg2;
+        slot.error = error;
+        slot.sequence = sequence; // publish to the writer
+    }
+
+    /**
+     * Wait until the messages appended before are written and the target is
+     * flushed.
+     */
+    @Override
+    public void flush() {
+        long until = claimed.get();
+        while (written < until && writer.isAlive()) {
+            LockSupport.parkNanos(IDLE_NANOS / 10);
+        }
+        long round = idleRounds;
+        while (idleRounds == round && writer.isAlive()) { // the writer flushes when it has caught up
+            LockSupport.parkNanos(IDLE_NANOS / 10);
+        }
+    }
+
+    /**
+     * Write the waiting messages and stop the writer thread. Messages appended
+     * after this are dropped.
+     *
+     * @throws InterruptedException if interrupted while waiting for the writer.
+     */
+    public void close() throws InterruptedException {
+        closed = true;
+        writer.join();
+        target.flush();
+    }
+
+    /**
+     * Write the messages in the order of their sequence, flush the target when
+     * there is nothing more to write. Run by the writer thread.
+     */
+    private void write() {
+        long sequence = written;
+        int batch = 0;
+        while (true) {
+            Slot slot = slots[(int) (sequence & mask)];
+            if (slot.sequence == sequence) {
+                target.append(slot.millis, slot.level, slot.logger, slot.template, slot.arg1, slot.arg2, slot.error);
+                slot.arg1 = null; // don't keep the arguments alive
+                slot.arg2 = null;
+                slot.error = null;
+                sequence++;
+                written = sequence; // the slot is free
+                batch++;
+                continue;
+            }
+            long total = dropped.sum();
+            if (total > reported) {
+                target.append(System.currentTimeMillis(), Level.WARN, "logging",
+                        "{} messages dropped, the buffer was full", total - reported, null, null);
+                reported = total;
+                batch++;
+            }
+            if (batch > 0) {
+                target.flush();
+                batch = 0;
+            }
+            idleRounds++; // only written by this thread
+            if (closed && sequence == claimed.get()) { // claimed slots are written before stopping
+                return;
+            }
+            LockSupport.parkNanos(IDLE_NANOS);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package logging;
+
+import java.io.PrintStream;
+
+/**
+ * Appender that formats and prints every message right away on the thread that
+ * logs it, the way the server printed to System.out before. Behind a
+ * RingBufferAppender it only runs on the writer thread.
+ */
+public class StreamAppender implements Appender {
+
+    private final PrintStream out;
+    private final boolean autoFlush;
+
+    /**
+     * Create an appender for a stream.
+     *
+     * @param out       the stream to print to.
+     * @param autoFlush flush after every message, false to flush only when
+     *                  flush() is called.
+     */
+    public StreamAppender(PrintStream out, boolean autoFlush) {
+        this.out = out;
+        this.autoFlush = autoFlush;
+    }
+
+    @Override
+    public synchronized void append(long millis, Level level, String logger, String template, Object arg1,
+            Object arg2, Throwable error) {
+        out.println(LogFormat.format(millis, level, logger, template, arg1, arg2, error));
+        if (autoFlush) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        out.flush();
+    }
+}
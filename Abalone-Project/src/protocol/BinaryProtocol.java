@@ -0,0 +1,449 @@
+package protocol;
+
+import abalone.BitBoard;
+import abalone.Move;
+import exceptions.ProtocolException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary framing of the protocol messages, for clients that send a lot
+ * of messages such as bots. A client asks for it with an extra argument in the
+ * handshake: CONNECT;name;BINARY; A server that supports it answers
+ * CONNECT;200;BINARY; as a line, after that both sides send frames instead of
+ * lines. A server that doesn't know the argument answers CONNECT;200; and the
+ * client keeps sending lines, so text clients and servers keep working.
+ *
+ * <p>
+ * A frame is the length of its payload (a varint: 7 bits per byte, lowest
+ * first, the high bit set if more bytes follow) and the payload. The payload is
+ * the command in one byte (its index in COMMANDS, 0 followed by a string for
+ * other commands) and the arguments of the line, each a tag and a value:
+ * <ul>
+ * <li>SMALL: a number 0-255 in one byte, NUMBER: a number 256-65535 in two.</li>
+ * <li>CELL: a field (5,A) as the index of the field in one byte.</li>
+ * <li>MOVE: the three arguments of a move (5,A;5,B;1) as head, tail and
+ * direction in three bytes.</li>
+ * <li>RECORD: an argument with separators (lobby,2,1) as the number of parts and
+ * the parts, each a SMALL, NUMBER or STRING.</li>
+ * <li>STRING: anything else as its length and UTF-8 bytes.</li>
+ * </ul>
+ * Decoding a frame gives the line back, with a delimiter after every argument.
+ */
+public final class BinaryProtocol {
+
+    /** The commands in the order of their codes, 0 is a command not in the list. */
+    private static final String[] COMMANDS = { null, ProtocolMessages.CONNECT, ProtocolMessages.CREATE_LOBBY,
+                                               ProtocolMessages.LIST_LOBBY, ProtocolMessages.JOIN_LOBBY,
+                                               ProtocolMessages.LEAVE_LOBBY, ProtocolMessages.READY_LOBBY,
+                                               ProtocolMessages.UNREADY_LOBBY, ProtocolMessages.LOBBY_CHANGE,
+                                               ProtocolMessages.GAME_START, ProtocolMessages.MOVE,
+                                               ProtocolMessages.GAME_FINISH, ProtocolMessages.PLAYER_DEFEAT,
+                                               ProtocolMessages.FORFEIT, ProtocolMessages.LOBBY_MSG,
+                                               ProtocolMessages.MSG_RECV, ProtocolMessages.METRICS,
+                                               ProtocolMessages.GAME_RESUME };
+    private static final int OTHER_COMMAND = 0;
+    private static final int MOVE_COMMAND = 10;
+
+    private static final int SMALL = 1;
+    private static final int NUMBER = 2;
+    private static final int CELL = 3;
+    private static final int MOVE = 4;
+    private static final int RECORD = 5;
+    private static final int STRING = 6;
+
+    private static final int START_COL = 1; // columns start from 1 in the text protocol, like in Move
+    private static final int MAX_LENGTH_BYTES = 5; // of a varint that fits in an int
+
+    private BinaryProtocol() {
+    }
+
+    // -- Encoding ---------------------------------------------------
+
+    /**
+     * Encode a line of the text protocol as a frame.
+     *
+     * @param line the line, with or without delimiter at the end.
+     * @return the frame, its length followed by the payload.
+     */
+    public static byte[] encode(String line) {
+        String[] args = line.split(ProtocolMessages.DELIMITER, -1);
+        int count = line.endsWith(ProtocolMessages.DELIMITER) ? args.length - 1 : args.length;
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(line.length());
+        int command = commandCode(args[0]);
+        payload.write(command);
+        if (command == OTHER_COMMAND) {
+            writeString(payload, args[0]);
+        }
+        int i = 1;
+        while (i < count) {
+            if (i + 2 < count && writeMove(payload, args[i], args[i + 1], args[i + 2])) {
+                i += 3;
+                continue;
+            }
+            writeArgument(payload, args[i]);
+            i++;
+        }
+        return frame(payload);
+    }
+
+    /**
+     * Encode the message that a user made a move, MOVE;name;move; without
+     * building the line.
+     *
+     * @param name the name of the user.
+     * @param move the move that was made.
+     * @return the frame.
+     */
+    public static byte[] encodeMove(String name, Move move) {
+        int encoded = BitBoard.fromMove(move);
+        if (encoded == BitBoard.NO_MOVE) { // a field is not on the board, can't be a cell
+            return encode(ProtocolMessages.MOVE + ProtocolMessages.DELIMITER + name + ProtocolMessages.DELIMITER
+                    + move.protocolFormat() + ProtocolMessages.DELIMITER);
+        }
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(name.length() + 8);
+        payload.write(MOVE_COMMAND);
+        writeArgument(payload, name);
+        payload.write(MOVE);
+        payload.write(BitBoard.moveHead(encoded));
+        payload.write(BitBoard.moveTail(encoded));
+        payload.write(BitBoard.moveDirection(encoded));
+        return frame(payload);
+    }
+
+    /**
+     * Get the code of a command.
+     *
+     * @param command the command.
+     * @return the index in COMMANDS, OTHER_COMMAND if it is not in there.
+     */
+    private static int commandCode(String command) {
+        for (int i = 1; i < COMMANDS.length; i++) {
+            if (COMMANDS[i].equals(command)) {
+                return i;
+            }
+        }
+        return OTHER_COMMAND;
+    }
+
+    /**
+     * Write the three arguments of a move, if they are one.
+     *
+     * @return true if the move was written.
+     */
+    private static boolean writeMove(ByteArrayOutputStream out, String head, String tail, String direction) {
+        int headCell = parseCell(head);
+        int tailCell = parseCell(tail);
+        if (headCell == BitBoard.NO_CELL || tailCell == BitBoard.NO_CELL || direction.length() != 1) {
+            return false;
+        }
+        int dir = direction.charAt(0) - '0';
+        if (dir < 0 || dir >= BitBoard.DIRECTIONS) {
+            return false;
+        }
+        out.write(MOVE);
+        out.write(headCell);
+        out.write(tailCell);
+        out.write(dir);
+        return true;
+    }
+
+    /**
+     * Write one argument of a line.
+     */
+    private static void writeArgument(ByteArrayOutputStream out, String arg) {
+        int cell = parseCell(arg);
+        if (cell != BitBoard.NO_CELL) {
+            out.write(CELL);
+            out.write(cell);
+        } else if (arg.contains(ProtocolMessages.SEPARATOR)) {
+            String[] parts = arg.split(ProtocolMessages.SEPARATOR, -1);
+            if (parts.length > 0xFF) { // too many for a record
+                writeString(out, arg);
+                return;
+            }
+            out.write(RECORD);
+            out.write(parts.length);
+            for (String part : parts) {
+                writeValue(out, part);
+            }
+        } else {
+            writeValue(out, arg);
+        }
+    }
+
+    /**
+     * Write a number or a string.
+     */
+    private static void writeValue(ByteArrayOutputStream out, String value) {
+        int number = parseNumber(value);
+        if (number >= 0 && number <= 0xFF) {
+            out.write(SMALL);
+            out.write(number);
+        } else if (number > 0xFF) {
+            out.write(NUMBER);
+            out.write(number >> 8);
+            out.write(number);
+        } else {
+            writeString(out, value);
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.write(STRING);
+        writeLength(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeLength(ByteArrayOutputStream out, int length) {
+        while (length > 0x7F) {
+            out.write(length & 0x7F | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+    }
+
+    /**
+     * Put the length in front of a payload.
+     */
+    private static byte[] frame(ByteArrayOutputStream payload) {
+        byte[] body = payload.toByteArray();
+        int header = 1;
+        for (int length = body.length; length > 0x7F; length >>>= 7) {
+            header++;
+        }
+        byte[] frame = new byte[header + body.length];
+        int length = body.length;
+        for (int i = 0; i < header - 1; i++) {
+            frame[i] = (byte) (length & 0x7F | 0x80);
+            length >>>= 7;
+        }
+        frame[header - 1] = (byte) length;
+        System.arraycopy(body, 0, frame, header, body.length);
+        return frame;
+    }
+
+    /**
+     * Parse a number the way it is written in the text protocol, so that it is
+     * written back the same.
+     *
+     * @return the number 0-65535, -1 if it is not one (or has leading zeros).
+     */
+    private static int parseNumber(String value) {
+        int length = value.length();
+        if (length == 0 || length > 5 || (length > 1 && value.charAt(0) == '0')) {
+            return -1;
+        }
+        int number = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            number = number * 10 + digit;
+        }
+        return number <= 0xFFFF ? number : -1;
+    }
+
+    /**
+     * Parse a field the way it is written in the text protocol (5,A).
+     *
+     * @return the index of the field, NO_CELL if it is not a field on the board.
+     */
+    private static int parseCell(String value) {
+        if (value.length() != 3 || !value.startsWith(ProtocolMessages.SEPARATOR, 1)) {
+            return BitBoard.NO_CELL;
+        }
+        int col = value.charAt(0) - '0' - START_COL;
+        char row = value.charAt(2);
+        if (row < 'A' || row > 'Z') { // lower case rows would not come back the same
+            return BitBoard.NO_CELL;
+        }
+        return BitBoard.cellIndex(row, col);
+    }
+
+    // -- Decoding ---------------------------------------------------
+
+    /**
+     * Decode the payload of a frame into a line of the text protocol.
+     *
+     * @param payload the payload, without the length.
+     * @return the line, ending with a delimiter.
+     * @throws ProtocolException if the payload is not a valid frame.
+     */
+    public static String decode(byte[] payload) throws ProtocolException {
+        try {
+            StringBuilder line = new StringBuilder(payload.length * 2);
+            int command = payload[0] & 0xFF;
+            int pos = 1;
+            if (command == OTHER_COMMAND) {
+                if (payload[pos] != STRING) {
+                    throw new ProtocolException("Command should be a string");
+                }
+                pos = readValue(payload, pos, line);
+            } else if (command < COMMANDS.length) {
+                line.append(COMMANDS[command]);
+            } else {
+                throw new ProtocolException("Unknown command code: " + command);
+            }
+            line.append(ProtocolMessages.DELIMITER);
+            while (pos < payload.length) {
+                pos = readArgument(payload, pos, line);
+                line.append(ProtocolMessages.DELIMITER);
+            }
+            return line.toString();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new ProtocolException("Frame ends in the middle of an argument");
+        }
+    }
+
+    /**
+     * Get the move of a MOVE frame sent by a client without decoding the line.
+     *
+     * @param payload the payload of the frame.
+     * @return the move, null if the frame is not exactly a MOVE with a move.
+     */
+    public static Move parseMove(byte[] payload) {
+        if (payload.length != 5 || payload[0] != MOVE_COMMAND || payload[1] != MOVE) {
+            return null;
+        }
+        int head = payload[2] & 0xFF;
+        int tail = payload[3] & 0xFF;
+        int direction = payload[4] & 0xFF;
+        if (head >= BitBoard.CELLS || tail >= BitBoard.CELLS || direction >= BitBoard.DIRECTIONS) {
+            return null;
+        }
+        return BitBoard.toMove(BitBoard.encodeMove(head, tail, direction));
+    }
+
+    /**
+     * Read one line from a stream, without the line separator. Reads byte by
+     * byte, so nothing after the line is taken from the stream: the CONNECT
+     * answer is a line and the frames come right behind it on the same stream.
+     *
+     * @param in the stream to read from, buffered.
+     * @return the line, null at the end of the stream.
+     * @throws IOException if reading fails.
+     */
+    public static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b = in.read();
+        while (b != '\n') {
+            if (b == -1) {
+                return line.size() > 0 ? line.toString(StandardCharsets.UTF_8) : null;
+            }
+            line.write(b);
+            b = in.read();
+        }
+        byte[] bytes = line.toByteArray();
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read one frame from a stream, blocking until it is complete.
+     *
+     * @param in       the stream to read from.
+     * @param maxFrame the longest payload that is accepted.
+     * @return the payload of the frame, null if the stream ended before the frame.
+     * @throws IOException if reading fails or the frame is longer than maxFrame.
+     */
+    public static byte[] readFrame(InputStream in, int maxFrame) throws IOException {
+        int length = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.read();
+            if (b == -1) {
+                return null;
+            }
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+            if (shift > 7 * MAX_LENGTH_BYTES || length < 0 || length > maxFrame) {
+                throw new IOException("Frame too long");
+            }
+        } while ((b & 0x80) != 0);
+        byte[] payload = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(payload, read, length - read);
+            if (n == -1) {
+                return null;
+            }
+            read += n;
+        }
+        return payload;
+    }
+
+    private static int readArgument(byte[] payload, int pos, StringBuilder line) throws ProtocolException {
+        switch (payload[pos]) {
+            case CELL:
+                appendCell(line, payload[pos + 1] & 0xFF);
+                return pos + 2;
+            case MOVE:
+                appendCell(line, payload[pos + 1] & 0xFF);
+                line.append(ProtocolMessages.DELIMITER);
+                appendCell(line, payload[pos + 2] & 0xFF);
+                int direction = payload[pos + 3] & 0xFF;
+                if (direction >= BitBoard.DIRECTIONS) {
+                    throw new ProtocolException("Invalid direction: " + direction);
+                }
+                line.append(ProtocolMessages.DELIMITER).append(direction);
+                return pos + 4;
+            case RECORD:
+                int parts = payload[pos + 1] & 0xFF;
+                pos += 2;
+                for (int i = 0; i < parts; i++) {
+                    if (i > 0) {
+                        line.append(ProtocolMessages.SEPARATOR);
+                    }
+                    pos = readValue(payload, pos, line);
+                }
+                return pos;
+            default:
+                return readValue(payload, pos, line);
+        }
+    }
+
+    private static int readValue(byte[] payload, int pos, StringBuilder line) throws ProtocolException {
+        switch (payload[pos]) {
+            case SMALL:
+                line.append(payload[pos + 1] & 0xFF);
+                return pos + 2;
+            case NUMBER:
+                line.append((payload[pos + 1] & 0xFF) << 8 | payload[pos + 2] & 0xFF);
+                return pos + 3;
+            case STRING:
+                int length = 0;
+                int shift = 0;
+                pos++;
+                byte b;
+                do {
+                    if (shift >= 7 * MAX_LENGTH_BYTES) {
+                        throw new ProtocolException("String length too long");
+                    }
+                    b = payload[pos++];
+                    length |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                if (length < 0 || pos + length > payload.length) {
+                    throw new ProtocolException("String longer than the frame");
+                }
+                line.append(new String(payload, pos, length, StandardCharsets.UTF_8));
+                return pos + length;
+            default:
+                throw new ProtocolException("Unknown argument tag: " + payload[pos]);
+        }
+    }
+
+    private static void appendCell(StringBuilder line, int cell) throws ProtocolException {
+        if (cell >= BitBoard.CELLS) {
+            throw new ProtocolException("Invalid field: " + cell);
+        }
+        line.append(BitBoard.colOf(cell) + START_COL).append(ProtocolMessages.SEPARATOR).append(BitBoard.rowOf(cell));
+    }
+}
@@ -54,6 +54,12 @@ public class ProtocolMessages {
     // public static final String PM = "PM";
     public static final String LOBBY_MSG = "LOBBY_MSG";
     public static final String MSG_RECV = "MSG_RECV";
+    // Extension: argument of CONNECT to switch to frames (see BinaryProtocol)
+    public static final String BINARY = "BINARY";
+    // Extension: METRICS;secret; asks for the ServerMetrics report, with the secret the server was started with
+    public static final String METRICS = "METRICS";
+    // Extension: GAME_RESUME;turns;position;names; the game of a user that reconnects after a restart
+    public static final String GAME_RESUME = "GAME_RESUME";
     // public static final String PM_RECV = "PM_RECV";
     // public static final String LEADERBOARD = "LEADERBOARD";
 
@@ -0,0 +1,222 @@
+package protocol;
+
+import abalone.Move;
+import exceptions.MoveFormatException;
+
+/**
+ * Splits a line of the protocol into its arguments without copying it. Only the
+ * positions of the delimiters are kept, in an array that is reused for the next
+ * line, so reading a command, a number or a move allocates nothing (a Move
+ * only). The arguments are the same as those of line.split(DELIMITER): the
+ * command is argument 0 and empty arguments at the end are left out.
+ *
+ * <p>
+ * A tokenizer is used by one thread at a time, a handler keeps one for all the
+ * lines of its connection.
+ */
+public class ProtocolTokenizer {
+
+    /** Returned by getInt for an argument that is not a number. */
+    public static final int NO_NUMBER = Integer.MIN_VALUE;
+
+    private static final char DELIMITER = ProtocolMessages.DELIMITER.charAt(0);
+    private static final char SEPARATOR = ProtocolMessages.SEPARATOR.charAt(0);
+    private static final int START_COL = 1; // columns start from 1 in the protocol, like in Move
+    private static final String[] COMMANDS = { ProtocolMessages.CONNECT, ProtocolMessages.CREATE_LOBBY,
+                                               ProtocolMessages.LIST_LOBBY, ProtocolMessages.JOIN_LOBBY,
+                                               ProtocolMessages.LEAVE_LOBBY, ProtocolMessages.READY_LOBBY,
+                                               ProtocolMessages.UNREADY_LOBBY, ProtocolMessages.LOBBY_CHANGE,
+                                               ProtocolMessages.GAME_START, ProtocolMessages.MOVE,
+                                               ProtocolMessages.GAME_FINISH, ProtocolMessages.PLAYER_DEFEAT,
+                                               ProtocolMessages.FORFEIT, ProtocolMessages.LOBBY_MSG,
+                                               ProtocolMessages.MSG_RECV, ProtocolMessages.METRICS,
+                                               ProtocolMessages.GAME_RESUME };
+
+    private String line = "";
+    private int[] ends = new int[8]; // the end of every argument, the start of the next is one further
+    private int count;
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Start reading a new line.
+     *
+     * @param newLine the line, without line separator.
+     * @return this tokenizer.
+     */
+    public ProtocolTokenizer reset(String newLine) {
+        line = newLine;
+        count = 0;
+        int length = line.length();
+        for (int i = 0; i <= length; i++) {
+            if (i == length || line.charAt(i) == DELIMITER) {
+                if (count == ends.length) {
+                    int[] larger = new int[count * 2];
+                    System.arraycopy(ends, 0, larger, 0, count);
+                    ends = larger;
+                }
+                ends[count++] = i;
+            }
+        }
+        while (count > 1 && ends[count - 1] == getStart(count - 1)) { // empty arguments at the end
+            count--;
+        }
+        if (count == 1 && length > 0 && ends[0] == 0) { // only delimiters, split gives nothing
+            count = 0;
+        }
+        return this;
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    /**
+     * Get the number of arguments, the command included.
+     *
+     * @return the number of arguments.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the command of the line. A known command is the constant of
+     * ProtocolMessages, so it can be compared with == and costs no allocation.
+     *
+     * @return argument 0, empty if the line has no arguments.
+     */
+    public String getCommand() {
+        if (count == 0) {
+            return "";
+        }
+        int length = ends[0];
+        for (String command : COMMANDS) {
+            if (command.length() == length && line.startsWith(command)) {
+                return command;
+            }
+        }
+        return line.substring(0, length);
+    }
+
+    /**
+     * Check that an argument is missing, empty or only whitespace.
+     *
+     * @param i the index of the argument.
+     * @return true if the argument can't be used.
+     */
+    public boolean isBlank(int i) {
+        if (i >= count) {
+            return true;
+        }
+        for (int c = getStart(i); c < ends[i]; c++) {
+            if (!Character.isWhitespace(line.charAt(c))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if an argument is equal to a string.
+     *
+     * @param i     the index of the argument.
+     * @param value the string to compare to.
+     * @return true if the argument is there and equal to value.
+     */
+    public boolean isEqual(int i, String value) {
+        return i < count && ends[i] - getStart(i) == value.length() && line.startsWith(value, getStart(i));
+    }
+
+    /**
+     * Get an argument as string.
+     *
+     * @requires i < getCount()
+     * @param i the index of the argument.
+     * @return the argument.
+     */
+    public String getString(int i) {
+        return line.substring(getStart(i), ends[i]);
+    }
+
+    /**
+     * Get an argument as number, the way Integer.parseInt reads it.
+     *
+     * @param i the index of the argument.
+     * @return the number, NO_NUMBER if the argument is missing or not a number.
+     */
+    public int getInt(int i) {
+        if (i >= count) {
+            return NO_NUMBER;
+        }
+        int c = getStart(i);
+        int end = ends[i];
+        boolean negative = c < end && line.charAt(c) == '-';
+        if (c < end && (negative || line.charAt(c) == '+')) {
+            c++;
+        }
+        if (c == end) {
+            return NO_NUMBER;
+        }
+        long number = 0;
+        for (; c < end; c++) {
+            int digit = Character.digit(line.charAt(c), 10);
+            if (digit < 0) {
+                return NO_NUMBER;
+            }
+            number = number * 10 + digit;
+            if (number > Integer.MAX_VALUE) {
+                return NO_NUMBER;
+            }
+        }
+        return (int) (negative ? -number : number);
+    }
+
+    /**
+     * Get the move written in three arguments (5,A;5,B;1), read like
+     * Move.parseProtocol without splitting the arguments.
+     *
+     * @param i the index of the first argument of the move.
+     * @return the move.
+     * @throws MoveFormatException if the arguments are not a move.
+     */
+    public Move getMove(int i) throws MoveFormatException {
+        if (i + 2 >= count) {
+            throw new MoveFormatException("A move needs 3 arguments");
+        }
+        int colHead = getCol(i);
+        char rowHead = getRow(i);
+        int colTail = getCol(i + 1);
+        char rowTail = getRow(i + 1);
+        int direction = ends[i + 2] > getStart(i + 2) ? Character.digit(line.charAt(getStart(i + 2)), 10) : -1;
+        if (direction < 0 || direction > 5) {
+            throw new MoveFormatException("Direction should be between 0-6, it was:" + getString(i + 2));
+        }
+        return new Move(rowHead, colHead, rowTail, colTail, direction);
+    }
+
+    private int getStart(int i) {
+        return i == 0 ? 0 : ends[i - 1] + 1;
+    }
+
+    /**
+     * Get the column of a field (5,A), the first digit.
+     */
+    private int getCol(int i) throws MoveFormatException {
+        int start = getStart(i);
+        int digit = start < ends[i] ? Character.digit(line.charAt(start), 10) : -1;
+        if (digit < 0) {
+            throw new MoveFormatException("Invalid column: " + getString(i));
+        }
+        return digit - START_COL;
+    }
+
+    /**
+     * Get the row of a field (5,A), the character after the separator.
+     */
+    private char getRow(int i) throws MoveFormatException {
+        int separator = line.indexOf(SEPARATOR, getStart(i));
+        if (separator < 0 || separator + 1 >= ends[i] || line.charAt(separator + 1) == SEPARATOR) {
+            throw new MoveFormatException("Invalid row: " + getString(i));
+        }
+        return line.charAt(separator + 1);
+    }
+}
@@ -0,0 +1,195 @@
+package protocol;
+
+import abalone.Move;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds a line of the protocol in a buffer that is reused for the next line,
+ * instead of concatenating strings. Numbers and moves are written as digits
+ * straight into the buffer. The finished line is taken as bytes with toLine,
+ * ready to be sent, or as string with toString.
+ *
+ * <p>
+ * A builder is used by one thread at a time.
+ */
+public class ResponseBuilder {
+
+    private static final byte DELIMITER = (byte) ProtocolMessages.DELIMITER.charAt(0);
+    private static final byte SEPARATOR = (byte) ProtocolMessages.SEPARATOR.charAt(0);
+    private static final int START_COL = 1; // columns start from 1 in the protocol, like in Move
+
+    private byte[] buffer = new byte[128];
+    private int length;
+
+    /**
+     * Encode a message as a line to send: the message, a delimiter and the line
+     * separator, without building the string first.
+     *
+     * @param message the message.
+     * @return the UTF-8 bytes of the line.
+     */
+    public static byte[] toLine(String message) {
+        int length = message.length();
+        byte[] line = new byte[length + 2];
+        for (int i = 0; i < length; i++) {
+            char c = message.charAt(i);
+            if (c >= 0x80) { // not ASCII, let the charset encode it
+                byte[] encoded = message.getBytes(StandardCharsets.UTF_8);
+                line = Arrays.copyOf(encoded, encoded.length + 2);
+                length = encoded.length;
+                break;
+            }
+            line[i] = (byte) c;
+        }
+        line[length] = DELIMITER;
+        line[length + 1] = '\n';
+        return line;
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Start a new line with a command.
+     *
+     * @param command the command.
+     * @return this builder.
+     */
+    public ResponseBuilder command(String command) {
+        length = 0;
+        return append(command);
+    }
+
+    /**
+     * Add an argument.
+     *
+     * @param arg the argument.
+     * @return this builder.
+     */
+    public ResponseBuilder arg(String arg) {
+        put(DELIMITER);
+        return append(arg);
+    }
+
+    /**
+     * Add a number as argument.
+     *
+     * @param arg the number.
+     * @return this builder.
+     */
+    public ResponseBuilder arg(int arg) {
+        put(DELIMITER);
+        appendNumber(arg);
+        return this;
+    }
+
+    /**
+     * Add a move as its three arguments (5,A;5,B;1), like Move.protocolFormat.
+     *
+     * @param move the move.
+     * @return this builder.
+     */
+    public ResponseBuilder move(Move move) {
+        put(DELIMITER);
+        appendNumber(move.getHead().getCol() + START_COL);
+        put(SEPARATOR);
+        appendChar(move.getHead().getRow());
+        put(DELIMITER);
+        appendNumber(move.getTail().getCol() + START_COL);
+        put(SEPARATOR);
+        appendChar(move.getTail().getRow());
+        put(DELIMITER);
+        appendNumber(move.getDirection());
+        return this;
+    }
+
+    /**
+     * Add text as it is, for text that already contains delimiters.
+     *
+     * @param text the text.
+     * @return this builder.
+     */
+    public ResponseBuilder append(String text) {
+        int textLength = text.length();
+        ensureCapacity(textLength);
+        for (int i = 0; i < textLength; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) { // not ASCII, let the charset encode the rest
+                byte[] encoded = text.substring(i).getBytes(StandardCharsets.UTF_8);
+                ensureCapacity(encoded.length);
+                System.arraycopy(encoded, 0, buffer, length, encoded.length);
+                length += encoded.length;
+                return this;
+            }
+            buffer[length++] = (byte) c;
+        }
+        return this;
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    /**
+     * Get the line to send: the line so far, a delimiter and the line separator.
+     *
+     * @return the UTF-8 bytes of the line.
+     */
+    public byte[] toLine() {
+        byte[] line = Arrays.copyOf(buffer, length + 2);
+        line[length] = DELIMITER;
+        line[length + 1] = '\n';
+        return line;
+    }
+
+    /**
+     * Get the line so far with a delimiter at the end.
+     *
+     * @return the line, without line separator.
+     */
+    @Override
+    public String toString() {
+        ensureCapacity(1);
+        buffer[length] = DELIMITER; // not counted, the next argument overwrites it
+        return new String(buffer, 0, length + 1, StandardCharsets.UTF_8);
+    }
+
+    private void appendNumber(int number) {
+        if (number < 0) {
+            if (number == Integer.MIN_VALUE) {
+                append(Integer.toString(number));
+                return;
+            }
+            put((byte) '-');
+            number = -number;
+        }
+        int digits = 1;
+        for (int rest = number / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+        length += digits;
+    }
+
+    private void appendChar(char c) {
+        if (c < 0x80) {
+            put((byte) c);
+        } else {
+            append(String.valueOf(c));
+        }
+    }
+
+    private void put(byte b) {
+        ensureCapacity(1);
+        buffer[length++] = b;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
@@ -2,29 +2,33 @@ package server;
 
 import abalone.Move;
 import exceptions.MoveFormatException;
+import exceptions.ProtocolException;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 
+import logging.Level;
+import logging.Logger;
+import logging.Logging;
+import protocol.BinaryProtocol;
 import protocol.ProtocolMessages;
+import protocol.ProtocolTokenizer;
+import protocol.ResponseBuilder;
 
 /**
  * HotelClientHandler for the Hotel Server application. This class can handle
- * the communication with one client.
+ * the communication with one client. The lines are read and written by a
+ * Connection, blocking (SocketConnection) or non-blocking (NioServer). A
+ * client that asks for it in CONNECT gets frames of the BinaryProtocol instead
+ * of lines.
  * 
  * @author Wim Kamerman
  */
-public class AbaloneClientHandler implements Runnable {
+public class AbaloneClientHandler {
 
     private static final String MAL = ProtocolMessages.DELIMITER + ProtocolMessages.MALFORMED_COMMAND;
-    /** The socket and In- and OutputStreams. */
-    private BufferedReader in;
-    private BufferedWriter out;
-    private Socket sock;
+    private static final Logger LOG = Logging.getLogger("server.handler");
+    /** The connection to the client. */
+    private Connection connection;
 
     /** The connected Abalone Server. */
     private AbaloneServer srv;
@@ -38,43 +42,68 @@ public class AbaloneClientHandler implements Runnable {
     /** Connection established. */
     private boolean connected;
 
+    /** Messages are sent as frames, read by the threads of other users too. */
+    private volatile boolean binary;
+
+    /** Timings of the commands, shared with the other clients. */
+    private final ServerMetrics metrics;
+
+    /** Tokenizer of the received lines, they are handled one at a time. */
+    private final ProtocolTokenizer args = new ProtocolTokenizer();
+
     /**
-     * Constructs a new HotelClientHandler. Opens the In- and OutputStreams.
+     * Constructs a new HotelClientHandler.
      * 
-     * @param sock The client socket
-     * @param srv  The connected server
-     * @param name The name of this ClientHandler
+     * @param connection The connection to the client
+     * @param srv        The connected server
+     * @param name       The name of this ClientHandler
      */
-    public AbaloneClientHandler(Socket sock, AbaloneServer srv, String name) {
-        try {
-            this.sock = sock;
-            in = new BufferedReader(new InputStreamReader(sock.getInputStream()));
-            out = new BufferedWriter(new OutputStreamWriter(sock.getOutputStream()));
-            this.srv = srv;
-            this.name = name;
-        } catch (IOException e) {
-            shutdown();
-        }
+    public AbaloneClientHandler(Connection connection, AbaloneServer srv, String name) {
+        this.connection = connection;
+        this.srv = srv;
+        this.name = name;
+        this.metrics = srv.getMetrics();
     }
 
     /**
-     * Continuously listens to client input and forwards the input to the
-     * {@link #handleCommand(String)} method.
+     * Get the user of this client.
+     * 
+     * @return the user, null if the client has not sent CONNECT.
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * Handle a line received from the client, called by the connection.
+     * 
+     * @param msg the line without line separator.
      */
-    public void run() {
-        String msg;
+    void handleLine(String msg) {
+        LOG.debug("[{}] Incoming: {}", name, msg);
+        handleCommand(msg);
+    }
+
+    /**
+     * Handle a frame received from the client, called by the connection. A move
+     * is handled without decoding the line, moves are most of the frames.
+     * 
+     * @param frame the payload of the frame.
+     */
+    void handleFrame(byte[] frame) {
+        Move move = BinaryProtocol.parseMove(frame);
+        if (move != null && connected) {
+            LOG.debug("[{}] Incoming: MOVE {}", name, move);
+            long start = System.nanoTime();
+            outWrite(srv.move(move, user));
+            metrics.command(ProtocolMessages.MOVE, System.nanoTime() - start);
+            return;
+        }
         try {
-            msg = in.readLine();
-            while (msg != null) {
-                System.out.println("> [" + name + "] Incoming: " + msg);
-                handleCommand(msg);
-                out.newLine();
-                out.flush();
-                msg = in.readLine();
-            }
-            shutdown();
-        } catch (IOException e) {
-            shutdown();
+            handleLine(BinaryProtocol.decode(frame));
+        } catch (ProtocolException e) {
+            log(e.getMessage());
+            shutdown(); // can't tell where the next frame starts
         }
     }
 
@@ -84,58 +113,72 @@ public class AbaloneClientHandler implements Runnable {
      * method doIn() of HotelServer should be called and the output must be sent to
      * the client. <br>
      * If the received input is not valid, send an "Unknown Command" message to the
-     * server.
+     * server. The line is read with the tokenizer, without splitting it. The time
+     * to handle it is counted in the ServerMetrics of its command.
      * 
      * @param msg command from client
-     * @throws IOException if an IO errors occur.
      */
-    private void handleCommand(String msg) throws IOException {
+    private void handleCommand(String msg) {
         // ignore empty lines?
         // if(msg.isBlank() || msg.isEmpty()) {
         // return;
         // }
-        String delimiter = ProtocolMessages.DELIMITER;
-        String[] args = msg.split(delimiter);
-        System.out.println("> [" + name + "] handling command");
-        String command = args[0];
-        if (!connected && !args[0].equals(ProtocolMessages.CONNECT)) { // connection not yet established
-            outWrite(args[0] + ProtocolMessages.DELIMITER + ProtocolMessages.UNAUTHORIZED);
+        long start = System.nanoTime();
+        args.reset(msg);
+        String command = args.getCommand();
+        // an admin asks for the metrics without a user
+        if (!connected && command != ProtocolMessages.CONNECT && command != ProtocolMessages.METRICS) {
+            outWrite(command + ProtocolMessages.DELIMITER + ProtocolMessages.UNAUTHORIZED);
         }
         switch (command) {
             case ProtocolMessages.CONNECT:
-                if (argsCheck(args, 1)) {
+                if (args.isBlank(1)) {
                     outWrite(ProtocolMessages.CONNECT + MAL);
                     break;
                 }
-                user = new User(args[1], this);
-                String response = srv.getHello(user);
+                if (connected) { // the user can't change its name
+                    outWrite(ProtocolMessages.CONNECT + ProtocolMessages.DELIMITER + ProtocolMessages.UNAUTHORIZED);
+                    break;
+                }
+                User newUser = new User(args.getString(1), this);
+                String response = srv.getHello(newUser);
                 if (response.contains(ProtocolMessages.SUCCESS + "")) {
                     connected = true;
+                    user = newUser; // only a user in the server is removed when disconnecting
+                    if (args.isEqual(2, ProtocolMessages.BINARY)) {
+                        connection.startFrames(); // before the answer, the client sends frames after it
+                        outWrite(response + ProtocolMessages.DELIMITER + ProtocolMessages.BINARY);
+                        binary = true; // the answer itself is a line
+                    } else {
+                        outWrite(response);
+                    }
+                    srv.resumeGame(user); // after the answer, if the server stopped during its game
+                    break;
                 }
                 outWrite(response);
                 break;
             case ProtocolMessages.CREATE_LOBBY:
-                if (argsCheck(args, 1)) {
+                if (args.isBlank(1)) {
                     outWrite(ProtocolMessages.CREATE_LOBBY + MAL);
                     break;
                 }
-                Integer lobbySize = makeNumber(args, 2);
-                if (lobbySize == null) {
+                int lobbySize = args.getInt(2);
+                if (lobbySize == ProtocolTokenizer.NO_NUMBER) {
                     outWrite(ProtocolMessages.CREATE_LOBBY + MAL);
                     break;
                 }
-                String response1 = srv.createLobby(args[1], lobbySize);
+                String response1 = srv.createLobby(args.getString(1), lobbySize);
                 outWrite(response1);
                 break;
             case ProtocolMessages.FORFEIT:
                 outWrite(srv.forfeit(user));
                 break;
             case ProtocolMessages.JOIN_LOBBY:
-                if (argsCheck(args, 1)) {
+                if (args.isBlank(1)) {
                     outWrite(ProtocolMessages.JOIN_LOBBY + MAL);
                     break;
                 }
-                outWrite(srv.joinLobby(args[1], user));
+                outWrite(srv.joinLobby(args.getString(1), user));
                 break;
             case ProtocolMessages.LEAVE_LOBBY:
                 outWrite(srv.leaveLobby(user));
@@ -144,14 +187,13 @@ public class AbaloneClientHandler implements Runnable {
                 outWrite(srv.listLobby());
                 break;
             case ProtocolMessages.MOVE:
-                if (args.length < 4) {
+                if (args.getCount() < 4) {
                     outWrite(ProtocolMessages.MOVE + MAL);
                     break;
                 }
                 Move move = null;
                 try {
-                    move = Move.parseProtocol(
-                            args[1] + ProtocolMessages.DELIMITER + args[2] + ProtocolMessages.DELIMITER + args[3]);
+                    move = args.getMove(1);
                 } catch (MoveFormatException e) {
                     log(e.getMessage());
                     outWrite(ProtocolMessages.MOVE + MAL);
@@ -166,75 +208,71 @@ public class AbaloneClientHandler implements Runnable {
                 outWrite(srv.unreadyLobby(user));
                 break;
             case ProtocolMessages.LOBBY_MSG:
-                if (args.length < 2) {
+                if (args.getCount() < 2) {
                     outWrite(ProtocolMessages.LOBBY_MSG + MAL);
                     break;
                 }
-                outWrite(srv.lobbyMsg(user, args[1]));
+                outWrite(srv.lobbyMsg(user, args.getString(1)));
+                break;
+            case ProtocolMessages.METRICS:
+                if (args.getCount() < 2) {
+                    outWrite(ProtocolMessages.METRICS + MAL);
+                    break;
+                }
+                outWrite(srv.metrics(args.getString(1)));
                 break;
             default:
                 outWrite(command + ProtocolMessages.DELIMITER + ProtocolMessages.NOT_FOUND);
                 break;
         }
+        metrics.command(command, System.nanoTime() - start);
 
     }
 
     private void log(String s) {
-        System.out.println("> [" + name + "]" + "Logging: " + s);
-    }
-
-    private Integer makeNumber(String[] args, int i) {
-        if (argsCheck(args, i)) {
-            return null;
-        }
-        try {
-            return Integer.parseInt(args[i]);
-        } catch (NumberFormatException e) {
-            return null;
-        }
-
+        LOG.info("[{}] {}", name, s);
     }
 
     /**
-     * Check the args.
+     * Send message to client.
      * 
-     * @param args to check.
-     * @return
+     * @param s message to send.
      */
-    private boolean argsCheck(String[] args, int i) {
-        return args.length < i + 1 || args[i].isEmpty() || args[i].isBlank();
+    public void outWrite(String s) {
+        LOG.debug("[{}] Sending: {}", name, s);
+        if (binary) {
+            connection.sendBytes(BinaryProtocol.encode(s));
+        } else {
+            connection.sendBytes(ResponseBuilder.toLine(s));
+        }
     }
 
     /**
-     * Send message to client.
+     * Send a message to client that is encoded already, for messages that are
+     * sent to several clients.
      * 
-     * @param s message to send.
+     * @param line  the message as line (see ResponseBuilder).
+     * @param frame the same message as frame.
      */
-    public void outWrite(String s) {
-        System.out.println("> [" + name + "]" + "Sending: " + s + ProtocolMessages.DELIMITER);
-        try {
-            out.append(s + ProtocolMessages.DELIMITER);
-            out.newLine();
-            out.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+    public void outWrite(byte[] line, byte[] frame) {
+        if (LOG.isEnabled(Level.DEBUG)) {
+            LOG.debug("[{}] Sending: {}", name, new String(line, StandardCharsets.UTF_8).strip());
         }
+        connection.sendBytes(binary ? frame : line);
+    }
 
+    /**
+     * Shut down the connection to this client.
+     */
+    public void shutdown() {
+        connection.close();
     }
 
     /**
-     * Shut down the connection to this client by closing the socket and the In- and
-     * OutputStreams.
+     * Called by the connection when it has been closed.
      */
-    private void shutdown() {
-        System.out.println("> [" + name + "] Shutting down.");
-        try {
-            in.close();
-            out.close();
-            sock.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    void disconnected() {
+        LOG.info("[{}] Shutting down.", name);
         // also remove from the lobby that they are in and forfeit their game
         srv.leaveLobby(user); // make user leave its lobby
         srv.removeClient(this);
@@ -4,18 +4,64 @@ import abalone.Move;
 import exceptions.ExitProgram;
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.ArrayList;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import logging.Logger;
+import logging.Logging;
 import protocol.ProtocolMessages;
 import protocol.ServerProtocol;
+import store.GameReader;
+import store.GameRecord;
+import store.GameStore;
 
 /**
  * Server TUI for Networked Abalone Application. Intended Functionality:
  * interactively set up & monitor a new server
  * 
+ * <p>
+ * By default all clients are served by one thread with non-blocking IO (see
+ * NioServer). Started with the argument "blocking" every client gets a thread
+ * of its own that blocks on reading its socket (see SocketConnection).
+ * 
+ * <p>
+ * The commands of different clients run at the same time. Users and lobbies
+ * are found by name, and the lobby of a user by the user, in concurrent maps.
+ * The state of a lobby and its game is guarded by the lobby itself (see
+ * Lobby). The commands of one client are handled one at a time, in the order
+ * they were sent. Users are removed when their client disconnects and lobbies
+ * when their last user leaves.
+ * 
+ * <p>
+ * The ServerMetrics of the server are sent to an admin that sends METRICS with
+ * the secret of the system property abalone.admin, and written to the file of
+ * the system property abalone.metrics every abalone.metrics.interval seconds
+ * (10 by default) if it is set.
+ * 
+ * <p>
+ * The games are kept in a GameStore in the directory of the system property
+ * abalone.games (games by default, off to not keep them), forced to disk every
+ * abalone.games.sync milliseconds (100 by default). The running games are
+ * saved every abalone.games.checkpoint milliseconds (5000 by default). When the
+ * server starts, the games that were running when it stopped are recovered
+ * from the store into their lobbies, a player that connects again with the same
+ * name is put back in its game. The players have abalone.games.resume
+ * milliseconds (10 minutes by default) to come back, a recovered game that none
+ * of its players came back to is then ended and its lobby removed.
+ * 
  * @author Wim Kamerman & Berke Guducu
  */
 public class AbaloneServer implements Runnable, ServerProtocol {
@@ -26,56 +72,127 @@ public class AbaloneServer implements Runnable, ServerProtocol {
 
     private static final String SUC = DELI + ProtocolMessages.SUCCESS;
 
-    /** The ServerSocket of this HotelServer. */
-    private ServerSocket ssock;
-
-    /** List of HotelClientHandlers, one for each connected client. */
-    private List<AbaloneClientHandler> clients;
+    /** System properties of the secret for METRICS and of the file the metrics are written to. */
+    private static final String ADMIN_PROPERTY = "abalone.admin";
+    private static final String METRICS_PROPERTY = "abalone.metrics";
+    private static final String INTERVAL_PROPERTY = "abalone.metrics.interval";
+    private static final long DEFAULT_INTERVAL = 10;
+    private static final String GAMES_PROPERTY = "abalone.games";
+    private static final String SYNC_PROPERTY = "abalone.games.sync";
+    private static final String DEFAULT_GAMES = "games";
+    private static final String NO_GAMES = "off";
+    private static final long DEFAULT_SYNC = 100;
+    private static final String CHECKPOINT_PROPERTY = "abalone.games.checkpoint";
+    private static final long DEFAULT_CHECKPOINT = 5000;
+    private static final String RESUME_PROPERTY = "abalone.games.resume";
+    private static final long DEFAULT_RESUME = 600000;
+    private static final Logger LOG = Logging.getLogger("server");
+
+    /** Connections waiting to be accepted, more are refused by the system. */
+    private static final int ACCEPT_BACKLOG = 1024;
+
+    /** The ServerSocketChannel of this HotelServer. */
+    private ServerSocketChannel ssock;
+
+    /** True to serve all clients with non-blocking IO on one thread. */
+    private boolean nonBlocking;
+
+    /** Set of HotelClientHandlers, one for each connected client. */
+    private Set<AbaloneClientHandler> clients;
 
     /** Next client number, increasing for every new connection. */
-    private int nextClientNo;
+    private AtomicInteger nextClientNo;
 
     /** The view of this HotelServer. */
     private AbaloneServerTUI view;
 
-    private List<Lobby> lobbies;
+    /** Counters of the lines queued for the clients. */
+    private OutboundStats outbound;
+
+    /** Counters and timings of the commands, moves and lobbies. */
+    private ServerMetrics metrics;
+
+    /** The log of the games, null if they are not kept. */
+    private GameStore store;
+
+    /** The lobby of every player of a recovered game that has not connected yet. */
+    private Map<String, Lobby> resumable;
+
+    /** The lobbies in this server by name. */
+    private Map<String, Lobby> lobbies;
+
+    /** The users in this server by name. */
+    private Map<String, User> users;
 
-    /** The users in this server. */
-    private List<User> users;
+    /** The lobby of every user that is in one. */
+    private Map<User, Lobby> userLobbies;
 
     /**
      * Constructs a new AbaloneServer. Initializes the clients list, the view, the
      * next_client_no and users.
+     * 
+     * @param nonBlocking true to serve the clients with non-blocking IO, false
+     *                    for a thread per client.
      */
-    public AbaloneServer() {
-        clients = new ArrayList<>();
+    public AbaloneServer(boolean nonBlocking) {
+        this.nonBlocking = nonBlocking;
+        clients = ConcurrentHashMap.newKeySet();
         view = new AbaloneServerTUI();
-        lobbies = new ArrayList<Lobby>();
-        users = new ArrayList<User>();
-        nextClientNo = 1;
+        lobbies = new ConcurrentHashMap<>();
+        users = new ConcurrentHashMap<>();
+        userLobbies = new ConcurrentHashMap<>();
+        resumable = new ConcurrentHashMap<>();
+        outbound = new OutboundStats();
+        nextClientNo = new AtomicInteger(1);
+        metrics = new ServerMetrics();
+        metrics.gauge("clients", clients::size);
+        metrics.gauge("users", users::size);
+        metrics.gauge("lobbies", lobbies::size);
+        metrics.gauge("outbound.queued", outbound::getQueued);
+        metrics.gauge("outbound.max_depth", outbound::getMaxDepth);
+        metrics.gauge("outbound.sent", outbound::getSent);
+        metrics.gauge("outbound.slow_consumers", outbound::getSlowConsumers);
+    }
+
+    /**
+     * Constructs a new AbaloneServer with non-blocking IO.
+     */
+    public AbaloneServer() {
+        this(true);
     }
 
     /**
      * Opens a new socket by calling {@link #setup()} and starts a new
-     * AbaloneClientHandler for every connecting client.<br>
+     * AbaloneClientHandler for every connecting client, on the NioServer or with
+     * a thread per client.<br>
      * . If {@link #setup()} throws a ExitProgram exception, stop the program. In
      * case of any other errors, ask the user whether the setup should be ran again
      * to open a new socket.
      */
     public void run() {
+        String metricsFile = System.getProperty(METRICS_PROPERTY);
+        if (metricsFile != null) {
+            metrics.dumpTo(Paths.get(metricsFile), Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL));
+        }
+        openStore();
         boolean openNewSocket = true;
         while (openNewSocket) {
             try {
                 // Sets up the abalone application
                 setup();
 
-                while (true) {
-                    Socket sock = ssock.accept();
-                    String name = "Client " + String.format("%02d", nextClientNo++);
-                    view.showMessage("New client [" + name + "] connected!");
-                    AbaloneClientHandler handler = new AbaloneClientHandler(sock, this, name);
-                    new Thread(handler).start();
-                    clients.add(handler);
+                if (nonBlocking) {
+                    new NioServer(this, ssock).serve(); // returns when stopped
+                    openNewSocket = false;
+                } else {
+                    // a writer is only blocked by a client that doesn't read, until it is disconnected
+                    ExecutorService writers = Executors.newCachedThreadPool();
+                    while (true) {
+                        SocketChannel channel = ssock.accept();
+                        SocketConnection connection = new SocketConnection(channel.socket(), writers, outbound);
+                        connection.setHandler(addClient(connection));
+                        new Thread(connection).start();
+                    }
                 }
 
             } catch (ExitProgram e1) {
@@ -111,7 +228,14 @@ public class AbaloneServer implements Runnable, ServerProtocol {
             // try to open a new ServerSocket
             try {
                 view.showMessage("Attempting to open a socket at 127.0.0.1 " + "on port " + port + "...");
-                ssock = new ServerSocket(port, 0, InetAddress.getByName("127.0.0.1"));
+                ServerSocketChannel channel = ServerSocketChannel.open();
+                try {
+                    channel.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), ACCEPT_BACKLOG);
+                } catch (IOException | IllegalArgumentException e) {
+                    channel.close();
+                    throw e;
+                }
+                ssock = channel;
                 view.showMessage("Server started at port " + port);
             } catch (IOException | IllegalArgumentException e) {
                 view.showMessage("ERROR: could not create a socket on " + "127.0.0.1" + " and port " + port + ".");
@@ -126,29 +250,162 @@ public class AbaloneServer implements Runnable, ServerProtocol {
     }
 
     /**
-     * Removes a clientHandler from the client list.Also removes the user from its
-     * lobby.
+     * Open the GameStore of the system property abalone.games and recover the
+     * games that were running in it, the server goes on without keeping the
+     * games if it can't be opened. It is closed when the program stops, so the
+     * last moves are written.
+     */
+    private void openStore() {
+        String directory = System.getProperty(GAMES_PROPERTY, DEFAULT_GAMES);
+        if (directory.equals(NO_GAMES)) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<GameRecord> running;
+        try {
+            running = GameReader.recover(Paths.get(directory)); // before the store starts a new file
+            store = new GameStore(Paths.get(directory), Long.getLong(SYNC_PROPERTY, DEFAULT_SYNC),
+                    Long.getLong(CHECKPOINT_PROPERTY, DEFAULT_CHECKPOINT));
+        } catch (IOException e) {
+            LOG.error("Could not open the game store in " + directory + ", the games are not kept", e);
+            return;
+        }
+        int resumed = 0;
+        for (GameRecord record : running) {
+            if (resumeLobby(record)) {
+                resumed++;
+            }
+        }
+        long micros = (System.nanoTime() - start) / 1000;
+        LOG.info("Recovered {} running games in {} ms", resumed, micros / 1000.0);
+        if (resumed > 0) {
+            expireResumed(Long.getLong(RESUME_PROPERTY, DEFAULT_RESUME));
+        }
+        GameStore opened = store;
+        Runtime.getRuntime().addShutdownHook(new Thread(opened::close, "game-store-close"));
+        metrics.gauge("store.bytes", opened::getAppended);
+        metrics.gauge("store.syncs", opened::getSyncs);
+        metrics.gauge("store.failed_bytes", opened::getFailedBytes);
+        final int resumedGames = resumed;
+        metrics.gauge("store.resumed_games", () -> resumedGames);
+        metrics.gauge("store.recovery_us", () -> micros);
+    }
+
+    /**
+     * Create the lobby of a game that was running when the server stopped, with
+     * the game at the position of its last move. Its players are put back in it
+     * when they connect.
+     * 
+     * @param record the game as it was recovered.
+     * @return true if the game is resumed, false if it can't be replayed or has
+     *         already ended.
+     */
+    private boolean resumeLobby(GameRecord record) {
+        ServerGame game;
+        try {
+            game = record.replay();
+        } catch (IllegalStateException e) {
+            LOG.warn("Game {} can't be resumed: " + e.getMessage(), record.getId());
+            return false;
+        }
+        if (game.isOver()) { // the server stopped before the end was written
+            return false;
+        }
+        Lobby lobby = new Lobby(record.getLobby(), record.getPlayers().size(), metrics, store);
+        if (lobbies.putIfAbsent(record.getLobby(), lobby) != null) {
+            LOG.warn("Game {} can't be resumed: its lobby exists", record.getId());
+            return false;
+        }
+        lobby.resume(record.getId(), game, record.getPlayers());
+        store.resume(record, game);
+        for (String name : record.getPlayers()) {
+            resumable.put(name, lobby);
+        }
+        return true;
+    }
+
+    /**
+     * After a delay, forget the players of recovered games that have not
+     * connected again and end the games that none of their players came back
+     * to, so their lobbies and names are free and the store stops recovering
+     * them.
+     * 
+     * @param millis the time the players have to come back.
+     */
+    private void expireResumed(long millis) {
+        ScheduledExecutorService expirer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "resume-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        expirer.schedule(() -> {
+            for (String name : resumable.keySet()) {
+                Lobby lobby = resumable.remove(name);
+                if (lobby != null && lobby.expire()) {
+                    lobbies.remove(lobby.getName(), lobby);
+                    LOG.info("Resumed game in lobby {} ended, its players did not come back", lobby.getName());
+                }
+            }
+            expirer.shutdown();
+        }, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a handler for a new connection and adds it to the client list.
+     * 
+     * @param connection the connection of the client.
+     * @return the handler of the lines the client sends.
+     */
+    public AbaloneClientHandler addClient(Connection connection) {
+        String name = "Client " + String.format("%02d", nextClientNo.getAndIncrement());
+        view.showMessage("New client [" + name + "] connected!");
+        AbaloneClientHandler handler = new AbaloneClientHandler(connection, this, name);
+        clients.add(handler);
+        metrics.connected();
+        return handler;
+    }
+
+    /**
+     * Get the counters of the lines queued for the clients.
+     * 
+     * @return the counters of all connections.
+     */
+    public OutboundStats getOutboundStats() {
+        return outbound;
+    }
+
+    /**
+     * Get the counters and timings of this server.
+     * 
+     * @return the metrics.
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Removes a clientHandler from the client list and its user from the server,
+     * the user should have left its lobby.
      * 
      * @requires client != null
      */
     public void removeClient(AbaloneClientHandler client) {
         this.clients.remove(client);
+        User user = client.getUser();
+        if (user != null) {
+            users.remove(user.getName(), user); // only if the name is still this user's
+        }
     }
 
     // ------------------ Server Methods --------------------------
 
     @Override
     public String getHello(User user) { // add a user to the server
-        // can't have multiple names in the server
-        for (User u : users) {
-            // is name exists in the server or not a valid name
-            if (u.getName().equals(user.getName()) || !isValidName(u.getName())) {
-                return ProtocolMessages.CONNECT + UNAUTH;
-            }
+        // can't have multiple names in the server or a name that is not valid
+        if (!isValidName(user.getName()) || users.putIfAbsent(user.getName(), user) != null) {
+            return ProtocolMessages.CONNECT + UNAUTH;
         }
-        users.add(user);
         return ProtocolMessages.CONNECT + SUC;
-        // To be implemented
     }
 
     /**
@@ -163,23 +420,21 @@ public class AbaloneServer implements Runnable, ServerProtocol {
     }
 
     @Override
-    public synchronized String createLobby(String name, int size) {
-        for (Lobby l : lobbies) {
-            if (l.getName().equals(name)) { // lobby with name already exists
-                return ProtocolMessages.CREATE_LOBBY + UNAUTH;
-            }
+    public String createLobby(String name, int size) {
+        Lobby lobby = new Lobby(name, size, metrics, store);
+        if (lobbies.putIfAbsent(name, lobby) != null) { // lobby with name already exists
+            return ProtocolMessages.CREATE_LOBBY + UNAUTH;
         }
-        lobbies.add(new Lobby(name, size));
         return ProtocolMessages.CREATE_LOBBY + SUC;
     }
 
     @Override
-    public synchronized String listLobby() {
+    public String listLobby() {
         String lobbyList = "";
-        for (Lobby lobby : lobbies) {
+        for (Lobby lobby : lobbies.values()) {
             String lobbyName = lobby.getName();
             int lobbyCapacity = lobby.getSize();
-            int numberOfUsers = lobby.getUsers().size();
+            int numberOfUsers = lobby.getUserCount();
             lobbyList += ProtocolMessages.DELIMITER + lobbyName + ProtocolMessages.SEPARATOR + lobbyCapacity
                     + ProtocolMessages.SEPARATOR + numberOfUsers;
         }
@@ -188,11 +443,8 @@ public class AbaloneServer implements Runnable, ServerProtocol {
     }
 
     @Override
-    public synchronized String joinLobby(String lobbyName, User user) {
-        Lobby joinLobby = null;
-        for (Lobby lobby : lobbies) {
-            joinLobby = lobby;
-        }
+    public String joinLobby(String lobbyName, User user) {
+        Lobby joinLobby = lobbies.get(lobbyName);
         if (joinLobby == null) { // lobby must exist
             return ProtocolMessages.JOIN_LOBBY + UNAUTH;
         }
@@ -200,19 +452,24 @@ public class AbaloneServer implements Runnable, ServerProtocol {
             return ProtocolMessages.JOIN_LOBBY + UNAUTH;
         }
         if (joinLobby.addUser(user)) { // add user to lobby
+            userLobbies.put(user, joinLobby);
             return ProtocolMessages.JOIN_LOBBY + SUC;
         }
         return ProtocolMessages.JOIN_LOBBY + UNAUTH;
     }
 
     @Override
-    public synchronized String leaveLobby(User user) {
+    public String leaveLobby(User user) {
         Lobby leaveLobby = getUserLobby(user);
         if (leaveLobby == null) { // if user not in a lobby
             return ProtocolMessages.LEAVE_LOBBY + UNAUTH;
         }
         if (leaveLobby.removeUser(user)) { // remove user from lobby
             // lobby sends change to other players when a user is removed
+            userLobbies.remove(user);
+            if (leaveLobby.getDeleted()) { // last user left, nobody can join anymore
+                lobbies.remove(leaveLobby.getName(), leaveLobby);
+            }
             return ProtocolMessages.LEAVE_LOBBY + SUC;
         }
         return ProtocolMessages.LEAVE_LOBBY + UNAUTH;
@@ -220,7 +477,7 @@ public class AbaloneServer implements Runnable, ServerProtocol {
     }
 
     @Override
-    public synchronized String readyLobby(User user) { // requires player to be in a lobby
+    public String readyLobby(User user) { // requires player to be in a lobby
         // get user's lobby'
         Lobby userLobby = getUserLobby(user);
         if (userLobby == null) { // user not found in a lobby
@@ -232,7 +489,7 @@ public class AbaloneServer implements Runnable, ServerProtocol {
     }
 
     @Override
-    public synchronized String unreadyLobby(User user) { // requires player to be in a lobby
+    public String unreadyLobby(User user) { // requires player to be in a lobby
         Lobby userLobby = getUserLobby(user);
         if (userLobby == null) {
             return ProtocolMessages.UNREADY_LOBBY + UNAUTH;
@@ -242,14 +499,12 @@ public class AbaloneServer implements Runnable, ServerProtocol {
     }
 
     @Override
-    public synchronized String move(Move move, User user) {
+    public String move(Move move, User user) {
         Lobby userLobby = getUserLobby(user);
         if (userLobby == null) {
             return ProtocolMessages.MOVE + UNAUTH;
         }
-        if (userLobby.makeMove(move, user)) {
-            userLobby.echoMove(move, user);
-            System.out.println(userLobby.getGame().getBoard().toString());
+        if (userLobby.move(move, user)) { // makes the move and sends it to the others
             return ProtocolMessages.MOVE + ProtocolMessages.DELIMITER + user.getName() + ProtocolMessages.DELIMITER
                     + move.protocolFormat(); // don't return suc. instead send user name and move.
         }
@@ -257,7 +512,7 @@ public class AbaloneServer implements Runnable, ServerProtocol {
     }
 
     @Override
-    public synchronized String forfeit(User user) {
+    public String forfeit(User user) {
         Lobby userLobby = getUserLobby(user);
         if (userLobby == null) {
             return ProtocolMessages.FORFEIT + UNAUTH;
@@ -277,7 +532,7 @@ public class AbaloneServer implements Runnable, ServerProtocol {
      * @param msg  msg to send.
      * @return
      */
-    public synchronized String lobbyMsg(User user, String msg) {
+    public String lobbyMsg(User user, String msg) {
         Lobby userLobby = getUserLobby(user);
         if (userLobby == null) {
             return ProtocolMessages.LOBBY_MSG + UNAUTH;
@@ -286,6 +541,38 @@ public class AbaloneServer implements Runnable, ServerProtocol {
         return ProtocolMessages.LOBBY_MSG + SUC;
     }
 
+    /**
+     * Get the report of the metrics for an admin.
+     * 
+     * @param secret the secret the admin sent.
+     * @return the report as arguments of METRICS, FORBIDDEN if the server has no
+     *         secret and UNAUTHORIZED if it is another secret.
+     */
+    public String metrics(String secret) {
+        String adminSecret = System.getProperty(ADMIN_PROPERTY);
+        if (adminSecret == null || adminSecret.isEmpty()) { // no admin, nobody can see the metrics
+            return ProtocolMessages.METRICS + DELI + ProtocolMessages.FORBIDDEN;
+        }
+        if (!MessageDigest.isEqual(adminSecret.getBytes(StandardCharsets.UTF_8), // takes as long for any secret
+                secret.getBytes(StandardCharsets.UTF_8))) {
+            return ProtocolMessages.METRICS + UNAUTH;
+        }
+        return ProtocolMessages.METRICS + SUC + DELI + String.join(DELI, metrics.getReport());
+    }
+
+    /**
+     * Put a user that connected in the game it played when the server stopped,
+     * if there is one. The game is sent to the user (see Lobby.rejoin).
+     * 
+     * @param user the user that connected.
+     */
+    public void resumeGame(User user) {
+        Lobby lobby = resumable.remove(user.getName());
+        if (lobby != null && lobby.rejoin(user)) {
+            userLobbies.put(user, lobby);
+        }
+    }
+
     // -------------------Private Methods-----------------
     /**
      * get the lobby of given user.
@@ -294,22 +581,21 @@ public class AbaloneServer implements Runnable, ServerProtocol {
      * @return
      */
     private Lobby getUserLobby(User user) {
-        Lobby userLobby = null;
-        for (Lobby lobby : lobbies) { // get all lobbies
-            for (User u : lobby.getUsers()) { // get players in lobbies
-                if (u.equals(user)) {
-                    userLobby = lobby;
-                }
-            }
+        if (user == null) { // not connected
+            return null;
         }
-        return userLobby;
+        return userLobbies.get(user);
     }
 
     // ------------------ Main --------------------------
 
-    /** Start a new AbaloneServer. */
+    /**
+     * Start a new AbaloneServer.
+     * 
+     * @param args "blocking" for a thread per client, nothing for non-blocking IO.
+     */
     public static void main(String[] args) {
-        AbaloneServer server = new AbaloneServer();
+        AbaloneServer server = new AbaloneServer(!(args.length > 0 && args[0].equals("blocking")));
         System.out.println("Welcome to the Abalone Server! Starting...");
         new Thread(server).start();
     }
@@ -0,0 +1,55 @@
+package server;
+
+/**
+ * A connection to one client, that carries lines of the text protocol or, after
+ * the client asked for it, frames of the BinaryProtocol. The lines and frames
+ * received are given to an AbaloneClientHandler, independent of how the
+ * connection reads and writes its socket. Lines and frames to send are queued
+ * and written by another thread, several at a time.
+ */
+public interface Connection {
+
+    /**
+     * Lines that may wait to be sent, a client that doesn't read fast enough to
+     * stay below this is disconnected.
+     */
+    public static final int MAX_QUEUED_LINES = 1024;
+
+    /**
+     * Get the number of lines waiting to be sent.
+     *
+     * @return the length of the queue.
+     */
+    public int getQueued();
+
+    /**
+     * Queue a line to be sent to the client. Does not wait for the line to be
+     * written and does nothing if the connection is closed. Closes the
+     * connection if the queue is full.
+     *
+     * @param line the line without line separator.
+     */
+    public void send(String line);
+
+    /**
+     * Queue bytes that are already encoded to be sent to the client, like send: a
+     * line with its line separator or a frame. The bytes are not changed, so the
+     * same bytes can be sent to several clients.
+     *
+     * @param bytes the line or frame.
+     */
+    public void sendBytes(byte[] bytes);
+
+    /**
+     * Read frames instead of lines from now on. Called by the handler before it
+     * answers the CONNECT that asked for frames, the client sends the first frame
+     * after that answer.
+     */
+    public void startFrames();
+
+    /**
+     * Close the connection, the handler is told that the client has left. Does
+     * nothing if the connection is already closed.
+     */
+    public void close();
+}
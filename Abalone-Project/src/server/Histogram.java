@@ -0,0 +1,117 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts values, like durations in nanoseconds, in buckets that grow with the
+ * value: every power of two is split in 8 buckets, so a percentile is at most
+ * 12.5% above the real value. Values are recorded by many threads at once
+ * without locking, a value costs two increments and no allocation.
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS; // the largest long in the last
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Get the bucket of a value, values below 8 have a bucket of their own.
+     *
+     * @param value the value, negative values count as 0.
+     * @return the index of the bucket.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return value < 0 ? 0 : (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) | sub;
+    }
+
+    /**
+     * Get the largest value in a bucket.
+     *
+     * @param bucket the index of the bucket.
+     * @return the largest value that is counted in the bucket.
+     */
+    static long highestOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BITS) - 1;
+        long lowest = (long) (SUB_BUCKETS | (bucket & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the average of the values.
+     *
+     * @return the sum / the count, 0 without values.
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) total.sum() / count;
+    }
+
+    /**
+     * Get the value that the given fraction of the values is at or below, as the
+     * largest value of its bucket.
+     *
+     * @requires fraction > 0 && fraction <= 1
+     * @param fraction the fraction, 0.99 for the 99th percentile.
+     * @return the percentile, at most the largest value, 0 without values.
+     */
+    public long getPercentile(double fraction) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(highestOf(i), getMax());
+            }
+        }
+        return 0;
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Count a value.
+     *
+     * @param value the value, negative values count as 0.
+     */
+    public void record(long value) {
+        counts.incrementAndGet(bucketOf(value));
+        total.add(Math.max(value, 0));
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+}
@@ -1,20 +1,31 @@
 package server;
 
+import abalone.BitBoard;
 import abalone.Colour;
-import abalone.HumanPlayer;
 import abalone.Move;
-import abalone.NetworkPlayer;
 import abalone.Player;
 import abalone.Team;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import logging.Level;
+import logging.Logger;
+import logging.Logging;
+import protocol.BinaryProtocol;
 import protocol.ProtocolMessages;
+import protocol.ResponseBuilder;
+import store.GameStore;
 
 /**
  * Lobby class to contain users before a game starts.
  * 
+ * <p>
+ * The users, the game and the messages to the users are guarded by the lock of
+ * the lobby, so commands of different lobbies run at the same time and the
+ * users of a lobby get its messages in the order of the changes. The games are
+ * written to the GameStore of the server, if it has one, in the same order.
+ * 
  * @invariant players.size() < size
  * @author Berke Guducu
  *
@@ -27,6 +38,11 @@ public class Lobby {
     private int size;
     private boolean deleted;
     private boolean gameActive;
+    private final ResponseBuilder moveBuilder = new ResponseBuilder(); // used under the lock
+    private final Logger log; // lobby.<name>, DEBUG dumps the board after every move
+    private final ServerMetrics metrics;
+    private final GameStore store; // null if the games are not kept
+    private long gameId; // of the game in the store
 
     /**
      * Initialize a lobby.
@@ -34,10 +50,15 @@ public class Lobby {
      * @requires size > 0 && size < 5
      * @param name name of the lobby.
      * @param size size of the lobby.
+     * @param metrics the metrics of the server, that count the moves and messages.
+     * @param store   the store of the games of the server, null to not keep them.
      */
-    public Lobby(String name, int size) {
+    public Lobby(String name, int size, ServerMetrics metrics, GameStore store) {
         this.name = name;
         this.size = size;
+        this.metrics = metrics;
+        this.store = store;
+        log = Logging.getLogger("lobby." + name);
         users = new ArrayList<>();
         deleted = false;
         gameActive = false;
@@ -49,8 +70,9 @@ public class Lobby {
      * @param user user to be added.
      * @return
      */
-    public boolean addUser(User user) {
-        if (users.size() < size) {
+    public synchronized boolean addUser(User user) {
+        // a deleted lobby is no longer in the server, the players of a resumed game come back with rejoin
+        if (!deleted && !gameActive && users.size() < size) {
             users.add(user);
             echoChange(user);
             return true;
@@ -64,7 +86,7 @@ public class Lobby {
      * @param user user to be removed.
      * @return
      */
-    public boolean removeUser(User user) {
+    public synchronized boolean removeUser(User user) {
         if (gameActive) { // if game is active while leaving forfeit user
             forfeitUser(user);
         }
@@ -86,7 +108,7 @@ public class Lobby {
      * @param user  user to set ready.
      * @param ready true to set ready.
      */
-    public void setReadyUser(User user, boolean ready) {
+    public synchronized void setReadyUser(User user, boolean ready) {
         user.setReady(ready);
         if (allReady()) { // start game if everyone is ready
             startGame();
@@ -97,7 +119,7 @@ public class Lobby {
         }
     }
 
-    public boolean getDeleted() {
+    public synchronized boolean getDeleted() {
         return deleted;
     }
 
@@ -107,36 +129,96 @@ public class Lobby {
      * @requires players.size() >= 2 && player.size <= 4
      * @return
      */
-    public boolean startGame() {
+    public synchronized boolean startGame() {
         if (users.size() != size) {
             return false;
         }
-        players = new ArrayList<>();
-        players.add(new NetworkPlayer(users.get(0).getName(), Colour.BLACK));
-        if (users.size() == 2) { // 2 player game
-            players.add(new HumanPlayer(users.get(1).getName(), Colour.WHITE));
-            game = new ServerGame(players.get(0), players.get(1));
-        } else if (users.size() == 3) { // 3 player game
-            players.add(new NetworkPlayer(users.get(1).getName(), Colour.WHITE));
-            players.add(new NetworkPlayer(users.get(2).getName(), Colour.GREEN));
-            game = new ServerGame(players.get(0), players.get(1), players.get(2));
-        } else if (users.size() == 4) { // 4 player game
-            players.add(new NetworkPlayer(users.get(1).getName(), Colour.GREEN));
-            players.add(new NetworkPlayer(users.get(2).getName(), Colour.WHITE));
-            players.add(new NetworkPlayer(users.get(3).getName(), Colour.RED));
-            game = new ServerGame(players.get(0), players.get(1), players.get(2), players.get(3));
+        List<String> names = new ArrayList<>();
+        for (User u : users) {
+            names.add(u.getName());
         }
+        players = ServerGame.createPlayers(names);
+        game = ServerGame.create(players);
         gameActive = true;
+        metrics.gameStarted();
+        if (store != null) {
+            gameId = store.start(name, names);
+        }
         echo(ProtocolMessages.GAME_START + listUsers());
         return true;
     }
 
+    /**
+     * Go on with a game that was running when the server stopped. Its players
+     * come back with rejoin, the others can't join until it has finished.
+     * 
+     * @param id      the id of the game in the store.
+     * @param resumed the game, at the position of its last move.
+     * @param names   the names of the players, in the order of
+     *                ServerGame.createPlayers.
+     */
+    public synchronized void resume(long id, ServerGame resumed, List<String> names) {
+        game = resumed;
+        players = new ArrayList<>();
+        for (String n : names) {
+            players.add(game.getPlayerByName(n));
+        }
+        gameId = id;
+        gameActive = true;
+        metrics.gameStarted();
+    }
+
+    /**
+     * Add a player of a resumed game that connects again and send it the game:
+     * GAME_RESUME with the number of moves made, the position (see
+     * BitBoard.serialize) and the names of the players.
+     * 
+     * @param user the user of the player.
+     * @return true if the user was added, false if the game has finished or the
+     *         user doesn't play in it.
+     */
+    public synchronized boolean rejoin(User user) {
+        if (deleted || !gameActive || game.getPlayerByName(user.getName()) == null || users.contains(user)) {
+            return false;
+        }
+        users.add(user);
+        echoChange(user);
+        String names = "";
+        for (Player p : players) {
+            names += ProtocolMessages.DELIMITER + p.getName();
+        }
+        user.getHandler().outWrite(ProtocolMessages.GAME_RESUME + ProtocolMessages.DELIMITER + game.getTurnCount()
+                + ProtocolMessages.DELIMITER + new BitBoard(game.getBoard()).serialize() + names);
+        return true;
+    }
+
+    /**
+     * End a resumed game that none of its players came back to: the lobby is
+     * deleted and the game is written to the store as a draw, so it isn't
+     * recovered again.
+     * 
+     * @return true if the game was ended, false if a player has come back or the
+     *         game has already finished.
+     */
+    public synchronized boolean expire() {
+        if (!users.isEmpty() || !gameActive) {
+            return false;
+        }
+        deleted = true;
+        gameActive = false;
+        metrics.gameFinished();
+        if (store != null) {
+            store.finish(gameId, new ArrayList<>());
+        }
+        return true;
+    }
+
     /**
      * Check if all players are ready.
      * 
      * @return
      */
-    public boolean allReady() {
+    public synchronized boolean allReady() {
         for (User u : users) {
             if (!u.getReady()) { // if there is a user that is not ready
                 return false;
@@ -151,7 +233,7 @@ public class Lobby {
      * @param user that is forfeiting.
      * @return
      */
-    public boolean forfeitUser(User user) {
+    public synchronized boolean forfeitUser(User user) {
         if (!gameActive) {
             return false;
         }
@@ -168,20 +250,44 @@ public class Lobby {
      * @param user user making the move.
      * @return
      */
-    public boolean makeMove(Move move, User user) {
+    public synchronized boolean makeMove(Move move, User user) {
         if (!gameActive) {
             return false;
         }
+        long start = System.nanoTime();
         boolean validMove = game.makeMove(move, getUserPlayer(user));
+        metrics.moveValidated(System.nanoTime() - start, validMove);
         if (!validMove) {
             return false;
         }
+        if (store != null) {
+            store.move(gameId, move);
+        }
         if (game.isOver()) {
             endGame();
         }
         return true;
     }
 
+    /**
+     * Given user makes a move that is sent to the other users if it is valid,
+     * the moves of a lobby are sent in the order they are made.
+     * 
+     * @param move the move to be made.
+     * @param user user making the move.
+     * @return true if the move was valid.
+     */
+    public synchronized boolean move(Move move, User user) {
+        if (!makeMove(move, user)) {
+            return false;
+        }
+        echoMove(move, user);
+        if (log.isEnabled(Level.DEBUG)) { // the board is only turned into text for a diagnosed lobby
+            log.debug("Move of {}, the board is now:\n{}", user.getName(), game.getBoard().toString());
+        }
+        return true;
+    }
+
     /**
      * Get the player corresponding to the user.
      * 
@@ -190,24 +296,30 @@ public class Lobby {
      * @return
      */
     private Player getUserPlayer(User user) {
-        return players.get(users.indexOf(user));
+        return game.getPlayerByName(user.getName()); // users of a resumed game are not in the order of the players
     }
 
     /**
      * End the game and echo the winners, no winners if draw.
      */
-    public void endGame() {
+    public synchronized void endGame() {
         Player[] winnerPlayers = game.getWinners(); 
         String result = "";
+        List<String> winners = new ArrayList<>();
         if (winnerPlayers == null) { // no winners
             result = ProtocolMessages.DELIMITER; // return no winner to indicate tie according to protocol
         } else {
             for (Player p : winnerPlayers) {
                 result += ProtocolMessages.DELIMITER;
                 result += p.getName();
+                winners.add(p.getName());
             }
         }
         gameActive = false;
+        metrics.gameFinished();
+        if (store != null) {
+            store.finish(gameId, winners);
+        }
         echo(ProtocolMessages.GAME_FINISH + result);
     }
 
@@ -216,7 +328,7 @@ public class Lobby {
      * 
      * @param loserUser the user who has lost.
      */
-    public void endGame(User loserUser) { //
+    public synchronized void endGame(User loserUser) { //
         Team loserTeam = game.getBoard().getTeam(getUserPlayer(loserUser).getColour()); 
         String result = "";
         ArrayList<Team> teams = game.getBoard().getOtherTeams(loserTeam);
@@ -231,18 +343,29 @@ public class Lobby {
             }
         }
         gameActive = false;
+        metrics.gameFinished();
+        if (store != null) {
+            List<String> winners = new ArrayList<>();
+            for (Player p : winnerPlayers) {
+                winners.add(p.getName());
+            }
+            store.finish(gameId, winners);
+        }
         echo(ProtocolMessages.GAME_FINISH + result);
     }
 
     /**
-     * Send a message to all the users.
+     * Send a message to all the users. The message is only queued for every user
+     * (see Connection), so a slow user doesn't hold up the others or the lobby.
      * 
      * @param message the message to be sent.
      */
-    public void echo(String message) {
+    public synchronized void echo(String message) {
+        long start = System.nanoTime();
         for (User u : users) {
             u.getHandler().outWrite(message);
         }
+        metrics.broadcast(users.size(), System.nanoTime() - start);
     }
 
     /**
@@ -250,12 +373,16 @@ public class Lobby {
      * 
      * @param user the user to send the message except.
      */
-    public void echoExcept(String message, User user) {
+    public synchronized void echoExcept(String message, User user) {
+        long start = System.nanoTime();
+        int recipients = 0;
         for (User u : users) {
             if (!u.equals(user)) {
                 u.getHandler().outWrite(message);
+                recipients++;
             }
         }
+        metrics.broadcast(recipients, System.nanoTime() - start);
     }
 
     /**
@@ -263,7 +390,7 @@ public class Lobby {
      * 
      * @return
      */
-    public int getReadyNumber() {
+    public synchronized int getReadyNumber() {
         int count = 0;
         for (User u : users) {
             if (u.getReady()) { // if there is a user that is not ready
@@ -279,23 +406,33 @@ public class Lobby {
      * @param move the move to be sent.
      * @param user the user that is making the move.
      */
-    public void echoMove(Move move, User user) {
-        echoExcept(ProtocolMessages.MOVE + ProtocolMessages.DELIMITER + user.getName() + ProtocolMessages.DELIMITER
-                + move.protocolFormat(), user);
+    public synchronized void echoMove(Move move, User user) {
+        long start = System.nanoTime();
+        // encoded once for all users
+        byte[] line = moveBuilder.command(ProtocolMessages.MOVE).arg(user.getName()).move(move).toLine();
+        byte[] frame = BinaryProtocol.encodeMove(user.getName(), move);
+        int recipients = 0;
+        for (User u : users) {
+            if (!u.equals(user)) {
+                u.getHandler().outWrite(line, frame);
+                recipients++;
+            }
+        }
+        metrics.broadcast(recipients, System.nanoTime() - start);
     }
 
     /**
      * Echo a change for everyone except the user Includes delimiter at the end.
      */
-    public void echoChange(User user) {
+    public synchronized void echoChange(User user) {
         echoExcept(ProtocolMessages.LOBBY_CHANGE + listUsers(), user);
     }
 
-    public void setGame(ServerGame game) {
+    public synchronized void setGame(ServerGame game) {
         this.game = game;
     }
 
-    public ServerGame getGame() {
+    public synchronized ServerGame getGame() {
         return game;
     }
 
@@ -307,11 +444,24 @@ public class Lobby {
         return size;
     }
 
-    public List<User> getUsers() {
-        return users;
+    /**
+     * Get the users in the lobby.
+     * 
+     * @return a copy of the list of users.
+     */
+    public synchronized List<User> getUsers() {
+        return new ArrayList<>(users);
+    }
+
+    public synchronized int getUserCount() {
+        return users.size();
+    }
+
+    public synchronized boolean hasUser(User user) {
+        return users.contains(user);
     }
 
-    public int getNumberOfPlayer() {
+    public synchronized int getNumberOfPlayer() {
         return players.size();
     }
 
@@ -320,7 +470,7 @@ public class Lobby {
      * 
      * @return the user list.
      */
-    public String listUsers() {
+    public synchronized String listUsers() {
         String result = "";
         for (User u : users) {
             result += ProtocolMessages.DELIMITER;
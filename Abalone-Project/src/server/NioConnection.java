@@ -0,0 +1,322 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import logging.Logger;
+import logging.Logging;
+
+/**
+ * Connection of the NioServer to one client. Reading and writing is done by
+ * the selector thread of the server, send only queues the line, so a slow
+ * client never blocks the thread that sends to it. The queued lines are
+ * written with one gathering write. Bytes are collected until a
+ * line separator, or until a frame is complete once the client has switched to
+ * frames. A client that sends a line or frame longer than MAX_LINE is
+ * disconnected.
+ * 
+ * <p>
+ * The received lines are handled by the workers of the server, one at a time
+ * and in order per connection, so the commands of different clients run in
+ * parallel.
+ */
+class NioConnection implements Connection {
+
+    static final int MAX_LINE = 8192; // bytes
+    private static final Logger LOG = Logging.getLogger("server.connection");
+
+    private final NioServer server;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger(); // size of the write queue
+    private final OutboundStats stats;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicBoolean writeRequested = new AtomicBoolean(); // server will call write()
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>(); // lines to handle
+    private final AtomicBoolean scheduled = new AtomicBoolean(); // a worker runs the tasks
+    private AbaloneClientHandler handler;
+
+    private byte[] line = new byte[64]; // the line or frame received so far
+    private int lineLength;
+    private volatile boolean frames; // reading frames instead of lines
+    private int frameLength = -1; // -1 while reading the length of a frame
+    private int lengthRead; // the bits of the length read so far
+    private int lengthShift;
+
+    /**
+     * Create a connection for a registered channel.
+     *
+     * @param server  the server that selects the channel.
+     * @param channel the non-blocking channel of the client.
+     * @param key     the key of the channel with the selector of the server.
+     * @param stats   the counters of the lines sent by the server.
+     */
+    NioConnection(NioServer server, SocketChannel channel, SelectionKey key, OutboundStats stats) {
+        this.server = server;
+        this.channel = channel;
+        this.key = key;
+        this.stats = stats;
+    }
+
+    @Override
+    public int getQueued() {
+        return queued.get();
+    }
+
+    void setHandler(AbaloneClientHandler handler) {
+        this.handler = handler;
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    @Override
+    public void send(String message) {
+        if (!closed.get()) {
+            queue(ByteBuffer.wrap((message + "\n").getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Override
+    public void sendBytes(byte[] bytes) {
+        if (!closed.get()) {
+            queue(ByteBuffer.wrap(bytes));
+        }
+    }
+
+    @Override
+    public void startFrames() {
+        frames = true;
+    }
+
+    /**
+     * Queue bytes to be written by the selector thread.
+     *
+     * @param bytes a line or a frame.
+     */
+    private void queue(ByteBuffer bytes) {
+        int depth = queued.incrementAndGet();
+        if (depth > MAX_QUEUED_LINES) { // slow consumer
+            queued.decrementAndGet();
+            stats.slowConsumer();
+            close();
+            return;
+        }
+        writeQueue.add(bytes);
+        stats.queued(depth);
+        if (closed.get()) { // closed while adding
+            dropQueue();
+            return;
+        }
+        if (writeRequested.compareAndSet(false, true)) {
+            server.requestWrite(this);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Closing a channel failed", e);
+        }
+        dropQueue();
+        execute(handler::disconnected); // after the lines received before
+    }
+
+    /**
+     * Read what the client has sent and give every complete line or frame to
+     * the handler. Only called by the selector thread.
+     *
+     * @param buffer buffer to read into, shared by all connections.
+     */
+    void read(ByteBuffer buffer) {
+        int read;
+        do {
+            buffer.clear();
+            try {
+                read = channel.read(buffer);
+            } catch (IOException e) {
+                read = -1;
+            }
+            if (read == -1) { // end of stream
+                close();
+                return;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining() && !closed.get()) {
+                if (frames) {
+                    readFrame(buffer);
+                    continue;
+                }
+                byte b = buffer.get();
+                if (b == '\n') {
+                    int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                    lineLength = 0;
+                    String received = new String(line, 0, length, StandardCharsets.UTF_8);
+                    execute(() -> handler.handleLine(received));
+                } else if (lineLength == MAX_LINE) {
+                    close();
+                } else {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, Math.min(line.length * 2, MAX_LINE));
+                    }
+                    line[lineLength++] = b;
+                }
+            }
+        } while (read == buffer.capacity() && !closed.get()); // there may be more
+    }
+
+    /**
+     * Read the next part of a frame (see BinaryProtocol) and give the frame to the
+     * handler when it is complete.
+     *
+     * @param buffer buffer with the bytes read.
+     */
+    private void readFrame(ByteBuffer buffer) {
+        if (frameLength < 0) { // the length, 7 bits per byte
+            byte b = buffer.get();
+            lengthRead |= (b & 0x7F) << lengthShift;
+            lengthShift += 7;
+            if ((b & 0x80) != 0) {
+                if (lengthShift > 28) {
+                    close();
+                }
+                return;
+            }
+            if (lengthRead < 0 || lengthRead > MAX_LINE) { // a fifth byte can set the sign bit
+                close();
+                return;
+            }
+            frameLength = lengthRead;
+            lengthRead = 0;
+            lengthShift = 0;
+            if (line.length < frameLength) {
+                line = new byte[frameLength];
+            }
+        } else {
+            int n = Math.min(buffer.remaining(), frameLength - lineLength);
+            buffer.get(line, lineLength, n);
+            lineLength += n;
+        }
+        if (lineLength == frameLength) {
+            byte[] payload = Arrays.copyOf(line, frameLength);
+            lineLength = 0;
+            frameLength = -1;
+            execute(() -> handler.handleFrame(payload));
+        }
+    }
+
+    /**
+     * Write the queued lines until the socket can't take more, as many at once as
+     * fit in the batch. Only called by the selector thread.
+     * 
+     * @param batch array to gather the lines in, shared by all connections.
+     */
+    void write(ByteBuffer[] batch) {
+        writeRequested.set(false); // lines queued from now on request a new write
+        if (closed.get()) {
+            return;
+        }
+        try {
+            while (true) {
+                int count = 0;
+                for (ByteBuffer next : writeQueue) {
+                    if (count == batch.length) {
+                        break;
+                    }
+                    batch[count++] = next;
+                }
+                if (count == 0) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+                channel.write(batch, 0, count);
+                int written = 0;
+                while (written < count && !batch[written].hasRemaining() && writeQueue.poll() != null) {
+                    written++;
+                }
+                Arrays.fill(batch, 0, count, null);
+                if (written > 0) {
+                    queued.addAndGet(-written);
+                    stats.flushed(written);
+                }
+                if (written < count) { // socket buffer full, wait until writable
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        } catch (IOException | CancelledKeyException e) {
+            close();
+        }
+    }
+
+    /**
+     * Remove the lines that will not be sent anymore.
+     */
+    private void dropQueue() {
+        int dropped = 0;
+        while (writeQueue.poll() != null) {
+            dropped++;
+        }
+        queued.addAndGet(-dropped);
+        stats.dropped(dropped);
+    }
+
+    /**
+     * Run a task on a worker of the server after the tasks that came before.
+     * 
+     * @param task the task to run.
+     */
+    private void execute(Runnable task) {
+        tasks.add(task);
+        schedule();
+    }
+
+    /**
+     * Let a worker run the tasks, unless one already does.
+     */
+    private void schedule() {
+        if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+            try {
+                server.getWorkers().execute(this::runTasks);
+            } catch (RejectedExecutionException e) { // the server has stopped
+                scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Run the tasks until there are none left.
+     */
+    private void runTasks() {
+        try {
+            Runnable task = tasks.poll();
+            while (task != null) {
+                task.run();
+                task = tasks.poll();
+            }
+        } finally {
+            scheduled.set(false);
+            schedule(); // a task may have been added after the last poll
+        }
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+}
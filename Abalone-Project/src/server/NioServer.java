@@ -0,0 +1,219 @@
+package server;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import logging.Logger;
+import logging.Logging;
+
+/**
+ * Non-blocking transport of the AbaloneServer. One selector thread accepts the
+ * clients and reads and writes all their sockets, so an idle client costs a
+ * few hundred bytes instead of a thread. Commands are handled by a pool of
+ * worker threads, one at a time per connection. The answers and the messages
+ * to other users are queued per connection (see NioConnection).
+ *
+ * <p>
+ * An error on one client only closes that client. When accepting fails, for
+ * example because the process has no file descriptors left, the server stops
+ * accepting for a moment and keeps serving the connected clients.
+ */
+public class NioServer {
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final int WRITE_BATCH = 64; // lines written at once
+    private static final long ACCEPT_BACKOFF = 100; // milliseconds without accepting after accept failed
+    private static final Logger LOG = Logging.getLogger("server.nio");
+
+    private final AbaloneServer srv;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final ByteBuffer[] writeBatch = new ByteBuffer[WRITE_BATCH];
+    private final Queue<NioConnection> writeRequests = new ConcurrentLinkedQueue<>();
+    private final ExecutorService workers;
+    private volatile boolean running;
+    private SelectionKey acceptKey;
+    private long acceptResume; // System.nanoTime() to accept again, 0 while accepting
+
+    /**
+     * Create a transport for a bound server channel.
+     *
+     * @param srv           the server that handles the commands.
+     * @param serverChannel the bound channel to accept clients on.
+     * @param workers       the number of threads that handle commands.
+     * @throws IOException if the selector can't be opened.
+     */
+    public NioServer(AbaloneServer srv, ServerSocketChannel serverChannel, int workers) throws IOException {
+        this.srv = srv;
+        this.serverChannel = serverChannel;
+        this.workers = Executors.newFixedThreadPool(workers);
+        selector = Selector.open();
+    }
+
+    /**
+     * Create a transport with a worker for every processor.
+     *
+     * @param srv           the server that handles the commands.
+     * @param serverChannel the bound channel to accept clients on.
+     * @throws IOException if the selector can't be opened.
+     */
+    public NioServer(AbaloneServer srv, ServerSocketChannel serverChannel) throws IOException {
+        this(srv, serverChannel, Runtime.getRuntime().availableProcessors());
+    }
+
+    ExecutorService getWorkers() {
+        return workers;
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Accept clients and handle their commands until stop() is called or the
+     * selector fails. All connections are closed afterwards.
+     *
+     * @throws IOException if the server channel fails.
+     */
+    public void serve() throws IOException {
+        running = true;
+        serverChannel.configureBlocking(false);
+        acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        try {
+            while (running) {
+                selector.select(acceptTimeout());
+                NioConnection requested = writeRequests.poll();
+                while (requested != null) { // lines queued by any thread
+                    requested.write(writeBatch);
+                    requested = writeRequests.poll();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    NioConnection connection = (NioConnection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.read(readBuffer);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write(writeBatch);
+                        }
+                    } catch (CancelledKeyException e) { // closed by a worker in the meantime
+                        connection.close();
+                    }
+                }
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof NioConnection) {
+                    ((NioConnection) key.attachment()).close();
+                }
+            }
+            selector.close();
+            workers.shutdown(); // after the handlers of the closed connections
+        }
+    }
+
+    /**
+     * Stop serving, the selector thread closes all connections.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Accept all waiting clients and give each a handler. A client that fails
+     * before it has a handler is closed. If accepting fails the server stops
+     * accepting for ACCEPT_BACKOFF milliseconds, the waiting clients stay in
+     * the backlog.
+     */
+    private void accept() {
+        SocketChannel channel = nextChannel();
+        while (channel != null) {
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true); // lines are sent right away
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                NioConnection connection = new NioConnection(this, channel, key, srv.getOutboundStats());
+                key.attach(connection);
+                connection.setHandler(srv.addClient(connection));
+            } catch (IOException e) { // the client is gone already
+                closeChannel(channel);
+            }
+            channel = nextChannel();
+        }
+    }
+
+    /**
+     * Accept the next waiting client.
+     *
+     * @return the channel of the client, null if no client is waiting or
+     *         accepting failed.
+     */
+    private SocketChannel nextChannel() {
+        try {
+            return serverChannel.accept();
+        } catch (IOException e) {
+            LOG.warn("Accepting a client failed, pausing accepts", e);
+            acceptKey.interestOps(0);
+            acceptResume = System.nanoTime() + ACCEPT_BACKOFF * 1000000;
+            return null;
+        }
+    }
+
+    /**
+     * Accept again if the pause after a failed accept is over.
+     *
+     * @return the milliseconds the selector may wait, 0 to wait until a key is
+     *         ready.
+     */
+    private long acceptTimeout() {
+        if (acceptResume == 0) {
+            return 0;
+        }
+        long wait = (acceptResume - System.nanoTime()) / 1000000;
+        if (wait > 0) {
+            return wait;
+        }
+        acceptResume = 0;
+        acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+        return 0;
+    }
+
+    private static void closeChannel(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Closing a channel failed", e);
+        }
+    }
+
+    /**
+     * Let the selector thread write the queued lines of a connection.
+     *
+     * @param connection connection with lines to write.
+     */
+    void requestWrite(NioConnection connection) {
+        writeRequests.add(connection);
+        selector.wakeup();
+    }
+}
@@ -0,0 +1,100 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the lines queued to be sent to the clients, shared by all
+ * connections of a server. A connection whose queue grows beyond
+ * Connection.MAX_QUEUED_LINES is a slow consumer and is disconnected.
+ */
+public class OutboundStats {
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder slowConsumers = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    // -- Queries ----------------------------------------------------
+
+    /**
+     * Get the number of lines waiting in the queues of all connections.
+     */
+    public long getQueued() {
+        return queued.sum();
+    }
+
+    /**
+     * Get the longest queue of a connection since the server started.
+     */
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    public long getSlowConsumers() {
+        return slowConsumers.sum();
+    }
+
+    /**
+     * Get the average number of lines written to a socket at once.
+     *
+     * @return sent lines / flushes, 0 if nothing was sent.
+     */
+    public double getLinesPerFlush() {
+        long f = getFlushes();
+        return f == 0 ? 0 : (double) getSent() / f;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("queued %d, max depth %d, sent %d, %.2f lines per flush, slow consumers %d",
+                getQueued(), getMaxDepth(), getSent(), getLinesPerFlush(), getSlowConsumers());
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Count a line that was queued.
+     *
+     * @param depth the length of the queue of the connection with this line.
+     */
+    void queued(int depth) {
+        queued.increment();
+        if (depth > maxDepth.get()) {
+            maxDepth.accumulateAndGet(depth, Math::max);
+        }
+    }
+
+    /**
+     * Count lines that were written to a socket with one flush.
+     *
+     * @param lines the number of lines.
+     */
+    void flushed(int lines) {
+        queued.add(-lines);
+        sent.add(lines);
+        flushes.increment();
+    }
+
+    /**
+     * Count lines that were removed from a queue without being sent.
+     *
+     * @param lines the number of lines.
+     */
+    void dropped(int lines) {
+        queued.add(-lines);
+    }
+
+    void slowConsumer() {
+        slowConsumers.increment();
+    }
+}
@@ -1,14 +1,20 @@
 package server;
 
+import abalone.BitBoard;
 import abalone.Board;
 import abalone.BoardFor2;
 import abalone.BoardFor3;
 import abalone.BoardFor4;
 import abalone.Colour;
+import abalone.HumanPlayer;
 import abalone.Move;
+import abalone.NetworkPlayer;
 import abalone.Player;
 import abalone.Team;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Server game class that is used in the server. Keeps track of the games. The
  * first player starts at the top according to the protocol.
@@ -82,6 +88,46 @@ public class ServerGame {
         turnCount = 0;
     }
 
+    /**
+     * Create the players of a game for the users of a lobby, with the colours
+     * they get in that order.
+     * 
+     * @requires names.size() >= 2 && names.size() <= 4
+     * @param names the names of the users, in the order they joined.
+     * @return the players, in the same order.
+     */
+    public static List<Player> createPlayers(List<String> names) {
+        List<Player> players = new ArrayList<>();
+        players.add(new NetworkPlayer(names.get(0), Colour.BLACK));
+        if (names.size() == 2) { // 2 player game
+            players.add(new HumanPlayer(names.get(1), Colour.WHITE));
+        } else if (names.size() == 3) { // 3 player game
+            players.add(new NetworkPlayer(names.get(1), Colour.WHITE));
+            players.add(new NetworkPlayer(names.get(2), Colour.GREEN));
+        } else if (names.size() == 4) { // 4 player game
+            players.add(new NetworkPlayer(names.get(1), Colour.GREEN));
+            players.add(new NetworkPlayer(names.get(2), Colour.WHITE));
+            players.add(new NetworkPlayer(names.get(3), Colour.RED));
+        }
+        return players;
+    }
+
+    /**
+     * Create a game for players made by createPlayers, the first player starts.
+     * 
+     * @requires players.size() >= 2 && players.size() <= 4
+     * @param players the players.
+     * @return the game with the marbles at the start.
+     */
+    public static ServerGame create(List<Player> players) {
+        if (players.size() == 2) {
+            return new ServerGame(players.get(0), players.get(1));
+        } else if (players.size() == 3) {
+            return new ServerGame(players.get(0), players.get(1), players.get(2));
+        }
+        return new ServerGame(players.get(0), players.get(1), players.get(2), players.get(3));
+    }
+
     public boolean isOver() {
         return board.hasWinner() || turnCount >= TURNLIMIT;
     }
@@ -107,6 +153,18 @@ public class ServerGame {
         return true;
     }
 
+    /**
+     * Continue the game from a position, for a game that was saved.
+     * 
+     * @requires position has the teams of this game
+     * @param position the marbles and scores.
+     * @param turns    the number of moves made before the position.
+     */
+    public void restore(BitBoard position, int turns) {
+        position.copyTo(board);
+        turnCount = turns;
+    }
+
     /**
      * Get the winners of this game.
      * 
@@ -206,6 +264,24 @@ public class ServerGame {
         return (getPlayerIndex(player) == getTurn());
     }
 
+    /**
+     * Get the player whose turn it is.
+     * 
+     * @return the player that makes the next move.
+     */
+    public Player getPlayerOnTurn() {
+        for (Player p : players) {
+            if (isPlayersTurn(p)) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    public int getTurnCount() {
+        return turnCount;
+    }
+
     public int getTurn() {
         return turnCount % players.length;
     }
@@ -0,0 +1,278 @@
+package server;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import logging.Logger;
+import logging.Logging;
+import protocol.ProtocolMessages;
+
+/**
+ * Counters, gauges and histograms of how the server performs: the time to
+ * handle every command, to validate a move and to send a message to the users
+ * of a lobby, the number of moves and games, and gauges like the connected
+ * clients that the server registers. Recording costs no locks and no
+ * allocation, the report is built when it is asked for, by the METRICS command
+ * or for the file that dumpTo writes.
+ *
+ * <p>
+ * The report is a list of entries name=value. Durations are in microseconds, a
+ * histogram is written as n:count,mean:m,p50:x,p99:y,max:z.
+ */
+public class ServerMetrics {
+
+    /** The commands that are timed separately, any other command counts as OTHER. */
+    private static final String[] COMMANDS = { ProtocolMessages.CONNECT, ProtocolMessages.CREATE_LOBBY,
+                                               ProtocolMessages.LIST_LOBBY, ProtocolMessages.JOIN_LOBBY,
+                                               ProtocolMessages.LEAVE_LOBBY, ProtocolMessages.READY_LOBBY,
+                                               ProtocolMessages.UNREADY_LOBBY, ProtocolMessages.MOVE,
+                                               ProtocolMessages.FORFEIT, ProtocolMessages.LOBBY_MSG,
+                                               ProtocolMessages.METRICS };
+    private static final String OTHER = "OTHER";
+    private static final double NANOS_PER_MICRO = 1000.0;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final Logger LOG = Logging.getLogger("server.metrics");
+
+    private final long started = System.nanoTime();
+    private final Map<String, Histogram> commands = new HashMap<>(); // only read after the constructor
+    private final Histogram validation = new Histogram();
+    private final Histogram broadcasts = new Histogram();
+    private final Histogram recipients = new Histogram();
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder validMoves = new LongAdder();
+    private final LongAdder invalidMoves = new LongAdder();
+    private final LongAdder gamesStarted = new LongAdder();
+    private final LongAdder gamesFinished = new LongAdder();
+    private final RateCounter moveRate = new RateCounter();
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>(); // guarded by this
+
+    /**
+     * Moves per second over the last minute. Every second has a slot with its
+     * count, a slot is cleared when it is used for a new second. A move counted
+     * just while its slot is cleared may be lost, the rate is an estimate.
+     */
+    private class RateCounter {
+        private static final int WINDOW = 60;
+        private final AtomicLongArray counts = new AtomicLongArray(WINDOW);
+        private final AtomicLongArray seconds = new AtomicLongArray(WINDOW); // 0 for a slot not used yet
+
+        void mark() {
+            long second = secondsSinceStart() + 1;
+            int slot = (int) (second % WINDOW);
+            long previous = seconds.get(slot);
+            if (previous != second && seconds.compareAndSet(slot, previous, second)) {
+                counts.set(slot, 0);
+            }
+            counts.incrementAndGet(slot);
+        }
+
+        /**
+         * Get the rate over the seconds of the window that are over, the current
+         * second is still counting.
+         */
+        double getRate() {
+            long second = secondsSinceStart() + 1;
+            long count = 0;
+            for (int slot = 0; slot < WINDOW; slot++) {
+                long slotSecond = seconds.get(slot);
+                if (slotSecond < second && slotSecond >= second - WINDOW) {
+                    count += counts.get(slot);
+                }
+            }
+            long over = Math.min(WINDOW, second - 1);
+            return over == 0 ? 0 : (double) count / over;
+        }
+    }
+
+    /**
+     * Create the metrics of a server, without gauges.
+     */
+    public ServerMetrics() {
+        for (String command : COMMANDS) {
+            commands.put(command, new Histogram());
+        }
+        commands.put(OTHER, new Histogram());
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    /**
+     * Get the histogram of the time to handle a command.
+     *
+     * @param command the command.
+     * @return the durations in nanoseconds, those of OTHER for a command that is
+     *         not timed separately.
+     */
+    public Histogram getCommand(String command) {
+        Histogram histogram = commands.get(command);
+        return histogram == null ? commands.get(OTHER) : histogram;
+    }
+
+    /**
+     * Get the histogram of the time to check and make a move, in ServerGame.
+     */
+    public Histogram getValidation() {
+        return validation;
+    }
+
+    public long getValidMoves() {
+        return validMoves.sum();
+    }
+
+    public long getInvalidMoves() {
+        return invalidMoves.sum();
+    }
+
+    /**
+     * Get the number of moves per second over the last minute.
+     */
+    public double getMoveRate() {
+        return moveRate.getRate();
+    }
+
+    /**
+     * Get the current values as entries name=value, the gauges are read now.
+     *
+     * @return the entries, in the same order every time.
+     */
+    public synchronized List<String> getReport() {
+        List<String> report = new ArrayList<>();
+        report.add("uptime=" + secondsSinceStart());
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            report.add(gauge.getKey() + "=" + gauge.getValue().getAsLong());
+        }
+        report.add("connections=" + connections.sum());
+        report.add("games.started=" + gamesStarted.sum());
+        report.add("games.active=" + (gamesStarted.sum() - gamesFinished.sum()));
+        report.add("moves.valid=" + getValidMoves());
+        report.add("moves.invalid=" + getInvalidMoves());
+        report.add(String.format("moves.per_second=%.1f", getMoveRate()));
+        report.add("move.validation.us=" + format(validation, NANOS_PER_MICRO));
+        report.add("broadcast.us=" + format(broadcasts, NANOS_PER_MICRO));
+        report.add("broadcast.recipients=" + format(recipients, 1));
+        for (String command : COMMANDS) {
+            addCommand(report, command);
+        }
+        addCommand(report, OTHER);
+        return report;
+    }
+
+    private void addCommand(List<String> report, String command) {
+        Histogram histogram = commands.get(command);
+        if (histogram.getCount() > 0) { // the report is a line, commands that weren't used are left out
+            report.add("command." + command + ".us=" + format(histogram, NANOS_PER_MICRO));
+        }
+    }
+
+    private static String format(Histogram histogram, double unit) {
+        return String.format("n:%d,mean:%.1f,p50:%.1f,p99:%.1f,max:%.1f", histogram.getCount(),
+                histogram.getMean() / unit, histogram.getPercentile(0.5) / unit,
+                histogram.getPercentile(0.99) / unit, histogram.getMax() / unit);
+    }
+
+    private long secondsSinceStart() {
+        return (System.nanoTime() - started) / NANOS_PER_SECOND;
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Add a gauge, a value that is read when the report is made.
+     *
+     * @param name  the name in the report.
+     * @param value gives the current value, may be called by any thread.
+     */
+    public synchronized void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Count the time to handle a command.
+     *
+     * @param command the command, as returned by the ProtocolTokenizer.
+     * @param nanos   the duration in nanoseconds.
+     */
+    public void command(String command, long nanos) {
+        getCommand(command).record(nanos);
+    }
+
+    /**
+     * Count a move that was checked and, if it was valid, made.
+     *
+     * @param nanos the duration of the check and the move in nanoseconds.
+     * @param valid true if the move was valid.
+     */
+    public void moveValidated(long nanos, boolean valid) {
+        validation.record(nanos);
+        if (valid) {
+            validMoves.increment();
+            moveRate.mark();
+        } else {
+            invalidMoves.increment();
+        }
+    }
+
+    /**
+     * Count a message that was sent to the users of a lobby.
+     *
+     * @param users the number of users it was sent to.
+     * @param nanos the time to queue it for all of them in nanoseconds.
+     */
+    public void broadcast(int users, long nanos) {
+        recipients.record(users);
+        broadcasts.record(nanos);
+    }
+
+    public void connected() {
+        connections.increment();
+    }
+
+    public void gameStarted() {
+        gamesStarted.increment();
+    }
+
+    public void gameFinished() {
+        gamesFinished.increment();
+    }
+
+    /**
+     * Write the report to a file every interval, one entry per line after the
+     * time. The file is replaced at once, a reader never sees half a report.
+     *
+     * @param file    the file.
+     * @param seconds the interval in seconds.
+     */
+    public void dumpTo(Path file, long seconds) {
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        dumper.scheduleAtFixedRate(() -> {
+            List<String> lines = new ArrayList<>();
+            lines.add("time=" + Instant.now());
+            lines.addAll(getReport());
+            try {
+                Files.write(temporary, lines);
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                LOG.warn("Could not write the metrics to " + file, e);
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+}
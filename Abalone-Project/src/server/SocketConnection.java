@@ -0,0 +1,220 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import logging.Logger;
+import logging.Logging;
+import protocol.BinaryProtocol;
+
+/**
+ * Connection that reads its socket with blocking IO on a thread of its own, the
+ * transport of the server before the non-blocking NioServer. The lines to send
+ * are queued and written by a thread of the writer pool, all lines in the
+ * queue with one flush, so a client that doesn't read only holds up a writer
+ * thread until its queue is full and it is disconnected. Lines and frames are
+ * queued as bytes, encoded by the thread that sends them.
+ */
+public class SocketConnection implements Connection, Runnable {
+
+    private static final Logger LOG = Logging.getLogger("server.connection");
+
+    private final Socket sock;
+    private final InputStream in;
+    private final OutputStream out;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Queue<byte[]> writeQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger(); // size of the write queue
+    private final AtomicBoolean writing = new AtomicBoolean(); // a writer drains the queue
+    private final Executor writers;
+    private final OutboundStats stats;
+    private AbaloneClientHandler handler;
+    private volatile boolean frames; // reading frames instead of lines
+
+    /**
+     * Open the In- and OutputStreams of a socket.
+     *
+     * @param sock    the client socket.
+     * @param writers the threads that write the queued lines.
+     * @param stats   the counters of the lines sent by the server.
+     * @throws IOException if the streams can't be opened.
+     */
+    public SocketConnection(Socket sock, Executor writers, OutboundStats stats) throws IOException {
+        this.sock = sock;
+        this.writers = writers;
+        this.stats = stats;
+        in = new BufferedInputStream(sock.getInputStream());
+        out = new BufferedOutputStream(sock.getOutputStream());
+    }
+
+    /**
+     * Set the handler of the received lines, before the connection is run.
+     *
+     * @param handler the handler of the client.
+     */
+    public void setHandler(AbaloneClientHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Continuously listens to client input and forwards every line or frame to
+     * the handler, until the client closes the connection.
+     */
+    @Override
+    public void run() {
+        try {
+            boolean open = true;
+            while (open) {
+                if (frames) {
+                    byte[] frame = BinaryProtocol.readFrame(in, NioConnection.MAX_LINE);
+                    open = frame != null;
+                    if (open) {
+                        handler.handleFrame(frame);
+                    }
+                } else {
+                    String msg = BinaryProtocol.readLine(in);
+                    open = msg != null;
+                    if (open) {
+                        handler.handleLine(msg);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // the client is gone, close below
+        }
+        close();
+    }
+
+    @Override
+    public int getQueued() {
+        return queued.get();
+    }
+
+    @Override
+    public void send(String line) {
+        if (!closed.get()) {
+            queue((line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void sendBytes(byte[] bytes) {
+        if (!closed.get()) {
+            queue(bytes);
+        }
+    }
+
+    @Override
+    public void startFrames() {
+        frames = true;
+    }
+
+    /**
+     * Queue bytes to be written by a writer.
+     *
+     * @param bytes a line or a frame.
+     */
+    private void queue(byte[] bytes) {
+        int depth = queued.incrementAndGet();
+        if (depth > MAX_QUEUED_LINES) { // slow consumer
+            queued.decrementAndGet();
+            stats.slowConsumer();
+            closeSocket(); // run() sees the closed socket and closes the connection
+            return;
+        }
+        writeQueue.add(bytes);
+        stats.queued(depth);
+        if (closed.get()) { // closed while adding
+            dropQueue();
+            return;
+        }
+        scheduleWrite();
+    }
+
+    /**
+     * Let a writer write the queue, unless one already does.
+     */
+    private void scheduleWrite() {
+        if (!writeQueue.isEmpty() && writing.compareAndSet(false, true)) {
+            try {
+                writers.execute(this::write);
+            } catch (RejectedExecutionException e) { // the server has stopped
+                writing.set(false);
+            }
+        }
+    }
+
+    /**
+     * Write the queued lines and frames and flush once, until the queue is empty.
+     */
+    private void write() {
+        int taken = 0;
+        try {
+            byte[] bytes = writeQueue.poll();
+            while (bytes != null) {
+                taken++;
+                out.write(bytes);
+                bytes = writeQueue.poll();
+            }
+            if (taken > 0) {
+                out.flush();
+                queued.addAndGet(-taken);
+                stats.flushed(taken);
+            }
+        } catch (IOException e) {
+            queued.addAndGet(-taken);
+            stats.dropped(taken);
+            closeSocket(); // run() sees the closed socket and closes the connection
+            dropQueue();
+        } finally {
+            writing.set(false);
+        }
+        if (!closed.get()) {
+            scheduleWrite(); // a line may have been added after the last poll
+        }
+    }
+
+    /**
+     * Remove the lines that will not be sent anymore.
+     */
+    private void dropQueue() {
+        int dropped = 0;
+        while (writeQueue.poll() != null) {
+            dropped++;
+        }
+        queued.addAndGet(-dropped);
+        stats.dropped(dropped);
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        closeSocket();
+        dropQueue();
+        handler.disconnected();
+    }
+
+    /**
+     * Close the socket, which also closes the In- and OutputStreams.
+     */
+    private void closeSocket() {
+        try {
+            sock.close();
+        } catch (IOException e) {
+            LOG.warn("Closing a socket failed", e);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The games that were running at a point in the log of a GameStore, each with
+ * its players, the position of its board (with the scores) and the number of
+ * moves made, so a server that restarts only reads the log after that point.
+ * The file is replaced at once and ends with a CRC32, a checkpoint that can't
+ * be read is ignored and the whole log is read instead.
+ */
+public class Checkpoint {
+
+    static final String FILE = "checkpoint.dat";
+
+    private static final int MAGIC = 0x41424331; // ABC1
+
+    private final int file;
+    private final long offset;
+    private final List<GameRecord> games;
+
+    /**
+     * Create a checkpoint.
+     *
+     * @param file   the number of the log file the checkpoint was made in.
+     * @param offset the end of the last record in that file that it includes.
+     * @param games  the running games, with the position they have at that
+     *               record and no moves.
+     */
+    public Checkpoint(int file, long offset, List<GameRecord> games) {
+        this.file = file;
+        this.offset = offset;
+        this.games = games;
+    }
+
+    /**
+     * Read the checkpoint of a store.
+     *
+     * @param directory the directory of the store.
+     * @return the checkpoint, null if there is none or it is damaged.
+     */
+    public static Checkpoint read(Path directory) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(directory.resolve(FILE));
+        } catch (IOException e) { // none yet
+            return null;
+        }
+        if (bytes.length < Integer.BYTES) {
+            return null;
+        }
+        int length = bytes.length - Integer.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        if ((int) crc.getValue() != ByteBuffer.wrap(bytes).getInt(length)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            int file = in.readInt();
+            long offset = in.readLong();
+            int count = in.readInt();
+            List<GameRecord> games = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                String lobby = in.readUTF();
+                long startMillis = in.readLong();
+                int playerCount = in.readInt();
+                List<String> players = new ArrayList<>(playerCount);
+                for (int p = 0; p < playerCount; p++) {
+                    players.add(in.readUTF());
+                }
+                String position = in.readUTF();
+                int turns = in.readInt();
+                games.add(new GameRecord(id, lobby, startMillis, players, position, turns));
+            }
+            return new Checkpoint(file, offset, games);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    public int getFile() {
+        return file;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public List<GameRecord> getGames() {
+        return games;
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Write this checkpoint to a store, replacing the one that was there once it
+     * is on disk.
+     *
+     * @param directory the directory of the store.
+     * @throws IOException if it can't be written, the old checkpoint stays.
+     */
+    public void write(Path directory) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(file);
+        out.writeLong(offset);
+        out.writeInt(games.size());
+        for (GameRecord game : games) {
+            out.writeLong(game.getId());
+            out.writeUTF(game.getLobby());
+            out.writeLong(game.getStartMillis());
+            out.writeInt(game.getPlayers().size());
+            for (String player : game.getPlayers()) {
+                out.writeUTF(player);
+            }
+            out.writeUTF(game.getPosition());
+            out.writeInt(game.getTurns());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+
+        Path temporary = directory.resolve(FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, directory.resolve(FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
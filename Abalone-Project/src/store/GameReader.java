@@ -0,0 +1,302 @@
+package store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import server.ServerGame;
+
+/**
+ * Reads the files of a GameStore into a GameRecord per game, in the order the
+ * games started. A file ends at its first record that is cut off or doesn't
+ * match its checksum, which is what a server that stopped while writing leaves
+ * behind. Moves and ends of games whose start is not in the files read are
+ * skipped. The games that were running when a server stopped are found with
+ * recover, from the Checkpoint and the records after it.
+ *
+ * <p>
+ * Run it with the directory of the store to list the games, or with the
+ * directory and the id of a game to replay it and print the board.
+ */
+public class GameReader {
+
+    private final Map<Long, GameRecord> games = new LinkedHashMap<>();
+    private final CRC32 crc = new CRC32();
+    private int damagedFiles;
+    private int lastFile;
+    private long lastOffset;
+
+    /**
+     * Read all games in a directory.
+     *
+     * @param directory the directory of the store.
+     * @return the games, in the order they started.
+     * @throws IOException if a file can't be read.
+     */
+    public static List<GameRecord> readAll(Path directory) throws IOException {
+        GameReader reader = new GameReader();
+        reader.read(directory, 0, 0);
+        return reader.getGames();
+    }
+
+    /**
+     * Find the games that had not finished when the server stopped: the games of
+     * the checkpoint, with the records after it, and the games that started
+     * after it. The whole log is read if there is no checkpoint.
+     *
+     * @param directory the directory of the store.
+     * @return the running games, those of the checkpoint start at its position.
+     * @throws IOException if a file can't be read.
+     */
+    public static List<GameRecord> recover(Path directory) throws IOException {
+        GameReader reader = new GameReader();
+        Checkpoint checkpoint = Checkpoint.read(directory);
+        if (checkpoint == null) {
+            reader.read(directory, 0, 0);
+        } else {
+            for (GameRecord game : checkpoint.getGames()) {
+                reader.addGame(game);
+            }
+            reader.read(directory, checkpoint.getFile(), checkpoint.getOffset());
+        }
+        List<GameRecord> running = new ArrayList<>();
+        for (GameRecord game : reader.games.values()) {
+            if (!game.isFinished()) {
+                running.add(game);
+            }
+        }
+        return running;
+    }
+
+    /**
+     * Get the numbers of the files of a store.
+     *
+     * @param directory the directory of the store.
+     * @return the numbers, from low to high, empty if the directory doesn't exist.
+     * @throws IOException if the directory can't be read.
+     */
+    static List<Integer> fileNumbers(Path directory) throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return numbers;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                GameStore.PREFIX + "*" + GameStore.SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    numbers.add(Integer.parseInt(name.substring(GameStore.PREFIX.length(),
+                            name.length() - GameStore.SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not a file of the store
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    /**
+     * Get the games read so far.
+     *
+     * @return the games, in the order they started.
+     */
+    public List<GameRecord> getGames() {
+        return new ArrayList<>(games.values());
+    }
+
+    /**
+     * Get a game that was read.
+     *
+     * @param id the id of the game.
+     * @return the game, null if its start was not read.
+     */
+    public GameRecord getGame(long id) {
+        return games.get(id);
+    }
+
+    /**
+     * Get the number of files that ended in a record that was cut off or damaged.
+     */
+    public int getDamagedFiles() {
+        return damagedFiles;
+    }
+
+    /**
+     * Get the number of the last file read, 0 if there was none.
+     */
+    public int getLastFile() {
+        return lastFile;
+    }
+
+    /**
+     * Get the end of the last complete record in the last file read.
+     */
+    public long getLastOffset() {
+        return lastOffset;
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Add a game that was read before, so the records of it in the files read
+     * next are added to it.
+     *
+     * @param game the game.
+     */
+    public void addGame(GameRecord game) {
+        games.put(game.getId(), game);
+    }
+
+    /**
+     * Read the files of a store, starting at a position in a file.
+     *
+     * @param directory  the directory of the store.
+     * @param fromFile   the number of the first file to read, earlier files are
+     *                   skipped.
+     * @param fromOffset the position in that file of the first record to read.
+     * @throws IOException if a file can't be read.
+     */
+    public void read(Path directory, int fromFile, long fromOffset) throws IOException {
+        for (int number : fileNumbers(directory)) {
+            if (number < fromFile) {
+                continue;
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(GameStore.fileOf(directory, number)));
+            if (number == fromFile) {
+                bytes.position((int) Math.min(fromOffset, bytes.limit()));
+            }
+            while (bytes.hasRemaining()) {
+                int start = bytes.position();
+                if (!readRecord(bytes)) {
+                    bytes.position(start);
+                    damagedFiles++;
+                    break;
+                }
+            }
+            lastFile = number;
+            lastOffset = bytes.position();
+        }
+    }
+
+    /**
+     * Read the next record and add it to its game.
+     *
+     * @param bytes the file, at the start of the record.
+     * @return false if the record is cut off or damaged.
+     */
+    private boolean readRecord(ByteBuffer bytes) {
+        long length = readVarLong(bytes);
+        if (length < 0 || length > bytes.remaining() - GameStore.CRC_BYTES) {
+            return false;
+        }
+        int start = bytes.position();
+        int end = start + (int) length;
+        crc.reset();
+        crc.update(bytes.array(), start, (int) length);
+        if ((int) crc.getValue() != bytes.getInt(end)) {
+            return false;
+        }
+        ByteBuffer payload = ByteBuffer.wrap(bytes.array(), start, (int) length);
+        bytes.position(end + GameStore.CRC_BYTES);
+        try {
+            int type = payload.get();
+            long id = readVarLong(payload);
+            GameRecord game = games.get(id);
+            if (type == GameStore.START) {
+                long millis = readVarLong(payload);
+                String lobby = readString(payload);
+                games.put(id, new GameRecord(id, lobby, millis, readNames(payload)));
+            } else if (type == GameStore.MOVE && game != null) {
+                game.addMove(((payload.get() & 0xFF) << 8) | (payload.get() & 0xFF));
+            } else if (type == GameStore.FINISH && game != null) {
+                game.setWinners(readNames(payload));
+            }
+        } catch (RuntimeException e) { // the checksum matches, but it is not a record of this version
+            return false;
+        }
+        return true;
+    }
+
+    private List<String> readNames(ByteBuffer payload) {
+        int count = (int) readVarLong(payload);
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(readString(payload));
+        }
+        return names;
+    }
+
+    private String readString(ByteBuffer payload) {
+        int length = (int) readVarLong(payload);
+        String s = new String(payload.array(), payload.position(), length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return s;
+    }
+
+    /**
+     * Read a varint.
+     *
+     * @return the value, -1 if it is cut off or too long.
+     */
+    private static long readVarLong(ByteBuffer bytes) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            if (!bytes.hasRemaining()) {
+                return -1;
+            }
+            byte b = bytes.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    // ------------------ Main --------------------------
+
+    /**
+     * List the games of a store or replay one.
+     *
+     * @param args the directory of the store and optionally the id of a game.
+     * @throws IOException if the store can't be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: GameReader <directory> [game id]");
+            return;
+        }
+        long start = System.nanoTime();
+        GameReader reader = new GameReader();
+        reader.read(Paths.get(args[0]), 0, 0);
+        if (args.length < 2) {
+            for (GameRecord game : reader.getGames()) {
+                System.out.println(game);
+            }
+            System.out.printf("%d games read in %.1f ms, %d damaged files%n", reader.getGames().size(),
+                    (System.nanoTime() - start) / 1e6, reader.getDamagedFiles());
+            return;
+        }
+        GameRecord game = reader.getGame(Long.parseLong(args[1]));
+        if (game == null) {
+            System.out.println("No game " + args[1]);
+            return;
+        }
+        System.out.println(game);
+        ServerGame replayed = game.replay();
+        System.out.println(replayed.getBoard());
+    }
+}
@@ -0,0 +1,212 @@
+package store;
+
+import abalone.BitBoard;
+import abalone.Move;
+import exceptions.PositionFormatException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import server.ServerGame;
+
+/**
+ * A game as it was read from the GameStore: who played it, in which lobby, the
+ * moves in the order they were made and the winners if it has ended. The moves
+ * are kept encoded (see BitBoard.fromMove). A game read from a checkpoint
+ * starts at the position of the checkpoint instead of the start position, the
+ * moves are those made after it.
+ */
+public class GameRecord {
+
+    private final long id;
+    private final String lobby;
+    private final long startMillis;
+    private final List<String> players;
+    private final String position; // BitBoard.serialize of the position the moves start from, null for the start
+    private final int turns; // moves made before that position
+    private int[] moves = new int[16];
+    private int moveCount;
+    private List<String> winners; // null while the game is not finished
+
+    /**
+     * Create the record of a game that has started.
+     *
+     * @param id          the id of the game in the store.
+     * @param lobby       the name of the lobby.
+     * @param startMillis the time the game started.
+     * @param players     the names of the players, in the order of
+     *                    ServerGame.createPlayers.
+     */
+    public GameRecord(long id, String lobby, long startMillis, List<String> players) {
+        this(id, lobby, startMillis, players, null, 0);
+    }
+
+    /**
+     * Create the record of a game at a position, as it was saved in a checkpoint.
+     *
+     * @param id          the id of the game in the store.
+     * @param lobby       the name of the lobby.
+     * @param startMillis the time the game started.
+     * @param players     the names of the players, in the order of
+     *                    ServerGame.createPlayers.
+     * @param position    the position, as BitBoard.serialize wrote it, null for
+     *                    the start position.
+     * @param turns       the number of moves made before the position.
+     */
+    public GameRecord(long id, String lobby, long startMillis, List<String> players, String position, int turns) {
+        this.id = id;
+        this.lobby = lobby;
+        this.startMillis = startMillis;
+        this.players = Collections.unmodifiableList(new ArrayList<>(players));
+        this.position = position;
+        this.turns = turns;
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    public long getId() {
+        return id;
+    }
+
+    public String getLobby() {
+        return lobby;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public List<String> getPlayers() {
+        return players;
+    }
+
+    /**
+     * Get the position the moves start from.
+     *
+     * @return the position as BitBoard.serialize wrote it, null for the start
+     *         position.
+     */
+    public String getPosition() {
+        return position;
+    }
+
+    /**
+     * Get the number of moves made before the position the moves start from.
+     */
+    public int getTurns() {
+        return turns;
+    }
+
+    /**
+     * Get the number of moves after the position the moves start from.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Get a move of the game.
+     *
+     * @requires index >= 0 && index < getMoveCount()
+     * @param index the number of the move, 0 is the first.
+     * @return the encoded move.
+     */
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Get the moves of the game.
+     *
+     * @return the moves, in the order they were made.
+     */
+    public List<Move> getMoves() {
+        List<Move> result = new ArrayList<>(moveCount);
+        for (int i = 0; i < moveCount; i++) {
+            result.add(BitBoard.toMove(moves[i]));
+        }
+        return result;
+    }
+
+    public boolean isFinished() {
+        return winners != null;
+    }
+
+    /**
+     * Get the winners of a finished game.
+     *
+     * @return the names of the winners, empty for a draw, null if the game has
+     *         not finished.
+     */
+    public List<String> getWinners() {
+        return winners;
+    }
+
+    /**
+     * Play the game again on a new board, from the position of the checkpoint if
+     * it was read from one. The moves are checked like they were on the server.
+     *
+     * @return the game after the moves of this record.
+     * @throws IllegalStateException if a move is not valid in its position or the
+     *                               position can't be read.
+     */
+    public ServerGame replay() {
+        return replay(moveCount);
+    }
+
+    /**
+     * Play the first moves of the game again on a new board.
+     *
+     * @requires count >= 0 && count <= getMoveCount()
+     * @param count the number of moves to make.
+     * @return the game after those moves.
+     * @throws IllegalStateException if a move is not valid in its position or the
+     *                               position can't be read.
+     */
+    public ServerGame replay(int count) {
+        ServerGame game = ServerGame.create(ServerGame.createPlayers(players));
+        if (position != null) {
+            try {
+                game.restore(BitBoard.parse(position), turns);
+            } catch (PositionFormatException e) {
+                throw new IllegalStateException("Position of game " + id + ": " + e.getMessage());
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (!game.makeMove(BitBoard.toMove(moves[i]), game.getPlayerOnTurn())) {
+                throw new IllegalStateException("Move " + (i + 1) + " of game " + id + " is not valid");
+            }
+        }
+        return game;
+    }
+
+    @Override
+    public String toString() {
+        String result = isFinished() ? "won by " + String.join(",", winners) : "not finished";
+        if (isFinished() && winners.isEmpty()) {
+            result = "draw";
+        }
+        return String.format("%d %s %s %d moves, %s", id, lobby, String.join(",", players), turns + moveCount,
+                result);
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Add the next move of the game.
+     *
+     * @param move the encoded move.
+     */
+    void addMove(int move) {
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, moveCount * 2);
+        }
+        moves[moveCount++] = move;
+    }
+
+    void setWinners(List<String> names) {
+        winners = Collections.unmodifiableList(new ArrayList<>(names));
+    }
+}
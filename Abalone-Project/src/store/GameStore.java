@@ -0,0 +1,494 @@
+package store;
+
+import abalone.BitBoard;
+import abalone.Move;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import logging.Logger;
+import logging.Logging;
+import server.ServerGame;
+
+/**
+ * Append-only log of the games of a server: a record when a game starts, one
+ * for every move and one when it ends, of all lobbies in one log. The records
+ * are kept in memory and written by a background thread, that forces them to
+ * disk at most every sync interval with one fsync for all records of that
+ * interval, so a move costs the lobby a copy of a few bytes and no IO.
+ *
+ * <p>
+ * The log is a series of files games-000001.log, games-000002.log, ... Every
+ * time the store is opened and every time a file is full a new file is started,
+ * the file number is also the high part of the ids of the games started in it.
+ * A record is the length of its payload (a varint, like BinaryProtocol), the
+ * payload and the CRC32 of the payload, so a record that was half written when
+ * the server stopped is recognized by the GameReader. The payload is the type
+ * of the record, the id of the game (a varint) and:
+ * <ul>
+ * <li>START: the time (varint milliseconds), the lobby and the number and
+ * names of the players, in the order of ServerGame.createPlayers.</li>
+ * <li>MOVE: the move, encoded like BitBoard.fromMove in two bytes.</li>
+ * <li>FINISH: the number and names of the winners.</li>
+ * </ul>
+ * Strings are their UTF-8 length (varint) and bytes.
+ *
+ * <p>
+ * The store follows the position of every running game on a BitBoard. Every
+ * checkpoint interval, if games have changed, the writer saves them in a
+ * Checkpoint with the end of the records it just wrote, so a server that
+ * restarts reads the checkpoint and only the records after it (see
+ * GameReader.recover).
+ */
+public class GameStore {
+
+    static final String PREFIX = "games-";
+    static final String SUFFIX = ".log";
+    static final int START = 1;
+    static final int MOVE = 2;
+    static final int FINISH = 3;
+    static final int GAME_BITS = 24; // games per file, the file number is above it
+    static final int CRC_BYTES = 4;
+
+    private static final long FILE_BYTES = 64L << 20;
+    private static final int WRITE_NOW_BYTES = 1 << 20; // write before the interval is over
+    private static final int MAX_PENDING_BYTES = 16 << 20; // appending waits for the writer above this
+    private static final int MAX_RECORD_BYTES = 1 << 16;
+    private static final Logger LOG = Logging.getLogger("store");
+
+    private final Path directory;
+    private final long syncMillis;
+    private final long checkpointMillis;
+    private final Thread writer;
+    private final CRC32 crc = new CRC32(); // guarded by this, like the fields below
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer writing = ByteBuffer.allocate(1 << 16); // only used by the writer
+    private final byte[] record = new byte[MAX_RECORD_BYTES];
+    private int fileNumber;
+    private int nextGame;
+    private long appended; // bytes appended since the store was opened
+    private long synced; // bytes of those that are on disk
+    private boolean flushing;
+    private boolean closed;
+    private long syncs;
+    private long failedBytes;
+    private FileChannel file; // only used by the writer, like the number of the file
+    private int writingNumber;
+    private final Map<Long, Running> running = new HashMap<>();
+    private boolean changed; // since the last checkpoint
+    private long nextCheckpoint;
+
+    /**
+     * A game that has not finished, at the position after its last record.
+     */
+    private static class Running {
+        private final GameRecord game;
+        private final BitBoard board;
+        private int turns;
+
+        Running(GameRecord game, BitBoard board, int turns) {
+            this.game = game;
+            this.board = board;
+            this.turns = turns;
+        }
+
+        GameRecord checkpoint() {
+            return new GameRecord(game.getId(), game.getLobby(), game.getStartMillis(), game.getPlayers(),
+                    board.serialize(), turns);
+        }
+    }
+
+    /**
+     * Open a store in a directory, created if it doesn't exist, and start its
+     * writer.
+     *
+     * @param directory        the directory of the files.
+     * @param syncMillis       the longest time a record waits to be forced to
+     *                         disk.
+     * @param checkpointMillis the time between checkpoints.
+     * @throws IOException if the directory or the new file can't be created.
+     */
+    public GameStore(Path directory, long syncMillis, long checkpointMillis) throws IOException {
+        this.directory = directory;
+        this.syncMillis = syncMillis;
+        this.checkpointMillis = checkpointMillis;
+        Files.createDirectories(directory);
+        int last = 0;
+        for (int number : GameReader.fileNumbers(directory)) {
+            last = Math.max(last, number);
+        }
+        fileNumber = last + 1;
+        writingNumber = fileNumber;
+        file = openFile(fileNumber);
+        nextCheckpoint = System.currentTimeMillis() + checkpointMillis;
+        writer = new Thread(this::write, "game-store");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Get the file with the given number in a directory.
+     *
+     * @param directory the directory of the store.
+     * @param number    the number of the file.
+     * @return the path of the file.
+     */
+    static Path fileOf(Path directory, int number) {
+        return directory.resolve(String.format("%s%06d%s", PREFIX, number, SUFFIX));
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Get the number of times records were forced to disk.
+     */
+    public synchronized long getSyncs() {
+        return syncs;
+    }
+
+    /**
+     * Get the number of bytes appended since the store was opened.
+     */
+    public synchronized long getAppended() {
+        return appended;
+    }
+
+    /**
+     * Get the number of bytes that could not be written.
+     */
+    public synchronized long getFailedBytes() {
+        return failedBytes;
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Append the start of a game.
+     *
+     * @param lobby   the name of the lobby.
+     * @param players the names of the players, in the order of
+     *                ServerGame.createPlayers.
+     * @return the id of the game, for the other records of the game.
+     */
+    public long start(String lobby, List<String> players) {
+        BitBoard board = new BitBoard(ServerGame.create(ServerGame.createPlayers(players)).getBoard());
+        long millis = System.currentTimeMillis();
+        synchronized (this) {
+            // a file is full long before its ids are used up, a start takes more than 4 bytes
+            long game = ((long) fileNumber << GAME_BITS) | nextGame++;
+            int length = header(START, game);
+            length = putVarLong(length, millis);
+            length = putString(length, lobby);
+            length = putNames(length, players);
+            append(length);
+            running.put(game, new Running(new GameRecord(game, lobby, millis, players), board, 0));
+            changed = true;
+            return game;
+        }
+    }
+
+    /**
+     * Go on with a game that was running when the server stopped, it was
+     * started in an earlier file and its next records are added to this one.
+     *
+     * @param record the game as it was recovered.
+     * @param game   the game at the position after the last move of the record.
+     */
+    public synchronized void resume(GameRecord record, ServerGame game) {
+        running.put(record.getId(), new Running(record, new BitBoard(game.getBoard()), game.getTurnCount()));
+        changed = true;
+    }
+
+    /**
+     * Append a valid move of a game.
+     *
+     * @param game the id of the game.
+     * @param move the move.
+     */
+    public synchronized void move(long game, Move move) {
+        int encoded = BitBoard.fromMove(move);
+        int length = header(MOVE, game);
+        record[length++] = (byte) (encoded >>> 8);
+        record[length++] = (byte) encoded;
+        append(length);
+        Running playing = running.get(game);
+        if (playing != null) {
+            playing.board.makeMove(encoded);
+            playing.turns++;
+            changed = true;
+        }
+    }
+
+    /**
+     * Append the end of a game.
+     *
+     * @param game    the id of the game.
+     * @param winners the names of the winners, empty for a draw.
+     */
+    public synchronized void finish(long game, List<String> winners) {
+        int length = header(FINISH, game);
+        length = putNames(length, winners);
+        append(length);
+        running.remove(game);
+        changed = true;
+    }
+
+    /**
+     * Wait until all records appended before are on disk.
+     */
+    public synchronized void flush() {
+        long target = appended;
+        flushing = true;
+        notifyAll();
+        boolean interrupted = false;
+        while (synced < target && writer.isAlive()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write and force the remaining records and stop the writer. Records appended
+     * after this are ignored.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int header(int type, long game) {
+        record[0] = (byte) type;
+        return putVarLong(1, game);
+    }
+
+    private int putNames(int length, List<String> names) {
+        length = putVarLong(length, names.size());
+        for (String name : names) {
+            length = putString(length, name);
+        }
+        return length;
+    }
+
+    private int putString(int length, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int fits = Math.min(bytes.length, record.length - length - 2 * Integer.BYTES); // longer than a line
+        length = putVarLong(length, fits);
+        System.arraycopy(bytes, 0, record, length, fits);
+        return length + fits;
+    }
+
+    private int putVarLong(int length, long value) {
+        while ((value & ~0x7FL) != 0) {
+            record[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        record[length++] = (byte) value;
+        return length;
+    }
+
+    /**
+     * Append the record that is in the record buffer to the pending records, with
+     * its length and checksum.
+     */
+    private void append(int length) {
+        if (closed) {
+            return;
+        }
+        while (pending.position() > MAX_PENDING_BYTES && !closed) { // the disk doesn't keep up
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int size = length + 2 * Integer.BYTES; // the varint length takes at most 3 bytes of it
+        if (pending.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + size));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        boolean wasEmpty = pending.position() == 0;
+        int start = pending.position();
+        for (int value = length; ; value >>>= 7) {
+            if ((value & ~0x7F) == 0) {
+                pending.put((byte) value);
+                break;
+            }
+            pending.put((byte) ((value & 0x7F) | 0x80));
+        }
+        pending.put(record, 0, length);
+        crc.reset();
+        crc.update(record, 0, length);
+        pending.putInt((int) crc.getValue());
+        appended += pending.position() - start;
+        if (wasEmpty || pending.position() >= WRITE_NOW_BYTES) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Loop of the writer: wait for records, give the lobbies the rest of the sync
+     * interval to add more, write them all and force them to disk at once.
+     */
+    private void write() {
+        boolean done = false;
+        while (!done) {
+            long end;
+            List<GameRecord> checkpoint = null;
+            synchronized (this) {
+                while (pending.position() == 0 && !closed && !flushing) {
+                    waitForRecords(0);
+                }
+                long deadline = System.currentTimeMillis() + syncMillis;
+                while (!closed && !flushing && pending.position() < WRITE_NOW_BYTES) {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) {
+                        break;
+                    }
+                    waitForRecords(left);
+                }
+                ByteBuffer batch = pending;
+                pending = writing;
+                writing = batch;
+                end = appended;
+                flushing = false;
+                done = closed;
+                long now = System.currentTimeMillis();
+                if (changed && (now >= nextCheckpoint || done)) { // the games after the records of this batch
+                    checkpoint = new ArrayList<>(running.size());
+                    for (Running playing : running.values()) {
+                        checkpoint.add(playing.checkpoint());
+                    }
+                    changed = false;
+                    nextCheckpoint = now + checkpointMillis;
+                }
+                notifyAll(); // appending may go on
+            }
+            writing.flip();
+            boolean empty = !writing.hasRemaining();
+            boolean written = writeBatch();
+            writing.clear();
+            if (checkpoint != null && (written || empty)) {
+                writeCheckpoint(checkpoint);
+            } else if (checkpoint != null) { // the games are ahead of the file, try again with the next batch
+                synchronized (this) {
+                    changed = true;
+                }
+            }
+            nextFileIfFull();
+            synchronized (this) {
+                synced = end;
+                if (written) {
+                    syncs++;
+                }
+                notifyAll();
+            }
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            LOG.warn("Could not close the game log", e);
+        }
+    }
+
+    private void waitForRecords(long millis) {
+        try {
+            wait(millis);
+        } catch (InterruptedException e) {
+            closed = true; // the writer is stopped, finish what is there
+        }
+    }
+
+    /**
+     * Write the records that are in the writing buffer and force them to disk. A
+     * batch that can't be written is lost, the server goes on without it.
+     *
+     * @return true if there was a batch and it was written.
+     */
+    private boolean writeBatch() {
+        int bytes = writing.remaining();
+        if (bytes == 0) {
+            return false;
+        }
+        try {
+            while (writing.hasRemaining()) {
+                file.write(writing);
+            }
+            file.force(false);
+            return true;
+        } catch (IOException e) {
+            synchronized (this) {
+                failedBytes += bytes;
+            }
+            LOG.error("Could not write " + bytes + " bytes of the game log", e);
+            return false;
+        }
+    }
+
+    /**
+     * Save the running games with the end of the file as the point to read on
+     * from. The old checkpoint stays if it can't be written.
+     *
+     * @param games the running games.
+     */
+    private void writeCheckpoint(List<GameRecord> games) {
+        try {
+            new Checkpoint(writingNumber, file.position(), games).write(directory);
+        } catch (IOException e) {
+            LOG.warn("Could not write the checkpoint of the game log", e);
+        }
+    }
+
+    /**
+     * Start a new file if this one is full.
+     */
+    private void nextFileIfFull() {
+        try {
+            if (file.size() < FILE_BYTES) {
+                return;
+            }
+            file.close();
+            synchronized (this) {
+                fileNumber++; // the games that start now get ids of the new file
+                nextGame = 0;
+                writingNumber = fileNumber;
+            }
+            file = openFile(writingNumber);
+        } catch (IOException e) {
+            LOG.error("Could not start a new file of the game log", e);
+        }
+    }
+
+    private FileChannel openFile(int number) throws IOException {
+        return FileChannel.open(fileOf(directory, number), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+}
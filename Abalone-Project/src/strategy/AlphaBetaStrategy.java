@@ -0,0 +1,619 @@
+package strategy;
+
+import abalone.BitBoard;
+import abalone.Board;
+import abalone.Colour;
+import abalone.Move;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A class implementation from Strategy that uses alpha-beta search with
+ * iterative deepening. Every iteration searches one level deeper until the time
+ * limit of the move is reached, the best move of the last finished iteration is
+ * returned. The moves are sorted by a MoveOrdering (pushing and ejecting moves,
+ * killer moves and the history table) so that more branches can be cut off,
+ * the best move from the transposition table is tried first. All other teams
+ * are assumed to play against this colour (a paranoid search, see
+ * MaxNStrategy for games where they don't). Positions that were already
+ * searched are looked up in a transposition table, which is kept between the
+ * moves of a game. The leaves are scored by an Evaluator, by default the
+ * marbles pushed off (see setEvaluator).
+ * 
+ * <p>
+ * After the depth of the iteration only pushing and ejecting moves are
+ * searched (a quiescence search, see setQuiescenceDepth), so a position is not
+ * scored in the middle of a push sequence. The colour to move may stop pushing
+ * and keep the score of the position. The pushes come from
+ * MoveGenerator.generatePushes, the moves do not have to be checked on a Board.
+ * 
+ * <p>
+ * With more than 1 thread (see setThreads) the moves of the root are divided
+ * over the threads, every thread searches on its own copy of the board and they
+ * share the transposition table. Without a table the same move is found as with
+ * 1 thread at the same depth.
+ *
+ */
+public class AlphaBetaStrategy extends BetterStrategy implements Strategy {
+
+    public static final long DEFAULT_TIME_LIMIT = 500; // milliseconds per move
+    public static final int DEFAULT_QUIESCENCE_DEPTH = 4; // pushes searched after the depth of an iteration
+    protected static final int MAX_DEPTH = 32;
+    protected static final int MAX_QUIESCENCE_DEPTH = 8;
+    protected static final int MAX_PLY = MAX_DEPTH + MAX_QUIESCENCE_DEPTH;
+    protected static final int WIN_SCORE = 10000;
+    protected static final int INFINITY = 100000;
+    private static final int CHECK_TIME_NODES = 1023; // check the clock every 1024 nodes
+
+    private String name = "AlphaBetaStrategy";
+    private long timeLimit;
+    private int maxDepth;
+    private int quiescenceDepth = DEFAULT_QUIESCENCE_DEPTH;
+
+    /** Search state, only valid during determineMove. */
+    private int rootTeam;
+    private long deadline;
+    private volatile boolean timeUp;
+    private long nodes;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private int reachedDepth;
+    private Searcher[] searchers; // one per thread, the first runs on the calling thread
+    private int[] rootMoves;
+    private int[] rootScores;
+    private TranspositionTable table;
+    private int tableTeam = -1; // the root team of the scores in the table
+    private Evaluator evaluator = new ScoreEvaluator();
+    private MoveOrdering ordering = new MoveOrdering();
+
+    /**
+     * Construct a new alpha-beta strategy.
+     *
+     * @requires timeLimit > 0 && maxDepth > 0
+     * @param timeLimit milliseconds that a move may take.
+     * @param maxDepth  the depth at which the search stops even if there is time
+     *                  left.
+     */
+    public AlphaBetaStrategy(long timeLimit, int maxDepth) {
+        this.timeLimit = timeLimit;
+        this.maxDepth = Math.min(maxDepth, MAX_DEPTH);
+        searchers = new Searcher[] { new Searcher() };
+        rootMoves = new int[MAX_MOVES];
+        rootScores = new int[MAX_MOVES];
+        table = new TranspositionTable();
+    }
+
+    /**
+     * Construct a new alpha-beta strategy with the given time limit.
+     *
+     * @param timeLimit milliseconds that a move may take.
+     */
+    public AlphaBetaStrategy(long timeLimit) {
+        this(timeLimit, MAX_DEPTH);
+    }
+
+    /**
+     * Construct a new alpha-beta strategy with a time limit of 500 ms.
+     */
+    public AlphaBetaStrategy() {
+        this(DEFAULT_TIME_LIMIT);
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    /**
+     * Returns the name of the strategy.
+     */
+    @Override
+    public String getName() {
+        return evaluator instanceof ScoreEvaluator ? name : name + "(" + evaluator.getName() + ")";
+    }
+
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    /**
+     * Get the number of nodes visited while determining the last move.
+     *
+     * @return the number of nodes.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the depth of the last finished iteration of the last move.
+     *
+     * @return the depth reached.
+     */
+    public int getReachedDepth() {
+        return reachedDepth;
+    }
+
+    /**
+     * Get the number of positions of the last move whose search was cut off
+     * before all moves were searched.
+     *
+     * @return the number of cutoffs.
+     */
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * Get the number of cutoffs of the last move that were made by the first
+     * move searched, a measure of how good the move ordering is.
+     *
+     * @return the number of cutoffs by the first move.
+     */
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    public MoveOrdering getMoveOrdering() {
+        return ordering;
+    }
+
+    public int getQuiescenceDepth() {
+        return quiescenceDepth;
+    }
+
+    /**
+     * Get the transposition table, to read the hit and miss counters.
+     *
+     * @return the table, null if no table is used.
+     */
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Set the transposition table to be used by the search.
+     *
+     * @param table the table, null to search without a table.
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+        tableTeam = -1;
+    }
+
+    /**
+     * Set the evaluator that scores the leaves of the search. Every search thread
+     * gets its own copy. The transposition table is cleared, its scores are of
+     * the old evaluator.
+     *
+     * @param evaluator the evaluator.
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+        for (Searcher searcher : searchers) {
+            searcher.evaluator = null; // copied again at the next search
+        }
+        if (table != null) {
+            table.clear();
+        }
+    }
+
+    /**
+     * Set the move ordering of the search. Every search thread gets its own
+     * copy.
+     *
+     * @param ordering the move ordering, null to search the moves in the order
+     *                 of the move generator.
+     */
+    public void setMoveOrdering(MoveOrdering ordering) {
+        this.ordering = ordering;
+        for (Searcher searcher : searchers) {
+            searcher.ordering = null; // copied again at the next search
+        }
+    }
+
+    /**
+     * Set the number of pushing and ejecting moves that are searched after the
+     * depth of an iteration. The transposition table is cleared, its scores are
+     * of the old depth.
+     *
+     * @requires depth >= 0
+     * @param depth the number of moves, 0 to score the positions at the depth of
+     *              the iteration, at most 8.
+     */
+    public void setQuiescenceDepth(int depth) {
+        this.quiescenceDepth = Math.min(depth, MAX_QUIESCENCE_DEPTH);
+        if (table != null) {
+            table.clear();
+        }
+    }
+
+    /**
+     * Determine the best move found within the time limit.
+     *
+     * @param board  the current game board.
+     * @param colour colour making the move.
+     * @return the best move, null if there are no valid moves.
+     */
+    @Override
+    public Move determineMove(Board board, Colour colour) {
+        BitBoard bitBoard = new BitBoard(board);
+        bitBoard.setSideToMove(colour);
+        int move = searchMove(bitBoard);
+        return move == BitBoard.NO_MOVE ? null : BitBoard.toMove(move);
+    }
+
+    /**
+     * Search the best move for the side to move with iterative deepening.
+     *
+     * @param board the board to search, the same after the search.
+     * @return the encoded move, NO_MOVE if there are no valid moves.
+     */
+    protected int searchMove(BitBoard board) {
+        deadline = System.nanoTime() + timeLimit * 1000000;
+        timeUp = false;
+        nodes = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        reachedDepth = 0;
+        rootTeam = board.getTeamIndex(board.getSideToMove());
+        if (table != null) {
+            if (tableTeam != rootTeam) { // scores are from the view of another team
+                table.clear();
+                tableTeam = rootTeam;
+            }
+            table.newSearch();
+        }
+        int count = getAllMoves(board, board.getSideToMove(), rootMoves);
+        if (count == 0) {
+            return BitBoard.NO_MOVE;
+        }
+        initSearchers(board);
+        if (ordering != null) { // not by the history of a searcher, it differs with the number of threads
+            ordering.order(rootMoves, count, 0, rootTeam);
+        }
+        int bestMove = rootMoves[0];
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            if (searchers.length == 1) {
+                searchers[0].searchRoot(count, depth, new AtomicInteger(), new AtomicInteger(-INFINITY));
+            } else {
+                searchRootParallel(count, depth);
+            }
+            if (timeUp) { // the unfinished iteration is not used
+                break;
+            }
+            int bestIndex = 0;
+            for (int i = 1; i < count; i++) { // the first move with the best score
+                if (rootScores[i] > rootScores[bestIndex]) {
+                    bestIndex = i;
+                }
+            }
+            bestMove = rootMoves[bestIndex];
+            reachedDepth = depth;
+            // search the best move first in the next iteration
+            moveToFront(rootMoves, count, bestMove);
+            if (rootScores[bestIndex] >= WIN_SCORE - MAX_PLY) { // found a win
+                break;
+            }
+        }
+        for (Searcher searcher : searchers) {
+            nodes += searcher.nodes;
+            cutoffs += searcher.cutoffs;
+            firstMoveCutoffs += searcher.firstMoveCutoffs;
+            searcher.board = null;
+        }
+        return bestMove;
+    }
+
+    /**
+     * Create a searcher for every thread, give the first one the board and the
+     * others a copy.
+     *
+     * @param board the board to search.
+     */
+    private void initSearchers(BitBoard board) {
+        if (searchers.length != getThreads()) {
+            searchers = new Searcher[getThreads()];
+            for (int i = 0; i < searchers.length; i++) {
+                searchers[i] = new Searcher();
+            }
+        }
+        for (int i = 0; i < searchers.length; i++) {
+            searchers[i].board = i == 0 ? board : board.deepCopy();
+            searchers[i].nodes = 0;
+            searchers[i].cutoffs = 0;
+            searchers[i].firstMoveCutoffs = 0;
+            if (searchers[i].evaluator == null) {
+                searchers[i].evaluator = evaluator.copy();
+            }
+            searchers[i].evaluator.reset(searchers[i].board);
+            if (ordering != null) {
+                if (searchers[i].ordering == null) {
+                    searchers[i].ordering = ordering.copy();
+                }
+                searchers[i].ordering.newSearch();
+            }
+        }
+    }
+
+    /**
+     * Search all root moves to a depth with every searcher in the pool. Each
+     * searcher takes the next move that has not been searched yet.
+     *
+     * @param count number of root moves.
+     * @param depth the depth to search the root to.
+     */
+    private void searchRootParallel(int count, int depth) {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger best = new AtomicInteger(-INFINITY);
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for (Searcher searcher : searchers) {
+            tasks.add(() -> {
+                searcher.searchRoot(count, depth, next, best);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> task : getPool().invokeAll(tasks)) {
+                task.get(); // throws the exception of a searcher
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            timeUp = true;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("search thread failed", e.getCause());
+        }
+    }
+
+    /**
+     * Make the score of a win relative to the position before it is stored, the
+     * same position can be found at another ply.
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_SCORE - MAX_PLY) {
+            return score + ply;
+        } else if (score <= -WIN_SCORE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * Make the score of a win from the table relative to the root again.
+     */
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_SCORE - MAX_PLY) {
+            return score - ply;
+        } else if (score <= -WIN_SCORE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Move a move to the front of the list, keeping the order of the others.
+     *
+     * @param list  the moves.
+     * @param count number of moves in the list.
+     * @param move  the move to be tried first.
+     */
+    protected static void moveToFront(int[] list, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (list[i] == move) {
+                System.arraycopy(list, 0, list, 1, i);
+                list[0] = move;
+                return;
+            }
+        }
+    }
+
+    /**
+     * The state of one search thread: a board to make the moves on, the
+     * evaluator that follows it, the move ordering and buffers for the moves of
+     * every ply.
+     */
+    private final class Searcher {
+        private BitBoard board;
+        private Evaluator evaluator;
+        private MoveOrdering ordering;
+        private final int[][] moves = new int[MAX_PLY + 1][MAX_MOVES]; // one buffer of moves per ply
+        private long nodes;
+        private long cutoffs;
+        private long firstMoveCutoffs;
+
+        private void makeMove(int move) {
+            board.makeMove(move);
+            evaluator.moveMade(board);
+        }
+
+        private void unmakeMove() {
+            board.unmakeMove();
+            evaluator.moveUnmade(board);
+        }
+
+        /**
+         * Search root moves until all of them are taken. The root is searched
+         * with a window just below the best score so far, so the first move with
+         * the best score gets an exact score, whichever thread searched it.
+         *
+         * @param count number of root moves.
+         * @param depth the depth to search the root to.
+         * @param next  index of the next root move to be searched.
+         * @param best  the best score found so far.
+         */
+        private void searchRoot(int count, int depth, AtomicInteger next, AtomicInteger best) {
+            for (int i = next.getAndIncrement(); i < count && !timeUp; i = next.getAndIncrement()) {
+                makeMove(rootMoves[i]);
+                int score = alphaBeta(depth - 1, best.get() - 1, INFINITY, 1);
+                unmakeMove();
+                rootScores[i] = score;
+                best.accumulateAndGet(score, Math::max);
+            }
+        }
+
+        /**
+         * Alpha-beta search of a position. The root team maximizes, all other teams
+         * minimize.
+         *
+         * @param depth the depth left to search.
+         * @param alpha the score the maximizer is already sure of.
+         * @param beta  the score the minimizer is already sure of.
+         * @param ply   the distance to the root.
+         * @return the score of the position.
+         */
+        private int alphaBeta(int depth, int alpha, int beta, int ply) {
+            if (depth == 0) {
+                return quiesce(alpha, beta, ply, quiescenceDepth);
+            }
+            if ((++nodes & CHECK_TIME_NODES) == 0 && System.nanoTime() >= deadline) {
+                timeUp = true;
+            }
+            if (timeUp) {
+                return 0;
+            }
+            int winner = board.getWinnerTeam();
+            if (winner != -1) { // prefer faster wins and slower losses
+                return winner == rootTeam ? WIN_SCORE - ply : -WIN_SCORE + ply;
+            }
+            int tableMove = BitBoard.NO_MOVE;
+            if (table != null) {
+                long entry = table.probe(board.getHash());
+                if (entry != TranspositionTable.NO_ENTRY) {
+                    tableMove = TranspositionTable.getMove(entry);
+                    if (TranspositionTable.getDepth(entry) >= depth) {
+                        int score = fromTable(TranspositionTable.getScore(entry), ply);
+                        int flag = TranspositionTable.getFlag(entry);
+                        if (flag == TranspositionTable.EXACT) {
+                            return score;
+                        } else if (flag == TranspositionTable.LOWER_BOUND) {
+                            alpha = Math.max(alpha, score);
+                        } else {
+                            beta = Math.min(beta, score);
+                        }
+                        if (alpha >= beta) {
+                            return score;
+                        }
+                    }
+                }
+            }
+            Colour colour = board.getSideToMove();
+            int[] list = moves[ply];
+            int count = getAllMoves(board, colour, list);
+            if (count == 0) {
+                return evaluator.evaluate(board, rootTeam);
+            }
+            int team = board.getTeamIndex(colour);
+            if (ordering != null) {
+                ordering.order(list, count, ply, team);
+            }
+            if (tableMove != BitBoard.NO_MOVE) {
+                moveToFront(list, count, tableMove);
+            }
+            int alphaStart = alpha;
+            int betaStart = beta;
+            int best;
+            int bestIndex = 0;
+            if (team == rootTeam) { // maximizer's turn
+                best = -INFINITY;
+                for (int i = 0; i < count && alpha < beta; i++) {
+                    makeMove(list[i]);
+                    int score = alphaBeta(depth - 1, alpha, beta, ply + 1);
+                    unmakeMove();
+                    if (score > best) {
+                        best = score;
+                        bestIndex = i;
+                    }
+                    alpha = Math.max(alpha, best);
+                }
+            } else { // minimizer's turn
+                best = INFINITY;
+                for (int i = 0; i < count && alpha < beta; i++) {
+                    makeMove(list[i]);
+                    int score = alphaBeta(depth - 1, alpha, beta, ply + 1);
+                    unmakeMove();
+                    if (score < best) {
+                        best = score;
+                        bestIndex = i;
+                    }
+                    beta = Math.min(beta, best);
+                }
+            }
+            int bestMove = list[bestIndex];
+            if (alpha >= beta && !timeUp) { // the other moves were not searched
+                cutoffs++;
+                if (bestIndex == 0) {
+                    firstMoveCutoffs++;
+                }
+                if (ordering != null) {
+                    ordering.cutoff(bestMove, ply, depth, team);
+                }
+            }
+            if (table != null && !timeUp) {
+                int flag = TranspositionTable.EXACT;
+                if (best <= alphaStart) {
+                    flag = TranspositionTable.UPPER_BOUND;
+                } else if (best >= betaStart) {
+                    flag = TranspositionTable.LOWER_BOUND;
+                }
+                table.store(board.getHash(), depth, flag, toTable(best, ply), bestMove);
+            }
+            return best;
+        }
+
+        /**
+         * Search the pushing and ejecting moves of a position after the depth
+         * of the iteration. The colour to move may also make a quiet move
+         * instead, which is taken to keep the score of the position.
+         *
+         * @param alpha      the score the maximizer is already sure of.
+         * @param beta       the score the minimizer is already sure of.
+         * @param ply        the distance to the root.
+         * @param pushesLeft the number of pushes that may still be searched.
+         * @return the score of the position.
+         */
+        private int quiesce(int alpha, int beta, int ply, int pushesLeft) {
+            if ((++nodes & CHECK_TIME_NODES) == 0 && System.nanoTime() >= deadline) {
+                timeUp = true;
+            }
+            if (timeUp) {
+                return 0;
+            }
+            int winner = board.getWinnerTeam();
+            if (winner != -1) {
+                return winner == rootTeam ? WIN_SCORE - ply : -WIN_SCORE + ply;
+            }
+            int best = evaluator.evaluate(board, rootTeam);
+            Colour colour = board.getSideToMove();
+            int team = board.getTeamIndex(colour);
+            boolean maximizer = team == rootTeam;
+            if (pushesLeft == 0 || (maximizer ? best >= beta : best <= alpha)) {
+                return best;
+            }
+            int[] list = moves[ply];
+            int count = getPushMoves(board, colour, list);
+            if (ordering != null) {
+                ordering.order(list, count, ply, team);
+            }
+            for (int i = 0; i < count && alpha < beta; i++) {
+                makeMove(list[i]);
+                int score = quiesce(alpha, beta, ply + 1, pushesLeft - 1);
+                unmakeMove();
+                if (maximizer) {
+                    best = Math.max(best, score);
+                    alpha = Math.max(alpha, best);
+                } else {
+                    best = Math.min(best, score);
+                    beta = Math.min(beta, best);
+                }
+            }
+            return best;
+        }
+    }
+}
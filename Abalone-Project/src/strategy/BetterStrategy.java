@@ -1,13 +1,14 @@
 package strategy;
 
+import abalone.BitBoard;
 import abalone.Board;
 import abalone.Colour;
-import abalone.Field;
-import abalone.Marble;
 import abalone.Move;
+import abalone.MoveGenerator;
 
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A class implementation from Strategy for a dumb strategy in Abalone board
@@ -17,6 +18,9 @@ import java.util.Random;
 public class BetterStrategy implements Strategy {
 
     private String name = "BetterStrategy";
+    protected static final int MAX_MOVES = MoveGenerator.MAX_MOVES;
+    private int threads = 1;
+    private ForkJoinPool pool; // only created when more than 1 thread is used
 
     // -- Queries ----------------------------------------------------
 
@@ -28,8 +32,41 @@ public class BetterStrategy implements Strategy {
         return this.name;
     }
 
+    @Override
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Get the pool that runs the parallel part of a search.
+     * 
+     * @requires getThreads() > 1
+     * @return the pool with getThreads() threads.
+     */
+    protected synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+
     // -- Commands ---------------------------------------------------
 
+    /**
+     * Set the number of threads used to determine a move.
+     * 
+     * @requires threads > 0
+     * @param threads the number of threads, 1 to search on the calling thread.
+     */
+    @Override
+    public synchronized void setThreads(int threads) {
+        if (threads != this.threads && pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        this.threads = Math.max(1, threads);
+    }
+
     /**
      * Determine a valid move in the board by choosing a random move.
      * 
@@ -44,45 +81,49 @@ public class BetterStrategy implements Strategy {
         return allMoves.get(random.nextInt(allMoves.size())); // return random move
     }
 
+    /**
+     * Get all valid moves of a colour.
+     * 
+     * @param board  the board to get the moves of.
+     * @param colour colour making the moves.
+     * @return the valid moves.
+     */
     protected static ArrayList<Move> getAllMoves(Board board, Colour colour) {
-        Field[][] fields = board.getFields();
-        ArrayList<Field> playerFields = new ArrayList<>();
-        for (int i = 0; i < fields.length; i++) {
-            for (int j = 0; j < fields[i].length; j++) { // for all fields
-                Marble marble = fields[i][j].getMarble();
-                if (marble != null && marble.getColour().equals(colour)) { // find matching colors
-                    playerFields.add(fields[i][j]);
-                }
-            }
-        }
-        // get all moves(with max number of marbles)
-        // does not get all side-step moves for optimization
-        Move move;
+        int[] moves = new int[MAX_MOVES];
+        int count = getAllMoves(new BitBoard(board), colour, moves);
         ArrayList<Move> allMoves = new ArrayList<>();
-        for (Field f : playerFields) { // for all the player fields
-            Field currentField = f;
-            Field field2 = currentField; // second field in the Move
-            for (int d = 0; d < 6; d++) { // try all directions
-                Field nextField = board.getNeighbor(currentField.getRow(), currentField.getCol(), d);
-                if (nextField != null && nextField.getMarble() != null && // if not null and from same team
-                        board.getTeam(nextField.getMarble().getColour()).equals(board.getTeam(colour))) {
-                    field2 = nextField;
-                    nextField = board.getNeighbor(nextField.getRow(), nextField.getCol(), d);
-                    if (nextField != null && nextField.getMarble() != null && // if not null and from same team
-                            board.getTeam(nextField.getMarble().getColour()).equals(board.getTeam(colour))) {
-                        field2 = nextField;
-                    }
-                }
-                for (int dd = 0; dd < 1; dd++) { // get side step moves as well
-                    move = new Move(currentField.getRow(), currentField.getCol(), field2.getRow(), field2.getCol(),
-                            (d + dd * 3) % 6); // get move to the other side as well
-                    if (board.isValidMoveDForColour(move, colour)) {
-                        allMoves.add(move);
-                    }
-                }
-            }
+        for (int i = 0; i < count; i++) {
+            allMoves.add(BitBoard.toMove(moves[i]));
         }
         return allMoves;
     }
 
+    /**
+     * Get all valid moves of a colour on a BitBoard, including all side step
+     * moves. The moves are encoded and written into the given buffer so nothing
+     * is allocated.
+     * 
+     * @param board  the board to get the moves of.
+     * @param colour colour making the moves.
+     * @param moves  buffer to write the encoded moves into.
+     * @return the number of moves written.
+     */
+    protected static int getAllMoves(BitBoard board, Colour colour, int[] moves) {
+        return MoveGenerator.generate(board, colour, moves);
+    }
+
+    /**
+     * Get the valid moves of a colour on a BitBoard that push marbles of another
+     * team, pushing off or not. The moves are encoded and written into the
+     * given buffer so nothing is allocated.
+     * 
+     * @param board  the board to get the moves of.
+     * @param colour colour making the moves.
+     * @param moves  buffer to write the encoded moves into.
+     * @return the number of moves written.
+     */
+    protected static int getPushMoves(BitBoard board, Colour colour, int[] moves) {
+        return MoveGenerator.generatePushes(board, colour, moves);
+    }
+
 }
\ No newline at end of file
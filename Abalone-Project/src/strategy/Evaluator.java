@@ -0,0 +1,67 @@
+package strategy;
+
+import abalone.BitBoard;
+
+/**
+ * Scores the positions a search reaches. An evaluator may keep terms of the
+ * position that are updated with every move, instead of looking at the whole
+ * board at every leaf: the search calls reset before it starts, moveMade after
+ * every BitBoard.makeMove and moveUnmade after every unmakeMove. An evaluator
+ * is used by one search thread, a search with more threads gives every thread
+ * its own copy.
+ */
+public interface Evaluator {
+
+    // -- Queries ----------------------------------------------------
+
+    /**
+     * Returns the name of the evaluator.
+     *
+     * @return the name of the evaluator.
+     */
+    public String getName();
+
+    /**
+     * Score the position of the board for a team.
+     *
+     * @requires the evaluator to be up to date with the board.
+     * @param board the board to evaluate.
+     * @param team  index of the team.
+     * @return the score, higher is better for the team and 0 is even with the
+     *         best other team.
+     */
+    public int evaluate(BitBoard board, int team);
+
+    /**
+     * Create an evaluator that scores the same way, for another search thread.
+     *
+     * @return the copy, it has to be reset before it is used.
+     */
+    public Evaluator copy();
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Compute all terms of a position, before the search makes any move.
+     *
+     * @param board the board the search starts from.
+     */
+    public default void reset(BitBoard board) {
+    }
+
+    /**
+     * Update the terms after a move was made on the board.
+     *
+     * @param board the board after the move.
+     */
+    public default void moveMade(BitBoard board) {
+    }
+
+    /**
+     * Update the terms after the last move was undone.
+     *
+     * @param board the board after unmakeMove.
+     */
+    public default void moveUnmade(BitBoard board) {
+    }
+}
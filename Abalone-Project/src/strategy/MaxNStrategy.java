@@ -0,0 +1,325 @@
+package strategy;
+
+import abalone.BitBoard;
+import abalone.Board;
+import abalone.Colour;
+import abalone.Move;
+
+/**
+ * A class implementation from Strategy that uses max^n search with iterative
+ * deepening, for games with more than 2 teams. Every colour moves in the turn
+ * order of the game and chooses the move that is best for its own team, the
+ * teams are not assumed to play together against this colour as in
+ * AlphaBetaStrategy (the paranoid search). A position is scored with a value
+ * for every team, from the Evaluator, and the values of a position add up to
+ * the same total.
+ *
+ * <p>
+ * Because the total is fixed, a colour that has found a move giving its team
+ * more than the total minus what the colour before it is already sure of, makes
+ * that colour choose another move: the other moves are not searched (shallow
+ * pruning). With 2 teams this is alpha-beta without deep cutoffs. The moves
+ * are sorted by a MoveOrdering, a move that pruned the search becomes a killer
+ * move and is added to the history.
+ */
+public class MaxNStrategy extends BetterStrategy implements Strategy {
+
+    public static final long DEFAULT_TIME_LIMIT = 500; // milliseconds per move
+    private static final int MAX_DEPTH = 16;
+    private static final int MAX_TEAMS = 3;
+    private static final int SPREAD = 20000; // more than the difference of any 2 evaluations
+    private static final int CHECK_TIME_NODES = 1023; // check the clock every 1024 nodes
+
+    private String name = "MaxNStrategy";
+    private long timeLimit;
+    private int maxDepth;
+    private Evaluator evaluator = new PositionalEvaluator();
+    private MoveOrdering ordering = new MoveOrdering();
+
+    /** Search state, only valid during determineMove. */
+    private BitBoard board;
+    private Evaluator scorer;
+    private MoveOrdering sorter;
+    private int teams;
+    private int total; // the sum of the values of every position
+    private long deadline;
+    private boolean timeUp;
+    private long nodes;
+    private long prunes;
+    private int reachedDepth;
+    private final int[][] moves = new int[MAX_DEPTH + 1][MAX_MOVES]; // one buffer of moves per ply
+    private final int[][] values = new int[MAX_DEPTH + 1][MAX_TEAMS]; // the value of every team per ply
+    private final int[] relative = new int[MAX_TEAMS];
+
+    /**
+     * Construct a new max^n strategy.
+     *
+     * @requires timeLimit > 0 && maxDepth > 0
+     * @param timeLimit milliseconds that a move may take.
+     * @param maxDepth  the depth at which the search stops even if there is time
+     *                  left.
+     */
+    public MaxNStrategy(long timeLimit, int maxDepth) {
+        this.timeLimit = timeLimit;
+        this.maxDepth = Math.min(maxDepth, MAX_DEPTH);
+    }
+
+    /**
+     * Construct a new max^n strategy with the given time limit.
+     *
+     * @param timeLimit milliseconds that a move may take.
+     */
+    public MaxNStrategy(long timeLimit) {
+        this(timeLimit, MAX_DEPTH);
+    }
+
+    /**
+     * Construct a new max^n strategy with a time limit of 500 ms.
+     */
+    public MaxNStrategy() {
+        this(DEFAULT_TIME_LIMIT);
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    /**
+     * Returns the name of the strategy.
+     */
+    @Override
+    public String getName() {
+        return evaluator instanceof PositionalEvaluator ? name : name + "(" + evaluator.getName() + ")";
+    }
+
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    public MoveOrdering getMoveOrdering() {
+        return ordering;
+    }
+
+    /**
+     * Get the number of nodes visited while determining the last move.
+     *
+     * @return the number of nodes.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the number of times the moves of a position were not all searched
+     * while determining the last move.
+     *
+     * @return the number of shallow prunes.
+     */
+    public long getPrunes() {
+        return prunes;
+    }
+
+    /**
+     * Get the depth of the last finished iteration of the last move.
+     *
+     * @return the depth reached.
+     */
+    public int getReachedDepth() {
+        return reachedDepth;
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Set the evaluator that scores the leaves of the search.
+     *
+     * @param evaluator the evaluator.
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+        scorer = null;
+    }
+
+    /**
+     * Set the move ordering of the search.
+     *
+     * @param ordering the move ordering, null to search the moves in the order
+     *                 of the move generator.
+     */
+    public void setMoveOrdering(MoveOrdering ordering) {
+        this.ordering = ordering;
+        sorter = null;
+    }
+
+    /**
+     * Determine the best move for the team of the colour found within the time
+     * limit.
+     *
+     * @param board  the current game board.
+     * @param colour colour making the move.
+     * @return the best move, null if there are no valid moves.
+     */
+    @Override
+    public Move determineMove(Board board, Colour colour) {
+        BitBoard bitBoard = new BitBoard(board);
+        bitBoard.setSideToMove(colour);
+        int move = searchMove(bitBoard);
+        return move == BitBoard.NO_MOVE ? null : BitBoard.toMove(move);
+    }
+
+    /**
+     * Search the best move for the side to move with iterative deepening.
+     *
+     * @param position the board to search, the same after the search.
+     * @return the encoded move, NO_MOVE if there are no valid moves.
+     */
+    protected int searchMove(BitBoard position) {
+        board = position;
+        if (scorer == null) {
+            scorer = evaluator.copy();
+        }
+        scorer.reset(board);
+        if (ordering != null) {
+            if (sorter == null) {
+                sorter = ordering.copy();
+            }
+            sorter.newSearch();
+        }
+        teams = board.getTeamCount();
+        total = teams * teams * SPREAD;
+        deadline = System.nanoTime() + timeLimit * 1000000;
+        timeUp = false;
+        nodes = 0;
+        prunes = 0;
+        reachedDepth = 0;
+        int[] rootMoves = moves[0];
+        int count = getAllMoves(board, board.getSideToMove(), rootMoves);
+        if (count == 0) {
+            board = null;
+            return BitBoard.NO_MOVE;
+        }
+        int team = board.getTeamIndex(board.getSideToMove());
+        if (ordering != null) {
+            sorter.order(rootMoves, count, 0, team);
+        }
+        int bestMove = rootMoves[0];
+        for (int depth = 1; depth <= maxDepth && !timeUp; depth++) {
+            int best = -1;
+            int bestIndex = 0;
+            for (int i = 0; i < count && !timeUp; i++) {
+                makeMove(rootMoves[i]);
+                maxN(depth - 1, 1, -1, team);
+                unmakeMove();
+                if (values[1][team] > best) {
+                    best = values[1][team];
+                    bestIndex = i;
+                }
+            }
+            if (timeUp) { // the unfinished iteration is not used
+                break;
+            }
+            bestMove = rootMoves[bestIndex];
+            reachedDepth = depth;
+            AlphaBetaStrategy.moveToFront(rootMoves, count, bestMove);
+            if (best == total) { // found a win
+                break;
+            }
+        }
+        board = null;
+        return bestMove;
+    }
+
+    /**
+     * Max^n search of a position, the colour to move chooses the move with the
+     * highest value for its team.
+     *
+     * @param depth      the depth left to search.
+     * @param ply        the distance to the root, the values are put in
+     *                   values[ply].
+     * @param parentBest the value the team that moved to this position is sure
+     *                   of, -1 if it is not sure of anything yet.
+     * @param parentTeam the team that moved to this position.
+     */
+    private void maxN(int depth, int ply, int parentBest, int parentTeam) {
+        if ((++nodes & CHECK_TIME_NODES) == 0 && System.nanoTime() >= deadline) {
+            timeUp = true;
+        }
+        int[] result = values[ply];
+        if (timeUp) {
+            return;
+        }
+        int winner = board.getWinnerTeam();
+        if (winner != -1) {
+            for (int t = 0; t < teams; t++) {
+                result[t] = t == winner ? total : 0;
+            }
+            return;
+        }
+        if (depth == 0) {
+            evaluate(result);
+            return;
+        }
+        int[] list = moves[ply];
+        int count = getAllMoves(board, board.getSideToMove(), list);
+        if (count == 0) {
+            evaluate(result);
+            return;
+        }
+        int team = board.getTeamIndex(board.getSideToMove());
+        if (ordering != null) {
+            sorter.order(list, count, ply, team);
+        }
+        int[] child = values[ply + 1];
+        int best = -1;
+        for (int i = 0; i < count; i++) {
+            makeMove(list[i]);
+            maxN(depth - 1, ply + 1, best, team);
+            unmakeMove();
+            if (timeUp) {
+                return;
+            }
+            if (child[team] > best) {
+                best = child[team];
+                System.arraycopy(child, 0, result, 0, teams);
+            }
+            // the team before gets at most total - best here, it has a move that is as good
+            if (team != parentTeam && parentBest != -1 && best >= total - parentBest) {
+                prunes++;
+                if (ordering != null) {
+                    sorter.cutoff(list[i], ply, depth, team);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Put the value of every team in a position without a winner into the
+     * result. The evaluations are shifted so they add up to the total and are
+     * all positive.
+     *
+     * @param result the values of the teams.
+     */
+    private void evaluate(int[] result) {
+        int sum = 0;
+        for (int t = 0; t < teams; t++) {
+            relative[t] = Math.max(-SPREAD / 2, Math.min(SPREAD / 2, scorer.evaluate(board, t)));
+            sum += relative[t];
+        }
+        for (int t = 0; t < teams; t++) {
+            result[t] = teams * relative[t] - sum + teams * SPREAD;
+        }
+    }
+
+    private void makeMove(int move) {
+        board.makeMove(move);
+        scorer.moveMade(board);
+    }
+
+    private void unmakeMove() {
+        board.unmakeMove();
+        scorer.moveUnmade(board);
+    }
+}
@@ -0,0 +1,429 @@
+package strategy;
+
+import abalone.BitBoard;
+import abalone.Board;
+import abalone.Colour;
+import abalone.Move;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A class implementation from Strategy that uses Monte Carlo tree search with
+ * UCT. Every iteration goes down the tree to a position that has moves which
+ * were not tried yet, adds one of them and plays the game out from there. The
+ * result of the playout is added to every position on the way, the move that
+ * was tried most at the root is played. The search stops at the time limit or
+ * after a number of playouts, whichever comes first.
+ *
+ * <p>
+ * A playout takes an ejecting move when there is one and a random move
+ * otherwise, on a BitBoard with makeMove and unmakeMove and a buffer of moves
+ * per thread, so it allocates nothing. After PLAYOUT_PLIES moves without a
+ * winner the playout ends and the difference in score decides the result.
+ *
+ * <p>
+ * The tree is kept between moves: when the position of the next move is in the
+ * tree, after the move that was played and the moves of the other colours, the
+ * search goes on from there. With more than 1 thread (see setThreads) every
+ * thread builds its own tree from the same position and the playouts of the
+ * root moves are added up.
+ */
+public class MctsStrategy extends BetterStrategy implements Strategy {
+
+    public static final long DEFAULT_TIME_LIMIT = 500; // milliseconds per move
+    public static final int PLAYOUT_PLIES = 60;
+    private static final double EXPLORATION = 0.7; // results are between 0 and 1
+    private static final int MAX_TREE_DEPTH = 256;
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    private String name = "MctsStrategy";
+    private long timeLimit;
+    private int playoutLimit;
+    private Tree[] trees;
+    private int[] rootMoves;
+    private long playouts;
+    private long reusedPlayouts;
+
+    /**
+     * A position in the tree, reached by a move.
+     */
+    private static final class Node {
+        private final int move;
+        private final int team; // the team that made the move, -1 for the root of a new tree
+        private final long hash; // of the position after the move
+        private int[] moves; // null until the position is expanded, tried moves come first
+        private Node[] children;
+        private int childCount;
+        private int visits;
+        private double wins; // the sum of the results of the team that made the move
+
+        private Node(int move, int team, long hash) {
+            this.move = move;
+            this.team = team;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Construct a new MCTS strategy.
+     *
+     * @requires timeLimit > 0 || playoutLimit > 0
+     * @param timeLimit    milliseconds that a move may take, 0 for no limit.
+     * @param playoutLimit the number of playouts of a move, 0 for no limit.
+     */
+    public MctsStrategy(long timeLimit, int playoutLimit) {
+        this.timeLimit = timeLimit;
+        this.playoutLimit = playoutLimit;
+        trees = new Tree[] { new Tree() };
+        rootMoves = new int[MAX_MOVES];
+    }
+
+    /**
+     * Construct a new MCTS strategy with the given time limit.
+     *
+     * @param timeLimit milliseconds that a move may take.
+     */
+    public MctsStrategy(long timeLimit) {
+        this(timeLimit, 0);
+    }
+
+    /**
+     * Construct a new MCTS strategy with a time limit of 500 ms.
+     */
+    public MctsStrategy() {
+        this(DEFAULT_TIME_LIMIT);
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    /**
+     * Returns the name of the strategy.
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    public int getPlayoutLimit() {
+        return playoutLimit;
+    }
+
+    /**
+     * Get the number of playouts made while determining the last move.
+     *
+     * @return the number of playouts of all threads.
+     */
+    public long getPlayouts() {
+        return playouts;
+    }
+
+    /**
+     * Get the number of playouts of the last move that were kept from the tree
+     * of the move before.
+     *
+     * @return the playouts of the reused trees, 0 if no tree was reused.
+     */
+    public long getReusedPlayouts() {
+        return reusedPlayouts;
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Determine the move that was tried most within the limits.
+     *
+     * @param board  the current game board.
+     * @param colour colour making the move.
+     * @return the best move, null if there are no valid moves.
+     */
+    @Override
+    public Move determineMove(Board board, Colour colour) {
+        BitBoard bitBoard = new BitBoard(board);
+        bitBoard.setSideToMove(colour);
+        int move = searchMove(bitBoard);
+        return move == BitBoard.NO_MOVE ? null : BitBoard.toMove(move);
+    }
+
+    /**
+     * Search the best move for the side to move.
+     *
+     * @param board the board to search, the same after the search.
+     * @return the encoded move, NO_MOVE if there are no valid moves.
+     */
+    protected int searchMove(BitBoard board) {
+        int count = getAllMoves(board, board.getSideToMove(), rootMoves);
+        if (count == 0) {
+            return BitBoard.NO_MOVE;
+        }
+        long deadline = timeLimit > 0 ? System.nanoTime() + timeLimit * NANOS_PER_MILLI : Long.MAX_VALUE;
+        AtomicLong budget = new AtomicLong(playoutLimit > 0 ? playoutLimit : Long.MAX_VALUE);
+        initTrees(board);
+        if (trees.length == 1) {
+            trees[0].search(deadline, budget);
+        } else {
+            searchParallel(deadline, budget);
+        }
+        long[] visits = new long[count];
+        playouts = 0;
+        for (Tree tree : trees) {
+            playouts += tree.playouts;
+            Node root = tree.root;
+            for (int c = 0; c < root.childCount; c++) {
+                for (int i = 0; i < count; i++) {
+                    if (rootMoves[i] == root.children[c].move) {
+                        visits[i] += root.children[c].visits;
+                        break;
+                    }
+                }
+            }
+        }
+        int bestIndex = 0;
+        for (int i = 1; i < count; i++) { // the first move with the most playouts
+            if (visits[i] > visits[bestIndex]) {
+                bestIndex = i;
+            }
+        }
+        for (Tree tree : trees) {
+            tree.played = rootMoves[bestIndex];
+            tree.board = null;
+        }
+        return rootMoves[bestIndex];
+    }
+
+    /**
+     * Create a tree for every thread, give the first one the board and the
+     * others a copy. A tree goes on from the position of the board if it is in
+     * the tree, otherwise it starts again.
+     *
+     * @param board the board to search.
+     */
+    private void initTrees(BitBoard board) {
+        if (trees.length != getThreads()) {
+            trees = new Tree[getThreads()];
+            for (int i = 0; i < trees.length; i++) {
+                trees[i] = new Tree();
+            }
+        }
+        int colours = 0;
+        for (int t = 0; t < board.getTeamCount(); t++) {
+            colours += board.getTeamColours(t).length;
+        }
+        reusedPlayouts = 0;
+        for (int i = 0; i < trees.length; i++) {
+            Tree tree = trees[i];
+            tree.board = i == 0 ? board : board.deepCopy();
+            tree.playouts = 0;
+            Node reused = tree.root == null ? null : find(tree.root, tree.played, board.getHash(), colours);
+            tree.root = reused == null ? new Node(BitBoard.NO_MOVE, -1, board.getHash()) : reused;
+            reusedPlayouts += tree.root.visits;
+        }
+    }
+
+    /**
+     * Find the position a number of moves below a node in the tree, after a
+     * move.
+     *
+     * @param node  the node to search from.
+     * @param first the first move, NO_MOVE for any move.
+     * @param hash  the hash of the position.
+     * @param plies the number of moves to the position.
+     * @return the node of the position, null if it is not in the tree.
+     */
+    private static Node find(Node node, int first, long hash, int plies) {
+        if (plies == 0) {
+            return node.hash == hash ? node : null;
+        }
+        for (int c = 0; c < node.childCount; c++) {
+            if (first == BitBoard.NO_MOVE || node.children[c].move == first) {
+                Node found = find(node.children[c], BitBoard.NO_MOVE, hash, plies - 1);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Run the trees on the threads of the pool until the limits are reached.
+     *
+     * @param deadline the time in nanoseconds the search stops.
+     * @param budget   the playouts that are left.
+     */
+    private void searchParallel(long deadline, AtomicLong budget) {
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for (Tree tree : trees) {
+            tasks.add(() -> {
+                tree.search(deadline, budget);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> task : getPool().invokeAll(tasks)) {
+                task.get(); // throws the exception of a tree
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("search thread failed", e.getCause());
+        }
+    }
+
+    /**
+     * The search of one thread: its tree, a board to make the moves on and
+     * buffers for a playout.
+     */
+    private final class Tree {
+        private BitBoard board;
+        private Node root;
+        private int played = BitBoard.NO_MOVE; // the move chosen from the root last time
+        private final int[] moves = new int[MAX_MOVES];
+        private final Node[] path = new Node[MAX_TREE_DEPTH];
+        private final double[] results = new double[Colour.values().length];
+        private final SplittableRandom random = new SplittableRandom();
+        private long playouts;
+
+        /**
+         * Add playouts until the time is up or the budget is used.
+         *
+         * @param deadline the time in nanoseconds the search stops.
+         * @param budget   the playouts that are left, shared by all trees.
+         */
+        private void search(long deadline, AtomicLong budget) {
+            while (System.nanoTime() < deadline && budget.getAndDecrement() > 0) {
+                iterate();
+                playouts++;
+            }
+        }
+
+        /**
+         * Go down the tree, add a node, play the game out and add the result to
+         * the nodes on the way.
+         */
+        private void iterate() {
+            Node node = root;
+            int depth = 0;
+            path[0] = root;
+            int made = 0;
+            while (node.moves != null && node.childCount == node.moves.length && node.childCount > 0
+                    && depth < MAX_TREE_DEPTH - 2) {
+                node = select(node);
+                board.makeMove(node.move);
+                made++;
+                path[++depth] = node;
+            }
+            if (!board.hasWinner() && depth < MAX_TREE_DEPTH - 2) {
+                if (node.moves == null) {
+                    int count = getAllMoves(board, board.getSideToMove(), moves);
+                    node.moves = Arrays.copyOf(moves, count);
+                    node.children = new Node[count];
+                }
+                if (node.childCount < node.moves.length) {
+                    Node child = expand(node);
+                    made++;
+                    node = child;
+                    path[++depth] = node;
+                }
+            }
+            made += playout();
+            for (int i = 0; i <= depth; i++) {
+                path[i].visits++;
+                if (path[i].team != -1) {
+                    path[i].wins += results[path[i].team];
+                }
+            }
+            for (int i = 0; i < made; i++) {
+                board.unmakeMove();
+            }
+        }
+
+        /**
+         * Get the child with the highest upper confidence bound.
+         *
+         * @requires node to have children.
+         */
+        private Node select(Node node) {
+            double logVisits = Math.log(node.visits);
+            Node best = node.children[0];
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int c = 0; c < node.childCount; c++) {
+                Node child = node.children[c];
+                double value = child.wins / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Make a random move that was not tried yet and add its node.
+         *
+         * @requires node.childCount < node.moves.length
+         * @return the new node.
+         */
+        private Node expand(Node node) {
+            int[] list = node.moves;
+            int pick = node.childCount + random.nextInt(list.length - node.childCount);
+            int move = list[pick];
+            list[pick] = list[node.childCount];
+            list[node.childCount] = move;
+            int team = board.getTeamIndex(board.getSideToMove());
+            board.makeMove(move);
+            Node child = new Node(move, team, board.getHash());
+            node.children[node.childCount++] = child;
+            return child;
+        }
+
+        /**
+         * Play the game out and put the result of every team in results.
+         *
+         * @return the number of moves made.
+         */
+        private int playout() {
+            int plies = 0;
+            while (plies < PLAYOUT_PLIES && !board.hasWinner()) {
+                int count = getAllMoves(board, board.getSideToMove(), moves);
+                if (count == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(count)];
+                for (int i = 0; i < count; i++) {
+                    if (BitBoard.moveKind(moves[i]) == BitBoard.EJECT_MOVE) {
+                        move = moves[i];
+                        break;
+                    }
+                }
+                board.makeMove(move);
+                plies++;
+            }
+            int winner = board.getWinnerTeam();
+            for (int t = 0; t < board.getTeamCount(); t++) {
+                if (winner != -1) {
+                    results[t] = t == winner ? 1 : 0;
+                    continue;
+                }
+                int best = 0;
+                for (int other = 0; other < board.getTeamCount(); other++) {
+                    if (other != t) {
+                        best = Math.max(best, board.getScore(other));
+                    }
+                }
+                // ahead by all but one marble is almost a win
+                results[t] = 0.5 + (double) (board.getScore(t) - best) / (2 * Board.LOSERMARBLES);
+            }
+            return plies;
+        }
+    }
+}
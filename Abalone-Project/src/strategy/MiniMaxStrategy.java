@@ -1,27 +1,50 @@
 package strategy;
 
+import abalone.BitBoard;
 import abalone.Board;
 import abalone.Colour;
 import abalone.Move;
-import abalone.Team;
 
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A class implementation from Strategy for a dumb strategy in Abalone board
  * game project. <br>
  * Credits: Inspired by GeeksForGeeks' minimax algirthm for tic-tac-toe
  * https://www.geeksforgeeks.org/minimax-algorithm-in-game-theory-set-3-tic-tac-toe-ai-finding-optimal-move/
+ * <br>
+ * The search is done on a BitBoard, moves are made and undone in place instead
+ * of copying the board for every node. Positions that are reached again with
+ * the same depth left are looked up in a transposition table. With more than 1
+ * thread (see setThreads) the moves of the root are scored in parallel, the
+ * chosen move is the same as with 1 thread. The leaves are scored by an
+ * Evaluator, by default the marbles pushed off (see setEvaluator).
+ * 
+ * <p>
+ * At the depth limit the search goes on with pushing and ejecting moves only
+ * (a quiescence search), so a position is not scored in the middle of a push
+ * sequence. The colour to move may also stop pushing and keep the score of the
+ * position. The pushes come from MoveGenerator.generatePushes, the moves do not
+ * have to be checked on a Board.
  *
  */
 public class MiniMaxStrategy extends BetterStrategy implements Strategy {
 
+    public static final int DEFAULT_QUIESCENCE_DEPTH = 4; // pushes searched after the depth limit
     private String name = "MiniMaxStrategy";
     private static final int MOVE_LIMIT = 96;
+    private static final int WIN_SCORE = 100000; // more than any evaluation
+    private static final int INFINITY = 1000000;
     private int depthLim; // default depth limit
+    private int quiescenceDepth = DEFAULT_QUIESCENCE_DEPTH;
     private Colour mainColour;
-    private Colour opColour;
+    private TranspositionTable table = new TranspositionTable(1 << 16);
+    private Evaluator evaluator = new ScoreEvaluator();
 
     /**
      * Construct a new Mini Max strategy.
@@ -45,64 +68,180 @@ public class MiniMaxStrategy extends BetterStrategy implements Strategy {
      */
     @Override
     public String getName() {
-        return this.name;
+        return evaluator instanceof ScoreEvaluator ? name : name + "(" + evaluator.getName() + ")";
+    }
+
+    /**
+     * Get the transposition table, to read the hit and miss counters.
+     *
+     * @return the table.
+     */
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    public int getQuiescenceDepth() {
+        return quiescenceDepth;
     }
 
     /**
      * Use the MiniMax algorithm to find a board state's score. The maximizer tries
      * to get the best score for this player and the minimizer acts as an opponent.
+     * The colours move in the turn order of the game, every colour of another
+     * team is a minimizer.
      * 
-     * @param board     the board state to
-     * @param depth     the
-     * @param isMax     true if maximizers' turn.
-     * @param colour    the color of the player making the move.
-     * @param movesLeft the moves until the game ends.
+     * @param board       the board state to
+     * @param depth       the
+     * @param movesLeft   the moves until the game ends.
+     * @param moveBuffers one buffer of moves per depth.
+     * @param scorer      the evaluator of this thread, up to date with the board.
      * @return the point for this board
      */
-    private int minimax(Board board, int depth, Boolean isMax, int movesLeft) {
-        int score = determineBoardScore(board);
-        if (score == 100) { // if results in winning the game
+    private int minimax(BitBoard board, int depth, int movesLeft, int[][] moveBuffers, Evaluator scorer) {
+        int score = determineBoardScore(board, scorer);
+        if (score == WIN_SCORE) { // if results in winning the game
             return score;
-        } else if (score == -100) { // if results in losing the game
+        } else if (score == -WIN_SCORE) { // if results in losing the game
             return score;
         }
-        // return score if depth limit reached or no more moves left to make
-        if (depth >= depthLim || movesLeft <= 0) {
+        if (movesLeft <= 0) { // no more moves left to make
             return score;
         }
-        if (isMax) { // maximizer's turn
-            int best = -1000;
-            ArrayList<Move> allMoves = getAllMoves(board, mainColour);
-            for (Move m : allMoves) { // for all possible moves
-                Board moveBoard = board.deepCopy();
-                moveBoard.moveD(m);
-                best = Math.max(best, minimax(moveBoard, depth + 1, !isMax, movesLeft - 1));
+        if (depth >= depthLim) { // depth limit reached, only pushes are searched further
+            return quiesce(board, score, -INFINITY, INFINITY, depth, Math.min(quiescenceDepth, movesLeft),
+                    moveBuffers, scorer);
+        }
+        long hash = board.getHash();
+        long entry = table.probe(hash);
+        // only the same depth left gives the same score as searching again
+        if (entry != TranspositionTable.NO_ENTRY && TranspositionTable.getDepth(entry) == depthLim - depth) {
+            return TranspositionTable.getScore(entry);
+        }
+        int[] allMoves = moveBuffers[depth];
+        Colour colour = board.getSideToMove();
+        int count = getAllMoves(board, colour, allMoves);
+        int best;
+        if (board.getTeamIndex(colour) == board.getTeamIndex(mainColour)) { // maximizer's turn
+            best = -INFINITY;
+            for (int i = 0; i < count; i++) { // for all possible moves
+                makeMove(board, allMoves[i], scorer);
+                best = Math.max(best, minimax(board, depth + 1, movesLeft - 1, moveBuffers, scorer));
+                unmakeMove(board, scorer);
             }
-            return best;
         } else { // minimizer's turn
-            int best = 1000;
-            ArrayList<Move> allMoves = getAllMoves(board, opColour);
-            for (Move m : allMoves) { // for all possible moves
-                Board moveBoard = board.deepCopy();
-                moveBoard.moveD(m);
-                best = Math.min(best, minimax(moveBoard, depth + 1, isMax, movesLeft - 1));
+            best = INFINITY;
+            for (int i = 0; i < count; i++) { // for all possible moves
+                makeMove(board, allMoves[i], scorer);
+                best = Math.min(best, minimax(board, depth + 1, movesLeft - 1, moveBuffers, scorer));
+                unmakeMove(board, scorer);
             }
-            return best;
         }
+        table.store(hash, depthLim - depth, TranspositionTable.EXACT, best, BitBoard.NO_MOVE);
+        return best;
     }
 
-    private int determineBoardScore(Board board) {
-        Team team = board.getTeam(this.mainColour);
-        if (team.getScore() == 6) { // this colour has won
-            return 100;
+    /**
+     * Search the pushing and ejecting moves of a position after the depth
+     * limit. The colour to move may also make a quiet move instead, which is
+     * taken to keep the score of the position. Because of that the pushes
+     * can be searched with alpha-beta: a colour that is already sure of a
+     * score the colour before it will not allow does not search its other
+     * pushes. Ejecting moves are searched first.
+     * 
+     * @param board       the board state to search.
+     * @param score       the score of the position.
+     * @param alpha       the score the maximizer is already sure of.
+     * @param beta        the score the minimizer is already sure of.
+     * @param depth       the depth of the position, moveBuffers[depth] is used.
+     * @param pushesLeft  the number of pushes that may still be searched.
+     * @param moveBuffers one buffer of moves per depth.
+     * @param scorer      the evaluator of this thread, up to date with the board.
+     * @return the point for this board
+     */
+    private int quiesce(BitBoard board, int score, int alpha, int beta, int depth, int pushesLeft,
+            int[][] moveBuffers, Evaluator scorer) {
+        Colour colour = board.getSideToMove();
+        boolean maximizer = board.getTeamIndex(colour) == board.getTeamIndex(mainColour);
+        if (pushesLeft <= 0 || (maximizer ? score >= beta : score <= alpha)) {
+            return score;
+        }
+        int[] allMoves = moveBuffers[depth];
+        int count = getPushMoves(board, colour, allMoves);
+        int best = score;
+        for (int kind = BitBoard.EJECT_MOVE; kind >= BitBoard.PUSH_MOVE && alpha < beta; kind--) {
+            for (int i = 0; i < count && alpha < beta; i++) {
+                if (BitBoard.moveKind(allMoves[i]) != kind) {
+                    continue;
+                }
+                makeMove(board, allMoves[i], scorer);
+                int pushScore = determineBoardScore(board, scorer);
+                if (pushScore != WIN_SCORE && pushScore != -WIN_SCORE) {
+                    pushScore = quiesce(board, pushScore, alpha, beta, depth + 1, pushesLeft - 1, moveBuffers,
+                            scorer);
+                }
+                unmakeMove(board, scorer);
+                if (maximizer) {
+                    best = Math.max(best, pushScore);
+                    alpha = Math.max(alpha, best);
+                } else {
+                    best = Math.min(best, pushScore);
+                    beta = Math.min(beta, best);
+                }
+            }
         }
-        if (board.getOtherTeams(team).get(0).getScore() == 6) { // other colour has won
-            return -100;
+        return best;
+    }
+
+    private int determineBoardScore(BitBoard board, Evaluator scorer) {
+        int team = board.getTeamIndex(this.mainColour);
+        int winner = board.getWinnerTeam();
+        if (winner == team) { // this colour has won
+            return WIN_SCORE;
+        } else if (winner != -1) { // another team has won
+            return -WIN_SCORE;
         }
-        return getRelativeScore(board);
+        return scorer.evaluate(board, team);
+    }
+
+    private static void makeMove(BitBoard board, int move, Evaluator scorer) {
+        board.makeMove(move);
+        scorer.moveMade(board);
+    }
+
+    private static void unmakeMove(BitBoard board, Evaluator scorer) {
+        board.unmakeMove();
+        scorer.moveUnmade(board);
     }
     // -- Commands ---------------------------------------------------
 
+    /**
+     * Set the evaluator that scores the leaves of the search. The
+     * transposition table is cleared, its scores are of the old evaluator.
+     *
+     * @param evaluator the evaluator.
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+        table.clear();
+    }
+
+    /**
+     * Set the number of pushing and ejecting moves that are searched after the
+     * depth limit. The transposition table is cleared, its scores are of the old
+     * depth.
+     *
+     * @requires depth >= 0
+     * @param depth the number of moves, 0 to stop at the depth limit.
+     */
+    public void setQuiescenceDepth(int depth) {
+        this.quiescenceDepth = depth;
+        table.clear();
+    }
+
     /**
      * Determine a valid move in the board by choosing a the best move found so far.
      * 
@@ -112,35 +251,88 @@ public class MiniMaxStrategy extends BetterStrategy implements Strategy {
     @Override
     public Move determineMove(Board board, Colour colour) {
         Random random = new Random(); // for getting a random move
+        if (colour != mainColour) { // the scores in the table are for another colour
+            table.clear();
+        }
         this.mainColour = colour; // own color
-        opColour = board.getOtherTeams(board.getTeam(colour)).get(0).getColours()[0]; // opponent color
-        int bestVal = getRelativeScore(board);
-        ArrayList<Move> allMoves = getAllMoves(board, colour);
+        table.newSearch();
+        BitBoard bitBoard = new BitBoard(board);
+        Evaluator scorer = evaluator.copy();
+        scorer.reset(bitBoard);
+        int bestVal = scorer.evaluate(bitBoard, bitBoard.getTeamIndex(colour));
+        int[] allMoves = new int[MAX_MOVES];
+        int count = getAllMoves(bitBoard, colour, allMoves);
         // first get a random move
-        Move bestMove = allMoves.get(random.nextInt(allMoves.size()));
-        for (Move m : allMoves) { // perform all possible moves
-            Board boardWithMove = board.deepCopy();
-            boardWithMove.moveD(m);
-            // find the score for the move
-            int score = minimax(boardWithMove, 0, false, MOVE_LIMIT);
+        int bestMove = allMoves[random.nextInt(count)];
+        int[] scores = new int[count];
+        if (getThreads() == 1) {
+            scoreMoves(bitBoard, allMoves, count, scores, new AtomicInteger());
+        } else if (!scoreMovesParallel(bitBoard, allMoves, count, scores)) {
+            return BitBoard.toMove(bestMove); // interrupted, the scores can't be trusted
+        }
+        for (int i = 0; i < count; i++) { // perform all possible moves
+            int score = scores[i];
             // if better move, this Move becomes bestMove
             if (score >= bestVal) {
-                bestMove = m;
+                bestMove = allMoves[i];
                 bestVal = score;
             }
 
         }
-        return bestMove; // return best move
+        return BitBoard.toMove(bestMove); // return best move
+    }
+
+    /**
+     * Find the score of root moves until all of them are taken.
+     * 
+     * @param board  the board to make the moves on.
+     * @param moves  the root moves.
+     * @param count  the number of root moves.
+     * @param scores the score of every root move.
+     * @param next   index of the next move to be scored.
+     */
+    private void scoreMoves(BitBoard board, int[] moves, int count, int[] scores, AtomicInteger next) {
+        int[][] moveBuffers = new int[depthLim + quiescenceDepth + 1][MAX_MOVES];
+        Evaluator scorer = evaluator.copy();
+        scorer.reset(board);
+        for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+            makeMove(board, moves[i], scorer);
+            scores[i] = minimax(board, 0, MOVE_LIMIT, moveBuffers, scorer);
+            unmakeMove(board, scorer);
+        }
     }
 
     /**
-     * Get the score of this color minus other team's score.
+     * Find the score of the root moves with all threads of the pool, each with
+     * its own copy of the board.
      * 
-     * @param board  board to check this.
-     * @param colour color to check.
-     * @return
+     * @param board  the board to make the moves on.
+     * @param moves  the root moves.
+     * @param count  the number of root moves.
+     * @param scores the score of every root move.
+     * @return true if all moves were scored, false if the search was
+     *         interrupted before that.
      */
-    private int getRelativeScore(Board board) {
-        return board.getTeam(mainColour).getScore() - board.getTeam(opColour).getScore();
+    private boolean scoreMovesParallel(BitBoard board, int[] moves, int count, int[] scores) {
+        AtomicInteger next = new AtomicInteger();
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < getThreads(); t++) {
+            BitBoard copy = board.deepCopy();
+            tasks.add(() -> {
+                scoreMoves(copy, moves, count, scores, next);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> task : getPool().invokeAll(tasks)) {
+                task.get(); // throws the exception of a thread
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // some moves were not scored
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("search thread failed", e.getCause());
+        }
     }
 }
\ No newline at end of file
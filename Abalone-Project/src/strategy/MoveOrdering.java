@@ -0,0 +1,220 @@
+package strategy;
+
+import abalone.BitBoard;
+import abalone.MoveGenerator;
+
+import java.util.Arrays;
+
+/**
+ * Sorts the moves of a position so that a search tries the moves that are most
+ * likely to be best first. Moves are sorted by the kind the MoveGenerator gave
+ * them (ejecting moves, then pushing moves), then by the killer moves of the
+ * ply (quiet moves that cut off the search of another position at the same
+ * distance from the root) and then by the history table (how often a move of
+ * the team cut off the search, weighted by the depth left).
+ *
+ * <p>
+ * A search calls order for every position and cutoff when a move made it stop
+ * searching the other moves. The killer moves and the history are kept between
+ * the iterations of a search, newSearch clears the killer moves and halves the
+ * history. A move ordering is used by one search thread, a search with more
+ * threads gives every thread its own copy.
+ */
+public class MoveOrdering {
+
+    public static final int PUSHES_FIRST = 1; // ejecting moves, then pushing moves before quiet moves
+    public static final int KILLERS = 2;
+    public static final int HISTORY = 4;
+    public static final int ALL = PUSHES_FIRST | KILLERS | HISTORY;
+
+    private static final int MAX_PLY = 64;
+    private static final int MAX_TEAMS = 3;
+    private static final int SLOTS = 2; // killer moves per ply
+    private static final int MOVE_MASK = 0x7FFF; // head, tail and direction of a move, without its kind
+    private static final int MOVE_SPACE = MOVE_MASK + 1;
+    private static final int HISTORY_LIMIT = 1 << 20; // the history is halved when a move reaches it
+    private static final int KILLER_KEY = HISTORY_LIMIT * 2; // more than any history
+    private static final int KIND_KEY = KILLER_KEY * (SLOTS + 1); // more than a killer move
+    private static final int NO_KILLER = -1;
+
+    private String name;
+    private final int heuristics;
+    private final int[][] killers = new int[MAX_PLY][SLOTS];
+    private final int[] history = new int[MAX_TEAMS * MOVE_SPACE];
+    private final int[][] keys = new int[MAX_PLY][MoveGenerator.MAX_MOVES]; // sort keys per ply
+
+    /**
+     * Create a move ordering with some of the heuristics.
+     *
+     * @param heuristics PUSHES_FIRST, KILLERS and HISTORY or-ed together.
+     */
+    public MoveOrdering(int heuristics) {
+        this.heuristics = heuristics;
+        StringBuilder builder = new StringBuilder();
+        if ((heuristics & PUSHES_FIRST) != 0) {
+            builder.append("+pushes");
+        }
+        if ((heuristics & KILLERS) != 0) {
+            builder.append("+killers");
+        }
+        if ((heuristics & HISTORY) != 0) {
+            builder.append("+history");
+        }
+        name = builder.length() == 0 ? "none" : builder.substring(1);
+        clear();
+    }
+
+    /**
+     * Create a move ordering with all heuristics.
+     */
+    public MoveOrdering() {
+        this(ALL);
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    /**
+     * Returns the name of the move ordering: the heuristics it uses.
+     *
+     * @return the name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    public int getHeuristics() {
+        return heuristics;
+    }
+
+    /**
+     * Create a move ordering with the same heuristics, for another search thread.
+     *
+     * @return the copy, with empty killer moves and history.
+     */
+    public MoveOrdering copy() {
+        return new MoveOrdering(heuristics);
+    }
+
+    /**
+     * Get the killer move of a ply.
+     *
+     * @param ply  the distance to the root.
+     * @param slot 0 for the latest killer move, 1 for the one before.
+     * @return the move without its kind, NO_MOVE if there is none.
+     */
+    public int getKiller(int ply, int slot) {
+        int killer = killers[ply][slot];
+        return killer == NO_KILLER ? BitBoard.NO_MOVE : killer;
+    }
+
+    /**
+     * Get the history value of a move.
+     *
+     * @param move the encoded move.
+     * @param team index of the team making the move.
+     * @return the value, higher if the move cut off more and deeper searches.
+     */
+    public int getHistory(int move, int team) {
+        return history[team * MOVE_SPACE + (move & MOVE_MASK)];
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Sort the moves of a position, the move with the highest key first. Keeps
+     * the order of moves with the same key.
+     *
+     * @requires ply < 64 && team < 3
+     * @param list  the moves made by MoveGenerator.
+     * @param count number of moves in the list.
+     * @param ply   the distance to the root.
+     * @param team  index of the team making the moves.
+     */
+    public void order(int[] list, int count, int ply, int team) {
+        int[] sortKeys = keys[ply];
+        int[] plyKillers = killers[ply];
+        int offset = team * MOVE_SPACE;
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            int key = 0;
+            if ((heuristics & PUSHES_FIRST) != 0) {
+                key += KIND_KEY * BitBoard.moveKind(move);
+            }
+            if ((heuristics & KILLERS) != 0) {
+                for (int slot = 0; slot < SLOTS; slot++) {
+                    if (plyKillers[slot] == (move & MOVE_MASK)) {
+                        key += KILLER_KEY * (SLOTS - slot);
+                    }
+                }
+            }
+            if ((heuristics & HISTORY) != 0) {
+                key += history[offset + (move & MOVE_MASK)];
+            }
+            int j = i - 1;
+            while (j >= 0 && sortKeys[j] < key) { // insertion sort, highest key first
+                list[j + 1] = list[j];
+                sortKeys[j + 1] = sortKeys[j];
+                j--;
+            }
+            list[j + 1] = move;
+            sortKeys[j + 1] = key;
+        }
+    }
+
+    /**
+     * Remember a move that cut off the search of a position. A quiet move
+     * becomes the latest killer move of the ply, every move gets depth * depth
+     * added to its history.
+     *
+     * @requires ply < 64 && team < 3
+     * @param move  the encoded move.
+     * @param ply   the distance to the root.
+     * @param depth the depth that was left to search.
+     * @param team  index of the team that made the move.
+     */
+    public void cutoff(int move, int ply, int depth, int team) {
+        int key = move & MOVE_MASK;
+        if ((heuristics & KILLERS) != 0 && BitBoard.moveKind(move) == BitBoard.QUIET_MOVE) {
+            int[] plyKillers = killers[ply];
+            if (plyKillers[0] != key) {
+                plyKillers[1] = plyKillers[0];
+                plyKillers[0] = key;
+            }
+        }
+        if ((heuristics & HISTORY) != 0) {
+            int index = team * MOVE_SPACE + key;
+            history[index] += depth * depth;
+            if (history[index] >= HISTORY_LIMIT) {
+                ageHistory();
+            }
+        }
+    }
+
+    /**
+     * Prepare for the search of a new position: the killer moves are cleared,
+     * they were found at other distances from the root, and the history is
+     * halved so that new cutoffs count more.
+     */
+    public void newSearch() {
+        for (int[] plyKillers : killers) {
+            Arrays.fill(plyKillers, NO_KILLER);
+        }
+        ageHistory();
+    }
+
+    /**
+     * Forget all killer moves and the history.
+     */
+    public void clear() {
+        for (int[] plyKillers : killers) {
+            Arrays.fill(plyKillers, NO_KILLER);
+        }
+        Arrays.fill(history, 0);
+    }
+
+    private void ageHistory() {
+        for (int i = 0; i < history.length; i++) {
+            history[i] >>= 1;
+        }
+    }
+}
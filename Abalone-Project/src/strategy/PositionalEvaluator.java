@@ -0,0 +1,269 @@
+package strategy;
+
+import abalone.BitBoard;
+
+import java.util.Arrays;
+
+/**
+ * Scores a position by the marbles pushed off and by where the marbles stand.
+ * Every marble adds a term for its team: a bonus for being close to the centre
+ * and for every marble of its team next to it, and a penalty for standing at
+ * the edge and for every line of opponents that outnumbers it and could push
+ * it, more if it would be pushed off. A pushed off marble is worth more than
+ * all positional terms together.
+ *
+ * <p>
+ * The term of a marble only depends on the fields up to REACH steps away on
+ * its lines. After a move only the marbles around the fields that changed are
+ * scored again, the terms of the other marbles are kept. The old terms are
+ * kept on a stack, so undoing a move costs no scoring at all.
+ */
+public class PositionalEvaluator implements Evaluator {
+
+    public static final int MARBLE = 1000; // per marble pushed off
+    public static final int CENTRE = 12; // per step closer to the centre than the edge
+    public static final int COHESION = 4; // per pair of neighbours of a team
+    public static final int EDGE = 10; // per marble at the edge
+    public static final int PUSH_THREAT = 15; // per line of opponents that could push a marble
+    public static final int EJECT_THREAT = 60; // per line of opponents that could push a marble off
+    private static final int REACH = 3; // a line of 3 opponents against 2 marbles and the field behind them
+    private static final int MAX_TEAMS = 3;
+    private static final int CELLS = BitBoard.CELLS;
+    private static final int MAX_RING = 4;
+
+    private static final int[] RING = new int[CELLS]; // steps from the centre, MAX_RING at the edge
+    private static final long[] INFLUENCE = new long[CELLS]; // the marbles whose term reads a field
+
+    static {
+        Arrays.fill(RING, -1);
+        int[] queue = new int[CELLS];
+        int centre = BitBoard.cellIndex('E', 4);
+        RING[centre] = 0;
+        queue[0] = centre;
+        int end = 1;
+        for (int i = 0; i < end; i++) { // breadth first from the centre
+            for (int d = 0; d < BitBoard.DIRECTIONS; d++) {
+                int n = BitBoard.neighbour(queue[i], d);
+                if (n != BitBoard.NO_CELL && RING[n] == -1) {
+                    RING[n] = RING[queue[i]] + 1;
+                    queue[end++] = n;
+                }
+            }
+        }
+        for (int cell = 0; cell < CELLS; cell++) {
+            INFLUENCE[cell] = 1L << cell;
+            for (int d = 0; d < BitBoard.DIRECTIONS; d++) {
+                int n = cell;
+                for (int step = 0; step < REACH; step++) {
+                    n = BitBoard.neighbour(n, d);
+                    if (n == BitBoard.NO_CELL) {
+                        break;
+                    }
+                    INFLUENCE[cell] |= 1L << n;
+                }
+            }
+        }
+    }
+
+    private String name = "positional";
+    private int teamCount;
+    private final long[] teamMasks = new long[MAX_TEAMS];
+    private long occupied;
+    private final int[] totals = new int[MAX_TEAMS]; // the sum of the terms of the marbles of every team
+    private final int[] terms = new int[CELLS]; // the term of the marble on every field
+    private final int[] termTeams = new int[CELLS]; // the team of that marble, -1 for an empty field
+
+    /** Undo records: the terms that were replaced and the totals before every move. */
+    private int[] savedCells = new int[CELLS * 8];
+    private int[] savedTerms = new int[CELLS * 8];
+    private int[] savedTotals = new int[MAX_TEAMS * 64];
+    private int[] savedCounts = new int[64];
+    private int saved;
+    private int ply;
+
+    // -- Queries ----------------------------------------------------
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public int evaluate(BitBoard board, int team) {
+        int best = Integer.MIN_VALUE;
+        for (int t = 0; t < teamCount; t++) {
+            if (t != team) {
+                best = Math.max(best, value(board, t));
+            }
+        }
+        return value(board, team) - best;
+    }
+
+    @Override
+    public Evaluator copy() {
+        return new PositionalEvaluator();
+    }
+
+    /**
+     * Get the sum of the positional terms of a team.
+     *
+     * @param team index of the team.
+     * @return the sum, without the marbles pushed off.
+     */
+    public int getPositional(int team) {
+        return totals[team];
+    }
+
+    private int value(BitBoard board, int team) {
+        return MARBLE * board.getScore(team) + totals[team];
+    }
+
+    /**
+     * Get the team of the marble on a field.
+     *
+     * @return the team index, -1 if the field is empty.
+     */
+    private int teamAt(int cell) {
+        long bit = 1L << cell;
+        for (int t = 0; t < teamCount; t++) {
+            if ((teamMasks[t] & bit) != 0) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compute the term of the marble on a field.
+     *
+     * @param cell the field.
+     * @param team the team of the marble.
+     * @return the term, positive is good for the team.
+     */
+    private int term(int cell, int team) {
+        long own = teamMasks[team];
+        int term = CENTRE * (MAX_RING - RING[cell]);
+        if (RING[cell] == MAX_RING) {
+            term -= EDGE;
+        }
+        for (int d = 0; d < BitBoard.DIRECTIONS; d++) {
+            int n = BitBoard.neighbour(cell, d);
+            if (n == BitBoard.NO_CELL || (occupied & (1L << n)) == 0) {
+                continue;
+            }
+            if ((own & (1L << n)) != 0) {
+                if (d < BitBoard.DIRECTIONS / 2) { // every pair once
+                    term += COHESION;
+                }
+                continue;
+            }
+            long enemy = teamMasks[teamAt(n)];
+            int opponents = 1;
+            for (int e = BitBoard.neighbour(n, d); opponents < REACH && e != BitBoard.NO_CELL
+                    && (enemy & (1L << e)) != 0; e = BitBoard.neighbour(e, d)) {
+                opponents++;
+            }
+            int back = BitBoard.opposite(d);
+            int defenders = 1;
+            int behind = BitBoard.neighbour(cell, back);
+            while (defenders < opponents && behind != BitBoard.NO_CELL && (own & (1L << behind)) != 0) {
+                defenders++;
+                behind = BitBoard.neighbour(behind, back);
+            }
+            if (defenders < opponents) { // outnumbered, a push needs room behind the defenders
+                if (behind == BitBoard.NO_CELL) {
+                    term -= EJECT_THREAT;
+                } else if ((occupied & (1L << behind)) == 0) {
+                    term -= PUSH_THREAT;
+                }
+            }
+        }
+        return term;
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    @Override
+    public void reset(BitBoard board) {
+        teamCount = board.getTeamCount();
+        Arrays.fill(totals, 0);
+        occupied = board.getOccupied();
+        for (int t = 0; t < teamCount; t++) {
+            teamMasks[t] = board.getTeamMarbles(t);
+        }
+        for (int cell = 0; cell < CELLS; cell++) {
+            int team = teamAt(cell);
+            termTeams[cell] = team;
+            terms[cell] = team == -1 ? 0 : term(cell, team);
+            if (team != -1) {
+                totals[team] += terms[cell];
+            }
+        }
+        saved = 0;
+        ply = 0;
+    }
+
+    @Override
+    public void moveMade(BitBoard board) {
+        if (ply == savedCounts.length) {
+            savedCounts = Arrays.copyOf(savedCounts, ply * 2);
+            savedTotals = Arrays.copyOf(savedTotals, ply * 2 * MAX_TEAMS);
+        }
+        if (saved + CELLS > savedCells.length) {
+            savedCells = Arrays.copyOf(savedCells, savedCells.length * 2);
+            savedTerms = Arrays.copyOf(savedTerms, savedTerms.length * 2);
+        }
+        System.arraycopy(totals, 0, savedTotals, ply * MAX_TEAMS, MAX_TEAMS);
+        long changed = 0L;
+        long before = occupied;
+        for (int t = 0; t < teamCount; t++) {
+            long mask = board.getTeamMarbles(t);
+            changed |= mask ^ teamMasks[t];
+            teamMasks[t] = mask;
+        }
+        occupied = board.getOccupied();
+        long affected = 0L;
+        while (changed != 0) {
+            affected |= INFLUENCE[Long.numberOfTrailingZeros(changed)];
+            changed &= changed - 1;
+        }
+        affected &= before | occupied; // empty before and after, the term stays 0
+        int start = saved;
+        while (affected != 0) {
+            int cell = Long.numberOfTrailingZeros(affected);
+            affected &= affected - 1;
+            int team = teamAt(cell);
+            int term = team == -1 ? 0 : term(cell, team);
+            if (term == terms[cell] && team == termTeams[cell]) {
+                continue;
+            }
+            savedCells[saved] = cell | (termTeams[cell] + 1) << 8;
+            savedTerms[saved++] = terms[cell];
+            if (termTeams[cell] != -1) {
+                totals[termTeams[cell]] -= terms[cell];
+            }
+            if (team != -1) {
+                totals[team] += term;
+            }
+            terms[cell] = term;
+            termTeams[cell] = team;
+        }
+        savedCounts[ply++] = saved - start;
+    }
+
+    @Override
+    public void moveUnmade(BitBoard board) {
+        ply--;
+        for (int i = savedCounts[ply]; i > 0; i--) {
+            saved--;
+            int cell = savedCells[saved] & 0xFF;
+            terms[cell] = savedTerms[saved];
+            termTeams[cell] = (savedCells[saved] >>> 8) - 1;
+        }
+        System.arraycopy(savedTotals, ply * MAX_TEAMS, totals, 0, MAX_TEAMS);
+        occupied = board.getOccupied();
+        for (int t = 0; t < teamCount; t++) {
+            teamMasks[t] = board.getTeamMarbles(t);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package strategy;
+
+import abalone.BitBoard;
+
+/**
+ * Scores a position by the marbles pushed off only: the score of the team
+ * minus the score of the best other team. Keeps no terms, so it needs no
+ * updates and one instance can be shared.
+ */
+public class ScoreEvaluator implements Evaluator {
+
+    private String name = "score";
+
+    // -- Queries ----------------------------------------------------
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public int evaluate(BitBoard board, int team) {
+        int best = 0;
+        for (int t = 0; t < board.getTeamCount(); t++) {
+            if (t != team) {
+                best = Math.max(best, board.getScore(t));
+            }
+        }
+        return board.getScore(team) - best;
+    }
+
+    @Override
+    public Evaluator copy() {
+        return this;
+    }
+}
@@ -19,6 +19,15 @@ public interface Strategy {
      */
     public String getName();
 
+    /**
+     * Returns the number of threads used to determine a move.
+     * 
+     * @return the number of threads, 1 if the strategy can't search in parallel.
+     */
+    public default int getThreads() {
+        return 1;
+    }
+
     // -- Commands ---------------------------------------------------
 
     /**
@@ -29,4 +38,14 @@ public interface Strategy {
      * @return the move in which the marble would be moved to
      */
     public Move determineMove(Board board, Colour colour);
+
+    /**
+     * Set the number of threads used to determine a move. Strategies that can't
+     * search in parallel ignore this.
+     * 
+     * @requires threads > 0
+     * @param threads the number of threads, 1 to search on the calling thread.
+     */
+    public default void setThreads(int threads) {
+    }
 }
@@ -0,0 +1,194 @@
+package strategy;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed size table of search results indexed by the Zobrist hash of a position.
+ * Each entry stores the best move, the score, the searched depth and whether
+ * the score is exact or a bound, packed in one long. The table can be shared by
+ * several search threads without locks: the hash is stored xor-ed with the
+ * entry, so an entry that was torn by two threads writing at the same time
+ * does not match any hash and is seen as a miss.
+ *
+ * <p>
+ * A slot is only replaced by a search of at least the same depth, unless the
+ * entry is from an older search (see newSearch()).
+ */
+public class TranspositionTable {
+
+    public static final int DEFAULT_SIZE = 1 << 20; // entries, 16 MB
+    public static final long NO_ENTRY = 0L;
+
+    public static final int EXACT = 1; // the score is the value of the position
+    public static final int LOWER_BOUND = 2; // the value is at least the score
+    public static final int UPPER_BOUND = 3; // the value is at most the score
+
+    private static final int MOVE_SHIFT = 32;
+    private static final int DEPTH_SHIFT = 52;
+    private static final int FLAG_SHIFT = 60;
+    private static final int AGE_SHIFT = 62;
+
+    private final AtomicLongArray keys; // hash ^ entry
+    private final AtomicLongArray entries;
+    private final int mask;
+    private volatile int age;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * Create a table with the given number of entries, rounded down to a power
+     * of 2.
+     *
+     * @requires size > 0
+     * @param size number of entries.
+     */
+    public TranspositionTable(int size) {
+        int entriesSize = Integer.highestOneBit(size);
+        keys = new AtomicLongArray(entriesSize);
+        entries = new AtomicLongArray(entriesSize);
+        mask = entriesSize - 1;
+    }
+
+    /**
+     * Create a table with DEFAULT_SIZE entries.
+     */
+    public TranspositionTable() {
+        this(DEFAULT_SIZE);
+    }
+
+    // -- Queries ----------------------------------------------------
+
+    /**
+     * Look up the entry of a position.
+     *
+     * @param hash the Zobrist hash of the position.
+     * @return the entry, NO_ENTRY if the position is not in the table.
+     */
+    public long probe(long hash) {
+        int index = (int) hash & mask;
+        long entry = entries.get(index);
+        if (entry != NO_ENTRY && (keys.get(index) ^ entry) == hash) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return NO_ENTRY;
+    }
+
+    public int size() {
+        return mask + 1;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * Get the part of the probes that found an entry.
+     *
+     * @return hits / (hits + misses), 0 if there were no probes.
+     */
+    public double getHitRate() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Get the score of an entry.
+     *
+     * @requires entry != NO_ENTRY
+     */
+    public static int getScore(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Get the best move of an entry.
+     *
+     * @requires entry != NO_ENTRY
+     * @return the encoded move, BitBoard.NO_MOVE if the entry has no move.
+     */
+    public static int getMove(long entry) {
+        return (int) ((entry >>> MOVE_SHIFT) & 0xFFFFF) - 1;
+    }
+
+    /**
+     * Get the depth that was searched below the position of an entry.
+     *
+     * @requires entry != NO_ENTRY
+     */
+    public static int getDepth(long entry) {
+        return (int) ((entry >>> DEPTH_SHIFT) & 0xFF);
+    }
+
+    /**
+     * Get the kind of score of an entry.
+     *
+     * @requires entry != NO_ENTRY
+     * @return EXACT, LOWER_BOUND or UPPER_BOUND.
+     */
+    public static int getFlag(long entry) {
+        return (int) ((entry >>> FLAG_SHIFT) & 0x3);
+    }
+
+    // -- Commands ---------------------------------------------------
+
+    /**
+     * Store the result of a search. Keeps the entry in the slot if it is from
+     * the current search, of another position and deeper.
+     *
+     * @requires depth >= 0 && depth < 256 && flag is EXACT, LOWER_BOUND or
+     *           UPPER_BOUND
+     * @param hash  the Zobrist hash of the position.
+     * @param depth the depth searched below the position.
+     * @param flag  the kind of score.
+     * @param score the score of the position.
+     * @param move  the best move, BitBoard.NO_MOVE if not known.
+     */
+    public void store(long hash, int depth, int flag, int score, int move) {
+        int index = (int) hash & mask;
+        long old = entries.get(index);
+        if (old != NO_ENTRY && (old >>> AGE_SHIFT) == age && getDepth(old) > depth
+                && (keys.get(index) ^ old) != hash) {
+            return; // depth-preferred replacement
+        }
+        long entry = (score & 0xFFFFFFFFL) | ((long) (move + 1) << MOVE_SHIFT) | ((long) depth << DEPTH_SHIFT)
+                | ((long) flag << FLAG_SHIFT) | ((long) age << AGE_SHIFT);
+        keys.set(index, hash ^ entry);
+        entries.set(index, entry);
+        stores.increment();
+    }
+
+    /**
+     * Mark the entries of earlier searches as old, they may be replaced by any
+     * new entry.
+     */
+    public void newSearch() {
+        age = (age + 1) & 0x3;
+    }
+
+    /**
+     * Remove all entries and reset the counters.
+     */
+    public void clear() {
+        for (int i = 0; i <= mask; i++) {
+            entries.set(i, NO_ENTRY);
+            keys.set(i, 0L);
+        }
+        hits.reset();
+        misses.reset();
+        stores.reset();
+    }
+}
@@ -0,0 +1,99 @@
+package test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.BitBoard;
+import abalone.BoardFor2;
+import abalone.Colour;
+import client.AbaloneClient;
+import client.AbaloneServerHandler;
+import exceptions.ProtocolException;
+import exceptions.ServerUnavailableException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import protocol.BinaryProtocol;
+import protocol.ProtocolMessages;
+
+/**
+ * Testing the handshake of the AbaloneClient over a loopback socket, with a
+ * server that sends GAME_RESUME in the same write as the CONNECT answer.
+ *
+ */
+public class AbaloneClientTest {
+    private static final String DELI = ProtocolMessages.DELIMITER;
+
+    /**
+     * Accept one client, read its CONNECT line and answer it together with a
+     * GAME_RESUME of a 2 player game after 3 moves, then close the connection.
+     */
+    private static void serveResume(ServerSocket server, boolean binary) {
+        try (Socket sock = server.accept()) {
+            BinaryProtocol.readLine(sock.getInputStream());
+            String resume = ProtocolMessages.GAME_RESUME + DELI + 3 + DELI
+                    + new BitBoard(new BoardFor2(Colour.BLACK, Colour.WHITE)).serialize() + DELI + "alice" + DELI
+                    + "bob" + DELI;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            String answer = ProtocolMessages.CONNECT + DELI + ProtocolMessages.SUCCESS + DELI
+                    + (binary ? ProtocolMessages.BINARY + DELI : "") + "\n";
+            bytes.write(answer.getBytes(StandardCharsets.UTF_8));
+            bytes.write(binary ? BinaryProtocol.encode(resume) : (resume + "\n").getBytes(StandardCharsets.UTF_8));
+            OutputStream out = sock.getOutputStream();
+            out.write(bytes.toByteArray()); // one write, as the NIO server does
+            out.flush();
+            InputStream in = sock.getInputStream();
+            while (in.read() != -1) { // until the client is done
+                continue;
+            }
+        } catch (IOException e) {
+            // the test fails on the client side
+        }
+    }
+
+    /**
+     * Connect a client, do the handshake and run its server handler until the
+     * server closes the connection.
+     */
+    private AbaloneServerHandler resume(boolean binary)
+            throws IOException, ServerUnavailableException, ProtocolException, InterruptedException {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread serverThread = new Thread(() -> serveResume(server, binary));
+            serverThread.start();
+            AbaloneClient client = new AbaloneClient(binary);
+            Socket sock = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+            client.connect(sock);
+            client.handleHello("alice");
+            assertEquals(binary, client.usesFrames());
+            AbaloneServerHandler handler = new AbaloneServerHandler(sock, client, "server");
+            sock.shutdownOutput(); // the server stops reading and closes
+            handler.run(); // returns when the server has closed the connection
+            sock.close();
+            serverThread.join();
+            return handler;
+        }
+    }
+
+    @Test
+    public void testResumeAfterConnect() throws Exception {
+        AbaloneServerHandler handler = resume(false);
+        assertTrue(handler.getGameActive());
+        assertEquals(1, handler.getGame().getTurn()); // 3 moves made, the turn of bob
+    }
+
+    @Test
+    public void testResumeAfterConnectWithFrames() throws Exception {
+        AbaloneServerHandler handler = resume(true);
+        assertTrue(handler.getGameActive());
+        assertEquals(1, handler.getGame().getTurn());
+    }
+}
@@ -0,0 +1,156 @@
+package test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.BitBoard;
+import abalone.Board;
+import abalone.Colour;
+import abalone.Move;
+import abalone.MoveGenerator;
+import abalone.Perft;
+import exceptions.PositionFormatException;
+
+import org.junit.jupiter.api.Test;
+
+import strategy.AlphaBetaStrategy;
+import strategy.MiniMaxStrategy;
+import strategy.ScoreEvaluator;
+
+/**
+ * Testing for the AlphaBetaStrategy class.
+ *
+ */
+public class AlphaBetaStrategyTest {
+    // the black marble on E0 can be pushed off by the white marbles on E1 and E2
+    private static final String THREATENED =
+            "@@........................@OO...............................O @ @/O 0/0 0/0";
+    // black can push the sixth white marble off from C4 to C6, with a third player
+    private static final String WIN_3 =
+            "...............@@O......................................G.... @ @/O/G 5/0/0 0/5/0";
+    private static final int WIN_SCORE = 100000;
+
+    /**
+     * Create a strategy that searches to a fixed depth without a transposition
+     * table or quiescence search, so its move can be checked with minimax.
+     */
+    private static AlphaBetaStrategy fixedDepth(int depth) {
+        AlphaBetaStrategy strategy = new AlphaBetaStrategy(1000000, depth);
+        strategy.setTranspositionTable(null);
+        strategy.setQuiescenceDepth(0);
+        return strategy;
+    }
+
+    /**
+     * Score a position with plain minimax: the team maximizes, all other teams
+     * minimize, the leaves are scored by the ScoreEvaluator.
+     */
+    private static int minimax(BitBoard board, int depth, int team) {
+        int winner = board.getWinnerTeam();
+        if (winner != -1) {
+            return winner == team ? WIN_SCORE : -WIN_SCORE;
+        }
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(board, board.getSideToMove(), moves);
+        if (depth == 0 || count == 0) {
+            return new ScoreEvaluator().evaluate(board, team);
+        }
+        boolean maximizer = board.getTeamIndex(board.getSideToMove()) == team;
+        int best = maximizer ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            board.makeMove(moves[i]);
+            int score = minimax(board, depth - 1, team);
+            board.unmakeMove();
+            best = maximizer ? Math.max(best, score) : Math.min(best, score);
+        }
+        return best;
+    }
+
+    /**
+     * Score a move of the side to move with minimax.
+     */
+    private static int valueOf(BitBoard board, Move move, int depth) {
+        int team = board.getTeamIndex(board.getSideToMove());
+        board.makeMove(BitBoard.fromMove(move));
+        int score = minimax(board, depth - 1, team);
+        board.unmakeMove();
+        return score;
+    }
+
+    @Test
+    public void testTimeLimit() {
+        BitBoard start = Perft.startPosition(2);
+        Board board = start.toBoard();
+        Colour colour = start.getSideToMove();
+        AlphaBetaStrategy strategy = new AlphaBetaStrategy(200);
+        long begin = System.nanoTime();
+        Move move = strategy.determineMove(board, colour);
+        long millis = (System.nanoTime() - begin) / 1000000;
+        assertTrue(board.isValidMoveDForColour(move, colour));
+        assertTrue("took " + millis + " ms", millis < 1000); // the limit and the last nodes before the clock check
+        assertTrue(strategy.getReachedDepth() >= 1);
+        assertTrue(strategy.getReachedDepth() < 32); // stopped by the time, not by the depth
+    }
+
+    @Test
+    public void testReachedDepth() {
+        BitBoard start = Perft.startPosition(3);
+        Board board = start.toBoard();
+        Colour colour = start.getSideToMove();
+        AlphaBetaStrategy strategy = new AlphaBetaStrategy(100000, 3);
+        Move move = strategy.determineMove(board, colour);
+        assertTrue(board.isValidMoveDForColour(move, colour));
+        assertEquals(3, strategy.getReachedDepth());
+        assertTrue(strategy.getNodes() > 0);
+    }
+
+    @Test
+    public void testLastFinishedIteration() {
+        BitBoard start = Perft.startPosition(2);
+        Board board = start.toBoard();
+        Colour colour = start.getSideToMove();
+        AlphaBetaStrategy timed = new AlphaBetaStrategy(200);
+        timed.setTranspositionTable(null);
+        Move move = timed.determineMove(board, colour);
+        int depth = timed.getReachedDepth();
+        assertTrue(depth < 32);
+        // without a table the iterations up to the reached depth are searched the same way
+        AlphaBetaStrategy finished = new AlphaBetaStrategy(1000000, depth);
+        finished.setTranspositionTable(null);
+        assertEquals(finished.determineMove(board, colour).toString(), move.toString());
+        assertEquals(depth, finished.getReachedDepth());
+    }
+
+    @Test
+    public void testWinningMove() throws PositionFormatException {
+        // 2 black marbles can push white off from C4 to C6, white has lost 5 marbles
+        BitBoard board = BitBoard.parse("...............@@O........................................... @ @/O 5/0 0/5");
+        AlphaBetaStrategy strategy = new AlphaBetaStrategy(10000, 4);
+        Move move = strategy.determineMove(board.toBoard(), Colour.BLACK);
+        board.makeMove(BitBoard.fromMove(move));
+        assertEquals(0, board.getWinnerTeam());
+        assertEquals(1, strategy.getReachedDepth()); // a win is not searched deeper
+    }
+
+    @Test
+    public void testSameValueAsMiniMax() throws PositionFormatException {
+        String[] positions = { THREATENED, WIN_3, Perft.startPosition(2).serialize() };
+        int depth = 2;
+        for (String position : positions) {
+            BitBoard board = BitBoard.parse(position);
+            Colour colour = board.getSideToMove();
+            Move alphaBeta = fixedDepth(depth).determineMove(board.toBoard(), colour);
+            MiniMaxStrategy miniMax = new MiniMaxStrategy(depth - 1); // searches 1 move more than its limit
+            miniMax.setQuiescenceDepth(0);
+            Move miniMaxMove = miniMax.determineMove(board.toBoard(), colour);
+            int best = Integer.MIN_VALUE;
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int count = MoveGenerator.generate(board, colour, moves);
+            for (int i = 0; i < count; i++) {
+                best = Math.max(best, valueOf(board, BitBoard.toMove(moves[i]), depth));
+            }
+            assertEquals(best, valueOf(board, alphaBeta, depth), position);
+            assertEquals(best, valueOf(board, miniMaxMove, depth), position);
+        }
+    }
+}
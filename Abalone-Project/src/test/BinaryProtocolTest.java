@@ -0,0 +1,69 @@
+package test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.Move;
+import exceptions.ProtocolException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import protocol.BinaryProtocol;
+
+public class BinaryProtocolTest {
+
+    /**
+     * Encode a line and decode it again.
+     */
+    private String roundTrip(String line) throws IOException, ProtocolException {
+        byte[] payload = BinaryProtocol.readFrame(new ByteArrayInputStream(BinaryProtocol.encode(line)), 1 << 16);
+        return BinaryProtocol.decode(payload);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException, ProtocolException {
+        String[] lines = { "CONNECT;200;", "MOVE;alice;5,A;5,B;1;", "MOVE;401;", "LIST_LOBBY;200;lobby,2,1;other,4,0;",
+                           "MSG_RECV;hi, there,;bob;", "GAME_FINISH;", "LOBBY_CHANGE;007;65536;x;;y;",
+                           "UNKNOWN;5,A;9,Z;", "MOVE;5,A;5,B;7;", "MOVE;5,a;5,B;1;" };
+        for (String line : lines) {
+            assertEquals(line, roundTrip(line));
+        }
+        assertEquals("READY_LOBBY;", roundTrip("READY_LOBBY")); // a delimiter after every argument
+    }
+
+    @Test
+    public void testMove() throws IOException, ProtocolException {
+        Move move = new Move('C', 4, 'C', 6, 2);
+        byte[] request = BinaryProtocol.encode("MOVE;" + move.protocolFormat() + ";");
+        assertEquals(6, request.length); // length, command, tag and three bytes
+        byte[] payload = Arrays.copyOfRange(request, 1, request.length);
+        assertEquals(move.toString(), BinaryProtocol.parseMove(payload).toString());
+        assertEquals(null, BinaryProtocol.parseMove(BinaryProtocol.encode("MOVE;401;")));
+
+        byte[] echo = BinaryProtocol.encodeMove("bob", move);
+        assertTrue(Arrays.equals(BinaryProtocol.encode("MOVE;bob;" + move.protocolFormat() + ";"), echo));
+    }
+
+    @Test
+    public void testInvalidFrame() throws IOException {
+        byte[][] payloads = { { 99 }, { 10, 4, 1 }, { 10, 6, 5, 'a' }, { 10, 3, 70 }, { 10, 9 } };
+        for (byte[] payload : payloads) {
+            boolean thrown = false;
+            try {
+                BinaryProtocol.decode(payload);
+            } catch (ProtocolException e) {
+                thrown = true;
+            }
+            assertTrue(thrown);
+        }
+        boolean thrown = false;
+        try {
+            BinaryProtocol.readFrame(new ByteArrayInputStream(new byte[] { (byte) 0x81, 1 }), 100); // 129 bytes
+        } catch (IOException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+        assertEquals(null, BinaryProtocol.readFrame(new ByteArrayInputStream(new byte[] { 3, 10 }), 100));
+    }
+}
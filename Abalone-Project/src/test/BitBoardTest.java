@@ -0,0 +1,305 @@
+package test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.BitBoard;
+import abalone.Board;
+import abalone.BoardFor2;
+import abalone.BoardFor3;
+import abalone.BoardFor4;
+import abalone.Colour;
+import abalone.Field;
+import abalone.Marble;
+import abalone.Move;
+import abalone.MoveGenerator;
+import exceptions.PositionFormatException;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing for the BitBoard class and its conversion to and from Board.
+ *
+ */
+public class BitBoardTest {
+    private Board board;
+
+    /**
+     * Initializing before each tests.
+     */
+    @BeforeEach
+    public void setUp() {
+        board = new Board();
+    }
+
+    @Test
+    public void testCellIndex() {
+        assertEquals(0, BitBoard.cellIndex('A', 0));
+        assertEquals(0, BitBoard.cellIndex('a', 0));
+        assertEquals(BitBoard.CELLS - 1, BitBoard.cellIndex('I', 8));
+        assertEquals(BitBoard.NO_CELL, BitBoard.cellIndex('A', 5));
+        assertEquals(BitBoard.NO_CELL, BitBoard.cellIndex('I', 3));
+        assertEquals(BitBoard.NO_CELL, BitBoard.cellIndex('J', 4));
+        for (int i = 0; i < BitBoard.CELLS; i++) {
+            assertEquals(i, BitBoard.cellIndex(BitBoard.rowOf(i), BitBoard.colOf(i)));
+        }
+        assertEquals(board.numberOfFields(), BitBoard.CELLS);
+    }
+
+    @Test
+    public void testNeighboursSameAsBoard() {
+        for (int i = 0; i < BitBoard.CELLS; i++) {
+            Field[] neighbours = board.getNeighbors(BitBoard.rowOf(i), BitBoard.colOf(i));
+            for (int d = 0; d < BitBoard.DIRECTIONS; d++) {
+                int n = BitBoard.neighbour(i, d);
+                if (neighbours[d] == null) {
+                    assertEquals(BitBoard.NO_CELL, n);
+                } else {
+                    assertEquals(neighbours[d].getRow(), BitBoard.rowOf(n));
+                    assertEquals(neighbours[d].getCol(), BitBoard.colOf(n));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRay() {
+        int e0 = BitBoard.cellIndex('E', 0);
+        assertEquals(8, Long.bitCount(BitBoard.ray(e0, 2))); // E1-E8
+        assertEquals(0, Long.bitCount(BitBoard.ray(e0, 5))); // edge
+        assertTrue((BitBoard.ray(e0, 2) & (1L << BitBoard.cellIndex('E', 8))) != 0);
+        assertEquals(4, Long.bitCount(BitBoard.ray(BitBoard.cellIndex('A', 0), 0))); // B0-E0
+    }
+
+    @Test
+    public void testLoadBoardFor2() {
+        Board board2 = new BoardFor2(Colour.BLACK, Colour.WHITE);
+        BitBoard bits = new BitBoard(board2);
+        assertEquals(14, Long.bitCount(bits.getMarbles(Colour.BLACK)));
+        assertEquals(14, Long.bitCount(bits.getMarbles(Colour.WHITE)));
+        assertEquals(28, Long.bitCount(bits.getOccupied()));
+        assertEquals(Colour.BLACK, bits.getColour(BitBoard.cellIndex('A', 0)));
+        assertEquals(Colour.WHITE, bits.getColour(BitBoard.cellIndex('I', 8)));
+        assertEquals(null, bits.getColour(BitBoard.cellIndex('E', 4)));
+        assertEquals(Colour.BLACK, bits.getSideToMove());
+        assertEquals(Colour.WHITE, bits.nextColour(Colour.BLACK));
+        assertEquals(Colour.BLACK, bits.nextColour(Colour.WHITE));
+        assertSameBoard(board2, bits.toBoard());
+    }
+
+    @Test
+    public void testLoadBoardFor3() {
+        Board board3 = new BoardFor3(Colour.BLACK, Colour.WHITE, Colour.RED);
+        BitBoard bits = new BitBoard(board3);
+        assertEquals(3, bits.getTeamCount());
+        assertEquals(Colour.WHITE, bits.nextColour(Colour.BLACK));
+        assertEquals(Colour.RED, bits.nextColour(Colour.WHITE));
+        assertEquals(Colour.BLACK, bits.nextColour(Colour.RED));
+        assertSameBoard(board3, bits.toBoard());
+    }
+
+    @Test
+    public void testLoadBoardFor4() {
+        Board board4 = new BoardFor4(Colour.WHITE, Colour.RED, Colour.BLACK, Colour.GREEN);
+        BitBoard bits = new BitBoard(board4);
+        assertEquals(2, bits.getTeamCount());
+        assertEquals(bits.getTeamIndex(Colour.WHITE), bits.getTeamIndex(Colour.BLACK));
+        assertEquals(Colour.RED, bits.nextColour(Colour.WHITE));
+        assertEquals(Colour.BLACK, bits.nextColour(Colour.RED));
+        assertEquals(Colour.GREEN, bits.nextColour(Colour.BLACK));
+        assertEquals(Colour.WHITE, bits.nextColour(Colour.GREEN));
+        Board copy = bits.toBoard();
+        assertTrue(copy instanceof BoardFor4);
+        assertSameBoard(board4, copy);
+    }
+
+    @Test
+    public void testScoresAndOuterRim() {
+        board.setField('C', 6, new Marble(Colour.WHITE));
+        board.setField('C', 5, new Marble(Colour.BLACK));
+        board.setField('C', 4, new Marble(Colour.BLACK));
+        board.moveD('C', 5, 'C', 4, 2); // push white off
+        BitBoard bits = new BitBoard(board);
+        assertEquals(1, bits.getScore(bits.getTeamIndex(Colour.BLACK)));
+        assertEquals(1, bits.getPushedOff(Colour.WHITE));
+        assertFalse(bits.hasWinner());
+        Board copy = bits.toBoard();
+        assertSameBoard(board, copy);
+        assertEquals(1, copy.getOuterRim().size());
+        assertEquals(board.toString(), bits.toString());
+    }
+
+    @Test
+    public void testEncodeMove() {
+        Move move = new Move('C', 2, 'C', 4, 0);
+        int encoded = BitBoard.fromMove(move);
+        assertEquals(BitBoard.cellIndex('C', 2), BitBoard.moveHead(encoded));
+        assertEquals(BitBoard.cellIndex('C', 4), BitBoard.moveTail(encoded));
+        assertEquals(0, BitBoard.moveDirection(encoded));
+        assertEquals(move.toString(), BitBoard.toMove(encoded).toString());
+        assertEquals(BitBoard.NO_MOVE, BitBoard.fromMove(new Move('A', 6, 'A', 4, 0)));
+    }
+
+    @Test
+    public void testMakeAndUnmakeMove() {
+        board.setField('C', 6, new Marble(Colour.WHITE));
+        board.setField('C', 5, new Marble(Colour.BLACK));
+        board.setField('C', 4, new Marble(Colour.BLACK));
+        BitBoard bits = new BitBoard(board);
+        String before = bits.toString();
+        int push = BitBoard.fromMove(new Move('C', 5, 'C', 4, 2));
+        assertTrue(bits.isValidMove(push, Colour.BLACK));
+        assertFalse(bits.isValidMove(push, Colour.WHITE));
+        bits.makeMove(push);
+        assertEquals(1, bits.getScore(bits.getTeamIndex(Colour.BLACK)));
+        assertEquals(Colour.BLACK, bits.getColour(BitBoard.cellIndex('C', 6)));
+        assertEquals(null, bits.getColour(BitBoard.cellIndex('C', 4)));
+        assertEquals(Colour.WHITE, bits.getSideToMove());
+        bits.unmakeMove();
+        assertEquals(0, bits.getScore(bits.getTeamIndex(Colour.BLACK)));
+        assertEquals(0, bits.getPushedOff(Colour.WHITE));
+        assertEquals(Colour.BLACK, bits.getSideToMove());
+        assertEquals(before, bits.toString());
+    }
+
+    @Test
+    public void testHash() {
+        BitBoard bits = new BitBoard(new BoardFor2(Colour.BLACK, Colour.WHITE));
+        long start = bits.getHash();
+        assertEquals(bits.computeHash(), start);
+        int black1 = BitBoard.fromMove(new Move('C', 2, 'C', 2, 0));
+        int white1 = BitBoard.fromMove(new Move('G', 6, 'G', 6, 3));
+        int black2 = BitBoard.fromMove(new Move('C', 3, 'C', 3, 0));
+        int white2 = BitBoard.fromMove(new Move('G', 5, 'G', 5, 3));
+        bits.makeMove(black1);
+        bits.makeMove(white1);
+        bits.makeMove(black2);
+        bits.makeMove(white2);
+        long hash = bits.getHash();
+        for (int i = 0; i < 4; i++) {
+            bits.unmakeMove();
+        }
+        assertEquals(start, bits.getHash());
+        bits.makeMove(black2); // same position in another order
+        bits.makeMove(white2);
+        bits.makeMove(black1);
+        bits.makeMove(white1);
+        assertEquals(hash, bits.getHash());
+        bits.setSideToMove(Colour.WHITE);
+        assertFalse(hash == bits.getHash());
+        assertEquals(bits.computeHash(), bits.getHash());
+        assertEquals(bits.getHash(), bits.deepCopy().getHash());
+    }
+
+    @Test
+    public void testParseWrongTeams() throws PositionFormatException {
+        String fields = "@OGR" + ".".repeat(BitBoard.CELLS - 4);
+        String[] wrong = { fields + " @ @GR/O 0/0 0,0,0/0", // 3 colours in a team
+            fields + " @ @/O@ 0/0 0/0,0", // a colour in 2 teams
+            fields + " @ @@/O 0/0 0,0/0", // a colour twice in a team
+            fields + " @ /@G/OR 0/0/0 /0,0/0,0", }; // a team without colours
+        for (String position : wrong) {
+            boolean thrown = false;
+            try {
+                BitBoard.parse(position);
+            } catch (PositionFormatException e) {
+                thrown = true;
+            }
+            assertTrue(position, thrown);
+        }
+        BitBoard board = BitBoard.parse(fields + " @ @G/OR 0/0 0,0/0,0");
+        Colour[] order = { Colour.BLACK, Colour.WHITE, Colour.GREEN, Colour.RED, Colour.BLACK };
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (Colour colour : order) { // the turn order goes through all 4 colours
+            assertEquals(colour, board.getSideToMove());
+            MoveGenerator.generate(board, colour, moves);
+            board.makeMove(moves[0]);
+        }
+    }
+
+    @Test
+    public void testSameMovesAsBoard() {
+        playRandomGame(new BoardFor2(Colour.BLACK, Colour.WHITE), 1);
+        playRandomGame(new BoardFor3(Colour.BLACK, Colour.WHITE, Colour.RED), 2);
+        playRandomGame(new BoardFor4(Colour.WHITE, Colour.RED, Colour.BLACK, Colour.GREEN), 3);
+    }
+
+    /**
+     * Play random moves on a Board and a BitBoard and check that both have the
+     * same valid moves and the same fields after every move. Undo every move on
+     * the BitBoard at the end.
+     */
+    private void playRandomGame(Board game, long seed) {
+        Random random = new Random(seed);
+        BitBoard bits = new BitBoard(game);
+        ArrayList<String> positions = new ArrayList<>();
+        int moves = 0;
+        while (moves < 40 && !bits.hasWinner()) {
+            Colour colour = bits.getSideToMove();
+            ArrayList<Integer> valid = new ArrayList<>();
+            for (int head = 0; head < BitBoard.CELLS; head++) {
+                for (int tail = 0; tail < BitBoard.CELLS; tail++) {
+                    if (!isCandidate(head, tail)) {
+                        continue;
+                    }
+                    for (int d = 0; d < BitBoard.DIRECTIONS; d++) {
+                        int move = BitBoard.encodeMove(head, tail, d);
+                        boolean expected = game.isValidMoveDForColour(BitBoard.toMove(move), colour);
+                        assertEquals(expected, bits.isValidMove(move, colour), BitBoard.toMove(move).toString());
+                        if (expected) {
+                            valid.add(move);
+                        }
+                    }
+                }
+            }
+            int move = valid.get(random.nextInt(valid.size()));
+            positions.add(bits.toString());
+            game.moveD(BitBoard.toMove(move));
+            bits.makeMove(move);
+            assertSameBoard(game, bits.toBoard());
+            assertEquals(bits.computeHash(), bits.getHash());
+            moves++;
+        }
+        for (int i = positions.size() - 1; i >= 0; i--) {
+            bits.unmakeMove();
+            assertEquals(positions.get(i), bits.toString());
+            assertEquals(bits.computeHash(), bits.getHash());
+        }
+    }
+
+    /**
+     * Check if two fields can be the head and tail of a move, at most 2 apart.
+     */
+    private boolean isCandidate(int head, int tail) {
+        if (head == tail) {
+            return true;
+        }
+        for (int d = 0; d < BitBoard.DIRECTIONS; d++) {
+            int n = BitBoard.neighbour(head, d);
+            if (n == tail || (n != BitBoard.NO_CELL && BitBoard.neighbour(n, d) == tail)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if two boards have the same marbles and team scores.
+     */
+    private void assertSameBoard(Board expected, Board actual) {
+        for (int i = 0; i < BitBoard.CELLS; i++) {
+            Marble m1 = expected.getField(BitBoard.rowOf(i), BitBoard.colOf(i)).getMarble();
+            Marble m2 = actual.getField(BitBoard.rowOf(i), BitBoard.colOf(i)).getMarble();
+            assertEquals(m1 == null ? null : m1.getColour(), m2 == null ? null : m2.getColour());
+        }
+        assertEquals(expected.getTeams().size(), actual.getTeams().size());
+        for (int t = 0; t < expected.getTeams().size(); t++) {
+            assertEquals(expected.getTeams().get(t).getScore(), actual.getTeams().get(t).getScore());
+        }
+    }
+}
@@ -6,6 +6,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import abalone.BitBoard;
 import abalone.Board;
 import abalone.Colour;
 import abalone.Field;
@@ -163,6 +164,18 @@ public class BoardTest {
 
     }
 
+    @Test
+    public void testGetFieldWithIndex() {
+        for (int cell = 0; cell < BitBoard.CELLS; cell++) {
+            Field field = board.getField(cell);
+            assertEquals(BitBoard.rowOf(cell), field.getRow());
+            assertEquals(BitBoard.colOf(cell), field.getCol());
+            assertTrue(field == board.getField(BitBoard.rowOf(cell), BitBoard.colOf(cell)));
+        }
+        assertEquals(null, board.getNeighbor('I', 8, 1)); // off the board
+        assertEquals(null, board.getNeighbor('J', 0, 3)); // not a field
+    }
+
     @Test
     public void testIsColumn2() {
         assertTrue(board.isColumn('A', 0, 'B', 0));
@@ -0,0 +1,153 @@
+package test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.BitBoard;
+import abalone.Move;
+import abalone.MoveGenerator;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import server.ServerGame;
+import store.GameReader;
+import store.GameRecord;
+import store.GameStore;
+
+public class GameStoreTest {
+
+    /**
+     * Play the first generated move a number of times.
+     */
+    private static List<Move> play(ServerGame game, int count) {
+        List<Move> moves = new ArrayList<>();
+        int[] generated = new int[MoveGenerator.MAX_MOVES];
+        for (int i = 0; i < count; i++) {
+            BitBoard board = new BitBoard(game.getBoard());
+            MoveGenerator.generate(board, game.getPlayerOnTurn().getColour(), generated);
+            Move move = BitBoard.toMove(generated[0]);
+            assertTrue(game.makeMove(move, game.getPlayerOnTurn()));
+            moves.add(move);
+        }
+        return moves;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        for (Path file : Files.list(directory).toArray(Path[]::new)) {
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        Path directory = Files.createTempDirectory("games");
+        List<String> two = Arrays.asList("alice", "bob");
+        List<String> three = Arrays.asList("carol", "dave", "eve");
+        ServerGame live = ServerGame.create(ServerGame.createPlayers(three));
+        List<Move> moves = play(live, 12);
+
+        GameStore store = new GameStore(directory, 1000, 1000);
+        long first = store.start("duel", two);
+        long second = store.start("trio", three);
+        for (Move move : moves) {
+            store.move(second, move);
+        }
+        store.finish(first, Collections.emptyList());
+        store.close();
+
+        List<GameRecord> games = GameReader.readAll(directory);
+        assertEquals(2, games.size());
+        assertEquals(first, games.get(0).getId());
+        assertTrue(games.get(0).isFinished());
+        assertTrue(games.get(0).getWinners().isEmpty());
+        GameRecord trio = games.get(1);
+        assertEquals("trio", trio.getLobby());
+        assertEquals(three, trio.getPlayers());
+        assertFalse(trio.isFinished());
+        assertEquals(moves.toString(), trio.getMoves().toString());
+        ServerGame replayed = trio.replay();
+        assertEquals(live.getBoard().toString(), replayed.getBoard().toString());
+        assertEquals(live.getTurnCount(), replayed.getTurnCount());
+
+        store = new GameStore(directory, 1000, 1000); // a new file with other ids
+        long third = store.start("duel", two);
+        store.flush();
+        assertTrue(store.getSyncs() > 0);
+        store.close();
+        assertTrue(third != first && third != second);
+        assertEquals(3, GameReader.readAll(directory).size());
+        delete(directory);
+    }
+
+    @Test
+    public void testRecover() throws IOException {
+        Path directory = Files.createTempDirectory("games");
+        List<String> four = Arrays.asList("alice", "bob", "carol", "dave");
+        ServerGame live = ServerGame.create(ServerGame.createPlayers(four));
+        GameStore store = new GameStore(directory, 0, 60000);
+        long game = store.start("quad", four);
+        for (Move move : play(live, 6)) {
+            store.move(game, move);
+        }
+        store.close(); // writes the checkpoint
+
+        List<GameRecord> running = GameReader.recover(directory);
+        assertEquals(1, running.size());
+        GameRecord record = running.get(0);
+        assertEquals(6, record.getTurns());
+        assertEquals(0, record.getMoveCount());
+        ServerGame resumed = record.replay();
+        assertEquals(live.getBoard().toString(), resumed.getBoard().toString());
+
+        store = new GameStore(directory, 0, 60000); // no new checkpoint while it is open
+        store.resume(record, resumed);
+        for (Move move : play(live, 4)) {
+            store.move(game, move);
+        }
+        store.flush();
+        record = GameReader.recover(directory).get(0);
+        assertEquals(6, record.getTurns());
+        assertEquals(4, record.getMoveCount());
+        resumed = record.replay();
+        assertEquals(live.getBoard().toString(), resumed.getBoard().toString());
+        assertEquals(live.getTurnCount(), resumed.getTurnCount());
+        assertEquals(live.getPlayerOnTurn().getName(), resumed.getPlayerOnTurn().getName());
+
+        store.finish(game, Collections.singletonList("alice"));
+        store.close();
+        assertTrue(GameReader.recover(directory).isEmpty());
+        delete(directory);
+    }
+
+    @Test
+    public void testCutOffRecord() throws IOException {
+        Path directory = Files.createTempDirectory("games");
+        ServerGame live = ServerGame.create(ServerGame.createPlayers(Arrays.asList("alice", "bob")));
+        List<Move> moves = play(live, 5);
+        GameStore store = new GameStore(directory, 0, 1000);
+        long game = store.start("duel", Arrays.asList("alice", "bob"));
+        for (Move move : moves) {
+            store.move(game, move);
+        }
+        store.close();
+        Path file = Files.list(directory).findFirst().get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2); // the last move was half written
+        }
+        GameReader reader = new GameReader();
+        reader.read(directory, 0, 0);
+        assertEquals(1, reader.getDamagedFiles());
+        assertEquals(4, reader.getGame(game).getMoveCount());
+        assertEquals(Files.size(file) - 10, reader.getLastOffset()); // 10 of the 12 bytes of the move are left
+        delete(directory);
+    }
+}
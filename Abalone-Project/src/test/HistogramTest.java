@@ -0,0 +1,82 @@
+package test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import server.Histogram;
+import server.ServerMetrics;
+
+public class HistogramTest {
+
+    @Test
+    public void testSmallValuesExact() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(0.5));
+        for (int value = 0; value < 8; value++) {
+            histogram.record(value);
+        }
+        assertEquals(8, histogram.getCount());
+        assertEquals(3, histogram.getPercentile(0.5));
+        assertEquals(7, histogram.getPercentile(1));
+        assertEquals(3.5, histogram.getMean());
+    }
+
+    @Test
+    public void testPercentiles() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+        long[] expected = { 50_000_000L, 99_000_000L };
+        double[] fractions = { 0.5, 0.99 };
+        for (int i = 0; i < fractions.length; i++) {
+            long percentile = histogram.getPercentile(fractions[i]);
+            assertTrue(percentile >= expected[i]); // the largest value of the bucket
+            assertTrue(percentile <= expected[i] * 1.125);
+        }
+        assertEquals(100_000_000L, histogram.getMax());
+        assertEquals(100_000_000L, histogram.getPercentile(1)); // not above the largest value
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(1));
+        assertEquals(100_002, histogram.getCount());
+    }
+
+    @Test
+    public void testConcurrentRecords() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(9_999, histogram.getMax());
+    }
+
+    @Test
+    public void testReport() {
+        ServerMetrics metrics = new ServerMetrics();
+        metrics.gauge("clients", () -> 3);
+        metrics.command("MOVE", 2_000);
+        metrics.command("NOT_A_COMMAND", 1_000);
+        metrics.moveValidated(500, true);
+        metrics.moveValidated(500, false);
+        assertEquals(1, metrics.getValidMoves());
+        assertEquals(1, metrics.getInvalidMoves());
+        String report = String.join(";", metrics.getReport());
+        assertTrue(report.contains(";clients=3;"));
+        assertTrue(report.contains(";command.MOVE.us=n:1,"));
+        assertTrue(report.contains(";command.OTHER.us=n:1,"));
+        assertFalse(report.contains("command.CONNECT")); // not used
+    }
+}
@@ -0,0 +1,149 @@
+package test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import logging.Appender;
+import logging.Level;
+import logging.LogFormat;
+import logging.Logger;
+import logging.Logging;
+import logging.RingBufferAppender;
+import org.junit.jupiter.api.Test;
+
+public class LoggingTest {
+
+    /**
+     * Appender that keeps the messages, optionally waiting for a latch first.
+     */
+    private static class ListAppender implements Appender {
+        private final List<String> messages = new ArrayList<>();
+        private final CountDownLatch open;
+
+        ListAppender(CountDownLatch open) {
+            this.open = open;
+        }
+
+        @Override
+        public synchronized void append(long millis, Level level, String logger, String template, Object arg1,
+                Object arg2, Throwable error) {
+            try {
+                open.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            StringBuilder message = new StringBuilder();
+            LogFormat.appendMessage(message, template, arg1, arg2);
+            messages.add(message.toString());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        synchronized List<String> getMessages() {
+            return new ArrayList<>(messages);
+        }
+    }
+
+    @Test
+    public void testFormat() {
+        StringBuilder line = new StringBuilder();
+        LogFormat.appendMessage(line, "[{}] Incoming: {} {}", "Client 01", "MOVE;");
+        assertEquals("[Client 01] Incoming: MOVE; {}", line.toString());
+        String formatted = LogFormat.format(0, Level.INFO, "server", "no arguments", null, null, null);
+        assertTrue(formatted.endsWith(" INFO  [server] no arguments"));
+    }
+
+    @Test
+    public void testRingKeepsOrder() throws InterruptedException {
+        ListAppender target = new ListAppender(new CountDownLatch(0));
+        RingBufferAppender ring = new RingBufferAppender(target, 1 << 16);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    ring.append(0, Level.INFO, "test", "{} {}", thread, i, null);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        ring.flush();
+        List<String> messages = target.getMessages();
+        assertEquals(4000, messages.size());
+        int[] next = new int[threads.length];
+        for (String message : messages) { // the messages of every thread are in order
+            String[] parts = message.split(" ");
+            int thread = Integer.parseInt(parts[0]);
+            assertEquals(next[thread]++, Integer.parseInt(parts[1]));
+        }
+        assertEquals(0, ring.getDropped());
+        ring.close();
+    }
+
+    @Test
+    public void testRingDropsWhenFull() throws InterruptedException {
+        CountDownLatch open = new CountDownLatch(1);
+        ListAppender target = new ListAppender(open); // the writer waits, the ring fills up
+        RingBufferAppender ring = new RingBufferAppender(target, 8);
+        for (int i = 0; i < 20; i++) {
+            ring.append(0, Level.INFO, "test", "{}", i, null, null);
+        }
+        assertTrue(ring.getDropped() >= 11); // 8 in the ring, perhaps one being written
+        open.countDown();
+        ring.flush();
+        List<String> messages = target.getMessages();
+        assertEquals(20 - ring.getDropped(), messages.size() - 1); // and the report of the dropped messages
+        assertTrue(messages.get(messages.size() - 1).contains("dropped"));
+        ring.close();
+        long dropped = ring.getDropped();
+        ring.append(0, Level.INFO, "test", "after close", null, null, null);
+        assertEquals(dropped + 1, ring.getDropped());
+    }
+
+    @Test
+    public void testLevels() {
+        Logger lobby = Logging.getLogger("lobby.test");
+        Logger other = Logging.getLogger("lobby.tested");
+        assertFalse(lobby.isEnabled(Level.DEBUG));
+        Logging.configure("lobby.test=DEBUG");
+        assertTrue(lobby.isEnabled(Level.DEBUG));
+        assertFalse(other.isEnabled(Level.DEBUG)); // prefixes match whole parts
+        Logging.setLevel("lobby", Level.OFF);
+        assertTrue(lobby.isEnabled(Level.DEBUG)); // the longest prefix wins
+        assertFalse(other.isEnabled(Level.ERROR));
+        assertFalse(lobby.isEnabled(Level.OFF));
+        Logging.setLevel("lobby.test", null);
+        Logging.setLevel("lobby", null);
+        assertEquals(Level.INFO, lobby.getLevel());
+        boolean thrown = false;
+        try {
+            Logging.configure("lobby=LOUD");
+        } catch (IllegalArgumentException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+    }
+
+    @Test
+    public void testUnusedLoggerIsForgotten() throws InterruptedException {
+        WeakReference<Logger> removed = new WeakReference<>(Logging.getLogger("lobby.removed"));
+        for (int i = 0; i < 100 && removed.get() != null; i++) { // the logger of a lobby that was removed
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(null, removed.get());
+        Logging.setLevel("lobby.removed", Level.DEBUG);
+        assertTrue(Logging.getLogger("lobby.removed").isEnabled(Level.DEBUG)); // created again with its level
+        Logging.setLevel("lobby.removed", null);
+    }
+}
@@ -0,0 +1,43 @@
+package test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.BitBoard;
+import abalone.BoardFor3;
+import abalone.Colour;
+import abalone.Move;
+import exceptions.PositionFormatException;
+
+import org.junit.jupiter.api.Test;
+
+import strategy.MaxNStrategy;
+
+/**
+ * Testing for the MaxNStrategy class.
+ *
+ */
+public class MaxNStrategyTest {
+
+    @Test
+    public void testThreePlayers() {
+        BoardFor3 board = new BoardFor3(Colour.BLACK, Colour.WHITE, Colour.GREEN);
+        MaxNStrategy strategy = new MaxNStrategy(10000, 2);
+        Move move = strategy.determineMove(board, Colour.WHITE);
+        assertTrue(board.isValidMoveDForColour(move, Colour.WHITE));
+        assertEquals(2, strategy.getReachedDepth());
+        assertTrue(strategy.getNodes() > 0);
+    }
+
+    @Test
+    public void testWinningMove() throws PositionFormatException {
+        // 2 black marbles can push white off from C4 to C6, white has lost 5 marbles
+        BitBoard board = BitBoard.parse(
+                "...............@@O......................................G.... @ @/O/G 5/0/0 0/5/0");
+        MaxNStrategy strategy = new MaxNStrategy(10000, 3);
+        Move move = strategy.determineMove(board.toBoard(), Colour.BLACK);
+        board.makeMove(BitBoard.fromMove(move));
+        assertEquals(0, board.getWinnerTeam());
+        assertEquals(1, strategy.getReachedDepth()); // a win is not searched deeper
+    }
+}
@@ -0,0 +1,45 @@
+package test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.BitBoard;
+import abalone.BoardFor2;
+import abalone.Colour;
+import abalone.Move;
+import exceptions.PositionFormatException;
+
+import org.junit.jupiter.api.Test;
+
+import strategy.MctsStrategy;
+
+/**
+ * Testing for the MctsStrategy class.
+ *
+ */
+public class MctsStrategyTest {
+
+    @Test
+    public void testPlayoutLimit() {
+        BoardFor2 board = new BoardFor2(Colour.BLACK, Colour.WHITE);
+        MctsStrategy strategy = new MctsStrategy(0, 300);
+        Move move = strategy.determineMove(board, Colour.BLACK);
+        assertTrue(board.isValidMoveDForColour(move, Colour.BLACK));
+        assertEquals(300, strategy.getPlayouts());
+
+        strategy.setThreads(2);
+        move = strategy.determineMove(board, Colour.BLACK);
+        assertTrue(board.isValidMoveDForColour(move, Colour.BLACK));
+        assertEquals(300, strategy.getPlayouts());
+    }
+
+    @Test
+    public void testWinningMove() throws PositionFormatException {
+        // 2 black marbles can push white off from C4 to C6, white has lost 5 marbles
+        BitBoard board = BitBoard.parse("...............@@O........................................... @ @/O 5/0 0/5");
+        MctsStrategy strategy = new MctsStrategy(0, 500);
+        Move move = strategy.determineMove(board.toBoard(), Colour.BLACK);
+        board.makeMove(BitBoard.fromMove(move));
+        assertEquals(0, board.getWinnerTeam());
+    }
+}
@@ -0,0 +1,166 @@
+package test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.BitBoard;
+import abalone.Board;
+import abalone.BoardFor2;
+import abalone.BoardFor3;
+import abalone.BoardFor4;
+import abalone.Colour;
+import abalone.Marble;
+import abalone.Move;
+import abalone.MoveGenerator;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing for the MoveGenerator class.
+ *
+ */
+public class MoveGeneratorTest {
+    private int[] moves;
+    private int[] pushes;
+
+    /**
+     * Initializing before each tests.
+     */
+    @BeforeEach
+    public void setUp() {
+        moves = new int[MoveGenerator.MAX_MOVES];
+        pushes = new int[MoveGenerator.MAX_MOVES];
+    }
+
+    @Test
+    public void testStartPositions() {
+        BitBoard board2 = new BitBoard(new BoardFor2(Colour.BLACK, Colour.WHITE));
+        assertEquals(44, MoveGenerator.generate(board2, Colour.BLACK, moves));
+        assertEquals(44, MoveGenerator.generate(board2, Colour.WHITE, moves));
+        BitBoard board3 = new BitBoard(new BoardFor3(Colour.BLACK, Colour.WHITE, Colour.RED));
+        assertEquals(countValidMoves(board3, Colour.BLACK), MoveGenerator.generate(board3, Colour.BLACK, moves));
+    }
+
+    @Test
+    public void testSideStep() {
+        Board board = new Board();
+        board.setField('E', 4, new Marble(Colour.BLACK));
+        board.setField('E', 5, new Marble(Colour.BLACK));
+        board.setField('E', 6, new Marble(Colour.BLACK));
+        BitBoard bits = new BitBoard(board);
+        // single marbles 5 + 4 + 5, pairs can't push their own marble so 5 each, the row 6
+        assertEquals(5 + 4 + 5 + 5 + 5 + 6, MoveGenerator.generate(bits, Colour.BLACK, moves));
+        assertTrue(contains(MoveGenerator.generate(bits, Colour.BLACK, moves), new Move('E', 4, 'E', 6, 0)));
+    }
+
+    @Test
+    public void testPushKinds() {
+        Board board = new Board();
+        board.setField('C', 4, new Marble(Colour.BLACK));
+        board.setField('C', 5, new Marble(Colour.BLACK));
+        board.setField('C', 6, new Marble(Colour.WHITE));
+        BitBoard bits = new BitBoard(board);
+        int count = MoveGenerator.generate(bits, Colour.BLACK, moves);
+        for (int i = 0; i < count; i++) {
+            assertEquals(bits.classifyMove(moves[i]), BitBoard.moveKind(moves[i]));
+        }
+        assertTrue(contains(count, new Move('C', 5, 'C', 4, 2))); // ejects white
+        assertFalse(contains(count, new Move('C', 5, 'C', 5, 2))); // 1 marble can't push
+    }
+
+    @Test
+    public void testTeamGroups() {
+        Board board = new BoardFor4(Colour.WHITE, Colour.RED, Colour.BLACK, Colour.GREEN);
+        board.init();
+        board.setField('E', 4, new Marble(Colour.WHITE));
+        board.setField('E', 5, new Marble(Colour.BLACK));
+        board.setField('E', 6, new Marble(Colour.WHITE));
+        board.setField('E', 7, new Marble(Colour.RED));
+        BitBoard bits = new BitBoard(board);
+        int count = MoveGenerator.generate(bits, Colour.WHITE, moves);
+        assertEquals(countValidMoves(bits, Colour.WHITE), count);
+        assertTrue(contains(count, new Move('E', 6, 'E', 4, 2))); // team group pushes red
+        assertTrue(contains(count, new Move('E', 4, 'E', 5, 0))); // head is white, tail black
+        // black can only move groups with a black head
+        assertEquals(countValidMoves(bits, Colour.BLACK), MoveGenerator.generate(bits, Colour.BLACK, moves));
+    }
+
+    @Test
+    public void testSameMovesAsValidMoves() {
+        playRandomGame(new BitBoard(new BoardFor2(Colour.BLACK, Colour.WHITE)), 1);
+        playRandomGame(new BitBoard(new BoardFor3(Colour.BLACK, Colour.WHITE, Colour.RED)), 2);
+        playRandomGame(new BitBoard(new BoardFor4(Colour.WHITE, Colour.RED, Colour.BLACK, Colour.GREEN)), 3);
+    }
+
+    /**
+     * Play random generated moves and check after every move that the generated
+     * moves are valid, all different and that no valid move is missing, and
+     * that generatePushes gives the pushing moves among them.
+     */
+    private void playRandomGame(BitBoard bits, long seed) {
+        Random random = new Random(seed);
+        int played = 0;
+        while (played < 60 && !bits.hasWinner()) {
+            Colour colour = bits.getSideToMove();
+            int count = MoveGenerator.generate(bits, colour, moves);
+            HashSet<Long> positions = new HashSet<>();
+            int pushCount = MoveGenerator.generatePushes(bits, colour, pushes);
+            int pushIndex = 0;
+            for (int i = 0; i < count; i++) {
+                if (BitBoard.moveKind(moves[i]) != BitBoard.QUIET_MOVE) { // in the same order
+                    assertEquals(moves[i], pushes[pushIndex++]);
+                }
+                assertTrue(bits.isValidMove(moves[i], colour));
+                assertEquals(bits.classifyMove(moves[i]), BitBoard.moveKind(moves[i]));
+                bits.makeMove(moves[i]);
+                positions.add(bits.getHash());
+                bits.unmakeMove();
+            }
+            assertEquals(count, positions.size()); // no move is generated twice
+            assertEquals(pushIndex, pushCount);
+            assertEquals(countValidMoves(bits, colour), count);
+            bits.makeMove(moves[random.nextInt(count)]);
+            played++;
+        }
+    }
+
+    /**
+     * Count the different valid moves of a colour by trying every head, tail and
+     * direction. Moves that give the same position are counted once.
+     */
+    private int countValidMoves(BitBoard bits, Colour colour) {
+        HashSet<Long> positions = new HashSet<>();
+        for (int head = 0; head < BitBoard.CELLS; head++) {
+            for (int tail = 0; tail < BitBoard.CELLS; tail++) {
+                for (int d = 0; d < BitBoard.DIRECTIONS; d++) {
+                    int move = BitBoard.encodeMove(head, tail, d);
+                    if (bits.isValidMove(move, colour)) {
+                        bits.makeMove(move);
+                        positions.add(bits.getHash());
+                        bits.unmakeMove();
+                    }
+                }
+            }
+        }
+        return positions.size();
+    }
+
+    /**
+     * Check if the first moves of the buffer contain a move.
+     */
+    private boolean contains(int count, Move move) {
+        int encoded = BitBoard.fromMove(move);
+        for (int i = 0; i < count; i++) {
+            if (BitBoard.encodeMove(BitBoard.moveHead(moves[i]), BitBoard.moveTail(moves[i]),
+                    BitBoard.moveDirection(moves[i])) == encoded) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,59 @@
+package test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.BitBoard;
+import abalone.Perft;
+import abalone.SearchStats;
+
+import org.junit.jupiter.api.Test;
+
+import strategy.AlphaBetaStrategy;
+import strategy.MoveOrdering;
+
+/**
+ * Testing for the MoveOrdering class.
+ *
+ */
+public class MoveOrderingTest {
+
+    private static int kind(int move, int kind) {
+        return move | kind << BitBoard.KIND_SHIFT;
+    }
+
+    @Test
+    public void testOrder() {
+        MoveOrdering ordering = new MoveOrdering();
+        int quiet = BitBoard.encodeMove(1, 1, 0);
+        int history = BitBoard.encodeMove(2, 2, 0);
+        int killer = BitBoard.encodeMove(3, 3, 0);
+        int push = kind(BitBoard.encodeMove(4, 4, 0), BitBoard.PUSH_MOVE);
+        int eject = kind(BitBoard.encodeMove(5, 5, 0), BitBoard.EJECT_MOVE);
+        ordering.cutoff(history, 2, 4, 0);
+        ordering.cutoff(killer, 3, 1, 0);
+        assertEquals(killer, ordering.getKiller(3, 0));
+        assertEquals(16, ordering.getHistory(history, 0));
+        assertEquals(0, ordering.getHistory(history, 1)); // another team
+        int[] list = { quiet, history, killer, push, eject };
+        ordering.order(list, list.length, 3, 0);
+        int[] expected = { eject, push, killer, history, quiet };
+        for (int i = 0; i < list.length; i++) {
+            assertEquals(expected[i], list[i]);
+        }
+        ordering.cutoff(push, 3, 1, 0); // a push does not become a killer move
+        assertEquals(killer, ordering.getKiller(3, 0));
+        ordering.newSearch();
+        assertEquals(BitBoard.NO_MOVE, ordering.getKiller(3, 0));
+        assertEquals(8, ordering.getHistory(history, 0));
+    }
+
+    @Test
+    public void testFewerNodes() {
+        BitBoard board = Perft.startPosition(2);
+        AlphaBetaStrategy unordered = SearchStats.search(board, 4, -1);
+        AlphaBetaStrategy ordered = SearchStats.search(board, 4, MoveOrdering.ALL);
+        assertTrue(ordered.getNodes() < unordered.getNodes());
+        assertTrue(ordered.getFirstMoveCutoffs() > unordered.getFirstMoveCutoffs());
+    }
+}
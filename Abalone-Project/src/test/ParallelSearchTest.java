@@ -0,0 +1,78 @@
+package test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.BitBoard;
+import abalone.Move;
+import abalone.Perft;
+import exceptions.PositionFormatException;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import strategy.AlphaBetaStrategy;
+import strategy.MiniMaxStrategy;
+import strategy.Strategy;
+
+/**
+ * Testing the parallel search of MiniMaxStrategy and AlphaBetaStrategy: more
+ * threads find the same move as 1 thread.
+ *
+ */
+public class ParallelSearchTest {
+    private static final String[] MIDGAMES = {
+        "OOOOO..OOOOOOO......R......O..R.O....R.......R....RR.RRRRRRRR O O/R 0/0 0/0",
+        ".OOOOOO..O..O...RRO@...O.....@....R@@...RRR@.@..RR@...RR@@..R O O/R/@ 2/0/1 1/0/2",
+        ".RO.O.RO.O.RR..O....R..OO.R.R..GO.G.RR@G@...@@.G.G..@GGG@@..G @ O@/RG 0/3 1,2/0,0", };
+
+    /**
+     * Determine the move of a strategy with 1 and with 4 threads from the start
+     * position of every number of players and from a game in progress of every
+     * number of players.
+     */
+    private void assertSameMove(Strategy single, Strategy parallel) throws PositionFormatException {
+        single.setThreads(1);
+        parallel.setThreads(4);
+        ArrayList<BitBoard> boards = new ArrayList<>();
+        for (int players = 2; players <= 4; players++) {
+            boards.add(Perft.startPosition(players));
+        }
+        for (String position : MIDGAMES) {
+            boards.add(BitBoard.parse(position));
+        }
+        for (BitBoard board : boards) {
+            String expected = single.determineMove(board.toBoard(), board.getSideToMove()).toString();
+            assertEquals(expected, parallel.determineMove(board.toBoard(), board.getSideToMove()).toString(),
+                    board.serialize());
+        }
+        parallel.setThreads(1); // shuts down the pool
+    }
+
+    @Test
+    public void testMiniMax() throws PositionFormatException {
+        assertSameMove(new MiniMaxStrategy(1), new MiniMaxStrategy(1));
+    }
+
+    @Test
+    public void testAlphaBeta() throws PositionFormatException {
+        AlphaBetaStrategy single = new AlphaBetaStrategy(1000000, 4);
+        single.setTranspositionTable(null);
+        AlphaBetaStrategy parallel = new AlphaBetaStrategy(1000000, 4);
+        parallel.setTranspositionTable(null); // with a shared table the threads see each other's scores
+        assertSameMove(single, parallel);
+    }
+
+    @Test
+    public void testMiniMaxInterrupted() {
+        MiniMaxStrategy strategy = new MiniMaxStrategy(1);
+        strategy.setThreads(4);
+        BitBoard board = Perft.startPosition(2);
+        Thread.currentThread().interrupt(); // waiting for the threads is interrupted
+        Move move = strategy.determineMove(board.toBoard(), board.getSideToMove());
+        assertTrue(Thread.interrupted());
+        assertTrue(board.toBoard().isValidMoveDForColour(move, board.getSideToMove()));
+        strategy.setThreads(1);
+    }
+}
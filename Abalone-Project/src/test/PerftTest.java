@@ -0,0 +1,97 @@
+package test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.BitBoard;
+import abalone.Colour;
+import abalone.Perft;
+
+import exceptions.PositionFormatException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing the move generation with perft counts from the start positions. The
+ * counts were checked against Board with Perft.verify().
+ *
+ */
+public class PerftTest {
+    private Perft perft;
+
+    /**
+     * Initializing before each tests.
+     */
+    @BeforeEach
+    public void setUp() {
+        perft = new Perft();
+    }
+
+    @Test
+    public void testPerftFor2() {
+        BitBoard board = Perft.startPosition(2);
+        assertEquals(44, perft.perft(board, 1));
+        assertEquals(1936, perft.perft(board, 2));
+        assertEquals(98912, perft.perft(board, 3));
+        assertEquals(Perft.startPosition(2).serialize(), board.serialize()); // all moves undone
+    }
+
+    @Test
+    public void testPerftFor3() {
+        BitBoard board = Perft.startPosition(3);
+        assertEquals(40, perft.perft(board, 1));
+        assertEquals(1587, perft.perft(board, 2));
+        assertEquals(62440, perft.perft(board, 3));
+    }
+
+    @Test
+    public void testPerftFor4() {
+        BitBoard board = Perft.startPosition(4);
+        assertEquals(43, perft.perft(board, 1));
+        assertEquals(1696, perft.perft(board, 2));
+        assertEquals(71767, perft.perft(board, 3));
+    }
+
+    @Test
+    public void testVerify() {
+        for (int players = 2; players <= 4; players++) {
+            BitBoard board = Perft.startPosition(players);
+            assertEquals(perft.perft(board, 2), perft.verify(board, 2));
+        }
+    }
+
+    @Test
+    public void testSerializedPosition() throws PositionFormatException {
+        // 2 black marbles can push white off from C4 to C6, white has lost 5 marbles
+        String position = "...............@@O........................................... @ @/O 5/0 0/5";
+        BitBoard board = BitBoard.parse(position);
+        assertEquals(position, board.serialize());
+        assertEquals(board.computeHash(), board.getHash());
+        assertEquals(Colour.BLACK, board.getSideToMove());
+        assertEquals(5, board.getScore(0));
+        assertEquals(5, board.getPushedOff(Colour.WHITE));
+        assertEquals(5 + 4 + 6, perft.perft(board, 1)); // 2 single marbles and the pair
+        assertEquals(perft.perft(board, 3), perft.verify(board, 3));
+        for (int players = 2; players <= 4; players++) {
+            String start = Perft.startPosition(players).serialize();
+            assertEquals(start, BitBoard.parse(start).serialize());
+        }
+    }
+
+    @Test
+    public void testWrongPosition() {
+        String[] wrong = { "", "....", Perft.startPosition(2).serialize().replace(" O/R", " O/X"),
+            Perft.startPosition(2).serialize().replace(" 0/0 0/0", " 0/0"),
+            Perft.startPosition(3).serialize().replace("/@ ", " "), };
+        for (String position : wrong) {
+            boolean thrown = false;
+            try {
+                BitBoard.parse(position);
+            } catch (PositionFormatException e) {
+                thrown = true;
+            }
+            assertTrue(thrown);
+        }
+    }
+}
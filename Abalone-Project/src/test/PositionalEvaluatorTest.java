@@ -0,0 +1,83 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.BitBoard;
+import abalone.BoardFor2;
+import abalone.BoardFor3;
+import abalone.BoardFor4;
+import abalone.Colour;
+import abalone.MoveGenerator;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import strategy.PositionalEvaluator;
+
+/**
+ * Testing for the PositionalEvaluator class.
+ *
+ */
+public class PositionalEvaluatorTest {
+
+    /**
+     * Check that the terms kept up to date with the moves are the terms computed
+     * from scratch.
+     */
+    private static void assertSameTerms(BitBoard board, PositionalEvaluator incremental) {
+        PositionalEvaluator fresh = new PositionalEvaluator();
+        fresh.reset(board);
+        for (int t = 0; t < board.getTeamCount(); t++) {
+            assertEquals(fresh.getPositional(t), incremental.getPositional(t));
+            assertEquals(fresh.evaluate(board, t), incremental.evaluate(board, t));
+        }
+    }
+
+    /**
+     * Play random moves, undoing some of them, and compare the terms after every
+     * move.
+     */
+    private static void playRandom(BitBoard board, long seed) {
+        PositionalEvaluator evaluator = new PositionalEvaluator();
+        evaluator.reset(board);
+        int start = evaluator.getPositional(0);
+        Random random = new Random(seed);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int made = 0;
+        for (int i = 0; i < 300 && !board.hasWinner(); i++) {
+            if (made > 0 && random.nextInt(4) == 0) {
+                board.unmakeMove();
+                evaluator.moveUnmade(board);
+                made--;
+            } else {
+                int count = MoveGenerator.generate(board, board.getSideToMove(), moves);
+                board.makeMove(moves[random.nextInt(count)]);
+                evaluator.moveMade(board);
+                made++;
+            }
+            assertSameTerms(board, evaluator);
+        }
+        for (; made > 0; made--) {
+            board.unmakeMove();
+            evaluator.moveUnmade(board);
+        }
+        assertEquals(start, evaluator.getPositional(0));
+    }
+
+    @Test
+    public void testStartIsEven() {
+        BitBoard board = new BitBoard(new BoardFor2(Colour.BLACK, Colour.WHITE));
+        PositionalEvaluator evaluator = new PositionalEvaluator();
+        evaluator.reset(board);
+        assertEquals(0, evaluator.evaluate(board, 0));
+        assertEquals(0, evaluator.evaluate(board, 1));
+    }
+
+    @Test
+    public void testIncremental() {
+        playRandom(new BitBoard(new BoardFor2(Colour.BLACK, Colour.WHITE)), 1);
+        playRandom(new BitBoard(new BoardFor3(Colour.BLACK, Colour.WHITE, Colour.GREEN)), 2);
+        playRandom(new BitBoard(new BoardFor4(Colour.BLACK, Colour.GREEN, Colour.WHITE, Colour.RED)), 3);
+    }
+}
@@ -0,0 +1,93 @@
+package test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.Move;
+import exceptions.MoveFormatException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import protocol.ProtocolMessages;
+import protocol.ProtocolTokenizer;
+import protocol.ResponseBuilder;
+
+public class ProtocolTokenizerTest {
+
+    private ProtocolTokenizer tokenizer = new ProtocolTokenizer();
+
+    @Test
+    public void testSameAsSplit() {
+        String[] lines = { "MOVE;5,A;5,B;1;", "LIST_LOBBY;", "LIST_LOBBY", "", ";", ";;", ";a", "a;;b;;", "  ;x",
+                           "CREATE_LOBBY;lobby;4;", "GAME_START;alice;bob;carol;dave;eve;frank;gina;hank;ivy;" };
+        for (String line : lines) {
+            String[] args = line.split(ProtocolMessages.DELIMITER);
+            tokenizer.reset(line);
+            assertEquals(args.length, tokenizer.getCount());
+            for (int i = 0; i < args.length; i++) {
+                assertEquals(args[i], tokenizer.getString(i));
+                assertEquals(args[i].isBlank(), tokenizer.isBlank(i));
+            }
+            assertTrue(tokenizer.isBlank(args.length));
+        }
+    }
+
+    @Test
+    public void testCommand() {
+        assertTrue(tokenizer.reset("MOVE;5,A;5,B;1;").getCommand() == ProtocolMessages.MOVE);
+        assertTrue(tokenizer.reset("CONNECT").getCommand() == ProtocolMessages.CONNECT);
+        assertEquals("MOVES", tokenizer.reset("MOVES;").getCommand());
+        assertEquals("", tokenizer.reset(";;").getCommand());
+        assertTrue(tokenizer.reset("CONNECT;bob;BINARY;").isEqual(2, ProtocolMessages.BINARY));
+        assertFalse(tokenizer.isEqual(1, ProtocolMessages.BINARY));
+        assertFalse(tokenizer.isEqual(3, ProtocolMessages.BINARY));
+    }
+
+    @Test
+    public void testGetInt() {
+        tokenizer.reset("X;200;-3;+4;;a1;2147483647;2147483648;0");
+        assertEquals(200, tokenizer.getInt(1));
+        assertEquals(-3, tokenizer.getInt(2));
+        assertEquals(4, tokenizer.getInt(3));
+        assertEquals(ProtocolTokenizer.NO_NUMBER, tokenizer.getInt(4));
+        assertEquals(ProtocolTokenizer.NO_NUMBER, tokenizer.getInt(5));
+        assertEquals(Integer.MAX_VALUE, tokenizer.getInt(6));
+        assertEquals(ProtocolTokenizer.NO_NUMBER, tokenizer.getInt(7));
+        assertEquals(0, tokenizer.getInt(8));
+        assertEquals(ProtocolTokenizer.NO_NUMBER, tokenizer.getInt(9));
+    }
+
+    @Test
+    public void testGetMove() throws MoveFormatException {
+        String[] moves = { "5,A;5,B;1", "1,I;9,E;5", "3,C;5,C;0" };
+        for (String move : moves) {
+            Move parsed = tokenizer.reset("MOVE;alice;" + move + ";").getMove(2);
+            assertEquals(Move.parseProtocol(move).toString(), parsed.toString());
+        }
+        String[] invalid = { "MOVE;5,A;5,B;6;", "MOVE;5,A;5,B;", "MOVE;x,A;5,B;1;", "MOVE;5;5,B;1;", "MOVE;5,;5,B;1;",
+                             "MOVE;5,A;5,B;;" };
+        for (String line : invalid) {
+            boolean thrown = false;
+            try {
+                tokenizer.reset(line).getMove(1);
+            } catch (MoveFormatException e) {
+                thrown = true;
+            }
+            assertTrue(thrown);
+        }
+    }
+
+    @Test
+    public void testResponseBuilder() {
+        ResponseBuilder builder = new ResponseBuilder();
+        Move move = new Move('C', 2, 'C', 4, 0);
+        builder.command(ProtocolMessages.MOVE).arg("alice").move(move);
+        String expected = ProtocolMessages.MOVE + ";alice;" + move.protocolFormat() + ";";
+        assertEquals(expected, builder.toString());
+        assertEquals(expected + "\n", new String(builder.toLine(), StandardCharsets.UTF_8));
+        assertEquals("READY_LOBBY;-12;0;", builder.command(ProtocolMessages.READY_LOBBY).arg(-12).arg(0).toString());
+        assertEquals("MSG_RECV;hé;", builder.command(ProtocolMessages.MSG_RECV).arg("hé").toString());
+        assertEquals("LOBBY_MSG;hé;\n", new String(ResponseBuilder.toLine("LOBBY_MSG;hé"),
+                StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,56 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.BitBoard;
+import abalone.Colour;
+import abalone.Move;
+import abalone.MoveGenerator;
+import exceptions.PositionFormatException;
+
+import org.junit.jupiter.api.Test;
+
+import strategy.AlphaBetaStrategy;
+import strategy.MiniMaxStrategy;
+import strategy.Strategy;
+
+/**
+ * Testing the quiescence search of MiniMaxStrategy and AlphaBetaStrategy.
+ *
+ */
+public class QuiescenceTest {
+    // the black marble on E0 can be pushed off by the white marbles on E1 and E2
+    private static final String THREATENED =
+            "@@........................@OO...............................O @ @/O 0/0 0/0";
+
+    /**
+     * Make the move of a strategy for black and count the ejecting moves white
+     * has after it.
+     */
+    private int ejectsAfterMove(Strategy strategy) throws PositionFormatException {
+        BitBoard board = BitBoard.parse(THREATENED);
+        Move move = strategy.determineMove(board.toBoard(), Colour.BLACK);
+        board.makeMove(BitBoard.fromMove(move));
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(board, Colour.WHITE, moves);
+        int ejects = 0;
+        for (int i = 0; i < count; i++) {
+            if (BitBoard.moveKind(moves[i]) == BitBoard.EJECT_MOVE) {
+                ejects++;
+            }
+        }
+        return ejects;
+    }
+
+    @Test
+    public void testMiniMax() throws PositionFormatException {
+        MiniMaxStrategy strategy = new MiniMaxStrategy(0); // only the moves of black before the quiescence search
+        assertEquals(0, ejectsAfterMove(strategy));
+    }
+
+    @Test
+    public void testAlphaBeta() throws PositionFormatException {
+        AlphaBetaStrategy strategy = new AlphaBetaStrategy(10000, 1);
+        assertEquals(0, ejectsAfterMove(strategy));
+    }
+}
@@ -0,0 +1,60 @@
+package test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.Tournament;
+import org.junit.jupiter.api.Test;
+import strategy.BetterStrategy;
+import strategy.NaiveStrategy;
+
+public class TournamentTest {
+
+    @Test
+    public void testTwoPlayers() throws InterruptedException {
+        Tournament tournament = new Tournament();
+        tournament.addEntrant(NaiveStrategy::new);
+        tournament.addEntrant(BetterStrategy::new);
+        Tournament.Result result = tournament.run(4, 2);
+        assertEquals(4, result.getGames());
+        for (int i = 0; i < 2; i++) {
+            assertEquals(4, result.getWins(i) + result.getLosses(i) + result.getDraws(i));
+        }
+        assertEquals(result.getWins(0), result.getLosses(1)); // one team wins or it's a draw
+        assertEquals(result.getDraws(0), result.getDraws(1));
+        assertTrue(result.getAverageLength() > 0);
+        assertTrue(result.getAverageThinkTime(1) >= 0);
+    }
+
+    @Test
+    public void testFourPlayers() throws InterruptedException {
+        Tournament tournament = new Tournament();
+        for (int i = 0; i < 4; i++) {
+            tournament.addEntrant(BetterStrategy::new);
+        }
+        Tournament.Result result = tournament.run(2, 2);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(2, result.getWins(i) + result.getLosses(i) + result.getDraws(i));
+        }
+        // in every game 2 entrants win or all draw
+        int wins = 0;
+        for (int i = 0; i < 4; i++) {
+            wins += result.getWins(i);
+        }
+        assertEquals(0, wins % 2);
+    }
+
+    @Test
+    public void testParseStrategy() {
+        assertEquals("Naive", Tournament.parseStrategy("naive").get().getName());
+        assertEquals("MiniMaxStrategy", Tournament.parseStrategy("MiniMax:1").get().getName());
+        assertEquals("MctsStrategy", Tournament.parseStrategy("mcts:50").get().getName());
+        boolean thrown = false;
+        try {
+            Tournament.parseStrategy("minimax:x");
+        } catch (IllegalArgumentException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+    }
+}
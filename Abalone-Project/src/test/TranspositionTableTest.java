@@ -0,0 +1,66 @@
+package test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import abalone.BitBoard;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import strategy.TranspositionTable;
+
+/**
+ * Testing for the TranspositionTable class.
+ *
+ */
+public class TranspositionTableTest {
+    private TranspositionTable table;
+
+    /**
+     * Initializing before each tests.
+     */
+    @BeforeEach
+    public void setUp() {
+        table = new TranspositionTable(1000);
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(512, table.size());
+    }
+
+    @Test
+    public void testStoreAndProbe() {
+        assertEquals(TranspositionTable.NO_ENTRY, table.probe(42L));
+        int move = BitBoard.encodeMove(5, 7, 2);
+        table.store(42L, 3, TranspositionTable.LOWER_BOUND, -25, move);
+        long entry = table.probe(42L);
+        assertEquals(-25, TranspositionTable.getScore(entry));
+        assertEquals(3, TranspositionTable.getDepth(entry));
+        assertEquals(TranspositionTable.LOWER_BOUND, TranspositionTable.getFlag(entry));
+        assertEquals(move, TranspositionTable.getMove(entry));
+        table.store(43L, 0, TranspositionTable.EXACT, 0, BitBoard.NO_MOVE);
+        assertEquals(BitBoard.NO_MOVE, TranspositionTable.getMove(table.probe(43L)));
+        assertEquals(TranspositionTable.NO_ENTRY, table.probe(42L + table.size())); // same slot
+        assertEquals(2, table.getHits());
+        assertEquals(2, table.getMisses());
+        assertEquals(2, table.getStores());
+    }
+
+    @Test
+    public void testDepthPreferred() {
+        long other = 42L + table.size(); // same slot
+        table.store(42L, 4, TranspositionTable.EXACT, 1, BitBoard.NO_MOVE);
+        table.store(other, 2, TranspositionTable.EXACT, 2, BitBoard.NO_MOVE);
+        assertEquals(1, TranspositionTable.getScore(table.probe(42L)));
+        table.store(42L, 1, TranspositionTable.EXACT, 3, BitBoard.NO_MOVE); // same position
+        assertEquals(3, TranspositionTable.getScore(table.probe(42L)));
+        table.newSearch();
+        table.store(other, 0, TranspositionTable.EXACT, 2, BitBoard.NO_MOVE); // old entry
+        assertEquals(2, TranspositionTable.getScore(table.probe(other)));
+        table.clear();
+        assertEquals(TranspositionTable.NO_ENTRY, table.probe(other));
+        assertTrue(table.getHitRate() == 0);
+    }
+}